@@ -1,19 +1,20 @@
 package com.g5.dss.api;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.g5.dss.dto.*;
+import com.g5.dss.service.AsyncJobService;
 import com.g5.dss.service.AsyncTaskManager;
+import com.g5.dss.service.ModelServiceClient;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
 
 /**
  * Async API Controller for Anomaly Detection and Inventory Audit
@@ -26,10 +27,17 @@ import java.util.concurrent.CompletableFuture;
 public class AsyncAnomalyApiController {
 
     private final AsyncTaskManager taskManager;
-    private final RestTemplate restTemplate;
+    private final ModelServiceClient modelService;
+    private final AsyncJobService jobService;
 
-    @Qualifier("anomalyExecutor")
-    private final java.util.concurrent.Executor anomalyExecutor;
+    /**
+     * Register job types so queued requests can be run on any node
+     */
+    @PostConstruct
+    void registerJobs() {
+        jobService.register("anomaly-detection", AsyncJobService.ANOMALY, new TypeReference<Map<String, Object>>() {}, this::processAnomalyDetection);
+        jobService.register("invoice-audit", AsyncJobService.ANOMALY, new TypeReference<Map<String, Object>>() {}, this::processInvoiceAudit);
+    }
 
     /**
      * Submit async anomaly detection request
@@ -39,12 +47,7 @@ public class AsyncAnomalyApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitAnomalyDetection(
             @RequestBody Map<String, Object> request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<List<AnomalyDTO>> future = processAnomalyDetection(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("anomaly-detection", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -57,12 +60,7 @@ public class AsyncAnomalyApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitInvoiceAudit(
             @RequestBody Map<String, Object> request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<Map<String, Object>> future = processInvoiceAudit(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("invoice-audit", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -102,71 +100,27 @@ public class AsyncAnomalyApiController {
         }
     }
 
-    // ==================== ASYNC PROCESSING METHODS ====================
+    // ==================== JOBS (run on the executor by AsyncJobService) ====================
 
-    @Async("anomalyExecutor")
-    public CompletableFuture<List<AnomalyDTO>> processAnomalyDetection(
-            String taskId, Map<String, Object> request) {
-        
-        log.info("Starting anomaly detection task: {}", taskId);
-        
-        try {
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            String modelServiceUrl = "http://localhost:8000/api/anomaly/detect";
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            @SuppressWarnings("unchecked")
-            List<AnomalyDTO> result = restTemplate.postForObject(
-                modelServiceUrl, request, List.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            AsyncTaskResponse<List<AnomalyDTO>> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed anomaly detection task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in anomaly detection task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private List<AnomalyDTO> processAnomalyDetection(Map<String, Object> request, IntConsumer progress) {
+        String endpoint = modelService.endpoints().getAnomalyDetect();
+
+        progress.accept(50);
+
+        @SuppressWarnings("unchecked")
+        List<AnomalyDTO> result = modelService.post(endpoint, request, List.class).block();
+
+        return result;
     }
 
-    @Async("anomalyExecutor")
-    public CompletableFuture<Map<String, Object>> processInvoiceAudit(
-            String taskId, Map<String, Object> request) {
-        
-        log.info("Starting invoice audit task: {}", taskId);
-        
-        try {
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            String modelServiceUrl = "http://localhost:8000/api/audit/invoice";
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> result = restTemplate.postForObject(
-                modelServiceUrl, request, Map.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            AsyncTaskResponse<Map<String, Object>> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed invoice audit task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in invoice audit task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private Map<String, Object> processInvoiceAudit(Map<String, Object> request, IntConsumer progress) {
+        String endpoint = modelService.endpoints().getInvoiceAudit();
+
+        progress.accept(50);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = modelService.post(endpoint, request, Map.class).block();
+
+        return result;
     }
 }
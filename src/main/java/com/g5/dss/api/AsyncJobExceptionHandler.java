@@ -0,0 +1,32 @@
+package com.g5.dss.api;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps a saturated async executor to 503 for the async submit endpoints
+ */
+@RestControllerAdvice(assignableTypes = {
+    AsyncPredictionApiController.class,
+    AsyncSegmentationApiController.class,
+    AsyncAnomalyApiController.class,
+    AsyncPolicyApiController.class
+})
+public class AsyncJobExceptionHandler {
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Map<String, String>> handleRejected(TaskRejectedException e) {
+        Map<String, String> response = new HashMap<>();
+        response.put("status", "rejected");
+        response.put("message", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+            .header("Retry-After", "5")
+            .body(response);
+    }
+}
@@ -1,18 +1,22 @@
 package com.g5.dss.api;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.g5.dss.dto.*;
+import com.g5.dss.service.AsyncJobService;
 import com.g5.dss.service.AsyncTaskManager;
+import com.g5.dss.service.ModelServiceClient;
+import jakarta.annotation.PostConstruct;
+import com.g5.dss.service.ReturnRiskService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
 
 /**
  * Async API Controller for Policy Simulation (Prescriptive DSS)
@@ -25,10 +29,20 @@ import java.util.concurrent.CompletableFuture;
 public class AsyncPolicyApiController {
 
     private final AsyncTaskManager taskManager;
-    private final RestTemplate restTemplate;
+    private final ModelServiceClient modelService;
+    private final ReturnRiskService returnRiskService;
+    private final ObjectMapper objectMapper;
+    private final AsyncJobService jobService;
 
-    @Qualifier("predictionExecutor")
-    private final java.util.concurrent.Executor predictionExecutor;
+    /**
+     * Register job types so queued requests can be run on any node
+     */
+    @PostConstruct
+    void registerJobs() {
+        jobService.register("policy-simulation", AsyncJobService.PREDICTION, PolicySimulationRequest.class, this::processPolicySimulation);
+        jobService.register("optimal-threshold-calculation", AsyncJobService.PREDICTION, new TypeReference<Map<String, Object>>() {}, this::processOptimalThreshold);
+        jobService.register("batch-policy-evaluation", AsyncJobService.PREDICTION, new TypeReference<Map<String, Object>>() {}, this::processBatchEvaluation);
+    }
 
     /**
      * Submit async policy simulation request
@@ -38,13 +52,7 @@ public class AsyncPolicyApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitPolicySimulation(
             @RequestBody PolicySimulationRequest request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<PolicySimulationResponse> future = 
-            processPolicySimulation(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("policy-simulation", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -57,13 +65,7 @@ public class AsyncPolicyApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitOptimalThreshold(
             @RequestBody Map<String, Object> request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<OptimalThresholdResponse> future = 
-            processOptimalThreshold(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("optimal-threshold-calculation", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -76,13 +78,7 @@ public class AsyncPolicyApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitBatchEvaluation(
             @RequestBody Map<String, Object> request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<Map<String, Object>> future = 
-            processBatchEvaluation(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("batch-policy-evaluation", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -122,102 +118,41 @@ public class AsyncPolicyApiController {
         }
     }
 
-    // ==================== ASYNC PROCESSING METHODS ====================
+    // ==================== JOBS (run on the executor by AsyncJobService) ====================
 
-    @Async("predictionExecutor")
-    public CompletableFuture<PolicySimulationResponse> processPolicySimulation(
-            String taskId, PolicySimulationRequest request) {
-        
-        log.info("Starting policy simulation task: {}", taskId);
-        
-        try {
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            String modelServiceUrl = "http://localhost:8000/api/policy/simulate";
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            PolicySimulationResponse result = restTemplate.postForObject(
-                modelServiceUrl, request, PolicySimulationResponse.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            AsyncTaskResponse<PolicySimulationResponse> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed policy simulation task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in policy simulation task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private PolicySimulationResponse processPolicySimulation(PolicySimulationRequest request, IntConsumer progress) {
+        String endpoint = modelService.endpoints().getPolicySimulate();
+
+        progress.accept(50);
+
+        PolicySimulationResponse result = modelService.post(endpoint, request, PolicySimulationResponse.class).block();
+
+        return result;
     }
 
-    @Async("predictionExecutor")
-    public CompletableFuture<OptimalThresholdResponse> processOptimalThreshold(
-            String taskId, Map<String, Object> request) {
-        
-        log.info("Starting optimal threshold calculation task: {}", taskId);
-        
-        try {
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            String modelServiceUrl = "http://localhost:8000/api/policy/optimal-threshold";
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            OptimalThresholdResponse result = restTemplate.postForObject(
-                modelServiceUrl, request, OptimalThresholdResponse.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            AsyncTaskResponse<OptimalThresholdResponse> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed optimal threshold calculation task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in optimal threshold calculation task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private OptimalThresholdResponse processOptimalThreshold(Map<String, Object> request, IntConsumer progress) {
+        String endpoint = modelService.endpoints().getOptimalThreshold();
+
+        progress.accept(50);
+
+        OptimalThresholdResponse result = modelService.post(endpoint, request, OptimalThresholdResponse.class).block();
+
+        return result;
     }
 
-    @Async("predictionExecutor")
-    public CompletableFuture<Map<String, Object>> processBatchEvaluation(
-            String taskId, Map<String, Object> request) {
-        
-        log.info("Starting batch policy evaluation task: {}", taskId);
-        
-        try {
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            String modelServiceUrl = "http://localhost:8000/api/policy/batch-evaluate";
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> result = restTemplate.postForObject(
-                modelServiceUrl, request, Map.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            AsyncTaskResponse<Map<String, Object>> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed batch policy evaluation task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in batch policy evaluation task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private Map<String, Object> processBatchEvaluation(Map<String, Object> request, IntConsumer progress) {
+        // Score in-process: {"orders": [...], "includeResults": false}
+        List<OrderRiskRequest> orders = objectMapper.convertValue(
+            request.getOrDefault("orders", List.of()), new TypeReference<List<OrderRiskRequest>>() {});
+        boolean includeResults = Boolean.TRUE.equals(request.get("includeResults"));
+
+        progress.accept(50);
+
+        BatchRiskAssessmentResponse batch = returnRiskService.assessOrderRiskBatch(
+            orders.iterator(), "async-batch", includeResults);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = objectMapper.convertValue(batch, Map.class);
+
+        return result;
     }
 }
@@ -1,21 +1,21 @@
 package com.g5.dss.api;
 
 import com.g5.dss.dto.*;
+import com.g5.dss.service.AsyncJobService;
 import com.g5.dss.service.AsyncTaskManager;
+import com.g5.dss.service.ModelServiceClient;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
 
 /**
  * Async API Controller for Predictions and Forecasting
@@ -28,10 +28,18 @@ import java.util.concurrent.CompletableFuture;
 public class AsyncPredictionApiController {
 
     private final AsyncTaskManager taskManager;
-    private final RestTemplate restTemplate;
+    private final ModelServiceClient modelService;
+    private final AsyncJobService jobService;
 
-    @Qualifier("predictionExecutor")
-    private final java.util.concurrent.Executor predictionExecutor;
+    /**
+     * Register job types so queued requests can be run on any node
+     */
+    @PostConstruct
+    void registerJobs() {
+        jobService.register("sales-forecast", AsyncJobService.PREDICTION, PredictionRequest.class, this::processSalesForecast);
+        jobService.register("churn-prediction", AsyncJobService.PREDICTION, PredictionRequest.class, this::processChurnPrediction);
+        jobService.register("return-risk-assessment", AsyncJobService.PREDICTION, OrderRiskRequest.class, this::processReturnRisk);
+    }
 
     /**
      * Submit async sales forecast request
@@ -41,12 +49,7 @@ public class AsyncPredictionApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitSalesForecast(
             @RequestBody PredictionRequest request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<Map<String, Object>> future = processSalesForecast(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("sales-forecast", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -59,12 +62,7 @@ public class AsyncPredictionApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitChurnPrediction(
             @RequestBody PredictionRequest request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<Map<String, Object>> future = processChurnPrediction(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("churn-prediction", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -77,12 +75,7 @@ public class AsyncPredictionApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitReturnRisk(
             @RequestBody OrderRiskRequest request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<RiskAssessmentResponse> future = processReturnRisk(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("return-risk-assessment", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -131,104 +124,38 @@ public class AsyncPredictionApiController {
         return ResponseEntity.ok(taskManager.getAllTasks());
     }
 
-    // ==================== ASYNC PROCESSING METHODS ====================
+    // ==================== JOBS (run on the executor by AsyncJobService) ====================
 
-    @Async("predictionExecutor")
-    public CompletableFuture<Map<String, Object>> processSalesForecast(
-            String taskId, PredictionRequest request) {
-        
-        log.info("Starting sales forecast task: {}", taskId);
-        
-        try {
-            // Update status to processing
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            // Call model service
-            String modelServiceUrl = "http://localhost:8000/api/forecast/sales";
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            Map<String, Object> result = restTemplate.postForObject(
-                modelServiceUrl, request, Map.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            // Store completed result
-            AsyncTaskResponse<Map<String, Object>> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed sales forecast task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in sales forecast task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private Map<String, Object> processSalesForecast(PredictionRequest request, IntConsumer progress) {
+        // Call model service
+        String endpoint = modelService.endpoints().getSalesForecast();
+
+        progress.accept(50);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = modelService.post(endpoint, request, Map.class).block();
+
+        return result;
     }
 
-    @Async("predictionExecutor")
-    public CompletableFuture<Map<String, Object>> processChurnPrediction(
-            String taskId, PredictionRequest request) {
-        
-        log.info("Starting churn prediction task: {}", taskId);
-        
-        try {
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            String modelServiceUrl = "http://localhost:8000/api/predict/churn";
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            Map<String, Object> result = restTemplate.postForObject(
-                modelServiceUrl, request, Map.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            AsyncTaskResponse<Map<String, Object>> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed churn prediction task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in churn prediction task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private Map<String, Object> processChurnPrediction(PredictionRequest request, IntConsumer progress) {
+        String endpoint = modelService.endpoints().getChurnPrediction();
+
+        progress.accept(50);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = modelService.post(endpoint, request, Map.class).block();
+
+        return result;
     }
 
-    @Async("predictionExecutor")
-    public CompletableFuture<RiskAssessmentResponse> processReturnRisk(
-            String taskId, OrderRiskRequest request) {
-        
-        log.info("Starting return risk assessment task: {}", taskId);
-        
-        try {
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            String modelServiceUrl = "http://localhost:8000/api/risk/return";
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            RiskAssessmentResponse result = restTemplate.postForObject(
-                modelServiceUrl, request, RiskAssessmentResponse.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            AsyncTaskResponse<RiskAssessmentResponse> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed return risk assessment task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in return risk assessment task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private RiskAssessmentResponse processReturnRisk(OrderRiskRequest request, IntConsumer progress) {
+        String endpoint = modelService.endpoints().getReturnRisk();
+
+        progress.accept(50);
+
+        RiskAssessmentResponse result = modelService.post(endpoint, request, RiskAssessmentResponse.class).block();
+
+        return result;
     }
 }
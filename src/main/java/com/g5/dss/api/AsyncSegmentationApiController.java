@@ -1,19 +1,19 @@
 package com.g5.dss.api;
 
 import com.g5.dss.dto.*;
+import com.g5.dss.service.AsyncJobService;
 import com.g5.dss.service.AsyncTaskManager;
+import com.g5.dss.service.ModelServiceClient;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.function.IntConsumer;
 
 /**
  * Async API Controller for Customer Segmentation and Recommendations
@@ -26,10 +26,19 @@ import java.util.concurrent.CompletableFuture;
 public class AsyncSegmentationApiController {
 
     private final AsyncTaskManager taskManager;
-    private final RestTemplate restTemplate;
+    private final ModelServiceClient modelService;
+    private final AsyncJobService jobService;
 
-    @Qualifier("segmentationExecutor")
-    private final java.util.concurrent.Executor segmentationExecutor;
+    /**
+     * Register job types so queued requests can be run on any node
+     */
+    @PostConstruct
+    void registerJobs() {
+        jobService.register("customer-segmentation", AsyncJobService.SEGMENTATION, SegmentationRequest.class, this::processSegmentation);
+        jobService.register("rfm-analysis", AsyncJobService.SEGMENTATION, SegmentationRequest.class, this::processRFMAnalysis);
+        jobService.register("product-recommendations", AsyncJobService.SEGMENTATION, SegmentationRequest.class, this::processRecommendations);
+        jobService.register("market-basket-analysis", AsyncJobService.SEGMENTATION, SegmentationRequest.class, this::processMarketBasket);
+    }
 
     /**
      * Submit async customer segmentation request
@@ -39,12 +48,7 @@ public class AsyncSegmentationApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitSegmentation(
             @RequestBody SegmentationRequest request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<Map<String, Object>> future = processSegmentation(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("customer-segmentation", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -57,12 +61,7 @@ public class AsyncSegmentationApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitRFMAnalysis(
             @RequestBody SegmentationRequest request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<List<RfmSegmentDTO>> future = processRFMAnalysis(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("rfm-analysis", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -75,13 +74,7 @@ public class AsyncSegmentationApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitRecommendations(
             @RequestBody SegmentationRequest request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<List<RecommendationDTO>> future = 
-            processRecommendations(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("product-recommendations", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -94,13 +87,7 @@ public class AsyncSegmentationApiController {
     public ResponseEntity<AsyncTaskResponse<Void>> submitMarketBasket(
             @RequestBody SegmentationRequest request) {
         
-        String taskId = taskManager.generateTaskId();
-        AsyncTaskResponse<Void> response = AsyncTaskResponse.pending(taskId);
-        taskManager.storeTask(taskId, response);
-
-        CompletableFuture<List<MarketBasketRuleDTO>> future = 
-            processMarketBasket(taskId, request);
-        taskManager.storeFuture(taskId, future);
+        AsyncTaskResponse<Void> response = jobService.submit("market-basket-analysis", request);
 
         return ResponseEntity.accepted().body(response);
     }
@@ -140,148 +127,60 @@ public class AsyncSegmentationApiController {
         }
     }
 
-    // ==================== ASYNC PROCESSING METHODS ====================
+    // ==================== JOBS (run on the executor by AsyncJobService) ====================
 
-    @Async("segmentationExecutor")
-    public CompletableFuture<Map<String, Object>> processSegmentation(
-            String taskId, SegmentationRequest request) {
-        
-        log.info("Starting customer segmentation task: {}", taskId);
-        
-        try {
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            String modelServiceUrl = "http://localhost:8000/api/segmentation/analyze";
-            
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("numberOfSegments", request.getNumberOfSegments());
-            requestBody.put("minSupport", request.getMinSupport());
-            requestBody.put("minConfidence", request.getMinConfidence());
-            requestBody.put("startDate", request.getStartDate());
-            requestBody.put("endDate", request.getEndDate());
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            @SuppressWarnings("unchecked")
-            Map<String, Object> result = restTemplate.postForObject(
-                modelServiceUrl, requestBody, Map.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            AsyncTaskResponse<Map<String, Object>> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed customer segmentation task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in customer segmentation task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private Map<String, Object> processSegmentation(SegmentationRequest request, IntConsumer progress) {
+        String endpoint = modelService.endpoints().getSegmentationAnalyze();
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("numberOfSegments", request.getNumberOfSegments());
+        requestBody.put("minSupport", request.getMinSupport());
+        requestBody.put("minConfidence", request.getMinConfidence());
+        requestBody.put("startDate", request.getStartDate());
+        requestBody.put("endDate", request.getEndDate());
+
+        progress.accept(50);
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> result = modelService.post(endpoint, requestBody, Map.class).block();
+
+        return result;
     }
 
-    @Async("segmentationExecutor")
-    public CompletableFuture<List<RfmSegmentDTO>> processRFMAnalysis(
-            String taskId, SegmentationRequest request) {
-        
-        log.info("Starting RFM analysis task: {}", taskId);
-        
-        try {
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            String modelServiceUrl = "http://localhost:8000/api/rfm/analyze";
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            @SuppressWarnings("unchecked")
-            List<RfmSegmentDTO> result = restTemplate.postForObject(
-                modelServiceUrl, request, List.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            AsyncTaskResponse<List<RfmSegmentDTO>> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed RFM analysis task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in RFM analysis task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private List<RfmSegmentDTO> processRFMAnalysis(SegmentationRequest request, IntConsumer progress) {
+        String endpoint = modelService.endpoints().getRfmAnalysis();
+
+        progress.accept(50);
+
+        @SuppressWarnings("unchecked")
+        List<RfmSegmentDTO> result = modelService.post(endpoint, request, List.class).block();
+
+        return result;
     }
 
-    @Async("segmentationExecutor")
-    public CompletableFuture<List<RecommendationDTO>> processRecommendations(
-            String taskId, SegmentationRequest request) {
-        
-        log.info("Starting product recommendations task: {}", taskId);
-        
-        try {
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            String modelServiceUrl = "http://localhost:8000/api/recommendations/generate";
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            @SuppressWarnings("unchecked")
-            List<RecommendationDTO> result = restTemplate.postForObject(
-                modelServiceUrl, request, List.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            AsyncTaskResponse<List<RecommendationDTO>> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed product recommendations task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in product recommendations task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private List<RecommendationDTO> processRecommendations(SegmentationRequest request, IntConsumer progress) {
+        String endpoint = modelService.endpoints().getRecommendations();
+
+        progress.accept(50);
+
+        @SuppressWarnings("unchecked")
+        List<RecommendationDTO> result = modelService.post(endpoint, request, List.class).block();
+
+        return result;
     }
 
-    @Async("segmentationExecutor")
-    public CompletableFuture<List<MarketBasketRuleDTO>> processMarketBasket(
-            String taskId, SegmentationRequest request) {
-        
-        log.info("Starting market basket analysis task: {}", taskId);
-        
-        try {
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
-
-            String modelServiceUrl = "http://localhost:8000/api/market-basket/analyze";
-            
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("minSupport", request.getMinSupport());
-            requestBody.put("minConfidence", request.getMinConfidence());
-            
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 50));
-            
-            @SuppressWarnings("unchecked")
-            List<MarketBasketRuleDTO> result = restTemplate.postForObject(
-                modelServiceUrl, requestBody, List.class);
-
-            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 90));
-            
-            AsyncTaskResponse<List<MarketBasketRuleDTO>> completedResponse = 
-                AsyncTaskResponse.completed(taskId, result);
-            taskManager.updateTask(taskId, completedResponse);
-
-            log.info("Completed market basket analysis task: {}", taskId);
-            return CompletableFuture.completedFuture(result);
-            
-        } catch (Exception e) {
-            log.error("Error in market basket analysis task: {}", taskId, e);
-            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
-            throw new RuntimeException(e);
-        }
+    private List<MarketBasketRuleDTO> processMarketBasket(SegmentationRequest request, IntConsumer progress) {
+        String endpoint = modelService.endpoints().getMarketBasket();
+
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("minSupport", request.getMinSupport());
+        requestBody.put("minConfidence", request.getMinConfidence());
+
+        progress.accept(50);
+
+        @SuppressWarnings("unchecked")
+        List<MarketBasketRuleDTO> result = modelService.post(endpoint, requestBody, List.class).block();
+
+        return result;
     }
 }
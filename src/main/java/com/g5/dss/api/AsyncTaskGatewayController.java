@@ -1,11 +1,17 @@
 package com.g5.dss.api;
 
 import com.g5.dss.dto.AsyncTaskResponse;
+import com.g5.dss.service.AsyncJobService;
 import com.g5.dss.service.AsyncTaskManager;
+import com.g5.dss.service.TaskProgressBroadcaster;
+import com.g5.dss.util.SecurityUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -21,6 +27,8 @@ import java.util.Map;
 public class AsyncTaskGatewayController {
 
     private final AsyncTaskManager taskManager;
+    private final TaskProgressBroadcaster events;
+    private final AsyncJobService jobService;
 
     /**
      * Get status of any task by ID
@@ -37,6 +45,33 @@ public class AsyncTaskGatewayController {
         return ResponseEntity.ok(task);
     }
 
+    /**
+     * Stream status/progress changes of one task (Server-Sent Events, event name "task")
+     * Sends the current state first and closes after COMPLETED, FAILED or CANCELLED.
+     * A COMPLETED event may omit a large result; fetch it with GET /tasks/{taskId}
+     * GET /api/v1/async/tasks/{taskId}/events
+     */
+    @GetMapping(value = "/tasks/{taskId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamTask(@PathVariable String taskId) {
+        if (taskManager.getTask(taskId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(events.subscribe(taskId, () -> taskManager.getTask(taskId)));
+    }
+
+    /**
+     * Stream changes of every task submitted by the current user, for dashboards
+     * GET /api/v1/async/tasks/events
+     */
+    @GetMapping(value = "/tasks/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamUserTasks() {
+        String user = SecurityUtil.getCurrentUsername();
+        if (user == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(events.subscribeUser(user));
+    }
+
     /**
      * Get all tasks with optional status filter
      * GET /api/v1/async/tasks?status=PENDING,PROCESSING
@@ -123,9 +158,9 @@ public class AsyncTaskGatewayController {
      */
     @PostMapping("/tasks/clear-completed")
     public ResponseEntity<Map<String, Object>> clearCompletedTasks() {
-        int beforeCount = taskManager.getAllTasks().size();
+        long beforeCount = totalTasks();
         taskManager.clearCompletedTasks();
-        int afterCount = taskManager.getAllTasks().size();
+        long afterCount = totalTasks();
         
         Map<String, Object> response = new HashMap<>();
         response.put("status", "success");
@@ -137,41 +172,27 @@ public class AsyncTaskGatewayController {
     }
 
     /**
-     * Get task statistics
+     * Get task statistics (kept as counters, the task store is not scanned; status counts are read once)
      * GET /api/v1/async/stats
      */
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getTaskStatistics() {
-        Map<String, AsyncTaskResponse<?>> allTasks = taskManager.getAllTasks();
-        
-        long pending = allTasks.values().stream()
-            .filter(t -> "PENDING".equals(t.getStatus()))
-            .count();
-        
-        long processing = allTasks.values().stream()
-            .filter(t -> "PROCESSING".equals(t.getStatus()))
-            .count();
-        
-        long completed = allTasks.values().stream()
-            .filter(t -> "COMPLETED".equals(t.getStatus()))
-            .count();
-        
-        long failed = allTasks.values().stream()
-            .filter(t -> "FAILED".equals(t.getStatus()))
-            .count();
-        
-        long cancelled = allTasks.values().stream()
-            .filter(t -> "CANCELLED".equals(t.getStatus()))
-            .count();
-        
+        Map<String, Long> counts = taskManager.getStatusCounts();
+        long pending = counts.getOrDefault("PENDING", 0L);
+        long processing = counts.getOrDefault("PROCESSING", 0L);
+
         Map<String, Object> stats = new HashMap<>();
-        stats.put("total", allTasks.size());
+        stats.put("total", totalTasks(counts));
         stats.put("pending", pending);
         stats.put("processing", processing);
-        stats.put("completed", completed);
-        stats.put("failed", failed);
-        stats.put("cancelled", cancelled);
+        stats.put("completed", counts.getOrDefault("COMPLETED", 0L));
+        stats.put("failed", counts.getOrDefault("FAILED", 0L));
+        stats.put("cancelled", counts.getOrDefault("CANCELLED", 0L));
         stats.put("active", pending + processing);
+        stats.putAll(taskManager.getTaskStats());
+        stats.put("store", taskManager.getStoreStats(counts));
+        stats.put("events", events.getStats());
+        stats.put("concurrency", jobService.getLimitStats());
         
         return ResponseEntity.ok(stats);
     }
@@ -187,14 +208,20 @@ public class AsyncTaskGatewayController {
         health.put("service", "Async Task Manager");
         health.put("timestamp", java.time.LocalDateTime.now());
         
-        Map<String, AsyncTaskResponse<?>> allTasks = taskManager.getAllTasks();
-        long activeTasks = allTasks.values().stream()
-            .filter(t -> "PENDING".equals(t.getStatus()) || "PROCESSING".equals(t.getStatus()))
-            .count();
+        Map<String, Long> counts = taskManager.getStatusCounts();
+        long activeTasks = counts.getOrDefault("PENDING", 0L) + counts.getOrDefault("PROCESSING", 0L);
         
         health.put("activeTasks", activeTasks);
-        health.put("totalTasks", allTasks.size());
+        health.put("totalTasks", totalTasks(counts));
         
         return ResponseEntity.ok(health);
     }
+
+    private long totalTasks() {
+        return totalTasks(taskManager.getStatusCounts());
+    }
+
+    private static long totalTasks(Map<String, Long> counts) {
+        return counts.values().stream().mapToLong(Long::longValue).sum();
+    }
 }
@@ -1,12 +1,21 @@
 package com.g5.dss.api;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.g5.dss.dto.*;
+import com.g5.dss.service.ReturnRiskEngine;
 import com.g5.dss.service.ReturnRiskService;
+import com.g5.dss.service.RiskScoreWriter;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * REST API for Return-Risk Gatekeeping Policy - Prescriptive Decisions
@@ -16,9 +25,20 @@ import java.util.List;
 public class PolicyApi {
     
     private final ReturnRiskService returnRiskService;
+    private final ReturnRiskEngine riskEngine;
+    private final ObjectMapper objectMapper;
+    private final RiskScoreWriter riskScoreWriter;
     
-    public PolicyApi(ReturnRiskService returnRiskService) {
+    public PolicyApi(
+        ReturnRiskService returnRiskService,
+        ReturnRiskEngine riskEngine,
+        ObjectMapper objectMapper,
+        RiskScoreWriter riskScoreWriter
+    ) {
         this.returnRiskService = returnRiskService;
+        this.riskEngine = riskEngine;
+        this.objectMapper = objectMapper;
+        this.riskScoreWriter = riskScoreWriter;
     }
     
     /**
@@ -36,17 +56,54 @@ public class PolicyApi {
         return ResponseEntity.ok(response);
     }
     
+    /**
+     * Assess return risk for many orders in one call
+     * Body is a JSON array or NDJSON (one order per line), read as a stream
+     * Malformed input returns 400 with the partial result (orders before it are persisted)
+     * 
+     * POST /api/policy/assess-risk/batch?includeResults=true
+     */
+    @PostMapping(
+        value = "/assess-risk/batch",
+        consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE}
+    )
+    public ResponseEntity<BatchRiskAssessmentResponse> assessOrderRiskBatch(
+        HttpServletRequest httpRequest,
+        @RequestParam(defaultValue = "false") boolean includeResults,
+        Authentication authentication
+    ) throws IOException {
+        String username = authentication != null ? authentication.getName() : "system";
+        try (MappingIterator<OrderRiskRequest> orders = objectMapper
+                .readerFor(OrderRiskRequest.class)
+                .readValues(httpRequest.getInputStream())) {
+            BatchRiskAssessmentResponse response =
+                returnRiskService.assessOrderRiskBatch(orders, username, includeResults);
+            return response.isAborted()
+                ? ResponseEntity.badRequest().body(response)
+                : ResponseEntity.ok(response);
+        } catch (JsonProcessingException e) {
+            // Body is not JSON at all (e.g. empty or broken before the first order): nothing was read
+            BatchRiskAssessmentResponse response = new BatchRiskAssessmentResponse();
+            response.setAborted(true);
+            response.getErrors().add("malformed input: " + e.getOriginalMessage());
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
     /**
      * Simulate policy with specific threshold
      * 
      * POST /api/policy/simulate
      */
     @PostMapping("/simulate")
-    public ResponseEntity<PolicySimulationResponse> simulatePolicy(
+    public ResponseEntity<?> simulatePolicy(
         @RequestBody PolicySimulationRequest request
     ) {
-        PolicySimulationResponse response = returnRiskService.simulatePolicy(request);
-        return ResponseEntity.ok(response);
+        try {
+            return ResponseEntity.ok(returnRiskService.simulatePolicy(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
     
     /**
@@ -55,11 +112,12 @@ public class PolicyApi {
      * POST /api/policy/optimize
      */
     @PostMapping("/optimize")
-    public ResponseEntity<OptimalThresholdResponse> findOptimalThreshold(
-        @RequestBody PolicySimulationRequest request
-    ) {
-        OptimalThresholdResponse response = returnRiskService.findOptimalThreshold(request);
-        return ResponseEntity.ok(response);
+    public ResponseEntity<?> findOptimalThreshold(@RequestBody PolicySimulationRequest request) {
+        try {
+            return ResponseEntity.ok(returnRiskService.findOptimalThreshold(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
     
     /**
@@ -68,12 +126,26 @@ public class PolicyApi {
      * POST /api/policy/profit-curve
      */
     @PostMapping("/profit-curve")
-    public ResponseEntity<List<PolicySimulationResponse.ThresholdDataPoint>> getProfitCurve(
-        @RequestBody PolicySimulationRequest request
-    ) {
-        List<PolicySimulationResponse.ThresholdDataPoint> curve = 
-            returnRiskService.generateProfitCurve(request);
-        return ResponseEntity.ok(curve);
+    public ResponseEntity<?> getProfitCurve(@RequestBody PolicySimulationRequest request) {
+        try {
+            return ResponseEntity.ok(returnRiskService.generateProfitCurve(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Sensitivity sweep over cost parameters (grid, lhs or tornado), columnar result
+     * 
+     * POST /api/policy/sensitivity
+     */
+    @PostMapping("/sensitivity")
+    public ResponseEntity<?> sweepSensitivity(@RequestBody SensitivitySweepRequest request) {
+        try {
+            return ResponseEntity.ok(returnRiskService.sweepSensitivity(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
     
     /**
@@ -87,5 +159,41 @@ public class PolicyApi {
         // For now, return not implemented
         return ResponseEntity.notFound().build();
     }
+    
+    /**
+     * Current in-process return risk model (version, coefficients, shadow stats)
+     * 
+     * GET /api/policy/risk-model
+     */
+    @GetMapping("/risk-model")
+    public ResponseEntity<Map<String, Object>> getRiskModel() {
+        return ResponseEntity.ok(riskEngine.getModelInfo());
+    }
+    
+    /**
+     * Reload the return risk model descriptor
+     * 
+     * POST /api/policy/risk-model/reload
+     */
+    @PostMapping("/risk-model/reload")
+    public ResponseEntity<Map<String, Object>> reloadRiskModel() {
+        try {
+            riskEngine.reload();
+            return ResponseEntity.ok(riskEngine.getModelInfo());
+        } catch (Exception e) {
+            Map<String, Object> error = new HashMap<>(riskEngine.getModelInfo());
+            error.put("error", e.getMessage());
+            return ResponseEntity.badRequest().body(error);
+        }
+    }
+    
+    /**
+     * Write-behind persistence counters (queued, written, spilled, replayed)
+     * 
+     * GET /api/policy/risk-scores/writer
+     */
+    @GetMapping("/risk-scores/writer")
+    public ResponseEntity<Map<String, Object>> getRiskScoreWriterStats() {
+        return ResponseEntity.ok(riskScoreWriter.getStats());
+    }
 }
-
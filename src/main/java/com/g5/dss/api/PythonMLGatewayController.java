@@ -6,6 +6,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Map;
 
@@ -222,7 +223,7 @@ public class PythonMLGatewayController {
      * GET /api/ml/download/rfm/{sessionId}
      */
     @GetMapping("/download/rfm/{sessionId}")
-    public ResponseEntity<byte[]> downloadRFM(@PathVariable String sessionId) {
+    public ResponseEntity<StreamingResponseBody> downloadRFM(@PathVariable String sessionId) {
         log.info("Downloading RFM CSV from Python ML service");
         return pythonMLService.downloadRFMCsv(sessionId);
     }
@@ -234,7 +235,7 @@ public class PythonMLGatewayController {
      * @param nClusters Number of clusters (optional, default: 4)
      */
     @GetMapping("/download/segments/{sessionId}")
-    public ResponseEntity<byte[]> downloadSegments(
+    public ResponseEntity<StreamingResponseBody> downloadSegments(
             @PathVariable String sessionId,
             @RequestParam(defaultValue = "4") int nClusters) {
         log.info("Downloading segments CSV from Python ML service");
@@ -3,15 +3,15 @@ package com.g5.dss.api;
 import com.g5.dss.dto.CustomerSegmentSummaryDTO;
 import com.g5.dss.dto.MarketBasketRuleDTO;
 import com.g5.dss.dto.RFMCustomerDTO;
-import com.g5.dss.service.CustomerSegmentationService;
+import com.g5.dss.service.AssociationRuleCacheService;
 import com.g5.dss.service.MarketBasketService;
+import com.g5.dss.service.SegmentationSnapshot;
+import com.g5.dss.service.SegmentationSnapshotService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDateTime;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * API Controller cho phân khúc khách hàng và market basket analysis
@@ -21,8 +21,9 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SegmentationApiController {
     
-    private final CustomerSegmentationService segmentationService;
+    private final SegmentationSnapshotService snapshotService;
     private final MarketBasketService marketBasketService;
+    private final AssociationRuleCacheService ruleCacheService;
     
     /**
      * GET /api/segmentation/rfm
@@ -30,10 +31,8 @@ public class SegmentationApiController {
      */
     @GetMapping("/rfm")
     public ResponseEntity<List<RFMCustomerDTO>> calculateRFM() {
-        LocalDateTime referenceDate = LocalDateTime.now();
-        List<RFMCustomerDTO> rfmData = segmentationService.calculateRFM(referenceDate);
-        List<RFMCustomerDTO> segmented = segmentationService.segmentCustomers(rfmData);
-        return ResponseEntity.ok(segmented);
+        SegmentationSnapshot snapshot = snapshotService.getSnapshot();
+        return ResponseEntity.ok(snapshot.getCustomers());
     }
     
     /**
@@ -42,11 +41,8 @@ public class SegmentationApiController {
      */
     @GetMapping("/summary")
     public ResponseEntity<List<CustomerSegmentSummaryDTO>> getSegmentSummary() {
-        LocalDateTime referenceDate = LocalDateTime.now();
-        List<RFMCustomerDTO> rfmData = segmentationService.calculateRFM(referenceDate);
-        List<RFMCustomerDTO> segmented = segmentationService.segmentCustomers(rfmData);
-        List<CustomerSegmentSummaryDTO> summary = segmentationService.getSegmentSummary(segmented);
-        return ResponseEntity.ok(summary);
+        SegmentationSnapshot snapshot = snapshotService.getSnapshot();
+        return ResponseEntity.ok(snapshot.getSummary());
     }
     
     /**
@@ -55,17 +51,16 @@ public class SegmentationApiController {
      */
     @GetMapping("/at-risk")
     public ResponseEntity<Map<String, Object>> getAtRiskCustomers() {
-        LocalDateTime referenceDate = LocalDateTime.now();
-        List<RFMCustomerDTO> rfmData = segmentationService.calculateRFM(referenceDate);
-        List<RFMCustomerDTO> segmented = segmentationService.segmentCustomers(rfmData);
-        List<RFMCustomerDTO> atRisk = segmentationService.getAtRiskCustomers(segmented);
+        SegmentationSnapshot snapshot = snapshotService.getSnapshot();
+        List<RFMCustomerDTO> atRisk = snapshot.getAtRiskCustomers();
+        int totalCustomers = snapshot.getTotalCustomers();
         
         Map<String, Object> result = new HashMap<>();
         result.put("atRiskCustomers", atRisk);
-        result.put("totalCustomers", segmented.size());
+        result.put("totalCustomers", totalCustomers);
         result.put("atRiskCount", atRisk.size());
-        result.put("atRiskPercentage", segmented.size() > 0 ? 
-            (double) atRisk.size() / segmented.size() * 100 : 0);
+        result.put("atRiskPercentage", totalCustomers > 0 ? 
+            (double) atRisk.size() / totalCustomers * 100 : 0);
         
         // Calculate potential value
         double potentialValue = atRisk.stream()
@@ -84,48 +79,38 @@ public class SegmentationApiController {
     public ResponseEntity<List<RFMCustomerDTO>> getCustomersBySegment(
         @PathVariable String segmentName
     ) {
-        LocalDateTime referenceDate = LocalDateTime.now();
-        List<RFMCustomerDTO> rfmData = segmentationService.calculateRFM(referenceDate);
-        List<RFMCustomerDTO> segmented = segmentationService.segmentCustomers(rfmData);
-        
-        List<RFMCustomerDTO> filtered = segmented.stream()
-            .filter(c -> segmentName.equalsIgnoreCase(c.getSegment()))
-            .sorted(Comparator.comparing(RFMCustomerDTO::getMonetary).reversed())
-            .collect(Collectors.toList());
-        
-        return ResponseEntity.ok(filtered);
+        SegmentationSnapshot snapshot = snapshotService.getSnapshot();
+        return ResponseEntity.ok(snapshot.getCustomersInSegment(segmentName));
     }
     
     /**
      * POST /api/segmentation/market-basket
      * Phân tích market basket cho một phân khúc
+     * 400 khi minSupport <= 0 hoặc maxItemsetSize vượt giới hạn cấu hình
      */
     @PostMapping("/market-basket")
-    public ResponseEntity<List<MarketBasketRuleDTO>> analyzeMarketBasket(
+    public ResponseEntity<?> analyzeMarketBasket(
         @RequestParam(required = false) String segment,
         @RequestParam(defaultValue = "0.01") double minSupport,
         @RequestParam(defaultValue = "30") double minConfidence,
-        @RequestParam(defaultValue = "10") int maxRules
+        @RequestParam(defaultValue = "10") int maxRules,
+        @RequestParam(required = false) Integer maxItemsetSize
     ) {
         // Get customer IDs for the segment
         Set<Integer> customerIds = null;
         
         if (segment != null && !segment.isEmpty()) {
-            LocalDateTime referenceDate = LocalDateTime.now();
-            List<RFMCustomerDTO> rfmData = segmentationService.calculateRFM(referenceDate);
-            List<RFMCustomerDTO> segmented = segmentationService.segmentCustomers(rfmData);
-            
-            customerIds = segmented.stream()
-                .filter(c -> segment.equalsIgnoreCase(c.getSegment()))
-                .map(RFMCustomerDTO::getCustomerId)
-                .collect(Collectors.toSet());
+            customerIds = snapshotService.getSnapshot().getCustomerIds(segment);
         }
         
-        List<MarketBasketRuleDTO> rules = marketBasketService.findAssociationRules(
-            customerIds, minSupport, minConfidence, maxRules
-        );
-        
-        return ResponseEntity.ok(rules);
+        try {
+            List<MarketBasketRuleDTO> rules = maxItemsetSize != null
+                ? marketBasketService.findAssociationRules(customerIds, minSupport, minConfidence, maxRules, maxItemsetSize)
+                : marketBasketService.findAssociationRules(customerIds, minSupport, minConfidence, maxRules);
+            return ResponseEntity.ok(rules);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
     
     /**
@@ -138,22 +123,9 @@ public class SegmentationApiController {
         @RequestParam(required = false) String segment,
         @RequestParam(defaultValue = "5") int topN
     ) {
-        // Get customer IDs for the segment
-        Set<Integer> customerIds = null;
-        
-        if (segment != null && !segment.isEmpty()) {
-            LocalDateTime referenceDate = LocalDateTime.now();
-            List<RFMCustomerDTO> rfmData = segmentationService.calculateRFM(referenceDate);
-            List<RFMCustomerDTO> segmented = segmentationService.segmentCustomers(rfmData);
-            
-            customerIds = segmented.stream()
-                .filter(c -> segment.equalsIgnoreCase(c.getSegment()))
-                .map(RFMCustomerDTO::getCustomerId)
-                .collect(Collectors.toSet());
-        }
-        
-        List<MarketBasketRuleDTO> recommendations = marketBasketService.getRecommendationsForProduct(
-            stockCode, customerIds, topN
+        // Rules precomputed per segment (computed live on a cache miss)
+        List<MarketBasketRuleDTO> recommendations = ruleCacheService.getRecommendationsForProduct(
+            stockCode, segment, topN
         );
         
         return ResponseEntity.ok(recommendations);
@@ -165,30 +137,26 @@ public class SegmentationApiController {
      */
     @GetMapping("/stats")
     public ResponseEntity<Map<String, Object>> getSegmentationStats() {
-        LocalDateTime referenceDate = LocalDateTime.now();
-        List<RFMCustomerDTO> rfmData = segmentationService.calculateRFM(referenceDate);
-        List<RFMCustomerDTO> segmented = segmentationService.segmentCustomers(rfmData);
-        List<CustomerSegmentSummaryDTO> summary = segmentationService.getSegmentSummary(segmented);
+        SegmentationSnapshot snapshot = snapshotService.getSnapshot();
+        int totalCustomers = snapshot.getTotalCustomers();
         
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalCustomers", segmented.size());
-        stats.put("segments", summary);
+        stats.put("totalCustomers", totalCustomers);
+        stats.put("segments", snapshot.getSummary());
+        stats.put("snapshotVersion", snapshot.getVersion());
+        stats.put("referenceDate", snapshot.getReferenceDate());
         
         // Champion stats
-        long championCount = segmented.stream()
-            .filter(c -> "Champions".equals(c.getSegment()))
-            .count();
+        long championCount = snapshot.getChampionCount();
         stats.put("championCount", championCount);
-        stats.put("championPercentage", segmented.size() > 0 ? 
-            (double) championCount / segmented.size() * 100 : 0);
+        stats.put("championPercentage", totalCustomers > 0 ? 
+            (double) championCount / totalCustomers * 100 : 0);
         
         // At-risk stats
-        long atRiskCount = segmented.stream()
-            .filter(c -> "At-Risk".equals(c.getSegment()) || "Hibernating".equals(c.getSegment()))
-            .count();
+        long atRiskCount = snapshot.getAtRiskCustomers().size();
         stats.put("atRiskCount", atRiskCount);
-        stats.put("atRiskPercentage", segmented.size() > 0 ? 
-            (double) atRiskCount / segmented.size() * 100 : 0);
+        stats.put("atRiskPercentage", totalCustomers > 0 ? 
+            (double) atRiskCount / totalCustomers * 100 : 0);
         
         return ResponseEntity.ok(stats);
     }
@@ -3,14 +3,19 @@ package com.g5.dss.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 
 /**
  * Configuration for asynchronous processing
  * Enables async prediction and recommendation APIs
+ * With async.executor.mode=virtual the job executors start one virtual thread per job (Java 21);
+ * concurrency is then bounded per job type by AsyncJobService, not by pool sizes
  */
 @Configuration
 @EnableAsync
@@ -28,11 +33,20 @@ public class AsyncConfig {
     @Value("${async.thread-name-prefix:async-prediction-}")
     private String threadNamePrefix;
 
+    private final AsyncExecutorProperties executorProperties;
+
+    public AsyncConfig(AsyncExecutorProperties executorProperties) {
+        this.executorProperties = executorProperties;
+    }
+
     /**
      * Thread pool for prediction and analytics tasks
      */
     @Bean(name = "predictionExecutor")
     public Executor predictionExecutor() {
+        if (executorProperties.isVirtual()) {
+            return virtualExecutor(threadNamePrefix);
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(corePoolSize);
         executor.setMaxPoolSize(maxPoolSize);
@@ -49,6 +63,9 @@ public class AsyncConfig {
      */
     @Bean(name = "segmentationExecutor")
     public Executor segmentationExecutor() {
+        if (executorProperties.isVirtual()) {
+            return virtualExecutor("async-segmentation-");
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(3);
         executor.setMaxPoolSize(10);
@@ -65,6 +82,9 @@ public class AsyncConfig {
      */
     @Bean(name = "anomalyExecutor")
     public Executor anomalyExecutor() {
+        if (executorProperties.isVirtual()) {
+            return virtualExecutor("async-anomaly-");
+        }
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(3);
         executor.setMaxPoolSize(10);
@@ -75,4 +95,31 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
+
+    /**
+     * Unbounded virtual-thread executor; waits up to 60s for running jobs on shutdown
+     */
+    private Executor virtualExecutor(String prefix) {
+        if (Runtime.version().feature() < 21) {
+            throw new IllegalStateException(
+                "async.executor.mode=virtual requires Java 21 (build with -Pjava21), running on " + Runtime.version());
+        }
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor(prefix);
+        executor.setVirtualThreads(true);
+        executor.setTaskTerminationTimeout(60_000);
+        return executor;
+    }
+
+    /**
+     * Fork-join pool for CPU-bound market basket mining (0 = number of cores)
+     */
+    @Bean(name = "miningPool", destroyMethod = "shutdown")
+    public ForkJoinPool miningPool(@Value("${analytics.market-basket.parallelism:0}") int parallelism) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("mining-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+    }
 }
@@ -0,0 +1,51 @@
+package com.g5.dss.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Configuration properties for the async job executors
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "async.executor")
+public class AsyncExecutorProperties {
+
+    public static final String PLATFORM = "platform";
+    public static final String VIRTUAL = "virtual";
+
+    /**
+     * platform: bounded thread pools (default); virtual: one virtual thread per job (Java 21)
+     */
+    private String mode = PLATFORM;
+
+    /**
+     * Virtual mode: jobs of one type running at the same time, unless listed in limits
+     */
+    private Integer defaultLimit = 100;
+
+    /**
+     * Virtual mode: jobs of one type waiting for a permit before submissions are rejected
+     */
+    private Integer maxQueued = 1000;
+
+    /**
+     * Virtual mode: concurrency limit per job type, e.g. sales-forecast: 50
+     */
+    private Map<String, Integer> limits = new HashMap<>();
+
+    public boolean isVirtual() {
+        return VIRTUAL.equalsIgnoreCase(mode);
+    }
+
+    /**
+     * Concurrency limit for a job type
+     */
+    public int limitFor(String type) {
+        return limits.getOrDefault(type, defaultLimit);
+    }
+}
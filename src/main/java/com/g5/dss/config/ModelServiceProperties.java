@@ -4,6 +4,10 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 /**
  * Configuration properties for Model Service API endpoints
  */
@@ -18,10 +22,30 @@ public class ModelServiceProperties {
     private String baseUrl = "http://localhost:8000";
 
     /**
-     * Timeout for API calls (milliseconds)
+     * Timeout for API calls (milliseconds), unless set per endpoint in endpoints.timeouts
      */
     private Integer timeout = 30000;
 
+    /**
+     * TCP connect timeout (milliseconds)
+     */
+    private Integer connectTimeout = 5000;
+
+    /**
+     * Request gzip responses from the model service
+     */
+    private boolean compression = true;
+
+    /**
+     * Largest response body buffered in memory (bytes)
+     */
+    private Integer maxInMemorySize = 16 * 1024 * 1024;
+
+    /**
+     * Keep-alive connection pool shared by all model service calls
+     */
+    private Pool pool = new Pool();
+
     /**
      * Port for prediction services
      */
@@ -58,6 +82,54 @@ public class ModelServiceProperties {
         private String policySimulate = "/api/policy/simulate";
         private String optimalThreshold = "/api/policy/optimal-threshold";
         private String batchEvaluate = "/api/policy/batch-evaluate";
+
+        // Return risk shadow comparison
+        private String predictRisk = "/policy/predict-risk";
+
+        /**
+         * Timeout per endpoint in milliseconds, keyed by endpoint name (e.g. sales-forecast: 120000)
+         */
+        private Map<String, Integer> timeouts = new HashMap<>();
+
+        /**
+         * Timeout in milliseconds by path, for paths not listed above; a key ending in "/" covers every
+         * path under it (e.g. "[/api/download/]": 600000 for every session's CSV export)
+         */
+        private Map<String, Integer> pathTimeouts = new LinkedHashMap<>();
+
+        /**
+         * Endpoint name -> path, the names used as keys in timeouts
+         */
+        public Map<String, String> paths() {
+            Map<String, String> paths = new LinkedHashMap<>();
+            paths.put("sales-forecast", salesForecast);
+            paths.put("churn-prediction", churnPrediction);
+            paths.put("return-risk", returnRisk);
+            paths.put("segmentation-analyze", segmentationAnalyze);
+            paths.put("rfm-analysis", rfmAnalysis);
+            paths.put("recommendations", recommendations);
+            paths.put("market-basket", marketBasket);
+            paths.put("anomaly-detect", anomalyDetect);
+            paths.put("invoice-audit", invoiceAudit);
+            paths.put("policy-simulate", policySimulate);
+            paths.put("optimal-threshold", optimalThreshold);
+            paths.put("batch-evaluate", batchEvaluate);
+            paths.put("predict-risk", predictRisk);
+            return paths;
+        }
+    }
+
+    @Data
+    public static class Pool {
+        // Open connections to the model service
+        private Integer maxConnections = 200;
+        // Requests waiting for a free connection before failing fast
+        private Integer pendingAcquireMaxCount = 1000;
+        private Integer pendingAcquireTimeout = 10000;
+        // Idle keep-alive connections are closed after this
+        private Integer maxIdleTime = 30000;
+        private Integer maxLifeTime = 300000;
+        private Integer evictInterval = 60000;
     }
 
     /**
@@ -0,0 +1,14 @@
+package com.g5.dss.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Configuration for scheduled background jobs
+ * (incremental analytics aggregates, cache refresh)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // Scheduling intervals are configured via application.yml
+}
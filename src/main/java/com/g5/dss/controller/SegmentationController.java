@@ -2,8 +2,9 @@ package com.g5.dss.controller;
 
 import com.g5.dss.dto.CustomerSegmentSummaryDTO;
 import com.g5.dss.dto.RFMCustomerDTO;
-import com.g5.dss.service.CustomerSegmentationService;
 import com.g5.dss.service.MarketBasketService;
+import com.g5.dss.service.SegmentationSnapshot;
+import com.g5.dss.service.SegmentationSnapshotService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -12,9 +13,7 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 
-import java.time.LocalDateTime;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Controller cho trang phân khúc khách hàng
@@ -24,7 +23,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SegmentationController {
     
-    private final CustomerSegmentationService segmentationService;
+    private final SegmentationSnapshotService snapshotService;
     private final MarketBasketService marketBasketService;
     
     /**
@@ -32,22 +31,15 @@ public class SegmentationController {
      */
     @GetMapping("/segments")
     public String segmentationOverview(Model model) {
-        LocalDateTime referenceDate = LocalDateTime.now();
+        // RFM and segments from the shared snapshot
+        SegmentationSnapshot snapshot = snapshotService.getSnapshot();
         
-        // Calculate RFM and segments
-        List<RFMCustomerDTO> rfmData = segmentationService.calculateRFM(referenceDate);
-        List<RFMCustomerDTO> segmented = segmentationService.segmentCustomers(rfmData);
-        List<CustomerSegmentSummaryDTO> summary = segmentationService.getSegmentSummary(segmented);
-        
-        model.addAttribute("totalCustomers", segmented.size());
-        model.addAttribute("segments", summary);
-        model.addAttribute("referenceDate", referenceDate);
+        model.addAttribute("totalCustomers", snapshot.getTotalCustomers());
+        model.addAttribute("segments", snapshot.getSummary());
+        model.addAttribute("referenceDate", snapshot.getReferenceDate());
         
         // At-risk count
-        long atRiskCount = segmented.stream()
-            .filter(c -> "At-Risk".equals(c.getSegment()) || "Hibernating".equals(c.getSegment()))
-            .count();
-        model.addAttribute("atRiskCount", atRiskCount);
+        model.addAttribute("atRiskCount", snapshot.getAtRiskCustomers().size());
         
         return "marketing_segments";
     }
@@ -60,28 +52,19 @@ public class SegmentationController {
         @PathVariable String segmentName,
         Model model
     ) {
-        LocalDateTime referenceDate = LocalDateTime.now();
+        SegmentationSnapshot snapshot = snapshotService.getSnapshot();
         
         // Get all customers in this segment
-        List<RFMCustomerDTO> rfmData = segmentationService.calculateRFM(referenceDate);
-        List<RFMCustomerDTO> segmented = segmentationService.segmentCustomers(rfmData);
-        
-        List<RFMCustomerDTO> segmentCustomers = segmented.stream()
-            .filter(c -> segmentName.equalsIgnoreCase(c.getSegment()))
-            .sorted((a, b) -> Double.compare(b.getMonetary(), a.getMonetary()))
-            .collect(Collectors.toList());
+        List<RFMCustomerDTO> segmentCustomers = snapshot.getCustomersInSegment(segmentName);
         
         // Get segment summary
-        List<CustomerSegmentSummaryDTO> allSummary = segmentationService.getSegmentSummary(segmented);
-        CustomerSegmentSummaryDTO segmentSummary = allSummary.stream()
-            .filter(s -> segmentName.equalsIgnoreCase(s.getSegmentName()))
-            .findFirst()
+        CustomerSegmentSummaryDTO segmentSummary = snapshot.getSegmentSummary(segmentName)
             .orElse(null);
         
         model.addAttribute("segmentName", segmentName);
         model.addAttribute("customers", segmentCustomers);
         model.addAttribute("segmentSummary", segmentSummary);
-        model.addAttribute("totalCustomers", segmented.size());
+        model.addAttribute("totalCustomers", snapshot.getTotalCustomers());
         
         return "segment_detail";
     }
@@ -97,17 +80,7 @@ public class SegmentationController {
         model.addAttribute("selectedSegment", segment != null ? segment : "All");
         
         // Get available segments
-        LocalDateTime referenceDate = LocalDateTime.now();
-        List<RFMCustomerDTO> rfmData = segmentationService.calculateRFM(referenceDate);
-        List<RFMCustomerDTO> segmented = segmentationService.segmentCustomers(rfmData);
-        
-        List<String> segments = segmented.stream()
-            .map(RFMCustomerDTO::getSegment)
-            .distinct()
-            .sorted()
-            .collect(Collectors.toList());
-        
-        model.addAttribute("segments", segments);
+        model.addAttribute("segments", snapshotService.getSnapshot().getSegmentNames());
         
         return "market_basket";
     }
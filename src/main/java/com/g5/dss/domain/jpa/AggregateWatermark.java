@@ -0,0 +1,36 @@
+package com.g5.dss.domain.jpa;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Watermark cho các bảng tổng hợp được build tăng dần từ online_retail
+ * Mỗi aggregate có một dòng, lưu id online_retail cuối cùng đã xử lý
+ */
+@Entity
+@Table(name = "aggregate_watermark")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AggregateWatermark {
+    
+    @Id
+    @Column(name = "name", length = 50)
+    private String name;
+    
+    @Column(name = "last_retail_id", nullable = false)
+    private Long lastRetailId;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Chặn hai node cùng cộng dồn một khoảng id
+    @Version
+    private Long version;
+}
@@ -0,0 +1,53 @@
+package com.g5.dss.domain.jpa;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Bảng tổng hợp RFM theo khách hàng (materialized từ online_retail)
+ * Được cập nhật tăng dần theo id của online_retail
+ */
+@Entity
+@Table(name = "customer_rfm_aggregate", indexes = {
+    @Index(name = "idx_rfm_last_purchase", columnList = "last_purchase_date")
+})
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CustomerRfmAggregate implements CustomerRfmProjection {
+    
+    @Id
+    @Column(name = "customer_id")
+    private Integer customerId;
+    
+    @Column(name = "country", length = 100)
+    private String country;
+    
+    @Column(name = "last_purchase_date")
+    private LocalDateTime lastPurchaseDate;
+    
+    // Số invoice distinct
+    @Column(name = "invoice_count", nullable = false)
+    private Long invoiceCount;
+    
+    // Tổng SUM(quantity * unit_price)
+    @Column(name = "monetary", precision = 15, scale = 2, nullable = false)
+    private BigDecimal monetary;
+    
+    @Column(name = "total_quantity", nullable = false)
+    private Long totalQuantity;
+    
+    // id online_retail lớn nhất đã cộng dồn vào dòng này
+    @Column(name = "last_retail_id")
+    private Long lastRetailId;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
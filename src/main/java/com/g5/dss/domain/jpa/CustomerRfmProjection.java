@@ -0,0 +1,30 @@
+package com.g5.dss.domain.jpa;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Projection tổng hợp RFM theo khách hàng
+ * Trả về trực tiếp từ GROUP BY trên online_retail, không hydrate entity
+ */
+public interface CustomerRfmProjection {
+    
+    Integer getCustomerId();
+    
+    String getCountry();
+    
+    // MAX(invoice_date)
+    LocalDateTime getLastPurchaseDate();
+    
+    // COUNT(DISTINCT invoice_no)
+    Long getInvoiceCount();
+    
+    // SUM(quantity * unit_price)
+    BigDecimal getMonetary();
+    
+    // SUM(quantity)
+    Long getTotalQuantity();
+    
+    // MAX(id)
+    Long getLastRetailId();
+}
@@ -0,0 +1,61 @@
+package com.g5.dss.domain.mongo;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.time.LocalDateTime;
+
+/**
+ * Invoice Bitmap
+ * Persisted invoice set of one product or one customer (CompressedBitmap bytes)
+ * Invoices are identified by the first online_retail id of the invoice
+ */
+@Document(collection = "invoice_bitmaps")
+public class InvoiceBitmap {
+    
+    public static final String KIND_PRODUCT = "PRODUCT";
+    public static final String KIND_CUSTOMER = "CUSTOMER";
+    
+    @Id
+    private String id;                  // KIND:key
+    
+    @Indexed
+    private String kind;                // PRODUCT, CUSTOMER
+    private String key;                 // stockCode or customerId
+    
+    private byte[] bitmap;
+    private Integer cardinality;
+    
+    private LocalDateTime updatedAt;
+    
+    public InvoiceBitmap() {
+    }
+    
+    public InvoiceBitmap(String kind, String key, byte[] bitmap, Integer cardinality) {
+        this.id = kind + ":" + key;
+        this.kind = kind;
+        this.key = key;
+        this.bitmap = bitmap;
+        this.cardinality = cardinality;
+        this.updatedAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+    
+    public String getKind() { return kind; }
+    public void setKind(String kind) { this.kind = kind; }
+    
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+    
+    public byte[] getBitmap() { return bitmap; }
+    public void setBitmap(byte[] bitmap) { this.bitmap = bitmap; }
+    
+    public Integer getCardinality() { return cardinality; }
+    public void setCardinality(Integer cardinality) { this.cardinality = cardinality; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
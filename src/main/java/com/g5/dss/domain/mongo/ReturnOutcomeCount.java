@@ -0,0 +1,40 @@
+package com.g5.dss.domain.mongo;
+
+import org.springframework.data.annotation.Id;
+
+/**
+ * Outcome counts of labelled return_risk_scores grouped by one key (customerId or stockCode)
+ * Result row of the $group aggregations in ReturnRiskScoreRepository
+ */
+public class ReturnOutcomeCount {
+
+    @Id
+    private String id;          // group key
+
+    private int orders;         // scores with actualReturn set
+    private int returns;        // of which actualReturn = true
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getOrders() {
+        return orders;
+    }
+
+    public void setOrders(int orders) {
+        this.orders = orders;
+    }
+
+    public int getReturns() {
+        return returns;
+    }
+
+    public void setReturns(int returns) {
+        this.returns = returns;
+    }
+}
@@ -0,0 +1,115 @@
+package com.g5.dss.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response DTO for batch risk assessment
+ */
+public class BatchRiskAssessmentResponse {
+
+    private int processed;
+    private int failed;
+    private int persisted;
+    private String modelVersion;
+    private long durationMs;
+
+    // Input stopped at a malformed record; counts cover the orders read before it
+    private boolean aborted;
+
+    // Counts by recommended action / risk level
+    private Map<String, Integer> actionCounts = new LinkedHashMap<>();
+    private Map<String, Integer> riskLevelCounts = new LinkedHashMap<>();
+
+    // Per-order results (omitted when includeResults=false)
+    private List<RiskAssessmentResponse> results;
+
+    // First invalid orders (orderId: reason)
+    private List<String> errors = new ArrayList<>();
+
+    public BatchRiskAssessmentResponse() {}
+
+    // Getters and Setters
+
+    public int getProcessed() {
+        return processed;
+    }
+
+    public void setProcessed(int processed) {
+        this.processed = processed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+
+    public int getPersisted() {
+        return persisted;
+    }
+
+    public void setPersisted(int persisted) {
+        this.persisted = persisted;
+    }
+
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
+    public void setModelVersion(String modelVersion) {
+        this.modelVersion = modelVersion;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public boolean isAborted() {
+        return aborted;
+    }
+
+    public void setAborted(boolean aborted) {
+        this.aborted = aborted;
+    }
+
+    public Map<String, Integer> getActionCounts() {
+        return actionCounts;
+    }
+
+    public void setActionCounts(Map<String, Integer> actionCounts) {
+        this.actionCounts = actionCounts;
+    }
+
+    public Map<String, Integer> getRiskLevelCounts() {
+        return riskLevelCounts;
+    }
+
+    public void setRiskLevelCounts(Map<String, Integer> riskLevelCounts) {
+        this.riskLevelCounts = riskLevelCounts;
+    }
+
+    public List<RiskAssessmentResponse> getResults() {
+        return results;
+    }
+
+    public void setResults(List<RiskAssessmentResponse> results) {
+        this.results = results;
+    }
+
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    public void setErrors(List<String> errors) {
+        this.errors = errors;
+    }
+}
@@ -13,6 +13,7 @@ public class OrderRiskRequest {
     private Integer quantity;
     private Double unitPrice;
     private String country;
+    private String channel;     // optional: selects a channel-specific policy
     
     // Optional: override defaults
     private Double cogs;
@@ -70,6 +71,14 @@ public class OrderRiskRequest {
         this.country = country;
     }
     
+    public String getChannel() {
+        return channel;
+    }
+    
+    public void setChannel(String channel) {
+        this.channel = channel;
+    }
+    
     public Double getCogs() {
         return cogs;
     }
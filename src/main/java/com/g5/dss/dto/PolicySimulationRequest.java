@@ -16,6 +16,8 @@ public class PolicySimulationRequest {
     private String dateFrom;                    // YYYY-MM-DD
     private String dateTo;
     private Integer sampleSize;                 // null = all
+    private String strata;                      // none | country | country-value (default)
+    private Double thresholdStep;               // profit curve step (default 1, at least 0.01)
     
     public PolicySimulationRequest() {
         // Defaults
@@ -98,4 +100,20 @@ public class PolicySimulationRequest {
     public void setSampleSize(Integer sampleSize) {
         this.sampleSize = sampleSize;
     }
+    
+    public String getStrata() {
+        return strata;
+    }
+    
+    public void setStrata(String strata) {
+        this.strata = strata;
+    }
+    
+    public Double getThresholdStep() {
+        return thresholdStep;
+    }
+    
+    public void setThresholdStep(Double thresholdStep) {
+        this.thresholdStep = thresholdStep;
+    }
 }
@@ -0,0 +1,106 @@
+package com.g5.dss.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Request DTO for multi-parameter sensitivity sweeps (tornado charts, heatmaps)
+ * Filters, threshold and base parameter values come from PolicySimulationRequest;
+ * parameters not listed in ranges stay at their base value
+ */
+public class SensitivitySweepRequest extends PolicySimulationRequest {
+
+    public static final String MODE_GRID = "grid";
+    public static final String MODE_LHS = "lhs";
+    public static final String MODE_TORNADO = "tornado";
+
+    private String mode;                        // grid (default) | lhs | tornado
+    // returnProcessingCost | shippingCostDefault | cogsRatio | conversionRateImpact -> range
+    private Map<String, ParameterRange> ranges = new LinkedHashMap<>();
+    private Integer samples;                    // Latin hypercube points (lhs mode)
+    private Long seed;                          // lhs seed (default 42)
+    private Boolean optimizeThreshold;          // also find τ* per combination (step = thresholdStep)
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public Map<String, ParameterRange> getRanges() {
+        return ranges;
+    }
+
+    public void setRanges(Map<String, ParameterRange> ranges) {
+        this.ranges = ranges;
+    }
+
+    public Integer getSamples() {
+        return samples;
+    }
+
+    public void setSamples(Integer samples) {
+        this.samples = samples;
+    }
+
+    public Long getSeed() {
+        return seed;
+    }
+
+    public void setSeed(Long seed) {
+        this.seed = seed;
+    }
+
+    public Boolean getOptimizeThreshold() {
+        return optimizeThreshold;
+    }
+
+    public void setOptimizeThreshold(Boolean optimizeThreshold) {
+        this.optimizeThreshold = optimizeThreshold;
+    }
+
+    /**
+     * Inclusive range of one parameter, in the same units as the simulation request
+     */
+    public static class ParameterRange {
+
+        private Double min;
+        private Double max;
+        private Integer steps;                  // grid / tornado points (default 11)
+
+        public ParameterRange() {
+        }
+
+        public ParameterRange(Double min, Double max, Integer steps) {
+            this.min = min;
+            this.max = max;
+            this.steps = steps;
+        }
+
+        public Double getMin() {
+            return min;
+        }
+
+        public void setMin(Double min) {
+            this.min = min;
+        }
+
+        public Double getMax() {
+            return max;
+        }
+
+        public void setMax(Double max) {
+            this.max = max;
+        }
+
+        public Integer getSteps() {
+            return steps;
+        }
+
+        public void setSteps(Integer steps) {
+            this.steps = steps;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.g5.dss.dto;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Response DTO for sensitivity sweeps, columnar: row i of the sweep is columns.get(name)[i]
+ * Parameter columns use request units; result columns are profit (at threshold) and,
+ * when optimizing, optimalThreshold / maxProfit / ordersImpactedAtOptimum.
+ * In tornado mode the "varied" column holds the index into parameters of the swept parameter
+ */
+public class SensitivitySweepResponse {
+
+    private String mode;
+    private int rows;
+    private int sampleSize;
+    private int population;
+    private long durationMs;
+
+    // Fixed threshold the profit column is evaluated at, and orders it impacts
+    private double threshold;
+    private int ordersImpacted;
+
+    // Profit at the base parameter values
+    private double baselineProfit;
+
+    // Swept parameter names, in column order
+    private List<String> parameters = new ArrayList<>();
+
+    private Map<String, double[]> columns = new LinkedHashMap<>();
+
+    public SensitivitySweepResponse() {}
+
+    // Getters and Setters
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public void setRows(int rows) {
+        this.rows = rows;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    public int getPopulation() {
+        return population;
+    }
+
+    public void setPopulation(int population) {
+        this.population = population;
+    }
+
+    public long getDurationMs() {
+        return durationMs;
+    }
+
+    public void setDurationMs(long durationMs) {
+        this.durationMs = durationMs;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    public int getOrdersImpacted() {
+        return ordersImpacted;
+    }
+
+    public void setOrdersImpacted(int ordersImpacted) {
+        this.ordersImpacted = ordersImpacted;
+    }
+
+    public double getBaselineProfit() {
+        return baselineProfit;
+    }
+
+    public void setBaselineProfit(double baselineProfit) {
+        this.baselineProfit = baselineProfit;
+    }
+
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    public void setParameters(List<String> parameters) {
+        this.parameters = parameters;
+    }
+
+    public Map<String, double[]> getColumns() {
+        return columns;
+    }
+
+    public void setColumns(Map<String, double[]> columns) {
+        this.columns = columns;
+    }
+}
@@ -0,0 +1,12 @@
+package com.g5.dss.repository.jpa;
+
+import com.g5.dss.domain.jpa.AggregateWatermark;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * JPA Repository cho bảng aggregate_watermark
+ */
+@Repository
+public interface AggregateWatermarkRepository extends JpaRepository<AggregateWatermark, String> {
+}
@@ -0,0 +1,12 @@
+package com.g5.dss.repository.jpa;
+
+import com.g5.dss.domain.jpa.CustomerRfmAggregate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * JPA Repository cho bảng customer_rfm_aggregate
+ */
+@Repository
+public interface CustomerRfmAggregateRepository extends JpaRepository<CustomerRfmAggregate, Integer> {
+}
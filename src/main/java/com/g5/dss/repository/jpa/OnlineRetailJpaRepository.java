@@ -1,15 +1,21 @@
 package com.g5.dss.repository.jpa;
 
+import com.g5.dss.domain.jpa.CustomerRfmProjection;
 import com.g5.dss.domain.jpa.OnlineRetail;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * JPA Repository cho MySQL table online_retail
@@ -64,10 +70,10 @@ public interface OnlineRetailJpaRepository extends JpaRepository<OnlineRetail, L
            "ORDER BY total DESC")
     List<Object[]> findTopCustomers(Pageable pageable);
     
-    // Lấy top sản phẩm bán chạy
-    @Query("SELECT o.stockCode, o.description, SUM(o.quantity) as totalQty " +
+    // Lấy top sản phẩm bán chạy; gom theo stockCode, mô tả = MIN(description) như StockDescriptionLookup
+    @Query("SELECT o.stockCode, COALESCE(MIN(o.description), o.stockCode), SUM(o.quantity) as totalQty " +
            "FROM OnlineRetail o " +
-           "GROUP BY o.stockCode, o.description " +
+           "GROUP BY o.stockCode " +
            "ORDER BY totalQty DESC")
     List<Object[]> findTopProducts(Pageable pageable);
     
@@ -77,4 +83,136 @@ public interface OnlineRetailJpaRepository extends JpaRepository<OnlineRetail, L
            "GROUP BY o.country " +
            "ORDER BY COUNT(o) DESC")
     List<Object[]> getStatsByCountry();
+
+    // Id lớn nhất hiện có (watermark trên cho cập nhật tăng dần)
+    @Query("SELECT MAX(o.id) FROM OnlineRetail o")
+    Long findMaxId();
+    
+    // Tổng hợp RFM theo khách hàng cho toàn bảng - một dòng/khách hàng
+    @Query("SELECT o.customerId AS customerId, MIN(o.country) AS country, " +
+           "MAX(o.invoiceDate) AS lastPurchaseDate, COUNT(DISTINCT o.invoiceNo) AS invoiceCount, " +
+           "SUM(o.quantity * o.unitPrice) AS monetary, SUM(o.quantity) AS totalQuantity, " +
+           "MAX(o.id) AS lastRetailId " +
+           "FROM OnlineRetail o " +
+           "WHERE o.customerId IS NOT NULL " +
+           "GROUP BY o.customerId")
+    List<CustomerRfmProjection> aggregateRfmByCustomer();
+    
+    // Tổng hợp RFM theo khách hàng trong khoảng id (fromId, toId]
+    @Query("SELECT o.customerId AS customerId, MIN(o.country) AS country, " +
+           "MAX(o.invoiceDate) AS lastPurchaseDate, COUNT(DISTINCT o.invoiceNo) AS invoiceCount, " +
+           "SUM(o.quantity * o.unitPrice) AS monetary, SUM(o.quantity) AS totalQuantity, " +
+           "MAX(o.id) AS lastRetailId " +
+           "FROM OnlineRetail o " +
+           "WHERE o.customerId IS NOT NULL AND o.id > :fromId AND o.id <= :toId " +
+           "GROUP BY o.customerId")
+    List<CustomerRfmProjection> aggregateRfmByCustomer(
+        @Param("fromId") Long fromId,
+        @Param("toId") Long toId
+    );
+    
+    // Số invoice trong khoảng (fromId, toId] đã xuất hiện ở id <= fromId (tránh đếm trùng)
+    @Query("SELECT o.customerId, COUNT(DISTINCT o.invoiceNo) " +
+           "FROM OnlineRetail o " +
+           "WHERE o.customerId IS NOT NULL AND o.id > :fromId AND o.id <= :toId " +
+           "AND EXISTS (SELECT 1 FROM OnlineRetail p " +
+           "            WHERE p.customerId = o.customerId AND p.invoiceNo = o.invoiceNo AND p.id <= :fromId) " +
+           "GROUP BY o.customerId")
+    List<Object[]> countInvoicesSeenBefore(
+        @Param("fromId") Long fromId,
+        @Param("toId") Long toId
+    );
+    
+    // Các cột cần cho store dạng cột, theo khoảng id (fromId, toId]
+    @Query("SELECT o.id, o.invoiceNo, o.stockCode, o.customerId, o.country, " +
+           "o.quantity, o.unitPrice, o.invoiceDate " +
+           "FROM OnlineRetail o " +
+           "WHERE o.id > :fromId AND o.id <= :toId " +
+           "ORDER BY o.id")
+    List<Object[]> findColumnsInRange(
+        @Param("fromId") Long fromId,
+        @Param("toId") Long toId
+    );
+    
+    // Mô tả theo stock code trong khoảng id (fromId, toId]
+    @Query("SELECT o.stockCode, MIN(o.description) " +
+           "FROM OnlineRetail o " +
+           "WHERE o.id > :fromId AND o.id <= :toId AND o.description IS NOT NULL " +
+           "GROUP BY o.stockCode")
+    List<Object[]> findStockDescriptionsInRange(
+        @Param("fromId") Long fromId,
+        @Param("toId") Long toId
+    );
+    
+    // Dòng (id, invoiceNo, stockCode, customerId) trong khoảng id (fromId, toId] cho index bitmap
+    @Query("SELECT o.id, o.invoiceNo, o.stockCode, o.customerId " +
+           "FROM OnlineRetail o " +
+           "WHERE o.id > :fromId AND o.id <= :toId " +
+           "ORDER BY o.id")
+    List<Object[]> findInvoiceLinesInRange(
+        @Param("fromId") Long fromId,
+        @Param("toId") Long toId
+    );
+    
+    // Id dòng đầu tiên của mỗi invoice có dòng trong khoảng (fromId, toId] - khóa ổn định của invoice
+    @Query("SELECT o.invoiceNo, MIN(o.id) " +
+           "FROM OnlineRetail o " +
+           "WHERE o.id <= :toId AND o.invoiceNo IN (" +
+           "    SELECT r.invoiceNo FROM OnlineRetail r WHERE r.id > :fromId AND r.id <= :toId) " +
+           "GROUP BY o.invoiceNo")
+    List<Object[]> findFirstInvoiceIdsInRange(
+        @Param("fromId") Long fromId,
+        @Param("toId") Long toId
+    );
+    
+    // Dòng (invoiceNo, stockCode, customerId, quantity) trong khoảng id (fromId, toId] cho feature hoàn hàng
+    @Query("SELECT o.invoiceNo, o.stockCode, o.customerId, o.quantity " +
+           "FROM OnlineRetail o " +
+           "WHERE o.id > :fromId AND o.id <= :toId")
+    List<Object[]> findReturnFeatureLinesInRange(
+        @Param("fromId") Long fromId,
+        @Param("toId") Long toId
+    );
+    
+    // Mô tả cho một tập stock code
+    @Query("SELECT o.stockCode, MIN(o.description) " +
+           "FROM OnlineRetail o " +
+           "WHERE o.stockCode IN :stockCodes AND o.description IS NOT NULL " +
+           "GROUP BY o.stockCode")
+    List<Object[]> findDescriptionsByStockCodes(@Param("stockCodes") Collection<String> stockCodes);
+    
+    // Stream (invoiceNo, stockCode, customerId) cho giỏ hàng; fetch size MIN_VALUE = MySQL đọc từng dòng
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o.invoiceNo, o.stockCode, o.customerId FROM OnlineRetail o")
+    Stream<Object[]> streamInvoiceLines();
+    
+    // Như trên nhưng lọc theo tập khách hàng trong SQL
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o.invoiceNo, o.stockCode, o.customerId FROM OnlineRetail o " +
+           "WHERE o.customerId IN :customerIds")
+    Stream<Object[]> streamInvoiceLinesByCustomers(@Param("customerIds") Collection<Integer> customerIds);
+    
+    // Stream dòng đơn hàng theo thời gian (các dòng cùng invoice liền nhau) cho mẫu mô phỏng policy
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o.invoiceNo, o.stockCode, o.customerId, o.country, o.quantity, o.unitPrice, o.invoiceDate " +
+           "FROM OnlineRetail o ORDER BY o.invoiceDate, o.invoiceNo")
+    Stream<Object[]> streamOrderLines();
+    
+    // Như trên nhưng dừng ở mốc :to (mô phỏng có dateTo không cần lịch sử sau khoảng đó)
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "-2147483648"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT o.invoiceNo, o.stockCode, o.customerId, o.country, o.quantity, o.unitPrice, o.invoiceDate " +
+           "FROM OnlineRetail o WHERE o.invoiceDate < :to ORDER BY o.invoiceDate, o.invoiceNo")
+    Stream<Object[]> streamOrderLinesBefore(@Param("to") LocalDateTime to);
 }
@@ -0,0 +1,19 @@
+package com.g5.dss.repository.mongo;
+
+import com.g5.dss.domain.mongo.InvoiceBitmap;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Repository for persisted product/customer invoice bitmaps
+ */
+@Repository
+public interface InvoiceBitmapRepository extends MongoRepository<InvoiceBitmap, String> {
+    
+    /**
+     * Find all bitmaps of one kind (PRODUCT or CUSTOMER)
+     */
+    List<InvoiceBitmap> findByKind(String kind);
+}
@@ -1,6 +1,8 @@
 package com.g5.dss.repository.mongo;
 
+import com.g5.dss.domain.mongo.ReturnOutcomeCount;
 import com.g5.dss.domain.mongo.ReturnRiskScore;
+import org.springframework.data.mongodb.repository.Aggregation;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
@@ -58,4 +60,22 @@ public interface ReturnRiskScoreRepository extends MongoRepository<ReturnRiskSco
      * Count orders with actual returns
      */
     Long countByActualReturn(Boolean actualReturn);
+    
+    /**
+     * Count labelled orders and returns per customer (one row per customer, not per score)
+     */
+    @Aggregation(pipeline = {
+        "{ $match: { actualReturn: { $ne: null }, customerId: { $ne: null } } }",
+        "{ $group: { _id: '$customerId', orders: { $sum: 1 }, returns: { $sum: { $cond: ['$actualReturn', 1, 0] } } } }"
+    })
+    List<ReturnOutcomeCount> countOutcomesByCustomer();
+    
+    /**
+     * Count labelled orders and returns per SKU
+     */
+    @Aggregation(pipeline = {
+        "{ $match: { actualReturn: { $ne: null }, stockCode: { $ne: null } } }",
+        "{ $group: { _id: '$stockCode', orders: { $sum: 1 }, returns: { $sum: { $cond: ['$actualReturn', 1, 0] } } } }"
+    })
+    List<ReturnOutcomeCount> countOutcomesByStockCode();
 }
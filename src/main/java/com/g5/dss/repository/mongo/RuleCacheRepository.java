@@ -13,5 +13,7 @@ public interface RuleCacheRepository extends MongoRepository<RuleCache, String>
     
     Optional<RuleCache> findByRuleType(String ruleType);
     
+    List<RuleCache> findAllByRuleType(String ruleType);
+    
     List<RuleCache> findByExpiresAtBefore(LocalDateTime dateTime);
 }
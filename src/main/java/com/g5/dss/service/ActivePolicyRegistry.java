@@ -0,0 +1,210 @@
+package com.g5.dss.service;
+
+import com.g5.dss.domain.mongo.PolicyConfiguration;
+import com.g5.dss.repository.mongo.PolicyConfigurationRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Registry các policy đang active, key theo (country, channel), giữ trong JVM
+ * Load khi khởi động rồi thay nguyên map khi policy_configurations thay đổi:
+ * qua MongoDB change stream nếu server hỗ trợ (replica set), nếu không thì polling định kỳ
+ * Tra cứu chỉ là đọc map bất biến, không cần khóa
+ */
+@Service
+@Slf4j
+public class ActivePolicyRegistry {
+
+    private static final String COLLECTION = "policy_configurations";
+
+    private final PolicyConfigurationRepository policyRepository;
+    private final MongoTemplate mongoTemplate;
+
+    @Value("${analytics.policy-registry.change-stream:true}")
+    private boolean useChangeStream;
+
+    private volatile Policies policies;
+    private volatile boolean changeStreamActive;
+    private MessageListenerContainer container;
+
+    public ActivePolicyRegistry(PolicyConfigurationRepository policyRepository, MongoTemplate mongoTemplate) {
+        this.policyRepository = policyRepository;
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    /**
+     * Policy áp dụng cho (country, channel), theo thứ tự:
+     * đúng country + channel, country + mọi channel, bất kỳ policy nào của country (khi không có channel),
+     * rồi policy mặc định toàn cục
+     */
+    public PolicyConfiguration resolve(String country, String channel) {
+        if (policies == null) {
+            refresh();
+        }
+        Policies current = policies;
+        if (country != null) {
+            PolicyConfiguration policy = current.active.get(new Key(country, channel));
+            if (policy == null && channel != null) {
+                policy = current.active.get(new Key(country, null));
+            }
+            if (policy == null && channel == null) {
+                policy = current.anyChannel.get(country);
+            }
+            if (policy != null) {
+                return policy;
+            }
+        }
+        return current.defaultPolicy != null ? current.defaultPolicy : createDefaultPolicy();
+    }
+
+    /**
+     * Đọc lại toàn bộ policy từ Mongo và thay map đang dùng
+     */
+    public synchronized void refresh() {
+        List<PolicyConfiguration> active = policyRepository.findByIsActiveTrue();
+        PolicyConfiguration defaultPolicy = policyRepository.findByIsDefaultTrue().orElse(null);
+        policies = new Policies(active, defaultPolicy);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        try {
+            refresh();
+            log.info("Loaded {} active policies", policies.active.size());
+        } catch (Exception e) {
+            log.warn("Could not load active policies: {}", e.getMessage());
+        }
+        if (useChangeStream) {
+            subscribe();
+        }
+    }
+
+    /**
+     * Polling khi không có change stream (Mongo standalone hoặc stream bị lỗi)
+     */
+    @Scheduled(
+        initialDelayString = "${analytics.policy-registry.poll-ms:60000}",
+        fixedDelayString = "${analytics.policy-registry.poll-ms:60000}"
+    )
+    public void poll() {
+        if (changeStreamActive) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("Active policy refresh failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        if (container != null) {
+            container.stop();
+        }
+    }
+
+    private void subscribe() {
+        try {
+            container = new DefaultMessageListenerContainer(
+                mongoTemplate,
+                new SimpleAsyncTaskExecutor("policy-stream-"),
+                error -> {
+                    if (changeStreamActive) {
+                        log.warn("Policy change stream failed, falling back to polling: {}", error.getMessage());
+                    }
+                    changeStreamActive = false;
+                }
+            );
+            container.start();
+            ChangeStreamRequest<Document> request = ChangeStreamRequest.<Document>builder(message -> onPolicyChanged())
+                .collection(COLLECTION)
+                .build();
+            changeStreamActive = true;
+            container.register(request, Document.class).await(Duration.ofSeconds(5));
+            if (changeStreamActive) {
+                log.info("Watching {} via change stream", COLLECTION);
+            }
+        } catch (Exception e) {
+            changeStreamActive = false;
+            log.info("Change streams unavailable, polling {}: {}", COLLECTION, e.getMessage());
+        }
+    }
+
+    private void onPolicyChanged() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("Active policy refresh after change failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Create default policy if none exists
+     */
+    private PolicyConfiguration createDefaultPolicy() {
+        PolicyConfiguration policy = new PolicyConfiguration();
+        policy.setPolicyName("Default Policy");
+        policy.setDescription("System default return risk policy");
+        policy.setOptimalThreshold(75.0);
+        policy.setReturnProcessingCost(15.0);
+        policy.setShippingCostDefault(5.0);
+        policy.setCogsRatio(0.6);
+        policy.setConversionRateImpact(0.2);
+        policy.setIsActive(true);
+        policy.setIsDefault(true);
+
+        // Default thresholds
+        List<PolicyConfiguration.PolicyThreshold> thresholds = new ArrayList<>();
+        thresholds.add(new PolicyConfiguration.PolicyThreshold(0.0, 50.0, "APPROVE", "Low risk"));
+        thresholds.add(new PolicyConfiguration.PolicyThreshold(50.0, 75.0, "REQUIRE_PREPAY", "Medium risk"));
+        thresholds.add(new PolicyConfiguration.PolicyThreshold(75.0, 100.0, "BLOCK_COD", "High risk"));
+        policy.setThresholds(thresholds);
+
+        PolicyConfiguration saved = policyRepository.save(policy);
+        refresh();
+        return saved;
+    }
+
+    private record Key(String country, String channel) {
+    }
+
+    /**
+     * Ảnh chụp các policy active (không sửa sau khi publish)
+     */
+    private static final class Policies {
+
+        private final Map<Key, PolicyConfiguration> active;
+        private final Map<String, PolicyConfiguration> anyChannel;
+        private final PolicyConfiguration defaultPolicy;
+
+        Policies(List<PolicyConfiguration> policies, PolicyConfiguration defaultPolicy) {
+            Map<Key, PolicyConfiguration> byKey = new HashMap<>();
+            Map<String, PolicyConfiguration> byCountry = new HashMap<>();
+            for (PolicyConfiguration policy : policies) {
+                if (policy.getCountry() == null) {
+                    continue;
+                }
+                byKey.putIfAbsent(new Key(policy.getCountry(), policy.getChannel()), policy);
+                byCountry.putIfAbsent(policy.getCountry(), policy);
+            }
+            this.active = Map.copyOf(byKey);
+            this.anyChannel = Map.copyOf(byCountry);
+            this.defaultPolicy = defaultPolicy;
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.g5.dss.service;
+
+import com.g5.dss.domain.RuleCache;
+import com.g5.dss.dto.MarketBasketRuleDTO;
+import com.g5.dss.repository.mongo.RuleCacheRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Cache luật kết hợp theo segment (collection rule_cache, ruleType = "association")
+ * Luật được khai phá định kỳ cho từng segment và giữ trong JVM dưới dạng index
+ * antecedent stockCode -> các consequent đã xếp hạng; entry hết hạn vẫn được phục vụ
+ * trong lúc build lại ở background
+ */
+@Service
+@Slf4j
+public class AssociationRuleCacheService {
+
+    static final String RULE_TYPE = "association";
+    static final String ALL_CUSTOMERS = "all";
+
+    private final RuleCacheRepository ruleCacheRepository;
+    private final MarketBasketService marketBasketService;
+    private final SegmentationSnapshotService snapshotService;
+    private final Executor executor;
+
+    @Value("${analytics.rule-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.rule-cache.ttl-minutes:360}")
+    private long ttlMinutes;
+
+    // Số luật tối đa lưu cho mỗi segment
+    @Value("${analytics.rule-cache.max-rules:5000}")
+    private int maxRules;
+
+    @Value("${analytics.rule-cache.min-support:0.01}")
+    private double minSupport;
+
+    @Value("${analytics.rule-cache.min-confidence:30}")
+    private double minConfidence;
+
+    // Key: segment viết thường hoặc "all"
+    private final Map<String, CachedRules> hot = new ConcurrentHashMap<>();
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+
+    public AssociationRuleCacheService(
+        RuleCacheRepository ruleCacheRepository,
+        MarketBasketService marketBasketService,
+        SegmentationSnapshotService snapshotService,
+        @Qualifier("segmentationExecutor") Executor executor
+    ) {
+        this.ruleCacheRepository = ruleCacheRepository;
+        this.marketBasketService = marketBasketService;
+        this.snapshotService = snapshotService;
+        this.executor = executor;
+    }
+
+    /**
+     * Top N sản phẩm mua kèm stockCode trong segment (null = tất cả khách hàng)
+     * Đọc từ index trong JVM; nếu segment chưa có trong cache thì tính trực tiếp và khai phá ở background
+     */
+    public List<MarketBasketRuleDTO> getRecommendationsForProduct(String stockCode, String segment, int topN) {
+        String scope = scopeOf(segment);
+        CachedRules cached = enabled ? hot.get(scope) : null;
+        if (cached != null) {
+            if (cached.isExpired()) {
+                scheduleRefresh(scope);
+            }
+            return cached.consequents(stockCode, topN);
+        }
+        if (enabled) {
+            scheduleRefresh(scope);
+        }
+        return marketBasketService.getRecommendationsForProduct(stockCode, customerIdsOf(scope), topN);
+    }
+
+    /**
+     * Nạp các entry còn hạn trong rule_cache vào bộ nhớ khi khởi động
+     */
+    @Async("segmentationExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadPersisted() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            for (RuleCache document : ruleCacheRepository.findAllByRuleType(RULE_TYPE)) {
+                CachedRules cached = fromDocument(document);
+                if (cached != null && !cached.isExpired()) {
+                    hot.put(cached.scope, cached);
+                }
+            }
+            log.info("Loaded association rule cache for {} segments", hot.size());
+        } catch (Exception e) {
+            log.warn("Could not load association rule cache: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Khai phá lại các segment chưa có hoặc đã hết hạn (trong JVM hoặc trong rule_cache)
+     */
+    @Scheduled(
+        initialDelayString = "${analytics.rule-cache.initial-delay-ms:30000}",
+        fixedDelayString = "${analytics.rule-cache.refresh-check-ms:300000}"
+    )
+    public void refreshExpired() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Set<String> scopes = new LinkedHashSet<>();
+            scopes.add(ALL_CUSTOMERS);
+            snapshotService.getSnapshot().getSegmentNames()
+                .forEach(segment -> scopes.add(segment.toLowerCase()));
+
+            Set<String> expired = new HashSet<>();
+            for (RuleCache document : ruleCacheRepository.findByExpiresAtBefore(LocalDateTime.now())) {
+                if (RULE_TYPE.equals(document.getRuleType()) && document.getRuleData() != null) {
+                    expired.add(String.valueOf(document.getRuleData().get("segment")));
+                }
+            }
+
+            for (String scope : scopes) {
+                CachedRules cached = hot.get(scope);
+                if (cached == null || cached.isExpired() || expired.contains(scope)) {
+                    scheduleRefresh(scope);
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Association rule cache refresh check failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Khai phá lại một segment trên segmentationExecutor (bỏ qua nếu đang chạy)
+     */
+    public void scheduleRefresh(String scope) {
+        if (!refreshing.add(scope)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh(scope);
+                } catch (Exception e) {
+                    log.warn("Association rule mining failed for segment '{}': {}", scope, e.getMessage());
+                } finally {
+                    refreshing.remove(scope);
+                }
+            });
+        } catch (RuntimeException e) {
+            refreshing.remove(scope);
+            log.warn("Could not schedule association rule mining for '{}': {}", scope, e.getMessage());
+        }
+    }
+
+    private void refresh(String scope) {
+        Set<Integer> customerIds = customerIdsOf(scope);
+        if (customerIds != null && customerIds.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        List<MarketBasketRuleDTO> rules = marketBasketService.findAssociationRules(
+            customerIds, minSupport, minConfidence, maxRules, 2);
+
+        CachedRules previous = hot.get(scope);
+        LocalDateTime generatedAt = LocalDateTime.now();
+        CachedRules cached = new CachedRules(
+            scope,
+            previous != null ? previous.version + 1 : 1,
+            generatedAt,
+            generatedAt.plusMinutes(ttlMinutes),
+            rules
+        );
+        hot.put(scope, cached);
+
+        try {
+            ruleCacheRepository.save(toDocument(cached, rules));
+        } catch (Exception e) {
+            log.warn("Could not persist association rules for '{}': {}", scope, e.getMessage());
+        }
+        log.info("Cached {} association rules for segment '{}' (v{}) in {} ms",
+            rules.size(), scope, cached.version, System.currentTimeMillis() - start);
+    }
+
+    private Set<Integer> customerIdsOf(String scope) {
+        return ALL_CUSTOMERS.equals(scope) ? null : snapshotService.getSnapshot().getCustomerIds(scope);
+    }
+
+    private static String scopeOf(String segment) {
+        return segment == null || segment.isBlank() ? ALL_CUSTOMERS : segment.toLowerCase();
+    }
+
+    private RuleCache toDocument(CachedRules cached, List<MarketBasketRuleDTO> rules) {
+        List<Map<String, Object>> ruleMaps = new ArrayList<>(rules.size());
+        for (MarketBasketRuleDTO rule : rules) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("productACode", rule.getProductACode());
+            map.put("productAName", rule.getProductAName());
+            map.put("productBCode", rule.getProductBCode());
+            map.put("productBName", rule.getProductBName());
+            map.put("support", rule.getSupport());
+            map.put("confidence", rule.getConfidence());
+            map.put("lift", rule.getLift());
+            map.put("transactionCount", rule.getTransactionCount());
+            map.put("recommendation", rule.getRecommendation());
+            ruleMaps.add(map);
+        }
+
+        Map<String, Object> ruleData = new LinkedHashMap<>();
+        ruleData.put("segment", cached.scope);
+        ruleData.put("version", cached.version);
+        ruleData.put("minSupport", minSupport);
+        ruleData.put("minConfidence", minConfidence);
+        ruleData.put("rules", ruleMaps);
+
+        RuleCache document = new RuleCache();
+        document.setId(RULE_TYPE + ":" + cached.scope);
+        document.setRuleType(RULE_TYPE);
+        document.setRuleData(ruleData);
+        document.setGeneratedAt(cached.generatedAt);
+        document.setExpiresAt(cached.expiresAt);
+        return document;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CachedRules fromDocument(RuleCache document) {
+        Map<String, Object> ruleData = document.getRuleData();
+        if (ruleData == null || !(ruleData.get("rules") instanceof List<?> ruleMaps)) {
+            return null;
+        }
+        List<MarketBasketRuleDTO> rules = new ArrayList<>(ruleMaps.size());
+        for (Object item : ruleMaps) {
+            Map<String, Object> map = (Map<String, Object>) item;
+            rules.add(MarketBasketRuleDTO.builder()
+                .productACode((String) map.get("productACode"))
+                .productAName((String) map.get("productAName"))
+                .productBCode((String) map.get("productBCode"))
+                .productBName((String) map.get("productBName"))
+                .support(((Number) map.get("support")).doubleValue())
+                .confidence(((Number) map.get("confidence")).doubleValue())
+                .lift(((Number) map.get("lift")).doubleValue())
+                .transactionCount(((Number) map.get("transactionCount")).intValue())
+                .recommendation((String) map.get("recommendation"))
+                .build());
+        }
+        long version = ruleData.get("version") instanceof Number number ? number.longValue() : 1;
+        return new CachedRules(
+            String.valueOf(ruleData.get("segment")),
+            version,
+            document.getGeneratedAt(),
+            document.getExpiresAt(),
+            rules
+        );
+    }
+
+    /**
+     * Luật của một segment, index theo antecedent (giữ thứ tự confidence, lift giảm dần)
+     */
+    private static final class CachedRules {
+
+        private final String scope;
+        private final long version;
+        private final LocalDateTime generatedAt;
+        private final LocalDateTime expiresAt;
+        private final Map<String, List<MarketBasketRuleDTO>> byAntecedent;
+
+        CachedRules(
+            String scope,
+            long version,
+            LocalDateTime generatedAt,
+            LocalDateTime expiresAt,
+            List<MarketBasketRuleDTO> rules
+        ) {
+            this.scope = scope;
+            this.version = version;
+            this.generatedAt = generatedAt;
+            this.expiresAt = expiresAt;
+
+            Map<String, List<MarketBasketRuleDTO>> index = new HashMap<>();
+            for (MarketBasketRuleDTO rule : rules) {
+                index.computeIfAbsent(rule.getProductACode(), code -> new ArrayList<>()).add(rule);
+            }
+            index.replaceAll((code, list) -> List.copyOf(list));
+            this.byAntecedent = index;
+        }
+
+        boolean isExpired() {
+            return expiresAt == null || expiresAt.isBefore(LocalDateTime.now());
+        }
+
+        List<MarketBasketRuleDTO> consequents(String stockCode, int topN) {
+            List<MarketBasketRuleDTO> ranked = byAntecedent.getOrDefault(stockCode, List.of());
+            return ranked.size() <= topN ? ranked : ranked.subList(0, Math.max(0, topN));
+        }
+    }
+}
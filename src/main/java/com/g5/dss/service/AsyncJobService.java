@@ -0,0 +1,427 @@
+package com.g5.dss.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.g5.dss.config.AsyncExecutorProperties;
+import com.g5.dss.domain.mongo.AsyncJob;
+import com.g5.dss.dto.AsyncTaskResponse;
+import com.g5.dss.util.SecurityUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Chạy job bất đồng bộ của các Async*ApiController trên executor có tên trong AsyncConfig
+ * Controller đăng ký handler theo type (register), submit() trả taskId ngay, job chạy trên luồng của pool
+ * async.queue.mode=local: job giữ trong AsyncTaskManager, executor đầy thì task FAILED và ném
+ * TaskRejectedException (controller trả 503)
+ * async.queue.mode=mongo: job ghi vào DurableJobQueue; mỗi node claim job khi executor còn chỗ,
+ * gia hạn lease khi chạy, nên task xem / hủy được từ node bất kỳ và không mất khi restart
+ * async.executor.mode=virtual: mỗi job một virtual thread, số job chạy cùng lúc giới hạn theo type
+ * (JobConcurrencyLimits), hàng chờ của type đầy thì submit bị từ chối như executor đầy
+ */
+@Service
+@Slf4j
+public class AsyncJobService {
+
+    public static final String PREDICTION = "predictionExecutor";
+    public static final String SEGMENTATION = "segmentationExecutor";
+    public static final String ANOMALY = "anomalyExecutor";
+
+    private final AsyncTaskManager taskManager;
+    private final DurableJobQueue queue;
+    private final ObjectMapper objectMapper;
+    private final Map<String, Executor> executors;
+    private final JobConcurrencyLimits limits;
+
+    private final Map<String, Registration<?, ?>> handlers = new ConcurrentHashMap<>();
+    // Job durable đang chạy trên node này -> luồng worker (để gia hạn lease / interrupt khi bị hủy)
+    // Lượt chạy (task, attempt) -> worker; lượt cũ kết thúc không gỡ lượt claim lại khỏi heartbeat
+    private final Map<Lease, Future<?>> running = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+
+    @Value("${async.queue.poll-ms:500}")
+    private long pollMs;
+
+    private volatile boolean polling;
+    private Thread poller;
+
+    public AsyncJobService(
+        AsyncTaskManager taskManager,
+        DurableJobQueue queue,
+        ObjectMapper objectMapper,
+        AsyncExecutorProperties executorProperties,
+        @Qualifier(PREDICTION) Executor predictionExecutor,
+        @Qualifier(SEGMENTATION) Executor segmentationExecutor,
+        @Qualifier(ANOMALY) Executor anomalyExecutor
+    ) {
+        this.taskManager = taskManager;
+        this.queue = queue;
+        this.objectMapper = objectMapper;
+        this.limits = new JobConcurrencyLimits(executorProperties);
+        this.executors = Map.of(
+            PREDICTION, predictionExecutor,
+            SEGMENTATION, segmentationExecutor,
+            ANOMALY, anomalyExecutor
+        );
+    }
+
+    /**
+     * Một job; progress nhận phần trăm hoàn thành (0-100)
+     */
+    @FunctionalInterface
+    public interface Handler<R, T> {
+        T run(R request, IntConsumer progress) throws Exception;
+    }
+
+    /**
+     * Đăng ký handler cho một type job; requestType dùng để đọc lại request từ hàng đợi durable
+     */
+    public <R, T> void register(String type, String executorName, Class<R> requestType, Handler<R, T> handler) {
+        register(type, executorName, objectMapper.constructType(requestType), handler);
+    }
+
+    /**
+     * Như trên cho request kiểu generic, ví dụ new TypeReference<Map<String, Object>>() {}
+     */
+    public <R, T> void register(String type, String executorName, TypeReference<R> requestType, Handler<R, T> handler) {
+        register(type, executorName, objectMapper.constructType(requestType), handler);
+    }
+
+    private <R, T> void register(String type, String executorName, JavaType requestType, Handler<R, T> handler) {
+        if (!executors.containsKey(executorName)) {
+            throw new IllegalArgumentException("Unknown executor: " + executorName);
+        }
+        handlers.put(type, new Registration<>(executorName, requestType, handler));
+    }
+
+    /**
+     * Tạo task PENDING cho job đã đăng ký và trả về ngay (không chờ job)
+     */
+    public AsyncTaskResponse<Void> submit(String type, Object request) {
+        Registration<?, ?> registration = handlers.get(type);
+        if (registration == null) {
+            throw new IllegalArgumentException("Unknown job type: " + type);
+        }
+
+        String taskId = taskManager.generateTaskId();
+        String owner = SecurityUtil.getCurrentUsername();
+        AsyncTaskResponse<Void> pending = AsyncTaskResponse.pending(taskId);
+        if (queue != null && queue.isEnabled()) {
+            try {
+                queue.enqueue(taskId, type, registration.executor(), objectMapper.writeValueAsString(request), owner);
+            } catch (Exception e) {
+                throw new IllegalStateException("Could not enqueue " + type + " task: " + e.getMessage(), e);
+            }
+            taskManager.recordOutcome(type, TaskMetrics.SUBMITTED);
+            return pending;
+        }
+
+        taskManager.storeTask(taskId, pending, owner);
+        taskManager.recordOutcome(type, TaskMetrics.SUBMITTED);
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        taskManager.storeFuture(taskId, result);
+        long submittedAt = System.nanoTime();
+        JobConcurrencyLimits.Ticket ticket = limits.admit(type);
+        try {
+            if (ticket == null) {
+                throw new RejectedExecutionException(type + " queue is full");
+            }
+            // Hủy khi job còn chờ (chưa chạy) thì trả chỗ trong hàng chờ
+            result.whenComplete((value, error) -> ticket.leaveQueue());
+            dispatch(registration.executor(), result,
+                () -> executeLocal(taskId, type, registration, request, result, submittedAt, ticket));
+        } catch (RejectedExecutionException e) {
+            if (ticket != null) {
+                ticket.leaveQueue();
+            }
+            taskManager.recordOutcome(type, TaskMetrics.REJECTED);
+            log.warn("Rejected {} task {}: {} is saturated", type, taskId, registration.executor());
+            taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, registration.executor() + " is saturated"));
+            result.completeExceptionally(e);
+            throw new TaskRejectedException(registration.executor() + " is saturated, retry later", e);
+        }
+        return pending;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startPolling() {
+        if (queue == null || !queue.isEnabled()) {
+            return;
+        }
+        queue.ensureIndexes();
+        polling = true;
+        poller = new Thread(this::pollLoop, "job-queue-poller");
+        poller.setDaemon(true);
+        poller.start();
+        log.info("Durable job queue polling as node {}", queue.getNodeId());
+    }
+
+    /**
+     * Gia hạn lease của job đang chạy; job bị hủy hoặc đã mất lease thì interrupt worker
+     */
+    @Scheduled(
+        initialDelayString = "${async.queue.heartbeat-ms:10000}",
+        fixedDelayString = "${async.queue.heartbeat-ms:10000}"
+    )
+    public void heartbeat() {
+        if (queue == null || !queue.isEnabled()) {
+            return;
+        }
+        running.forEach((lease, worker) -> {
+            if (worker.isDone()) {
+                running.remove(lease, worker);
+                return;
+            }
+            try {
+                if (!queue.heartbeat(lease.taskId(), lease.attempt())) {
+                    log.info("Lost lease on task {} (attempt {}), interrupting", lease.taskId(), lease.attempt());
+                    worker.cancel(true);
+                    running.remove(lease, worker);
+                }
+            } catch (Exception e) {
+                log.warn("Heartbeat for task {} failed: {}", lease.taskId(), e.getMessage());
+            }
+        });
+        try {
+            long exhausted = queue.failExhausted();
+            if (exhausted > 0) {
+                log.warn("Marked {} abandoned tasks as failed", exhausted);
+            }
+        } catch (Exception e) {
+            log.warn("Abandoned task sweep failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void stopPolling() {
+        polling = false;
+        if (poller != null) {
+            poller.interrupt();
+        }
+    }
+
+    private void pollLoop() {
+        while (polling) {
+            try {
+                boolean claimed = false;
+                for (Map.Entry<String, List<String>> entry : typesByExecutor().entrySet()) {
+                    claimed |= claimFor(entry.getKey(), entry.getValue());
+                }
+                if (!claimed) {
+                    Thread.sleep(pollMs);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Job queue poll failed: {}", e.getMessage());
+                try {
+                    Thread.sleep(pollMs * 4);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim job khi executor còn luồng rảnh, để job chờ trong Mongo chứ không xếp hàng trong một node
+     */
+    private boolean claimFor(String executorName, List<String> types) {
+        AtomicInteger active = inFlight.computeIfAbsent(executorName, name -> new AtomicInteger());
+        int capacity = limits.isEnabled() ? limits.capacity(types) : capacity(executors.get(executorName));
+        boolean claimed = false;
+        while (active.get() < capacity) {
+            AsyncJob job = queue.claim(types);
+            if (job == null) {
+                break;
+            }
+            claimed = true;
+            Lease lease = new Lease(job.getId(), job.getAttempts());
+            Registration<?, ?> registration = handlers.get(job.getType());
+            CompletableFuture<Object> result = new CompletableFuture<>();
+            taskManager.storeFuture(job.getId(), result);
+            active.incrementAndGet();
+            try {
+                Future<?> worker = dispatch(executorName, result, () -> {
+                    try {
+                        executeDurable(job, registration, result);
+                    } finally {
+                        running.remove(lease);
+                        active.decrementAndGet();
+                    }
+                });
+                if (worker != null) {
+                    running.put(lease, worker);
+                }
+            } catch (RejectedExecutionException e) {
+                // Lease hết hạn thì node khác (hoặc node này) claim lại
+                active.decrementAndGet();
+                result.completeExceptionally(e);
+                log.warn("{} rejected claimed task {}", executorName, job.getId());
+                break;
+            }
+        }
+        return claimed;
+    }
+
+    private Future<?> dispatch(String executorName, CompletableFuture<?> result, Runnable task) {
+        Executor executor = executors.get(executorName);
+        if (executor instanceof AsyncTaskExecutor taskExecutor) {
+            // Hủy task (DELETE) thì interrupt luồng đang chạy job
+            Future<?> worker = taskExecutor.submit(task);
+            result.whenComplete((value, error) -> {
+                if (result.isCancelled()) {
+                    worker.cancel(true);
+                }
+            });
+            return worker;
+        }
+        executor.execute(task);
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeLocal(String taskId, String type, Registration<?, ?> registration, Object request,
+                              CompletableFuture<Object> result, long submittedAt,
+                              JobConcurrencyLimits.Ticket ticket) {
+        // Bị hủy khi còn chờ trong hàng đợi của executor / chờ permit của type
+        if (result.isDone() || !limits.acquire(ticket) || result.isDone()) {
+            limits.release(ticket);
+            taskManager.recordOutcome(type, TaskMetrics.CANCELLED);
+            return;
+        }
+        long startedAt = System.nanoTime();
+        taskManager.recordQueueWait(registration.executor(), elapsedMillis(submittedAt));
+        String outcome = TaskMetrics.CANCELLED;
+        log.info("Starting {} task: {}", type, taskId);
+        try {
+            taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, 10));
+            Object value = ((Handler<Object, Object>) registration.handler()).run(request, percent -> {
+                if (!result.isDone()) {
+                    taskManager.updateTask(taskId, AsyncTaskResponse.processing(taskId, percent));
+                }
+            });
+            // Task đã bị hủy thì giữ trạng thái CANCELLED
+            if (result.complete(value)) {
+                taskManager.updateTask(taskId, AsyncTaskResponse.completed(taskId, value));
+                outcome = TaskMetrics.COMPLETED;
+                log.info("Completed {} task: {}", type, taskId);
+            }
+        } catch (Exception e) {
+            if (result.completeExceptionally(new CompletionException(e))) {
+                log.error("Error in {} task: {}", type, taskId, e);
+                taskManager.updateTask(taskId, AsyncTaskResponse.failed(taskId, e.getMessage()));
+                outcome = TaskMetrics.FAILED;
+            }
+        } finally {
+            limits.release(ticket);
+            taskManager.recordExecution(registration.executor(), elapsedMillis(startedAt));
+            taskManager.recordOutcome(type, outcome);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void executeDurable(AsyncJob job, Registration<?, ?> registration, CompletableFuture<Object> result) {
+        String taskId = job.getId();
+        JobConcurrencyLimits.Ticket ticket = limits.enter(job.getType());
+        if (result.isDone() || !limits.acquire(ticket) || result.isDone()) {
+            ticket.leaveQueue();
+            limits.release(ticket);
+            return;
+        }
+        long startedAt = System.nanoTime();
+        if (job.getSubmittedAt() != null) {
+            taskManager.recordQueueWait(job.getExecutor(),
+                Math.max(0, Duration.between(job.getSubmittedAt(), LocalDateTime.now()).toMillis()));
+        }
+        // Bị hủy hoặc mất lease thì không ghi được kết quả
+        String outcome = TaskMetrics.CANCELLED;
+        log.info("Starting {} task: {} (attempt {})", job.getType(), taskId, job.getAttempts());
+        try {
+            Object request = objectMapper.readValue(job.getPayload(), registration.requestType());
+            Object value = ((Handler<Object, Object>) registration.handler()).run(request, percent -> {
+                if (!result.isDone()) {
+                    queue.progress(taskId, job.getAttempts(), percent);
+                }
+            });
+            // Mất lease / bị hủy thì complete() không ghi gì
+            if (result.complete(value)
+                    && queue.complete(taskId, job.getAttempts(), objectMapper.writeValueAsString(value))) {
+                outcome = TaskMetrics.COMPLETED;
+                log.info("Completed {} task: {}", job.getType(), taskId);
+            }
+        } catch (Exception e) {
+            if (result.completeExceptionally(new CompletionException(e))
+                    && queue.fail(taskId, job.getAttempts(), e.getMessage())) {
+                outcome = TaskMetrics.FAILED;
+                log.error("Error in {} task: {}", job.getType(), taskId, e);
+            }
+        } finally {
+            limits.release(ticket);
+            taskManager.recordExecution(job.getExecutor(), elapsedMillis(startedAt));
+            taskManager.recordOutcome(job.getType(), outcome);
+        }
+    }
+
+    /**
+     * Executor mode và số job đang chạy / chờ theo type (mode virtual)
+     */
+    public Map<String, Object> getLimitStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", limits.isEnabled() ? AsyncExecutorProperties.VIRTUAL : AsyncExecutorProperties.PLATFORM);
+        stats.put("types", limits.snapshot());
+        return stats;
+    }
+
+    private Map<String, List<String>> typesByExecutor() {
+        Map<String, List<String>> types = new ConcurrentHashMap<>();
+        handlers.forEach((type, registration) ->
+            types.computeIfAbsent(registration.executor(), name -> new ArrayList<>()).add(type));
+        return types;
+    }
+
+    private static long elapsedMillis(long sinceNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sinceNanos);
+    }
+
+    private static int capacity(Executor executor) {
+        if (executor instanceof ThreadPoolTaskExecutor pool) {
+            return Math.max(1, pool.getCorePoolSize());
+        }
+        return 4;
+    }
+
+    private record Registration<R, T>(String executor, JavaType requestType, Handler<R, T> handler) {
+    }
+
+    private record Lease(String taskId, int attempt) {
+    }
+}
@@ -1,21 +1,103 @@
 package com.g5.dss.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.g5.dss.domain.mongo.AsyncJob;
 import com.g5.dss.dto.AsyncTaskResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service to manage async task tracking and results
+ * The task store is bounded: finished tasks (COMPLETED, FAILED, CANCELLED) expire after a TTL and
+ * the least recently used finished task is evicted once the store is full. Running tasks are never evicted.
+ * Results larger than offload-bytes are moved to MongoDB (async_task_results, TTL index) and read back on demand.
+ * With async.queue.mode=mongo, task state lives in DurableJobQueue instead and is shared by every node.
+ * Every state change is pushed to TaskProgressBroadcaster; in mongo mode changes made by any node are
+ * picked up by polling async_jobs.updatedAt once per tick, not once per subscriber.
  */
 @Service
+@Slf4j
 public class AsyncTaskManager {
 
-    private final Map<String, AsyncTaskResponse<?>> taskStore = new ConcurrentHashMap<>();
+    private static final String RESULT_COLLECTION = "async_task_results";
+    private static final String OFFLOADED_MESSAGE = "Result stored out of memory, fetch the task by id";
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final DurableJobQueue queue;
+    private final TaskProgressBroadcaster events;
+    private final int maxSize;
+    private final long ttlMillis;
+    private final int offloadBytes;
+
+    // Access-ordered: iteration starts at the least recently used task (guarded by itself)
+    private final Map<String, Entry> taskStore = new LinkedHashMap<>(16, 0.75f, true);
     private final Map<String, CompletableFuture<?>> futureStore = new ConcurrentHashMap<>();
+    private final TaskMetrics metrics = new TaskMetrics();
+
+    private volatile boolean resultIndexReady;
+
+    // Tasks listed from the durable queue
+    @Value("${async.queue.list-limit:1000}")
+    private int listLimit = 1000;
+
+    // Durable queue changes read per watch tick
+    @Value("${async.events.watch-batch:500}")
+    private int watchBatch = 500;
+
+    // Re-read window covering clock differences between nodes
+    @Value("${async.events.clock-skew-ms:2000}")
+    private long clockSkewMs = 2000;
+
+    private Instant watchedUntil = Instant.now();
+    private Map<String, Instant> lastWatched = Map.of();
+
+    private final AtomicLong evictedBySize = new AtomicLong();
+    private final AtomicLong evictedByAge = new AtomicLong();
+    private final AtomicLong offloaded = new AtomicLong();
+    private final AtomicLong offloadedBytes = new AtomicLong();
+    private final AtomicLong offloadFailures = new AtomicLong();
+
+    public AsyncTaskManager(
+        MongoTemplate mongoTemplate,
+        ObjectMapper objectMapper,
+        DurableJobQueue queue,
+        TaskProgressBroadcaster events,
+        @Value("${async.task-store.max-size:10000}") int maxSize,
+        @Value("${async.task-store.ttl-minutes:60}") long ttlMinutes,
+        @Value("${async.task-store.offload-bytes:262144}") int offloadBytes
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.queue = queue;
+        this.events = events;
+        this.maxSize = maxSize;
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(ttlMinutes);
+        this.offloadBytes = offloadBytes;
+    }
 
     /**
      * Generate a unique task ID
@@ -28,14 +110,25 @@ public class AsyncTaskManager {
      * Store task information
      */
     public <T> void storeTask(String taskId, AsyncTaskResponse<T> response) {
-        taskStore.put(taskId, response);
+        put(taskId, response);
+    }
+
+    /**
+     * Store task information for the user's event stream
+     */
+    public <T> void storeTask(String taskId, AsyncTaskResponse<T> response, String owner) {
+        if (events != null) {
+            events.track(taskId, owner);
+        }
+        put(taskId, response);
     }
 
     /**
-     * Store CompletableFuture for a task
+     * Store CompletableFuture for a task (dropped once the future completes)
      */
     public <T> void storeFuture(String taskId, CompletableFuture<T> future) {
         futureStore.put(taskId, future);
+        future.whenComplete((value, error) -> futureStore.remove(taskId, future));
     }
 
     /**
@@ -43,22 +136,46 @@ public class AsyncTaskManager {
      */
     @SuppressWarnings("unchecked")
     public <T> AsyncTaskResponse<T> getTask(String taskId) {
-        return (AsyncTaskResponse<T>) taskStore.get(taskId);
+        if (durable()) {
+            AsyncJob job = queue.find(taskId);
+            return job != null ? (AsyncTaskResponse<T>) toResponse(job) : null;
+        }
+        Entry entry;
+        synchronized (taskStore) {
+            entry = taskStore.get(taskId);
+        }
+        if (entry == null) {
+            return null;
+        }
+        return (AsyncTaskResponse<T>) (entry.offloaded ? loadOffloaded(taskId, entry.response) : entry.response);
     }
 
     /**
      * Update task status
      */
     public <T> void updateTask(String taskId, AsyncTaskResponse<T> response) {
-        taskStore.put(taskId, response);
+        put(taskId, response);
     }
 
     /**
      * Remove completed task
      */
     public void removeTask(String taskId) {
-        taskStore.remove(taskId);
+        if (durable()) {
+            queue.remove(taskId);
+            return;
+        }
+        Entry removed;
+        synchronized (taskStore) {
+            removed = taskStore.remove(taskId);
+            if (removed != null) {
+                metrics.transition(removed.status, null);
+            }
+        }
         futureStore.remove(taskId);
+        if (removed != null && removed.offloaded) {
+            deleteOffloaded(taskId);
+        }
     }
 
     /**
@@ -66,13 +183,22 @@ public class AsyncTaskManager {
      */
     public boolean cancelTask(String taskId) {
         CompletableFuture<?> future = futureStore.get(taskId);
+        if (durable()) {
+            // Worker on another node notices at its next heartbeat
+            boolean cancelled = queue.cancel(taskId);
+            if (cancelled && future != null) {
+                future.cancel(true);
+            }
+            return cancelled;
+        }
         if (future != null && !future.isDone()) {
             boolean cancelled = future.cancel(true);
             if (cancelled) {
-                AsyncTaskResponse<?> response = taskStore.get(taskId);
+                AsyncTaskResponse<?> response = getTask(taskId);
                 if (response != null) {
                     response.setStatus("CANCELLED");
                     response.setMessage("Task was cancelled by user");
+                    put(taskId, response);
                 }
             }
             return cancelled;
@@ -81,20 +207,309 @@ public class AsyncTaskManager {
     }
 
     /**
-     * Get all tasks
+     * Get all tasks (offloaded results are not loaded)
      */
     public Map<String, AsyncTaskResponse<?>> getAllTasks() {
-        return new ConcurrentHashMap<>(taskStore);
+        Map<String, AsyncTaskResponse<?>> tasks = new LinkedHashMap<>();
+        if (durable()) {
+            queue.findRecent(listLimit).forEach(job -> tasks.put(job.getId(), toResponse(job)));
+            return tasks;
+        }
+        synchronized (taskStore) {
+            taskStore.forEach((taskId, entry) -> tasks.put(taskId, entry.response));
+        }
+        return tasks;
     }
 
     /**
      * Clear all completed tasks
      */
     public void clearCompletedTasks() {
-        taskStore.entrySet().removeIf(entry -> 
-            "COMPLETED".equals(entry.getValue().getStatus()) || 
-            "FAILED".equals(entry.getValue().getStatus()) ||
-            "CANCELLED".equals(entry.getValue().getStatus())
-        );
+        if (durable()) {
+            queue.clearFinished();
+            return;
+        }
+        List<String> offloadedIds = new ArrayList<>();
+        synchronized (taskStore) {
+            taskStore.entrySet().removeIf(entry -> {
+                if (entry.getValue().finishedAt == 0) {
+                    return false;
+                }
+                if (entry.getValue().offloaded) {
+                    offloadedIds.add(entry.getKey());
+                }
+                metrics.transition(entry.getValue().status, null);
+                return true;
+            });
+        }
+        offloadedIds.forEach(this::deleteOffloaded);
+    }
+
+    /**
+     * Count a submission, rejection or final outcome for a job type
+     */
+    public void recordOutcome(String type, String outcome) {
+        metrics.count(type, outcome);
+    }
+
+    /**
+     * Record how long a task waited for a worker of the executor
+     */
+    public void recordQueueWait(String executor, long millis) {
+        metrics.queueWait(executor, millis);
+    }
+
+    /**
+     * Record how long a task ran on the executor
+     */
+    public void recordExecution(String executor, long millis) {
+        metrics.execution(executor, millis);
+    }
+
+    /**
+     * Number of tracked tasks per status, without scanning the store
+     * (counted by the durable queue in mongo mode)
+     */
+    public Map<String, Long> getStatusCounts() {
+        return durable() ? queue.countByStatus() : metrics.statusCounts();
+    }
+
+    /**
+     * Per-type outcome counters and per-executor queue wait / execution latency (this node)
+     */
+    public Map<String, Object> getTaskStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("byType", metrics.typeCounts());
+        stats.put("executors", metrics.executorTimings());
+        return stats;
+    }
+
+    /**
+     * Store size and eviction / offload counters
+     */
+    public Map<String, Object> getStoreStats() {
+        return getStoreStats(getStatusCounts());
+    }
+
+    /**
+     * Same as {@link #getStoreStats()}, reusing status counts the caller already read
+     */
+    public Map<String, Object> getStoreStats(Map<String, Long> statusCounts) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", durable() ? "mongo" : "local");
+        if (durable()) {
+            stats.put("nodeId", queue.getNodeId());
+            stats.put("queue", statusCounts);
+        }
+        synchronized (taskStore) {
+            stats.put("size", taskStore.size());
+        }
+        stats.put("maxSize", maxSize);
+        stats.put("ttlMinutes", TimeUnit.MILLISECONDS.toMinutes(ttlMillis));
+        stats.put("evictedBySize", evictedBySize.get());
+        stats.put("evictedByAge", evictedByAge.get());
+        stats.put("offloaded", offloaded.get());
+        stats.put("offloadedBytes", offloadedBytes.get());
+        stats.put("offloadFailures", offloadFailures.get());
+        stats.put("trackedFutures", futureStore.size());
+        return stats;
+    }
+
+    /**
+     * Drop finished tasks older than the TTL
+     */
+    @Scheduled(
+        initialDelayString = "${async.task-store.sweep-ms:60000}",
+        fixedDelayString = "${async.task-store.sweep-ms:60000}"
+    )
+    public void evictExpired() {
+        evictExpired(System.currentTimeMillis());
+    }
+
+    void evictExpired(long now) {
+        long cutoff = now - ttlMillis;
+        synchronized (taskStore) {
+            Iterator<Map.Entry<String, Entry>> it = taskStore.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<String, Entry> entry = it.next();
+                Entry task = entry.getValue();
+                if (task.finishedAt != 0 && task.finishedAt < cutoff) {
+                    it.remove();
+                    metrics.transition(task.status, null);
+                    evictedByAge.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Publish task changes written to the durable queue by any node (only while someone is subscribed)
+     */
+    @Scheduled(
+        initialDelayString = "${async.events.watch-ms:1000}",
+        fixedDelayString = "${async.events.watch-ms:1000}"
+    )
+    public void watchQueue() {
+        if (!durable() || events == null) {
+            return;
+        }
+        if (!events.hasSubscribers()) {
+            watchedUntil = Instant.now();
+            lastWatched = Map.of();
+            return;
+        }
+        List<AsyncJob> changed = queue.findUpdatedSince(watchedUntil.minusMillis(clockSkewMs), watchBatch);
+        Map<String, Instant> watched = new HashMap<>();
+        for (AsyncJob job : changed) {
+            watched.put(job.getId(), job.getUpdatedAt());
+            if (job.getUpdatedAt().equals(lastWatched.get(job.getId()))) {
+                continue;
+            }
+            events.publish(toResponse(job), job.getSubmittedBy());
+            if (job.getUpdatedAt().isAfter(watchedUntil)) {
+                watchedUntil = job.getUpdatedAt();
+            }
+        }
+        lastWatched = watched;
+    }
+
+    private boolean durable() {
+        return queue != null && queue.isEnabled();
+    }
+
+    private AsyncTaskResponse<?> toResponse(AsyncJob job) {
+        Object result = null;
+        if (job.getResult() != null) {
+            try {
+                result = objectMapper.readValue(job.getResult(), Object.class);
+            } catch (Exception e) {
+                log.warn("Could not read result of task {}: {}", job.getId(), e.getMessage());
+            }
+        }
+        return AsyncTaskResponse.builder()
+            .taskId(job.getId())
+            .status(job.getStatus())
+            .message(job.getMessage())
+            .submittedAt(job.getSubmittedAt())
+            .completedAt(job.getCompletedAt())
+            .result(result)
+            .errorMessage(job.getErrorMessage())
+            .progress(job.getProgress())
+            .build();
+    }
+
+    private void put(String taskId, AsyncTaskResponse<?> response) {
+        boolean finished = isFinished(response.getStatus());
+        boolean offload = finished && "COMPLETED".equals(response.getStatus()) && offload(taskId, response);
+        AsyncTaskResponse<?> stored = offload ? stub(response) : response;
+
+        synchronized (taskStore) {
+            Entry previous = taskStore.get(taskId);
+            long finishedAt = finished
+                ? (previous != null && previous.finishedAt != 0 ? previous.finishedAt : System.currentTimeMillis())
+                : 0;
+            taskStore.put(taskId, new Entry(stored, response.getStatus(), finishedAt, offload));
+            metrics.transition(previous != null ? previous.status : null, response.getStatus());
+            if (taskStore.size() > maxSize) {
+                evictFinished(taskStore.size() - maxSize);
+            }
+        }
+        if (events != null) {
+            events.publish(stored);
+        }
+    }
+
+    /**
+     * Evict up to count least recently used finished tasks (caller holds the lock)
+     */
+    private void evictFinished(int count) {
+        Iterator<Entry> it = taskStore.values().iterator();
+        while (count > 0 && it.hasNext()) {
+            Entry task = it.next();
+            if (task.finishedAt != 0) {
+                it.remove();
+                metrics.transition(task.status, null);
+                evictedBySize.incrementAndGet();
+                count--;
+            }
+        }
+    }
+
+    private boolean offload(String taskId, AsyncTaskResponse<?> response) {
+        if (offloadBytes <= 0 || mongoTemplate == null || response.getResult() == null) {
+            return false;
+        }
+        try {
+            String payload = objectMapper.writeValueAsString(response.getResult());
+            if (payload.length() < offloadBytes) {
+                return false;
+            }
+            ensureResultIndex();
+            Document document = new Document("_id", taskId)
+                .append("payload", payload)
+                .append("storedAt", new Date());
+            mongoTemplate.save(document, RESULT_COLLECTION);
+            offloaded.incrementAndGet();
+            offloadedBytes.addAndGet(payload.length());
+            return true;
+        } catch (Exception e) {
+            offloadFailures.incrementAndGet();
+            log.warn("Could not offload result of task {}, keeping it in memory: {}", taskId, e.getMessage());
+            return false;
+        }
+    }
+
+    private AsyncTaskResponse<?> loadOffloaded(String taskId, AsyncTaskResponse<?> stub) {
+        try {
+            Document document = mongoTemplate.findById(taskId, Document.class, RESULT_COLLECTION);
+            if (document == null) {
+                return stub;
+            }
+            AsyncTaskResponse<Object> response = AsyncTaskResponse.completed(taskId,
+                objectMapper.readValue(document.getString("payload"), Object.class));
+            response.setCompletedAt(stub.getCompletedAt());
+            return response;
+        } catch (Exception e) {
+            log.warn("Could not load offloaded result of task {}: {}", taskId, e.getMessage());
+            return stub;
+        }
+    }
+
+    private void deleteOffloaded(String taskId) {
+        try {
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(taskId)), RESULT_COLLECTION);
+        } catch (Exception e) {
+            log.warn("Could not delete offloaded result of task {}: {}", taskId, e.getMessage());
+        }
+    }
+
+    private void ensureResultIndex() {
+        if (!resultIndexReady) {
+            mongoTemplate.indexOps(RESULT_COLLECTION).createIndex(
+                new Index().on("storedAt", Sort.Direction.ASC).expire(Duration.ofMillis(ttlMillis)));
+            resultIndexReady = true;
+        }
+    }
+
+    private static AsyncTaskResponse<?> stub(AsyncTaskResponse<?> response) {
+        return AsyncTaskResponse.builder()
+            .taskId(response.getTaskId())
+            .status(response.getStatus())
+            .message(OFFLOADED_MESSAGE)
+            .submittedAt(response.getSubmittedAt())
+            .completedAt(response.getCompletedAt())
+            .progress(response.getProgress())
+            .build();
+    }
+
+    private static boolean isFinished(String status) {
+        return "COMPLETED".equals(status) || "FAILED".equals(status) || "CANCELLED".equals(status);
+    }
+
+    /**
+     * Stored task; status is kept apart from the response (cancelTask mutates the response in place),
+     * finishedAt is 0 while the task is still running
+     */
+    private record Entry(AsyncTaskResponse<?> response, String status, long finishedAt, boolean offloaded) {
     }
 }
@@ -1,10 +1,13 @@
 package com.g5.dss.service;
 
+import com.g5.dss.domain.jpa.CustomerRfmProjection;
 import com.g5.dss.dto.CustomerSegmentSummaryDTO;
 import com.g5.dss.dto.RFMCustomerDTO;
 import com.g5.dss.repository.jpa.OnlineRetailJpaRepository;
+import com.g5.dss.util.KllQuantileSketch;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -23,76 +26,146 @@ import java.util.stream.Collectors;
 public class CustomerSegmentationService {
     
     private final OnlineRetailJpaRepository repository;
+    private final RfmAggregateService rfmAggregateService;
+    private final RetailColumnStore columnStore;
+    
+    // columnar | aggregate | sql
+    @Value("${analytics.rfm.source:columnar}")
+    private String rfmSource;
+    
+    // exact | sketch | auto (exact khi số khách hàng <= exact-max-size)
+    @Value("${analytics.segmentation.quantile-mode:auto}")
+    private String quantileMode;
+    
+    @Value("${analytics.segmentation.exact-max-size:200000}")
+    private int exactQuantileMaxSize;
+    
+    // Độ chính xác của KLL sketch (sai số rank ~ 1.7/k)
+    @Value("${analytics.segmentation.sketch-k:400}")
+    private int sketchK;
     
     /**
      * Tính toán RFM cho tất cả khách hàng
+     * Nguồn dữ liệu theo analytics.rfm.source:
+     * columnar (store dạng cột trong bộ nhớ), aggregate (bảng customer_rfm_aggregate), sql (GROUP BY mỗi lần gọi)
      */
     public List<RFMCustomerDTO> calculateRFM(LocalDateTime referenceDate) {
         log.info("Calculating RFM metrics with reference date: {}", referenceDate);
         
-        // Group by customer and calculate RFM
-        Map<Integer, List<com.g5.dss.domain.jpa.OnlineRetail>> customerGroups = 
-            repository.findAll().stream()
-                .filter(entity -> entity.getCustomerId() != null)
-                .collect(Collectors.groupingBy(
-                    com.g5.dss.domain.jpa.OnlineRetail::getCustomerId
-                ));
+        if ("columnar".equals(rfmSource) && columnStore.isReady()) {
+            columnStore.sync();
+            return calculateRFM(columnStore.getColumns(), referenceDate);
+        }
         
-        List<RFMCustomerDTO> result = customerGroups.entrySet().stream()
-            .map(entry -> {
-                Integer customerId = entry.getKey();
-                List<com.g5.dss.domain.jpa.OnlineRetail> transactions = entry.getValue();
-                
-                // Tính Recency
-                LocalDateTime lastPurchase = transactions.stream()
-                    .map(com.g5.dss.domain.jpa.OnlineRetail::getInvoiceDate)
-                    .filter(Objects::nonNull)
-                    .max(LocalDateTime::compareTo)
-                    .orElse(referenceDate);
-                long recency = ChronoUnit.DAYS.between(lastPurchase, referenceDate);
-                
-                // Tính Frequency (số đơn hàng unique)
-                long frequency = transactions.stream()
-                    .map(com.g5.dss.domain.jpa.OnlineRetail::getInvoiceNo)
-                    .filter(Objects::nonNull)
-                    .distinct()
-                    .count();
-                
-                // Tính Monetary (tổng chi tiêu)
-                double monetary = transactions.stream()
-                    .filter(t -> t.getTotalAmount() != null)
-                    .mapToDouble(t -> t.getTotalAmount().doubleValue())
-                    .sum();
-                
-                // Country
-                String country = transactions.get(0).getCountry();
-                
-                // Avg order value
-                double avgOrderValue = frequency > 0 ? monetary / frequency : 0;
-                
-                // Total quantity
-                int totalQuantity = transactions.stream()
-                    .filter(t -> t.getQuantity() != null)
-                    .mapToInt(com.g5.dss.domain.jpa.OnlineRetail::getQuantity)
-                    .sum();
-                
-                return RFMCustomerDTO.builder()
-                    .customerId(customerId)
-                    .country(country)
-                    .recency((int) recency)
-                    .frequency((int) frequency)
-                    .monetary(monetary)
-                    .lastPurchaseDate(lastPurchase.toString())
-                    .avgOrderValue(avgOrderValue)
-                    .totalQuantity(totalQuantity)
-                    .build();
-            })
-            .collect(Collectors.toList());
+        List<? extends CustomerRfmProjection> aggregates = "sql".equals(rfmSource)
+            ? repository.aggregateRfmByCustomer()
+            : rfmAggregateService.getAggregates();
+        
+        List<RFMCustomerDTO> result = new ArrayList<>(aggregates.size());
+        for (CustomerRfmProjection aggregate : aggregates) {
+            // Tính Recency
+            LocalDateTime lastPurchase = aggregate.getLastPurchaseDate() != null
+                ? aggregate.getLastPurchaseDate()
+                : referenceDate;
+            long recency = ChronoUnit.DAYS.between(lastPurchase, referenceDate);
+            
+            // Frequency (số đơn hàng unique) và Monetary (tổng chi tiêu)
+            long frequency = aggregate.getInvoiceCount() != null ? aggregate.getInvoiceCount() : 0;
+            double monetary = aggregate.getMonetary() != null ? aggregate.getMonetary().doubleValue() : 0;
+            
+            // Avg order value
+            double avgOrderValue = frequency > 0 ? monetary / frequency : 0;
+            
+            // Total quantity
+            long totalQuantity = aggregate.getTotalQuantity() != null ? aggregate.getTotalQuantity() : 0;
+            
+            result.add(RFMCustomerDTO.builder()
+                .customerId(aggregate.getCustomerId())
+                .country(aggregate.getCountry())
+                .recency((int) recency)
+                .frequency((int) frequency)
+                .monetary(monetary)
+                .lastPurchaseDate(lastPurchase.toString())
+                .avgOrderValue(avgOrderValue)
+                .totalQuantity((int) totalQuantity)
+                .build());
+        }
         
         log.info("Calculated RFM for {} customers", result.size());
         return result;
     }
     
+    /**
+     * RFM từ store dạng cột: một vòng lặp primitive trên toàn bộ dòng
+     */
+    private List<RFMCustomerDTO> calculateRFM(RetailColumns columns, LocalDateTime referenceDate) {
+        int n = columns.size();
+        int[] customers = columns.customers();
+        int[] invoices = columns.invoices();
+        int[] countries = columns.countries();
+        int[] quantities = columns.quantities();
+        long[] prices = columns.unitPriceCents();
+        long[] dates = columns.invoiceEpochSeconds();
+        
+        int customerCount = columns.customerCount();
+        long[] lastPurchase = new long[customerCount];
+        Arrays.fill(lastPurchase, Long.MIN_VALUE);
+        int[] frequency = new int[customerCount];
+        long[] monetaryCents = new long[customerCount];
+        long[] totalQuantity = new long[customerCount];
+        int[] country = new int[customerCount];
+        Arrays.fill(country, -1);
+        
+        // Invoice thường thuộc một khách hàng; chỉ dùng set cho trường hợp hiếm có nhiều khách hàng
+        int[] invoiceOwner = new int[columns.invoiceCount()];
+        Arrays.fill(invoiceOwner, -1);
+        Set<Long> sharedInvoices = null;
+        
+        for (int i = 0; i < n; i++) {
+            int c = customers[i];
+            if (c == RetailColumns.NO_CUSTOMER) continue;
+            
+            if (country[c] < 0) country[c] = countries[i];
+            if (dates[i] > lastPurchase[c]) lastPurchase[c] = dates[i];
+            monetaryCents[c] += quantities[i] * prices[i];
+            totalQuantity[c] += quantities[i];
+            
+            int invoice = invoices[i];
+            int owner = invoiceOwner[invoice];
+            if (owner == -1) {
+                invoiceOwner[invoice] = c;
+                frequency[c]++;
+            } else if (owner != c) {
+                if (sharedInvoices == null) sharedInvoices = new HashSet<>();
+                if (sharedInvoices.add(((long) c << 32) | invoice)) frequency[c]++;
+            }
+        }
+        
+        List<RFMCustomerDTO> result = new ArrayList<>(customerCount);
+        for (int c = 0; c < customerCount; c++) {
+            if (lastPurchase[c] == Long.MIN_VALUE) continue;
+            
+            LocalDateTime lastPurchaseDate = RetailColumns.toDateTime(lastPurchase[c]);
+            long recency = ChronoUnit.DAYS.between(lastPurchaseDate, referenceDate);
+            double monetary = monetaryCents[c] / 100.0;
+            double avgOrderValue = frequency[c] > 0 ? monetary / frequency[c] : 0;
+            
+            result.add(RFMCustomerDTO.builder()
+                .customerId(columns.customerId(c))
+                .country(columns.country(country[c]))
+                .recency((int) recency)
+                .frequency(frequency[c])
+                .monetary(monetary)
+                .lastPurchaseDate(lastPurchaseDate.toString())
+                .avgOrderValue(avgOrderValue)
+                .totalQuantity((int) totalQuantity[c])
+                .build());
+        }
+        
+        log.info("Calculated RFM for {} customers from column store", result.size());
+        return result;
+    }
+    
     /**
      * Phân khúc khách hàng dựa trên RFM
      */
@@ -101,29 +174,20 @@ public class CustomerSegmentationService {
             return Collections.emptyList();
         }
         
-        // Tính quartiles cho R, F, M
-        List<Integer> recencies = rfmData.stream()
-            .map(RFMCustomerDTO::getRecency)
-            .sorted()
-            .collect(Collectors.toList());
-        List<Integer> frequencies = rfmData.stream()
-            .map(RFMCustomerDTO::getFrequency)
-            .sorted()
-            .collect(Collectors.toList());
-        List<Double> monetaries = rfmData.stream()
-            .map(RFMCustomerDTO::getMonetary)
-            .sorted()
-            .collect(Collectors.toList());
+        // Tính quartiles cho R, F, M (exact trên mảng primitive hoặc KLL sketch)
+        double[] cuts = useQuantileSketch(rfmData.size())
+            ? sketchQuartiles(rfmData)
+            : exactQuartiles(rfmData);
         
-        double recencyQ25 = percentile(recencies, 25);
-        double recencyQ50 = percentile(recencies, 50);
-        double recencyQ75 = percentile(recencies, 75);
+        double recencyQ25 = cuts[0];
+        double recencyQ50 = cuts[1];
+        double recencyQ75 = cuts[2];
         
-        double frequencyQ25 = percentile(frequencies, 25);
-        double frequencyQ50 = percentile(frequencies, 50);
-        double frequencyQ75 = percentile(frequencies, 75);
+        double frequencyQ25 = cuts[3];
+        double frequencyQ50 = cuts[4];
+        double frequencyQ75 = cuts[5];
         
-        double monetaryQ75 = percentile(monetaries, 75);
+        double monetaryQ75 = cuts[6];
         
         // Gán segment cho từng khách hàng
         rfmData.forEach(customer -> {
@@ -202,11 +266,71 @@ public class CustomerSegmentationService {
     
     // Helper methods
     
-    private double percentile(List<? extends Number> sortedList, int percentile) {
-        if (sortedList.isEmpty()) return 0;
-        int index = (int) Math.ceil(percentile / 100.0 * sortedList.size()) - 1;
-        index = Math.max(0, Math.min(index, sortedList.size() - 1));
-        return sortedList.get(index).doubleValue();
+    private boolean useQuantileSketch(int size) {
+        switch (quantileMode) {
+            case "exact": return false;
+            case "sketch": return true;
+            default: return size > exactQuantileMaxSize; // auto
+        }
+    }
+    
+    /**
+     * Quartiles chính xác: 3 mảng primitive + Arrays.sort, không boxing
+     */
+    private double[] exactQuartiles(List<RFMCustomerDTO> rfmData) {
+        int n = rfmData.size();
+        int[] recencies = new int[n];
+        int[] frequencies = new int[n];
+        double[] monetaries = new double[n];
+        for (int i = 0; i < n; i++) {
+            RFMCustomerDTO customer = rfmData.get(i);
+            recencies[i] = customer.getRecency();
+            frequencies[i] = customer.getFrequency();
+            monetaries[i] = customer.getMonetary();
+        }
+        Arrays.sort(recencies);
+        Arrays.sort(frequencies);
+        Arrays.sort(monetaries);
+        
+        return new double[] {
+            recencies[percentileIndex(n, 25)],
+            recencies[percentileIndex(n, 50)],
+            recencies[percentileIndex(n, 75)],
+            frequencies[percentileIndex(n, 25)],
+            frequencies[percentileIndex(n, 50)],
+            frequencies[percentileIndex(n, 75)],
+            monetaries[percentileIndex(n, 75)]
+        };
+    }
+    
+    /**
+     * Quartiles xấp xỉ: một lượt duyệt, bộ nhớ giới hạn bởi sketchK
+     */
+    private double[] sketchQuartiles(List<RFMCustomerDTO> rfmData) {
+        KllQuantileSketch recencies = new KllQuantileSketch(sketchK);
+        KllQuantileSketch frequencies = new KllQuantileSketch(sketchK);
+        KllQuantileSketch monetaries = new KllQuantileSketch(sketchK);
+        for (RFMCustomerDTO customer : rfmData) {
+            recencies.update(customer.getRecency());
+            frequencies.update(customer.getFrequency());
+            monetaries.update(customer.getMonetary());
+        }
+        
+        return new double[] {
+            recencies.quantile(0.25),
+            recencies.quantile(0.50),
+            recencies.quantile(0.75),
+            frequencies.quantile(0.25),
+            frequencies.quantile(0.50),
+            frequencies.quantile(0.75),
+            monetaries.quantile(0.75)
+        };
+    }
+    
+    // Nearest-rank index, giống cách tính percentile trước đây
+    private int percentileIndex(int size, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * size) - 1;
+        return Math.max(0, Math.min(index, size - 1));
     }
     
     private String determineSegment(
@@ -0,0 +1,249 @@
+package com.g5.dss.service;
+
+import com.g5.dss.domain.mongo.AsyncJob;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hàng đợi job bền vững trên collection async_jobs (async.queue.mode=mongo)
+ * Node bất kỳ claim job bằng findAndModify nguyên tử: job PENDING hoặc PROCESSING đã hết lease;
+ * node đang chạy gia hạn lease định kỳ, node chết thì job được node khác chạy lại (tối đa max-attempts lần)
+ * Mọi cập nhật của worker đều kèm điều kiện owner + attempts + PROCESSING nên worker mất lease / job bị hủy
+ * không ghi đè; attempts là fencing token, kể cả khi node claim lại chính job của mình lúc worker cũ còn chạy
+ * Mode "local" (mặc định, dùng cho test) không đụng tới Mongo
+ */
+@Service
+@Slf4j
+public class DurableJobQueue {
+
+    public static final String PENDING = "PENDING";
+    public static final String PROCESSING = "PROCESSING";
+    public static final String COMPLETED = "COMPLETED";
+    public static final String FAILED = "FAILED";
+    public static final String CANCELLED = "CANCELLED";
+
+    private static final List<String> FINISHED = List.of(COMPLETED, FAILED, CANCELLED);
+
+    private final MongoTemplate mongoTemplate;
+    private final boolean enabled;
+    private final String nodeId;
+
+    @Value("${async.queue.lease-ms:30000}")
+    private long leaseMs;
+
+    @Value("${async.queue.max-attempts:3}")
+    private int maxAttempts;
+
+    // Job đã xong được TTL index xóa sau khoảng này
+    @Value("${async.task-store.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    public DurableJobQueue(
+        MongoTemplate mongoTemplate,
+        @Value("${async.queue.mode:local}") String mode,
+        @Value("${async.queue.node-id:}") String nodeId
+    ) {
+        this.mongoTemplate = mongoTemplate;
+        this.enabled = "mongo".equalsIgnoreCase(mode);
+        this.nodeId = nodeId != null && !nodeId.isBlank() ? nodeId : ManagementFactory.getRuntimeMXBean().getName();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public long getLeaseMs() {
+        return leaseMs;
+    }
+
+    /**
+     * Index cho claim (status, type, submittedAt), cho event watcher (updatedAt) và TTL cho job đã xong
+     */
+    public void ensureIndexes() {
+        IndexOperations indexes = mongoTemplate.indexOps(AsyncJob.class);
+        indexes.createIndex(new Index()
+            .on("status", Sort.Direction.ASC)
+            .on("type", Sort.Direction.ASC)
+            .on("submittedAt", Sort.Direction.ASC));
+        indexes.createIndex(new Index().on("updatedAt", Sort.Direction.ASC));
+        indexes.createIndex(new Index().on("expireAt", Sort.Direction.ASC).expire(Duration.ZERO));
+    }
+
+    public void enqueue(String taskId, String type, String executor, String payload, String submittedBy) {
+        AsyncJob job = new AsyncJob();
+        job.setId(taskId);
+        job.setType(type);
+        job.setExecutor(executor);
+        job.setPayload(payload);
+        job.setSubmittedBy(submittedBy);
+        job.setStatus(PENDING);
+        job.setProgress(0);
+        job.setMessage("Task submitted successfully");
+        job.setAttempts(0);
+        job.setSubmittedAt(LocalDateTime.now());
+        job.setUpdatedAt(Instant.now());
+        mongoTemplate.insert(job);
+    }
+
+    /**
+     * Claim job cũ nhất thuộc các type cho node này, null nếu không có
+     */
+    public AsyncJob claim(Collection<String> types) {
+        Instant now = Instant.now();
+        Criteria claimable = new Criteria().orOperator(
+            Criteria.where("status").is(PENDING),
+            Criteria.where("status").is(PROCESSING).and("leaseUntil").lt(now)
+        );
+        Query query = new Query(new Criteria().andOperator(
+            claimable,
+            Criteria.where("type").in(types),
+            Criteria.where("attempts").lt(maxAttempts)
+        )).with(Sort.by(Sort.Direction.ASC, "submittedAt"));
+        Update update = new Update()
+            .set("status", PROCESSING)
+            .set("owner", nodeId)
+            .set("leaseUntil", now.plusMillis(leaseMs))
+            .set("startedAt", LocalDateTime.now())
+            .set("progress", 10)
+            .set("message", "Task is being processed")
+            .set("updatedAt", now)
+            .inc("attempts", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), AsyncJob.class);
+    }
+
+    /**
+     * Gia hạn lease; false nếu lượt chạy này không còn giữ job (bị hủy hoặc đã được claim lại)
+     */
+    public boolean heartbeat(String taskId, int attempt) {
+        return updateOwned(taskId, attempt, new Update().set("leaseUntil", Instant.now().plusMillis(leaseMs)));
+    }
+
+    public void progress(String taskId, int attempt, int percent) {
+        updateOwned(taskId, attempt, new Update().set("progress", percent).set("updatedAt", Instant.now()));
+    }
+
+    public boolean complete(String taskId, int attempt, String result) {
+        return updateOwned(taskId, attempt, finish(COMPLETED, "Task completed successfully")
+            .set("result", result)
+            .set("progress", 100));
+    }
+
+    public boolean fail(String taskId, int attempt, String error) {
+        return updateOwned(taskId, attempt, finish(FAILED, "Task failed").set("errorMessage", error));
+    }
+
+    /**
+     * Hủy job chưa xong (từ node bất kỳ); node đang chạy thấy ở lần heartbeat sau
+     */
+    public boolean cancel(String taskId) {
+        Query query = Query.query(Criteria.where("_id").is(taskId).and("status").in(PENDING, PROCESSING));
+        return mongoTemplate.updateFirst(query, finish(CANCELLED, "Task was cancelled by user"), AsyncJob.class)
+            .getModifiedCount() > 0;
+    }
+
+    /**
+     * PROCESSING hết lease và đã hết lượt thử (node chết nhiều lần) thì đánh dấu FAILED
+     */
+    public long failExhausted() {
+        Query query = Query.query(Criteria.where("status").is(PROCESSING)
+            .and("leaseUntil").lt(Instant.now())
+            .and("attempts").gte(maxAttempts));
+        return mongoTemplate.updateMulti(query,
+            finish(FAILED, "Task failed").set("errorMessage", "Worker lease expired after " + maxAttempts + " attempts"),
+            AsyncJob.class).getModifiedCount();
+    }
+
+    public AsyncJob find(String taskId) {
+        return mongoTemplate.findById(taskId, AsyncJob.class);
+    }
+
+    /**
+     * Job đổi trạng thái / progress từ since (gồm cả since), không kèm payload / result
+     */
+    public List<AsyncJob> findUpdatedSince(Instant since, int limit) {
+        Query query = Query.query(Criteria.where("updatedAt").gte(since))
+            .with(Sort.by(Sort.Direction.ASC, "updatedAt"))
+            .limit(limit);
+        query.fields().exclude("payload").exclude("result");
+        return mongoTemplate.find(query, AsyncJob.class);
+    }
+
+    /**
+     * Job mới nhất, không kèm payload / result
+     */
+    public List<AsyncJob> findRecent(int limit) {
+        Query query = new Query().with(Sort.by(Sort.Direction.DESC, "submittedAt")).limit(limit);
+        query.fields().exclude("payload").exclude("result");
+        return mongoTemplate.find(query, AsyncJob.class);
+    }
+
+    public boolean remove(String taskId) {
+        Query query = Query.query(Criteria.where("_id").is(taskId).and("status").in(FINISHED));
+        return mongoTemplate.remove(query, AsyncJob.class).getDeletedCount() > 0;
+    }
+
+    public long clearFinished() {
+        return mongoTemplate.remove(Query.query(Criteria.where("status").in(FINISHED)), AsyncJob.class)
+            .getDeletedCount();
+    }
+
+    /**
+     * Số job theo trạng thái trong một lượt $group (sort + project theo status để dùng index status_...)
+     */
+    public Map<String, Long> countByStatus() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (String status : List.of(PENDING, PROCESSING, COMPLETED, FAILED, CANCELLED)) {
+            counts.put(status, 0L);
+        }
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.sort(Sort.Direction.ASC, "status"),
+            Aggregation.project("status").andExclude("_id"),
+            Aggregation.group("status").count().as("count"));
+        for (Document row : mongoTemplate.aggregate(aggregation, AsyncJob.class, Document.class)) {
+            counts.put(row.getString("_id"), ((Number) row.get("count")).longValue());
+        }
+        return counts;
+    }
+
+    private boolean updateOwned(String taskId, int attempt, Update update) {
+        Query query = Query.query(Criteria.where("_id").is(taskId)
+            .and("owner").is(nodeId)
+            .and("attempts").is(attempt)
+            .and("status").is(PROCESSING));
+        return mongoTemplate.updateFirst(query, update, AsyncJob.class).getModifiedCount() > 0;
+    }
+
+    private Update finish(String status, String message) {
+        return new Update()
+            .set("status", status)
+            .set("message", message)
+            .set("completedAt", LocalDateTime.now())
+            .set("updatedAt", Instant.now())
+            .set("expireAt", Instant.now().plus(Duration.ofMinutes(ttlMinutes)))
+            .unset("leaseUntil");
+    }
+}
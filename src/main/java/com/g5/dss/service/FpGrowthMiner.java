@@ -0,0 +1,471 @@
+package com.g5.dss.service;
+
+import com.g5.dss.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * FP-Growth trên giỏ hàng đã mã hóa int (InvoiceBaskets)
+ * Cây được build trong 2 lượt: đếm support từng sản phẩm, rồi chèn giỏ (chỉ giữ sản phẩm đủ support)
+ * Ngưỡng support được áp dụng ngay khi build cây và cây điều kiện, nên itemset không đủ support
+ * không bao giờ được sinh ra; confidence được kiểm tra khi sinh luật từ bảng support
+ * Số itemset phổ biến bị giới hạn (maxItemsets): vượt quá thì dừng khai phá với IllegalArgumentException
+ */
+final class FpGrowthMiner {
+
+    /**
+     * Nhận một luật antecedent -> consequent cùng các support (số giỏ)
+     */
+    @FunctionalInterface
+    interface RuleSink {
+        void accept(int[] antecedent, int consequent, int support, int antecedentSupport, int consequentSupport);
+    }
+
+    // Số giỏ tối thiểu của một shard, và số shard mong muốn trên mỗi luồng
+    private static final int MIN_SHARD_SIZE = 2048;
+    private static final int SHARDS_PER_THREAD = 4;
+
+    private final int minCount;
+    private final int maxItemsetSize;
+    private final int maxItemsets;
+    private final int universe;
+
+    // Số itemset đã sinh, dùng chung giữa các task khai phá song song
+    private final AtomicInteger mined;
+
+    // Support của mọi itemset phổ biến (itemset sắp xếp tăng dần)
+    private final Map<Itemset, Integer> supports = new HashMap<>();
+
+    private FpGrowthMiner(int minCount, int maxItemsetSize, int maxItemsets, int universe, AtomicInteger mined) {
+        this.minCount = minCount;
+        this.maxItemsetSize = maxItemsetSize;
+        this.maxItemsets = maxItemsets;
+        this.universe = universe;
+        this.mined = mined;
+    }
+
+    /**
+     * Khai phá các itemset có support >= minCount giỏ và kích thước <= maxItemsetSize trên pool
+     * Support sản phẩm (và cặp sản phẩm khi maxItemsetSize <= 2) được đếm theo từng shard giỏ
+     * rồi gộp lại; itemset lớn hơn được khai phá song song theo từng sản phẩm ở gốc cây
+     *
+     * @throws IllegalArgumentException khi số itemset phổ biến vượt quá maxItemsets
+     */
+    static FpGrowthMiner mine(InvoiceBaskets baskets, int minCount, int maxItemsetSize, int maxItemsets,
+            ForkJoinPool pool) {
+        FpGrowthMiner miner = new FpGrowthMiner(Math.max(1, minCount), Math.max(1, maxItemsetSize),
+            maxItemsets, baskets.itemCount(), new AtomicInteger());
+        int[] offsets = baskets.offsets();
+        int[] items = baskets.items();
+        int basketCount = baskets.basketCount();
+        int shardSize = Math.max(MIN_SHARD_SIZE, basketCount / (pool.getParallelism() * SHARDS_PER_THREAD) + 1);
+
+        int[] itemSupports = pool.invoke(new ItemCountTask(offsets, items, miner.universe, 0, basketCount, shardSize));
+
+        if (miner.maxItemsetSize <= 2) {
+            // Chỉ cần cặp: đếm trực tiếp, không cần cây
+            boolean[] frequent = new boolean[miner.universe];
+            for (int item = 0; item < miner.universe; item++) {
+                if (itemSupports[item] >= miner.minCount) {
+                    frequent[item] = true;
+                    miner.count();
+                    miner.supports.put(new Itemset(new int[] {item}), itemSupports[item]);
+                }
+            }
+            if (miner.maxItemsetSize == 2) {
+                LongIntHashMap pairs = pool.invoke(new PairCountTask(offsets, items, frequent, 0, basketCount, shardSize));
+                pairs.forEach((key, count) -> {
+                    if (count >= miner.minCount) {
+                        miner.count();
+                        miner.supports.put(new Itemset(new int[] {(int) (key >>> 32), (int) key}), count);
+                    }
+                });
+            }
+            return miner;
+        }
+
+        FpTree tree = FpTree.build(offsets, items, null, itemSupports, miner.universe, miner.minCount);
+        if (tree.rankItem.length > 0) {
+            miner.supports.putAll(pool.invoke(new RankMineTask(miner, tree, 0, tree.rankItem.length)));
+        }
+        return miner;
+    }
+
+    private void count() {
+        if (mined.incrementAndGet() > maxItemsets) {
+            throw new IllegalArgumentException("More than " + maxItemsets
+                + " frequent itemsets; raise minSupport or lower maxItemsetSize");
+        }
+    }
+
+    int itemsetCount() {
+        return supports.size();
+    }
+
+    /**
+     * Sinh luật X -> y (y là một sản phẩm) từ mọi itemset phổ biến có >= 2 phần tử,
+     * chỉ giữ luật có confidence (%) >= minConfidence
+     */
+    void forEachRule(double minConfidence, RuleSink sink) {
+        for (Map.Entry<Itemset, Integer> entry : supports.entrySet()) {
+            int[] itemset = entry.getKey().items;
+            if (itemset.length < 2) {
+                continue;
+            }
+            int support = entry.getValue();
+            for (int j = 0; j < itemset.length; j++) {
+                int[] antecedent = new int[itemset.length - 1];
+                System.arraycopy(itemset, 0, antecedent, 0, j);
+                System.arraycopy(itemset, j + 1, antecedent, j, itemset.length - j - 1);
+
+                // Tập con của itemset phổ biến cũng phổ biến nên luôn có trong bảng
+                int antecedentSupport = supports.get(new Itemset(antecedent));
+                if ((double) support / antecedentSupport * 100 < minConfidence) {
+                    continue;
+                }
+                int consequentSupport = supports.get(new Itemset(new int[] {itemset[j]}));
+                sink.accept(antecedent, itemset[j], support, antecedentSupport, consequentSupport);
+            }
+        }
+    }
+
+    private void mine(FpTree tree, int[] suffix) {
+        // Duyệt từ sản phẩm ít phổ biến nhất lên (chiều từ lá về gốc)
+        for (int rank = tree.rankItem.length - 1; rank >= 0; rank--) {
+            mineRank(tree, rank, suffix);
+        }
+    }
+
+    private void mineRank(FpTree tree, int rank, int[] suffix) {
+        int[] itemset = Arrays.copyOf(suffix, suffix.length + 1);
+        itemset[suffix.length] = tree.rankItem[rank];
+        int[] key = itemset.clone();
+        Arrays.sort(key);
+        count();
+        supports.put(new Itemset(key), tree.rankSupport[rank]);
+
+        if (itemset.length < maxItemsetSize) {
+            FpTree conditional = tree.conditionalTree(rank, universe, minCount);
+            if (conditional.rankItem.length > 0) {
+                mine(conditional, itemset);
+            }
+        }
+    }
+
+    /**
+     * Support theo sản phẩm trên khoảng giỏ [from, to); mỗi shard có mảng đếm riêng
+     */
+    private static final class ItemCountTask extends RecursiveTask<int[]> {
+
+        private final int[] offsets;
+        private final int[] items;
+        private final int universe;
+        private final int from;
+        private final int to;
+        private final int shardSize;
+
+        ItemCountTask(int[] offsets, int[] items, int universe, int from, int to, int shardSize) {
+            this.offsets = offsets;
+            this.items = items;
+            this.universe = universe;
+            this.from = from;
+            this.to = to;
+            this.shardSize = shardSize;
+        }
+
+        @Override
+        protected int[] compute() {
+            if (to - from <= shardSize) {
+                int[] counts = new int[universe];
+                for (int i = offsets[from]; i < offsets[to]; i++) {
+                    counts[items[i]]++;
+                }
+                return counts;
+            }
+            int middle = (from + to) >>> 1;
+            ItemCountTask left = new ItemCountTask(offsets, items, universe, from, middle, shardSize);
+            left.fork();
+            int[] counts = new ItemCountTask(offsets, items, universe, middle, to, shardSize).compute();
+            int[] other = left.join();
+            for (int item = 0; item < universe; item++) {
+                counts[item] += other[item];
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * Support theo cặp sản phẩm phổ biến (a < b, key = a << 32 | b) trên khoảng giỏ [from, to)
+     * Mỗi shard đếm vào bảng băm primitive riêng, gộp bảng nhỏ vào bảng lớn khi join
+     */
+    private static final class PairCountTask extends RecursiveTask<LongIntHashMap> {
+
+        private final int[] offsets;
+        private final int[] items;
+        private final boolean[] frequent;
+        private final int from;
+        private final int to;
+        private final int shardSize;
+
+        PairCountTask(int[] offsets, int[] items, boolean[] frequent, int from, int to, int shardSize) {
+            this.offsets = offsets;
+            this.items = items;
+            this.frequent = frequent;
+            this.from = from;
+            this.to = to;
+            this.shardSize = shardSize;
+        }
+
+        @Override
+        protected LongIntHashMap compute() {
+            if (to - from <= shardSize) {
+                LongIntHashMap counts = new LongIntHashMap(1024);
+                int[] present = new int[16];
+                for (int b = from; b < to; b++) {
+                    int k = 0;
+                    for (int i = offsets[b]; i < offsets[b + 1]; i++) {
+                        if (frequent[items[i]]) {
+                            if (k == present.length) {
+                                present = Arrays.copyOf(present, k * 2);
+                            }
+                            present[k++] = items[i];
+                        }
+                    }
+                    // Items trong giỏ đã sắp xếp tăng dần nên x < y
+                    for (int x = 0; x < k; x++) {
+                        long high = (long) present[x] << 32;
+                        for (int y = x + 1; y < k; y++) {
+                            counts.addTo(high | present[y], 1);
+                        }
+                    }
+                }
+                return counts;
+            }
+            int middle = (from + to) >>> 1;
+            PairCountTask left = new PairCountTask(offsets, items, frequent, from, middle, shardSize);
+            left.fork();
+            LongIntHashMap right = new PairCountTask(offsets, items, frequent, middle, to, shardSize).compute();
+            LongIntHashMap leftCounts = left.join();
+            LongIntHashMap larger = leftCounts.size() >= right.size() ? leftCounts : right;
+            LongIntHashMap smaller = larger == leftCounts ? right : leftCounts;
+            smaller.forEach(larger::addTo);
+            return larger;
+        }
+    }
+
+    /**
+     * Khai phá các rank [from, to) của cây gốc; mỗi rank dùng bảng support riêng rồi gộp
+     * Cây chỉ được đọc nên các task dùng chung được
+     */
+    private static final class RankMineTask extends RecursiveTask<Map<Itemset, Integer>> {
+
+        private final FpGrowthMiner config;
+        private final FpTree tree;
+        private final int from;
+        private final int to;
+
+        RankMineTask(FpGrowthMiner config, FpTree tree, int from, int to) {
+            this.config = config;
+            this.tree = tree;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Map<Itemset, Integer> compute() {
+            if (to - from == 1) {
+                FpGrowthMiner local = new FpGrowthMiner(
+                    config.minCount, config.maxItemsetSize, config.maxItemsets, config.universe, config.mined);
+                local.mineRank(tree, from, new int[0]);
+                return local.supports;
+            }
+            int middle = (from + to) >>> 1;
+            RankMineTask left = new RankMineTask(config, tree, from, middle);
+            left.fork();
+            Map<Itemset, Integer> right = new RankMineTask(config, tree, middle, to).compute();
+            Map<Itemset, Integer> leftSupports = left.join();
+            if (leftSupports.size() >= right.size()) {
+                leftSupports.putAll(right);
+                return leftSupports;
+            }
+            right.putAll(leftSupports);
+            return right;
+        }
+    }
+
+    /**
+     * FP-tree lưu bằng mảng song song; node 0 là gốc
+     * Item trong cây là hạng (rank) theo support giảm dần, rankItem đổi về mã sản phẩm
+     */
+    private static final class FpTree {
+
+        final int[] rankItem;
+        final int[] rankSupport;
+        final int[] headFirst;  // node đầu tiên của chuỗi node-link theo rank
+
+        int[] nodeRank = new int[64];
+        int[] nodeCount = new int[64];
+        int[] nodeParent = new int[64];
+        int[] nodeLink = new int[64];
+        int nodes = 1;
+
+        private FpTree(int[] rankItem, int[] rankSupport) {
+            this.rankItem = rankItem;
+            this.rankSupport = rankSupport;
+            this.headFirst = new int[rankItem.length];
+            Arrays.fill(headFirst, -1);
+            nodeRank[0] = -1;
+            nodeParent[0] = -1;
+        }
+
+        /**
+         * Build cây từ các giao dịch dạng CSR (weights null = mỗi giao dịch trọng số 1)
+         * support: support theo sản phẩm nếu đã đếm trước (null = đếm ở lượt 1)
+         */
+        static FpTree build(int[] offsets, int[] items, int[] weights, int[] support, int universe, int minCount) {
+            int transactions = offsets.length - 1;
+
+            // Lượt 1: support theo sản phẩm
+            if (support == null) {
+                support = new int[universe];
+                for (int t = 0; t < transactions; t++) {
+                    int weight = weights != null ? weights[t] : 1;
+                    for (int i = offsets[t]; i < offsets[t + 1]; i++) {
+                        support[items[i]] += weight;
+                    }
+                }
+            }
+
+            // Sắp xếp sản phẩm đủ support theo support giảm dần (hòa thì theo mã)
+            int frequent = 0;
+            long[] order = new long[universe];
+            for (int item = 0; item < universe; item++) {
+                if (support[item] >= minCount) {
+                    order[frequent++] = ((long) (Integer.MAX_VALUE - support[item]) << 32) | item;
+                }
+            }
+            Arrays.sort(order, 0, frequent);
+            int[] rankItem = new int[frequent];
+            int[] rankSupport = new int[frequent];
+            int[] rankOf = new int[universe];
+            Arrays.fill(rankOf, -1);
+            for (int r = 0; r < frequent; r++) {
+                rankItem[r] = (int) order[r];
+                rankSupport[r] = support[rankItem[r]];
+                rankOf[rankItem[r]] = r;
+            }
+
+            FpTree tree = new FpTree(rankItem, rankSupport);
+            if (frequent == 0) {
+                return tree;
+            }
+
+            // Lượt 2: chèn giao dịch đã lọc, sắp theo rank
+            LongIntHashMap children = new LongIntHashMap(Math.max(16, frequent * 4));
+            int[] path = new int[frequent];
+            for (int t = 0; t < transactions; t++) {
+                int length = 0;
+                for (int i = offsets[t]; i < offsets[t + 1]; i++) {
+                    int rank = rankOf[items[i]];
+                    if (rank >= 0) {
+                        path[length++] = rank;
+                    }
+                }
+                if (length > 0) {
+                    Arrays.sort(path, 0, length);
+                    tree.insert(path, length, weights != null ? weights[t] : 1, children);
+                }
+            }
+            return tree;
+        }
+
+        private void insert(int[] path, int length, int weight, LongIntHashMap children) {
+            int node = 0;
+            for (int i = 0; i < length; i++) {
+                int rank = path[i];
+                long key = (long) node * rankItem.length + rank;
+                int child = children.get(key, -1);
+                if (child < 0) {
+                    child = newNode(rank, node);
+                    children.put(key, child);
+                }
+                nodeCount[child] += weight;
+                node = child;
+            }
+        }
+
+        private int newNode(int rank, int parent) {
+            if (nodes == nodeRank.length) {
+                int capacity = nodes * 2;
+                nodeRank = Arrays.copyOf(nodeRank, capacity);
+                nodeCount = Arrays.copyOf(nodeCount, capacity);
+                nodeParent = Arrays.copyOf(nodeParent, capacity);
+                nodeLink = Arrays.copyOf(nodeLink, capacity);
+            }
+            int node = nodes++;
+            nodeRank[node] = rank;
+            nodeParent[node] = parent;
+            nodeLink[node] = headFirst[rank];
+            headFirst[rank] = node;
+            return node;
+        }
+
+        /**
+         * Cây điều kiện của rank: các đường tiền tố (từ cha đến gốc) của mọi node mang rank,
+         * trọng số bằng count của node
+         */
+        FpTree conditionalTree(int rank, int universe, int minCount) {
+            int paths = 0;
+            int totalItems = 0;
+            for (int node = headFirst[rank]; node >= 0; node = nodeLink[node]) {
+                paths++;
+                for (int p = nodeParent[node]; p > 0; p = nodeParent[p]) {
+                    totalItems++;
+                }
+            }
+
+            int[] offsets = new int[paths + 1];
+            int[] items = new int[totalItems];
+            int[] weights = new int[paths];
+            int t = 0;
+            int cursor = 0;
+            for (int node = headFirst[rank]; node >= 0; node = nodeLink[node]) {
+                weights[t] = nodeCount[node];
+                for (int p = nodeParent[node]; p > 0; p = nodeParent[p]) {
+                    items[cursor++] = rankItem[nodeRank[p]];
+                }
+                offsets[++t] = cursor;
+            }
+            return build(offsets, items, weights, null, universe, minCount);
+        }
+    }
+
+    /**
+     * Khóa itemset (mảng đã sắp xếp) cho bảng support
+     */
+    private static final class Itemset {
+
+        private final int[] items;
+        private final int hash;
+
+        Itemset(int[] items) {
+            this.items = items;
+            this.hash = Arrays.hashCode(items);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Itemset other && Arrays.equals(items, other.items);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -2,7 +2,6 @@ package com.g5.dss.service;
 
 import com.g5.dss.dto.AnomalyDTO;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.HashMap;
 import java.util.List;
@@ -12,12 +11,10 @@ import java.util.Map;
 public class InventoryService {
 
     @SuppressWarnings("unused")
-    private final RestTemplate restTemplate;
-    @SuppressWarnings("unused")
-    private static final String MODEL_SERVICE_URL = "http://localhost:8000";
+    private final ModelServiceClient modelService;
 
-    public InventoryService() {
-        this.restTemplate = new RestTemplate();
+    public InventoryService(ModelServiceClient modelService) {
+        this.modelService = modelService;
     }
 
     public List<AnomalyDTO> detectAnomalies() {
@@ -0,0 +1,229 @@
+package com.g5.dss.service;
+
+import com.g5.dss.util.ValueDictionary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Giỏ hàng theo invoice ở dạng CSR: items[offsets[b] .. offsets[b+1]) là các mã sản phẩm
+ * (đã mã hóa int, sắp xếp tăng dần, không trùng) của giỏ b
+ */
+class InvoiceBaskets {
+
+    static final InvoiceBaskets EMPTY = new InvoiceBaskets(
+        new int[] {0}, new int[0], new int[0], code -> null, code -> null);
+
+    private final int[] offsets;
+    private final int[] items;
+    // Số dòng (line) theo sản phẩm, kể cả dòng trùng trong cùng invoice
+    private final int[] lineCounts;
+    private final IntFunction<String> stockCodes;
+    private final IntFunction<String> descriptions;
+
+    InvoiceBaskets(
+        int[] offsets,
+        int[] items,
+        int[] lineCounts,
+        IntFunction<String> stockCodes,
+        IntFunction<String> descriptions
+    ) {
+        this.offsets = offsets;
+        this.items = items;
+        this.lineCounts = lineCounts;
+        this.stockCodes = stockCodes;
+        this.descriptions = descriptions;
+    }
+
+    int basketCount() {
+        return offsets.length - 1;
+    }
+
+    int itemCount() {
+        return lineCounts.length;
+    }
+
+    int[] offsets() {
+        return offsets;
+    }
+
+    int[] items() {
+        return items;
+    }
+
+    int[] lineCounts() {
+        return lineCounts;
+    }
+
+    String stockCode(int item) {
+        return stockCodes.apply(item);
+    }
+
+    String description(int item) {
+        String description = descriptions.apply(item);
+        return description != null ? description : stockCodes.apply(item);
+    }
+
+    boolean isEmpty() {
+        return basketCount() == 0;
+    }
+
+    /**
+     * Build từ store dạng cột, lọc theo tập khách hàng (null = tất cả)
+     */
+    static InvoiceBaskets fromColumns(RetailColumns columns, Set<Integer> customerIds) {
+        int n = columns.size();
+        int[] invoices = columns.invoices();
+        int[] stockCodes = columns.stockCodes();
+        int[] customers = columns.customers();
+
+        boolean[] customerMask = null;
+        if (customerIds != null) {
+            customerMask = new boolean[columns.customerCount()];
+            for (Integer customerId : customerIds) {
+                int index = columns.customerIndex(customerId);
+                if (index >= 0 && index < customerMask.length) {
+                    customerMask[index] = true;
+                }
+            }
+        }
+
+        // Pass 1: số dòng theo invoice
+        int invoiceCount = columns.invoiceCount();
+        int[] linesPerInvoice = new int[invoiceCount];
+        int[] lineCounts = new int[columns.stockCodeCount()];
+        for (int i = 0; i < n; i++) {
+            if (customerMask != null
+                && (customers[i] == RetailColumns.NO_CUSTOMER || !customerMask[customers[i]])) {
+                continue;
+            }
+            linesPerInvoice[invoices[i]]++;
+            lineCounts[stockCodes[i]]++;
+        }
+
+        // Chỉ giữ các invoice có dòng, đánh lại số giỏ liên tục
+        int[] basketOf = new int[invoiceCount];
+        int basketCount = 0;
+        int totalLines = 0;
+        for (int inv = 0; inv < invoiceCount; inv++) {
+            if (linesPerInvoice[inv] > 0) {
+                basketOf[inv] = basketCount++;
+                totalLines += linesPerInvoice[inv];
+            } else {
+                basketOf[inv] = -1;
+            }
+        }
+        int[] offsets = new int[basketCount + 1];
+        for (int inv = 0; inv < invoiceCount; inv++) {
+            if (basketOf[inv] >= 0) {
+                offsets[basketOf[inv] + 1] = linesPerInvoice[inv];
+            }
+        }
+        for (int b = 0; b < basketCount; b++) {
+            offsets[b + 1] += offsets[b];
+        }
+
+        // Pass 2: điền sản phẩm vào giỏ
+        int[] items = new int[totalLines];
+        int[] cursor = Arrays.copyOf(offsets, basketCount);
+        for (int i = 0; i < n; i++) {
+            if (customerMask != null
+                && (customers[i] == RetailColumns.NO_CUSTOMER || !customerMask[customers[i]])) {
+                continue;
+            }
+            items[cursor[basketOf[invoices[i]]]++] = stockCodes[i];
+        }
+
+        return dedupe(offsets, items, lineCounts, columns::stockCode, columns::description);
+    }
+
+    /**
+     * Gom từng dòng (invoiceNo, stockCode) theo thứ tự bất kỳ, ví dụ khi đọc stream từ MySQL
+     * Mỗi dòng chỉ tốn 2 int; CSR được dựng bằng counting sort ở build()
+     */
+    static class Builder {
+        
+        private final ValueDictionary<String> invoiceDictionary = new ValueDictionary<>();
+        private final ValueDictionary<String> stockCodeDictionary = new ValueDictionary<>();
+        private int[] lineInvoices = new int[1024];
+        private int[] lineItems = new int[1024];
+        private int lines;
+        
+        void add(String invoiceNo, String stockCode) {
+            if (lines == lineInvoices.length) {
+                lineInvoices = Arrays.copyOf(lineInvoices, lines * 2);
+                lineItems = Arrays.copyOf(lineItems, lines * 2);
+            }
+            lineInvoices[lines] = invoiceDictionary.encode(invoiceNo);
+            lineItems[lines] = stockCodeDictionary.encode(stockCode);
+            lines++;
+        }
+        
+        /**
+         * descriptions: tra mô tả theo stockCode (gọi một lần cho toàn bộ mã)
+         */
+        InvoiceBaskets build(Function<Collection<String>, Map<String, String>> descriptions) {
+            if (lines == 0) {
+                return EMPTY;
+            }
+            int basketCount = invoiceDictionary.size();
+            int[] offsets = new int[basketCount + 1];
+            int[] lineCounts = new int[stockCodeDictionary.size()];
+            for (int i = 0; i < lines; i++) {
+                offsets[lineInvoices[i] + 1]++;
+                lineCounts[lineItems[i]]++;
+            }
+            for (int b = 0; b < basketCount; b++) {
+                offsets[b + 1] += offsets[b];
+            }
+            int[] items = new int[lines];
+            int[] cursor = Arrays.copyOf(offsets, basketCount);
+            for (int i = 0; i < lines; i++) {
+                items[cursor[lineInvoices[i]]++] = lineItems[i];
+            }
+            
+            List<String> stockCodes = new ArrayList<>(stockCodeDictionary.size());
+            for (int code = 0; code < stockCodeDictionary.size(); code++) {
+                stockCodes.add(stockCodeDictionary.decode(code));
+            }
+            Map<String, String> stockToDesc = descriptions.apply(stockCodes);
+            return dedupe(offsets, items, lineCounts, stockCodeDictionary::decode,
+                code -> stockToDesc.get(stockCodeDictionary.decode(code)));
+        }
+    }
+    
+    /**
+     * Sắp xếp và bỏ sản phẩm trùng trong từng giỏ, nén lại mảng items
+     */
+    private static InvoiceBaskets dedupe(
+        int[] offsets,
+        int[] items,
+        int[] lineCounts,
+        IntFunction<String> stockCodes,
+        IntFunction<String> descriptions
+    ) {
+        int basketCount = offsets.length - 1;
+        int write = 0;
+        int start = offsets[0];
+        for (int b = 0; b < basketCount; b++) {
+            int end = offsets[b + 1];
+            Arrays.sort(items, start, end);
+            int basketStart = write;
+            for (int i = start; i < end; i++) {
+                if (i == start || items[i] != items[i - 1]) {
+                    items[write++] = items[i];
+                }
+            }
+            offsets[b] = basketStart;
+            start = end;
+        }
+        offsets[basketCount] = write;
+        return new InvoiceBaskets(offsets, Arrays.copyOf(items, write), lineCounts, stockCodes, descriptions);
+    }
+}
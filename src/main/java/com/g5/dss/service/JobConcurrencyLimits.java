@@ -0,0 +1,142 @@
+package com.g5.dss.service;
+
+import com.g5.dss.config.AsyncExecutorProperties;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Giới hạn số job chạy đồng thời theo type bằng Semaphore (mode virtual thread)
+ * Mỗi job có luồng ảo riêng và chờ permit của type trên luồng đó; chỉ khi số job đang chờ
+ * vượt max-queued thì submit mới bị từ chối
+ * Mode platform: không giới hạn gì, pool của executor đã chặn sẵn
+ */
+final class JobConcurrencyLimits {
+
+    private final AsyncExecutorProperties properties;
+    private final Map<String, Limit> limits = new ConcurrentHashMap<>();
+
+    JobConcurrencyLimits(AsyncExecutorProperties properties) {
+        this.properties = properties != null && properties.isVirtual() ? properties : null;
+    }
+
+    boolean isEnabled() {
+        return properties != null;
+    }
+
+    /**
+     * Nhận thêm một job chờ permit; null nếu hàng chờ của type đã đầy
+     */
+    Ticket admit(String type) {
+        if (!isEnabled()) {
+            return new Ticket(null);
+        }
+        Limit limit = limit(type);
+        while (true) {
+            int current = limit.waiting.get();
+            if (current >= properties.getMaxQueued()) {
+                return null;
+            }
+            if (limit.waiting.compareAndSet(current, current + 1)) {
+                return new Ticket(limit);
+            }
+        }
+    }
+
+    /**
+     * Job đã được claim từ hàng đợi durable: không giới hạn hàng chờ (claim đã chặn theo capacity)
+     */
+    Ticket enter(String type) {
+        if (!isEnabled()) {
+            return new Ticket(null);
+        }
+        Limit limit = limit(type);
+        limit.waiting.incrementAndGet();
+        return new Ticket(limit);
+    }
+
+    /**
+     * Chờ permit trên luồng của job; false nếu luồng bị interrupt (task bị hủy khi đang chờ)
+     */
+    boolean acquire(Ticket ticket) {
+        if (ticket.limit == null) {
+            return true;
+        }
+        try {
+            ticket.limit.permits.acquire();
+            ticket.acquired = true;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            ticket.leaveQueue();
+        }
+    }
+
+    void release(Ticket ticket) {
+        if (ticket.limit != null && ticket.acquired) {
+            ticket.acquired = false;
+            ticket.limit.permits.release();
+        }
+    }
+
+    /**
+     * Số job các type có thể chạy cùng lúc (node claim từ hàng đợi durable tới mức này)
+     */
+    int capacity(Collection<String> types) {
+        return types.stream().mapToInt(properties::limitFor).sum();
+    }
+
+    Map<String, Object> snapshot() {
+        Map<String, Object> stats = new TreeMap<>();
+        limits.forEach((type, limit) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("limit", limit.size);
+            values.put("running", limit.size - limit.permits.availablePermits());
+            values.put("waiting", limit.waiting.get());
+            stats.put(type, values);
+        });
+        return stats;
+    }
+
+    private Limit limit(String type) {
+        return limits.computeIfAbsent(type, key -> new Limit(properties.limitFor(key)));
+    }
+
+    /**
+     * Chỗ của một job trong hàng chờ; leaveQueue() idempotent (chạy, bị hủy hoặc bị từ chối)
+     */
+    static final class Ticket {
+        private final Limit limit;
+        private final AtomicBoolean queued = new AtomicBoolean(true);
+        private volatile boolean acquired;
+
+        private Ticket(Limit limit) {
+            this.limit = limit;
+        }
+
+        void leaveQueue() {
+            if (limit != null && queued.compareAndSet(true, false)) {
+                limit.waiting.decrementAndGet();
+            }
+        }
+    }
+
+    private static final class Limit {
+        final int size;
+        final Semaphore permits;
+        final AtomicInteger waiting = new AtomicInteger();
+
+        Limit(int size) {
+            this.size = size;
+            this.permits = new Semaphore(size, true);
+        }
+    }
+}
@@ -2,13 +2,17 @@ package com.g5.dss.service;
 
 import com.g5.dss.dto.MarketBasketRuleDTO;
 import com.g5.dss.repository.jpa.OnlineRetailJpaRepository;
+import com.g5.dss.util.CompressedBitmap;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Service phân tích Market Basket (Association Rules)
@@ -20,10 +24,39 @@ import java.util.stream.Collectors;
 public class MarketBasketService {
     
     private final OnlineRetailJpaRepository repository;
+    private final RetailColumnStore columnStore;
+    private final ProductInvoiceIndex invoiceIndex;
+    private final StockDescriptionLookup descriptionLookup;
+    private final ForkJoinPool miningPool;
+    
+    // Số customerId tối đa trong một mệnh đề IN
+    private static final int CUSTOMER_BATCH_SIZE = 1000;
+    
+    // Ngưỡng cho gợi ý theo sản phẩm
+    private static final double RECOMMENDATION_MIN_SUPPORT = 0.01;
+    private static final double RECOMMENDATION_MIN_CONFIDENCE = 30;
+    
+    // Luật cần ít nhất 2 sản phẩm
+    private static final int MIN_ITEMSET_SIZE = 2;
+    
+    // Kích thước itemset lớn nhất khi khai phá (2 = chỉ cặp sản phẩm)
+    @Value("${analytics.market-basket.max-itemset-size:3}")
+    private int defaultMaxItemsetSize;
+    
+    // Giới hạn trên cho maxItemsetSize do client truyền vào (số itemset tăng theo lũy thừa kích thước giỏ)
+    @Value("${analytics.market-basket.max-itemset-size-limit:4}")
+    private int maxItemsetSizeLimit;
+    
+    // Support tối thiểu tính theo số giỏ, bất kể minSupport (minSupport nhỏ / phân khúc ít giỏ)
+    @Value("${analytics.market-basket.min-count:2}")
+    private int minCountFloor;
+    
+    // Số itemset phổ biến tối đa một lần khai phá; vượt quá thì 400
+    @Value("${analytics.market-basket.max-itemsets:200000}")
+    private int maxItemsets;
     
     /**
      * Phát hiện quy tắc kết hợp sản phẩm
-     * Sử dụng thuật toán đơn giản để tìm cặp sản phẩm thường được mua cùng nhau
      */
     public List<MarketBasketRuleDTO> findAssociationRules(
         Set<Integer> customerIds, 
@@ -31,114 +64,127 @@ public class MarketBasketService {
         double minConfidence,
         int maxRules
     ) {
+        int maxItemsetSize = Math.max(MIN_ITEMSET_SIZE, Math.min(defaultMaxItemsetSize, maxItemsetSizeLimit));
+        return findAssociationRules(customerIds, minSupport, minConfidence, maxRules, maxItemsetSize);
+    }
+    
+    /**
+     * Phát hiện quy tắc kết hợp sản phẩm bằng FP-Growth
+     * Luật có thể có nhiều sản phẩm ở vế trái (mã nối bằng " + "), vế phải luôn là 1 sản phẩm
+     * 
+     * @throws IllegalArgumentException khi minSupport <= 0, maxItemsetSize nằm ngoài [2, max-itemset-size-limit]
+     *         hoặc số itemset phổ biến vượt max-itemsets
+     */
+    public List<MarketBasketRuleDTO> findAssociationRules(
+        Set<Integer> customerIds, 
+        double minSupport, 
+        double minConfidence,
+        int maxRules,
+        int maxItemsetSize
+    ) {
+        if (!(minSupport > 0)) {
+            throw new IllegalArgumentException("minSupport must be > 0");
+        }
+        if (maxItemsetSize < MIN_ITEMSET_SIZE || maxItemsetSize > maxItemsetSizeLimit) {
+            throw new IllegalArgumentException(
+                "maxItemsetSize must be between " + MIN_ITEMSET_SIZE + " and " + maxItemsetSizeLimit);
+        }
+        
         log.info("Finding association rules for {} customers with minSupport={}, minConfidence={}", 
-            customerIds.size(), minSupport, minConfidence);
+            customerIds != null ? customerIds.size() : "all", minSupport, minConfidence);
         
-        // Lấy dữ liệu giao dịch
-        Map<String, List<String>> invoiceItems = repository.findAll().stream()
-            .filter(t -> customerIds == null || customerIds.contains(t.getCustomerId()))
-            .filter(t -> t.getInvoiceNo() != null && t.getStockCode() != null)
-            .collect(Collectors.groupingBy(
-                t -> t.getInvoiceNo(),
-                Collectors.mapping(
-                    t -> t.getStockCode(),
-                    Collectors.toList()
-                )
-            ));
+        // Lấy dữ liệu giao dịch dạng giỏ (mã sản phẩm int)
+        InvoiceBaskets baskets = loadBaskets(customerIds);
         
-        if (invoiceItems.isEmpty()) {
+        if (baskets.isEmpty()) {
             return Collections.emptyList();
         }
         
-        // Map stock code to description
-        Map<String, String> stockToDesc = repository.findAll().stream()
-            .filter(t -> t.getStockCode() != null && t.getDescription() != null)
-            .collect(Collectors.toMap(
-                t -> t.getStockCode(),
-                t -> t.getDescription(),
-                (v1, v2) -> v1 // Keep first
-            ));
-        
-        // Tìm các sản phẩm phổ biến (top 100)
-        Map<String, Long> productFrequency = invoiceItems.values().stream()
-            .flatMap(List::stream)
-            .collect(Collectors.groupingBy(
-                stockCode -> stockCode,
-                Collectors.counting()
-            ));
+        // Khai phá itemset phổ biến bằng FP-Growth, ngưỡng support áp dụng ngay khi build cây
+        int totalInvoices = baskets.basketCount();
+        int minCount = Math.max(minCountFloor, (int) Math.ceil(minSupport * totalInvoices - 1e-9));
+        FpGrowthMiner miner = FpGrowthMiner.mine(baskets, minCount, maxItemsetSize, maxItemsets, miningPool);
         
-        Set<String> topProducts = productFrequency.entrySet().stream()
-            .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
-            .limit(100)
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toSet());
-        
-        // Tính support, confidence, lift cho các cặp sản phẩm
-        int totalInvoices = invoiceItems.size();
+        // Sinh luật X -> B thỏa minConfidence, tính support, confidence, lift
         List<MarketBasketRuleDTO> rules = new ArrayList<>();
-        
-        for (String productA : topProducts) {
-            for (String productB : topProducts) {
-                if (productA.equals(productB)) continue;
-                
-                // Đếm số invoice có A
-                long countA = invoiceItems.values().stream()
-                    .filter(items -> items.contains(productA))
-                    .count();
-                
-                // Đếm số invoice có B
-                long countB = invoiceItems.values().stream()
-                    .filter(items -> items.contains(productB))
-                    .count();
-                
-                // Đếm số invoice có cả A và B
-                long countAB = invoiceItems.values().stream()
-                    .filter(items -> items.contains(productA) && items.contains(productB))
-                    .count();
-                
-                if (countAB == 0) continue;
-                
-                // Tính metrics
-                double support = (double) countAB / totalInvoices;
-                double confidence = (double) countAB / countA * 100; // % form
-                double probB = (double) countB / totalInvoices;
-                double lift = probB > 0 ? (support / probB) / ((double) countA / totalInvoices) : 0;
-                
-                // Lọc theo ngưỡng
-                if (support >= minSupport && confidence >= minConfidence) {
-                    String descA = stockToDesc.getOrDefault(productA, productA);
-                    String descB = stockToDesc.getOrDefault(productB, productB);
-                    
-                    // Truncate descriptions
-                    if (descA.length() > 50) descA = descA.substring(0, 47) + "...";
-                    if (descB.length() > 50) descB = descB.substring(0, 47) + "...";
-                    
-                    rules.add(MarketBasketRuleDTO.builder()
-                        .productACode(productA)
-                        .productAName(descA)
-                        .productBCode(productB)
-                        .productBName(descB)
-                        .support(support)
-                        .confidence(confidence)
-                        .lift(lift)
-                        .transactionCount((int) countAB)
-                        .recommendation(generateRecommendation(confidence, lift))
-                        .build());
-                }
-            }
-        }
+        miner.forEachRule(minConfidence, (antecedent, consequent, countAB, countA, countB) -> {
+            double support = (double) countAB / totalInvoices;
+            double confidence = (double) countAB / countA * 100; // % form
+            double probB = (double) countB / totalInvoices;
+            double lift = probB > 0 ? (support / probB) / ((double) countA / totalInvoices) : 0;
+            
+            rules.add(MarketBasketRuleDTO.builder()
+                .productACode(joinCodes(baskets, antecedent))
+                .productAName(joinNames(baskets, antecedent))
+                .productBCode(baskets.stockCode(consequent))
+                .productBName(truncate(baskets.description(consequent)))
+                .support(support)
+                .confidence(confidence)
+                .lift(lift)
+                .transactionCount(countAB)
+                .recommendation(generateRecommendation(confidence, lift))
+                .build());
+        });
         
         // Sort by confidence desc, then lift desc
         rules.sort(Comparator.comparing(MarketBasketRuleDTO::getConfidence).reversed()
             .thenComparing(Comparator.comparing(MarketBasketRuleDTO::getLift).reversed()));
         
-        log.info("Found {} association rules", rules.size());
+        log.info("Found {} association rules from {} frequent itemsets", rules.size(), miner.itemsetCount());
         
         return rules.stream()
             .limit(maxRules)
             .collect(Collectors.toList());
     }
     
+    /**
+     * Lấy giỏ hàng theo invoice: từ store dạng cột nếu đã sẵn sàng, nếu không thì stream từ MySQL
+     * Chỉ đọc (invoiceNo, stockCode, customerId), lọc khách hàng trong SQL theo lô
+     */
+    private InvoiceBaskets loadBaskets(Set<Integer> customerIds) {
+        if (columnStore.isReady()) {
+            return InvoiceBaskets.fromColumns(columnStore.getColumns(), customerIds);
+        }
+        
+        InvoiceBaskets.Builder builder = new InvoiceBaskets.Builder();
+        if (customerIds == null) {
+            try (Stream<Object[]> rows = repository.streamInvoiceLines()) {
+                rows.forEach(row -> addLine(builder, row));
+            }
+        } else {
+            List<Integer> ids = new ArrayList<>(customerIds);
+            for (int from = 0; from < ids.size(); from += CUSTOMER_BATCH_SIZE) {
+                List<Integer> batch = ids.subList(from, Math.min(ids.size(), from + CUSTOMER_BATCH_SIZE));
+                try (Stream<Object[]> rows = repository.streamInvoiceLinesByCustomers(batch)) {
+                    rows.forEach(row -> addLine(builder, row));
+                }
+            }
+        }
+        return builder.build(descriptionLookup::describe);
+    }
+    
+    private static void addLine(InvoiceBaskets.Builder builder, Object[] row) {
+        if (row[0] != null && row[1] != null) {
+            builder.add((String) row[0], (String) row[1]);
+        }
+    }
+    
+    private String joinCodes(InvoiceBaskets baskets, int[] itemset) {
+        return Arrays.stream(itemset)
+            .mapToObj(baskets::stockCode)
+            .collect(Collectors.joining(" + "));
+    }
+    
+    private String joinNames(InvoiceBaskets baskets, int[] itemset) {
+        return Arrays.stream(itemset)
+            .mapToObj(item -> truncate(baskets.description(item)))
+            .collect(Collectors.joining(" + "));
+    }
+    
+    private String truncate(String description) {
+        return description.length() > 50 ? description.substring(0, 47) + "..." : description;
+    }
+    
     /**
      * Tạo gợi ý marketing dựa trên metrics
      */
@@ -156,17 +202,89 @@ public class MarketBasketService {
     
     /**
      * Lấy top N sản phẩm được mua cùng với 1 sản phẩm cho trước
+     * Dùng index bitmap sản phẩm -> invoice nếu sẵn sàng: chỉ tính các cặp (A, B) của sản phẩm A
      */
     public List<MarketBasketRuleDTO> getRecommendationsForProduct(
         String stockCode, 
         Set<Integer> customerIds,
         int topN
     ) {
-        List<MarketBasketRuleDTO> allRules = findAssociationRules(customerIds, 0.01, 30, 100);
+        if (invoiceIndex.isReady()) {
+            return recommendFromIndex(stockCode, customerIds, topN);
+        }
+        
+        // Chỉ cần luật 1 sản phẩm -> 1 sản phẩm
+        List<MarketBasketRuleDTO> allRules = findAssociationRules(
+            customerIds, RECOMMENDATION_MIN_SUPPORT, RECOMMENDATION_MIN_CONFIDENCE, 100, 2);
         
         return allRules.stream()
             .filter(rule -> rule.getProductACode().equals(stockCode))
             .limit(topN)
             .collect(Collectors.toList());
     }
+    
+    /**
+     * support(A), support(B), support(A∩B) là cardinality và phép giao bitmap trong phạm vi invoice
+     * của nhóm khách hàng
+     */
+    private List<MarketBasketRuleDTO> recommendFromIndex(String stockCode, Set<Integer> customerIds, int topN) {
+        ProductInvoiceIndex.Snapshot index = invoiceIndex.getSnapshot();
+        CompressedBitmap productA = index.product(stockCode);
+        CompressedBitmap scope = index.scope(customerIds);
+        if (productA == null || scope.isEmpty()) {
+            return Collections.emptyList();
+        }
+        CompressedBitmap invoicesA = customerIds == null ? productA : productA.and(scope);
+        int countA = invoicesA.cardinality();
+        if (countA == 0) {
+            return Collections.emptyList();
+        }
+        
+        int totalInvoices = scope.cardinality();
+        int minCount = Math.max(1, (int) Math.ceil(RECOMMENDATION_MIN_SUPPORT * totalInvoices - 1e-9));
+        
+        List<MarketBasketRuleDTO> rules = new ArrayList<>();
+        for (Map.Entry<String, CompressedBitmap> entry : index.getProducts().entrySet()) {
+            CompressedBitmap productB = entry.getValue();
+            if (entry.getKey().equals(stockCode) || productB.cardinality() < minCount) {
+                continue;
+            }
+            int countAB = invoicesA.andCardinality(productB);
+            double confidence = (double) countAB / countA * 100;
+            if (countAB < minCount || confidence < RECOMMENDATION_MIN_CONFIDENCE) {
+                continue;
+            }
+            int countB = customerIds == null ? productB.cardinality() : productB.andCardinality(scope);
+            double support = (double) countAB / totalInvoices;
+            double probB = (double) countB / totalInvoices;
+            double lift = probB > 0 ? (support / probB) / ((double) countA / totalInvoices) : 0;
+            
+            rules.add(MarketBasketRuleDTO.builder()
+                .productACode(stockCode)
+                .productBCode(entry.getKey())
+                .support(support)
+                .confidence(confidence)
+                .lift(lift)
+                .transactionCount(countAB)
+                .recommendation(generateRecommendation(confidence, lift))
+                .build());
+        }
+        
+        rules.sort(Comparator.comparing(MarketBasketRuleDTO::getConfidence).reversed()
+            .thenComparing(Comparator.comparing(MarketBasketRuleDTO::getLift).reversed()));
+        List<MarketBasketRuleDTO> top = rules.stream()
+            .limit(topN)
+            .collect(Collectors.toList());
+        
+        // Chỉ tra mô tả cho các sản phẩm trả về
+        Set<String> codes = new HashSet<>();
+        codes.add(stockCode);
+        top.forEach(rule -> codes.add(rule.getProductBCode()));
+        Map<String, String> descriptions = descriptionLookup.describe(codes);
+        for (MarketBasketRuleDTO rule : top) {
+            rule.setProductAName(truncate(descriptions.getOrDefault(stockCode, stockCode)));
+            rule.setProductBName(truncate(descriptions.getOrDefault(rule.getProductBCode(), rule.getProductBCode())));
+        }
+        return top;
+    }
 }
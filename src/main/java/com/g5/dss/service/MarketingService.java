@@ -2,7 +2,6 @@ package com.g5.dss.service;
 
 import com.g5.dss.dto.RfmSegmentDTO;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.List;
 import java.util.Map;
@@ -11,17 +10,15 @@ import java.util.Map;
 public class MarketingService {
 
     @SuppressWarnings("unused")
-    private final RestTemplate restTemplate;
-    @SuppressWarnings("unused")
-    private static final String MODEL_SERVICE_URL = "http://localhost:8000"; // FastAPI service
+    private final ModelServiceClient modelService;
 
-    public MarketingService() {
-        this.restTemplate = new RestTemplate();
+    public MarketingService(ModelServiceClient modelService) {
+        this.modelService = modelService;
     }
 
     public List<RfmSegmentDTO> getRfmSegments() {
         // TODO: Call Python model-service for RFM analysis
-        // Example: restTemplate.getForObject(MODEL_SERVICE_URL + "/rfm/segments", ...)
+        // Example: modelService.get("/rfm/segments")
         return List.of();
     }
 
@@ -0,0 +1,184 @@
+package com.g5.dss.service;
+
+import com.g5.dss.config.ModelServiceProperties;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Client dùng chung cho mọi lời gọi sang model service (Python)
+ * WebClient trên Reactor Netty: pool kết nối keep-alive, gzip, timeout theo endpoint
+ * (model-service.endpoints.timeouts theo tên, endpoints.path-timeouts theo path / tiền tố path,
+ * mặc định model-service.timeout)
+ * Mọi hàm trả Mono để ghép nối không chặn luồng; job chạy trên executor thì block() ở cuối
+ * Path tương đối đi theo model-service.base-url, URL tuyệt đối được dùng nguyên
+ */
+@Service
+public class ModelServiceClient {
+
+    private final ModelServiceProperties properties;
+    private final ConnectionProvider connectionProvider;
+    private final WebClient webClient;
+    private final Duration defaultTimeout;
+
+    // path -> timeout của các endpoint có cấu hình riêng
+    private final Map<String, Duration> timeouts = new HashMap<>();
+    // Tiền tố path (key kết thúc bằng "/") -> timeout, tiền tố dài nhất đứng trước
+    private final List<Map.Entry<String, Duration>> prefixTimeouts;
+
+    public ModelServiceClient(WebClient.Builder builder, ModelServiceProperties properties) {
+        this.properties = properties;
+        this.defaultTimeout = Duration.ofMillis(properties.getTimeout());
+        ModelServiceProperties.Endpoints endpoints = properties.getEndpoints();
+        endpoints.paths().forEach((name, path) -> {
+            Integer millis = endpoints.getTimeouts().get(name);
+            if (millis != null) {
+                timeouts.put(path, Duration.ofMillis(millis));
+            }
+        });
+        endpoints.getPathTimeouts().forEach((path, millis) -> {
+            if (!path.endsWith("/")) {
+                timeouts.putIfAbsent(path, Duration.ofMillis(millis));
+            }
+        });
+        this.prefixTimeouts = endpoints.getPathTimeouts().entrySet().stream()
+            .filter(entry -> entry.getKey().endsWith("/"))
+            .map(entry -> Map.entry(entry.getKey(), Duration.ofMillis(entry.getValue())))
+            .sorted(Comparator.comparingInt((Map.Entry<String, Duration> entry) -> entry.getKey().length()).reversed())
+            .toList();
+
+        ModelServiceProperties.Pool pool = properties.getPool();
+        this.connectionProvider = ConnectionProvider.builder("model-service")
+            .maxConnections(pool.getMaxConnections())
+            .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+            .pendingAcquireTimeout(Duration.ofMillis(pool.getPendingAcquireTimeout()))
+            .maxIdleTime(Duration.ofMillis(pool.getMaxIdleTime()))
+            .maxLifeTime(Duration.ofMillis(pool.getMaxLifeTime()))
+            .evictInBackground(Duration.ofMillis(pool.getEvictInterval()))
+            .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, properties.getConnectTimeout())
+            .option(ChannelOption.SO_KEEPALIVE, true)
+            .keepAlive(true)
+            .compress(properties.isCompression())
+            .responseTimeout(defaultTimeout);
+
+        this.webClient = builder
+            .baseUrl(properties.getBaseUrl())
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(properties.getMaxInMemorySize()))
+            .build();
+    }
+
+    public ModelServiceProperties.Endpoints endpoints() {
+        return properties.getEndpoints();
+    }
+
+    public <T> Mono<T> post(String path, Object body, Class<T> responseType) {
+        return webClient.post()
+            .uri(path)
+            .httpRequest(request -> applyTimeout(request.getNativeRequest(), path))
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(body)
+            .retrieve()
+            .bodyToMono(responseType);
+    }
+
+    public <T> Mono<T> post(String path, Object body, ParameterizedTypeReference<T> responseType) {
+        return webClient.post()
+            .uri(path)
+            .httpRequest(request -> applyTimeout(request.getNativeRequest(), path))
+            .contentType(MediaType.APPLICATION_JSON)
+            .bodyValue(body)
+            .retrieve()
+            .bodyToMono(responseType);
+    }
+
+    public Mono<Map<String, Object>> postMultipart(String path, MultiValueMap<String, ?> parts) {
+        return webClient.post()
+            .uri(path)
+            .httpRequest(request -> applyTimeout(request.getNativeRequest(), path))
+            .contentType(MediaType.MULTIPART_FORM_DATA)
+            .body(BodyInserters.fromMultipartData(parts))
+            .retrieve()
+            .bodyToMono(new ParameterizedTypeReference<>() {});
+    }
+
+    public Mono<Map<String, Object>> get(String path) {
+        return webClient.get()
+            .uri(path)
+            .httpRequest(request -> applyTimeout(request.getNativeRequest(), path))
+            .retrieve()
+            .bodyToMono(new ParameterizedTypeReference<>() {});
+    }
+
+    /**
+     * Body lớn (vd. file CSV) dạng luồng DataBuffer, không gom vào bộ nhớ nên không bị max-in-memory-size chặn
+     * Mono xong khi đã có status + header (lỗi HTTP thành WebClientResponseException);
+     * caller phải đọc hết Flux và release từng buffer
+     */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> download(String path) {
+        return webClient.get()
+            .uri(path)
+            .httpRequest(request -> applyTimeout(request.getNativeRequest(), path))
+            .retrieve()
+            .toEntityFlux(DataBuffer.class);
+    }
+
+    public Mono<Void> delete(String path) {
+        return webClient.delete()
+            .uri(path)
+            .httpRequest(request -> applyTimeout(request.getNativeRequest(), path))
+            .retrieve()
+            .bodyToMono(Void.class);
+    }
+
+    @PreDestroy
+    void close() {
+        connectionProvider.dispose();
+    }
+
+    private void applyTimeout(Object nativeRequest, String path) {
+        if (nativeRequest instanceof HttpClientRequest request) {
+            request.responseTimeout(timeoutFor(path));
+        }
+    }
+
+    Duration timeoutFor(String path) {
+        String endpoint = UriComponentsBuilder.fromUriString(path).build().getPath();
+        if (endpoint == null) {
+            return defaultTimeout;
+        }
+        Duration timeout = timeouts.get(endpoint);
+        if (timeout != null) {
+            return timeout;
+        }
+        for (Map.Entry<String, Duration> prefix : prefixTimeouts) {
+            if (endpoint.startsWith(prefix.getKey())) {
+                return prefix.getValue();
+            }
+        }
+        return defaultTimeout;
+    }
+}
@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  * Service để xử lý Online Retail data từ MySQL
@@ -31,6 +32,7 @@ import java.util.stream.Collectors;
 public class OnlineRetailMySqlService {
     
     private final OnlineRetailJpaRepository repository;
+    private final RetailColumnStore columnStore;
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     
     /**
@@ -161,6 +163,10 @@ public class OnlineRetailMySqlService {
      * Lấy top sản phẩm
      */
     public List<Map<String, Object>> getTopProducts(int limit) {
+        if (columnStore.isReady()) {
+            return getTopProducts(columnStore.getColumns(), limit);
+        }
+        
         Pageable pageable = PageRequest.of(0, limit);
         List<Object[]> results = repository.findTopProducts(pageable);
         
@@ -177,6 +183,10 @@ public class OnlineRetailMySqlService {
      * Thống kê theo quốc gia
      */
     public List<Map<String, Object>> getStatsByCountry() {
+        if (columnStore.isReady()) {
+            return getStatsByCountry(columnStore.getColumns());
+        }
+        
         List<Object[]> results = repository.getStatsByCountry();
         
         return results.stream().map(row -> {
@@ -188,6 +198,62 @@ public class OnlineRetailMySqlService {
         }).collect(Collectors.toList());
     }
     
+    /**
+     * Top sản phẩm theo tổng số lượng, tính trên store dạng cột
+     * Gom theo stockCode giống findTopProducts (các biến thể mô tả không tách thành nhiều dòng)
+     */
+    private List<Map<String, Object>> getTopProducts(RetailColumns columns, int limit) {
+        int n = columns.size();
+        int[] stockCodes = columns.stockCodes();
+        int[] quantities = columns.quantities();
+        long[] totalQuantity = new long[columns.stockCodeCount()];
+        for (int i = 0; i < n; i++) {
+            totalQuantity[stockCodes[i]] += quantities[i];
+        }
+        
+        return IntStream.range(0, totalQuantity.length)
+            .boxed()
+            .sorted((a, b) -> Long.compare(totalQuantity[b], totalQuantity[a]))
+            .limit(limit)
+            .map(code -> {
+                Map<String, Object> map = new HashMap<>();
+                map.put("stockCode", columns.stockCode(code));
+                map.put("description", columns.description(code));
+                map.put("totalQuantity", totalQuantity[code]);
+                return map;
+            })
+            .collect(Collectors.toList());
+    }
+    
+    /**
+     * Thống kê theo quốc gia (số dòng, doanh thu), tính trên store dạng cột
+     */
+    private List<Map<String, Object>> getStatsByCountry(RetailColumns columns) {
+        int n = columns.size();
+        int[] countries = columns.countries();
+        int[] quantities = columns.quantities();
+        long[] prices = columns.unitPriceCents();
+        long[] rowCounts = new long[columns.countryCount()];
+        long[] revenueCents = new long[columns.countryCount()];
+        for (int i = 0; i < n; i++) {
+            rowCounts[countries[i]]++;
+            revenueCents[countries[i]] += quantities[i] * prices[i];
+        }
+        
+        return IntStream.range(0, rowCounts.length)
+            .filter(code -> rowCounts[code] > 0)
+            .boxed()
+            .sorted((a, b) -> Long.compare(rowCounts[b], rowCounts[a]))
+            .map(code -> {
+                Map<String, Object> map = new HashMap<>();
+                map.put("country", columns.country(code));
+                map.put("orderCount", rowCounts[code]);
+                map.put("totalRevenue", BigDecimal.valueOf(revenueCents[code], 2));
+                return map;
+            })
+            .collect(Collectors.toList());
+    }
+    
     /**
      * Lấy thống kê tổng quan
      */
@@ -0,0 +1,60 @@
+package com.g5.dss.service;
+
+/**
+ * Mẫu đơn hàng cho mô phỏng policy dưới dạng mảng feature song song (chỉ đọc sau khi tạo)
+ */
+public final class OrderSample {
+
+    private final double[] customerReturnRates;
+    private final double[] skuReturnRates;
+    private final boolean[] firstTimeCustomers;
+    private final double[] orderValues;
+
+    // Số đơn trong tổng thể (sau lọc) và số tầng có đơn
+    private final int population;
+    private final int strata;
+
+    OrderSample(
+        double[] customerReturnRates,
+        double[] skuReturnRates,
+        boolean[] firstTimeCustomers,
+        double[] orderValues,
+        int population,
+        int strata
+    ) {
+        this.customerReturnRates = customerReturnRates;
+        this.skuReturnRates = skuReturnRates;
+        this.firstTimeCustomers = firstTimeCustomers;
+        this.orderValues = orderValues;
+        this.population = population;
+        this.strata = strata;
+    }
+
+    public int size() {
+        return orderValues.length;
+    }
+
+    public int getPopulation() {
+        return population;
+    }
+
+    public int getStrata() {
+        return strata;
+    }
+
+    double[] customerReturnRates() {
+        return customerReturnRates;
+    }
+
+    double[] skuReturnRates() {
+        return skuReturnRates;
+    }
+
+    boolean[] firstTimeCustomers() {
+        return firstTimeCustomers;
+    }
+
+    double[] orderValues() {
+        return orderValues;
+    }
+}
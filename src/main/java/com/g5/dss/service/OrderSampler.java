@@ -0,0 +1,351 @@
+package com.g5.dss.service;
+
+import com.g5.dss.repository.jpa.OnlineRetailJpaRepository;
+import com.g5.dss.util.LongIntHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Lấy mẫu đơn hàng thật từ online_retail cho mô phỏng / tối ưu ngưỡng policy
+ * Một query stream duy nhất (theo thời gian), gom dòng thành đơn, rồi reservoir sampling theo tầng
+ * (country, khoảng giá trị đơn) và phân bổ cỡ mẫu tỉ lệ với số đơn mỗi tầng
+ * Mẫu được cache theo (khoảng ngày, country, cỡ mẫu, cách phân tầng) đến khi dữ liệu thay đổi
+ */
+@Service
+@Slf4j
+@Transactional(readOnly = true)
+public class OrderSampler {
+
+    public static final String STRATA_NONE = "none";
+    public static final String STRATA_COUNTRY = "country";
+    public static final String STRATA_COUNTRY_VALUE = "country-value";
+
+    private static final int INITIAL_RESERVOIR = 64;
+
+    private final OnlineRetailJpaRepository repository;
+    private final ReturnFeatureStore featureStore;
+
+    // Biên các khoảng giá trị đơn (tầng value band)
+    @Value("${analytics.policy-sample.value-bands:50,200,1000}")
+    private double[] valueBands;
+
+    @Value("${analytics.policy-sample.cache-size:16}")
+    private int cacheSize;
+
+    @Value("${analytics.policy-sample.seed:42}")
+    private long seed;
+
+    private final Map<SampleKey, OrderSample> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    public OrderSampler(OnlineRetailJpaRepository repository, ReturnFeatureStore featureStore) {
+        this.repository = repository;
+        this.featureStore = featureStore;
+    }
+
+    /**
+     * Mẫu cho khoảng ngày [dateFrom, dateTo] (YYYY-MM-DD, null = không giới hạn), country (null = tất cả)
+     * sampleSize null = lấy mọi đơn
+     *
+     * @throws IllegalArgumentException khi dateFrom / dateTo không đúng dạng YYYY-MM-DD
+     */
+    public OrderSample sample(String dateFrom, String dateTo, String country, Integer sampleSize, String strata) {
+        LocalDateTime from = dateFrom != null ? parseDate("dateFrom", dateFrom).atStartOfDay() : null;
+        LocalDateTime to = dateTo != null ? parseDate("dateTo", dateTo).plusDays(1).atStartOfDay() : null;
+        SampleKey key = new SampleKey(dateFrom, dateTo, country, sampleSize,
+            strata != null ? strata : STRATA_COUNTRY_VALUE);
+        synchronized (cache) {
+            OrderSample cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        OrderSample sample = draw(key, from, to);
+        log.info("Drew {} of {} orders across {} strata in {} ms",
+            sample.size(), sample.getPopulation(), sample.getStrata(), System.currentTimeMillis() - start);
+
+        synchronized (cache) {
+            cache.put(key, sample);
+            if (cache.size() > cacheSize) {
+                Iterator<SampleKey> eldest = cache.keySet().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return sample;
+    }
+
+    @EventListener
+    public void onRetailDataChanged(RetailDataChangedEvent event) {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    private static LocalDate parseDate(String name, String value) {
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException(name + " must be a date in YYYY-MM-DD format");
+        }
+    }
+
+    private OrderSample draw(SampleKey key, LocalDateTime from, LocalDateTime to) {
+        int capacity = key.sampleSize() != null ? Math.max(0, key.sampleSize()) : Integer.MAX_VALUE;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        Map<String, Reservoir> strata = new HashMap<>();
+        // Khách đã có đơn trước đó (đơn đầu tiên = khách mới)
+        LongIntHashMap seenCustomers = new LongIntHashMap();
+        OrderBuilder order = new OrderBuilder();
+
+        // Cờ khách mới chỉ cần lịch sử trước dateTo, nên không đọc các dòng sau khoảng ngày
+        try (Stream<Object[]> rows = to != null ? repository.streamOrderLinesBefore(to) : repository.streamOrderLines()) {
+            rows.forEach(row -> {
+                String invoiceNo = (String) row[0];
+                if (invoiceNo == null) {
+                    return;
+                }
+                if (!invoiceNo.equals(order.invoiceNo)) {
+                    emit(order, key, from, to, capacity, strata, seenCustomers, random);
+                    order.reset(invoiceNo, (Integer) row[2], (String) row[3], (LocalDateTime) row[6]);
+                }
+                Integer quantity = (Integer) row[4];
+                BigDecimal unitPrice = (BigDecimal) row[5];
+                if (quantity != null && unitPrice != null) {
+                    double lineValue = quantity * unitPrice.doubleValue();
+                    order.value += lineValue;
+                    order.skuRateWeighted += Math.abs(lineValue) * featureStore.skuReturnRate((String) row[1]);
+                    order.weight += Math.abs(lineValue);
+                }
+            });
+        }
+        emit(order, key, from, to, capacity, strata, seenCustomers, random);
+
+        return allocate(strata, capacity, random);
+    }
+
+    private void emit(
+        OrderBuilder order,
+        SampleKey key,
+        LocalDateTime from,
+        LocalDateTime to,
+        int capacity,
+        Map<String, Reservoir> strata,
+        LongIntHashMap seenCustomers,
+        SplittableRandom random
+    ) {
+        // Invoice "C..." là dòng hoàn, không phải đơn
+        if (order.invoiceNo == null || order.invoiceNo.startsWith("C") || order.value <= 0) {
+            return;
+        }
+        boolean firstTime = false;
+        if (order.customerId != null) {
+            firstTime = seenCustomers.get(order.customerId, 0) == 0;
+            seenCustomers.put(order.customerId, 1);
+        }
+        if ((from != null && (order.date == null || order.date.isBefore(from)))
+            || (to != null && (order.date == null || !order.date.isBefore(to)))
+            || (key.country() != null && !key.country().equalsIgnoreCase(order.country))) {
+            return;
+        }
+
+        String stratum = stratumOf(key.strata(), order.country, order.value);
+        Reservoir reservoir = strata.computeIfAbsent(stratum, s -> new Reservoir(capacity));
+        reservoir.offer(
+            featureStore.customerReturnRate(order.customerId != null ? String.valueOf(order.customerId) : null),
+            order.weight > 0 ? order.skuRateWeighted / order.weight : featureStore.skuReturnRate(null),
+            firstTime,
+            order.value,
+            random
+        );
+    }
+
+    private String stratumOf(String strata, String country, double value) {
+        if (STRATA_NONE.equals(strata)) {
+            return "";
+        }
+        if (STRATA_COUNTRY.equals(strata)) {
+            return String.valueOf(country);
+        }
+        int band = 0;
+        while (band < valueBands.length && value >= valueBands[band]) {
+            band++;
+        }
+        return country + "|" + band;
+    }
+
+    /**
+     * Cỡ mẫu mỗi tầng tỉ lệ với số đơn của tầng (largest remainder), lấy ngẫu nhiên trong reservoir
+     */
+    private static OrderSample allocate(Map<String, Reservoir> strata, int capacity, SplittableRandom random) {
+        List<Reservoir> reservoirs = new ArrayList<>(strata.values());
+        long population = 0;
+        for (Reservoir reservoir : reservoirs) {
+            population += reservoir.seen;
+        }
+
+        int[] quotas = new int[reservoirs.size()];
+        if (population <= capacity) {
+            for (int s = 0; s < quotas.length; s++) {
+                quotas[s] = reservoirs.get(s).size;
+            }
+        } else {
+            double[] remainders = new double[quotas.length];
+            int assigned = 0;
+            for (int s = 0; s < quotas.length; s++) {
+                double exact = (double) capacity * reservoirs.get(s).seen / population;
+                quotas[s] = (int) exact;
+                remainders[s] = exact - quotas[s];
+                assigned += quotas[s];
+            }
+            Integer[] order = new Integer[quotas.length];
+            for (int s = 0; s < order.length; s++) {
+                order[s] = s;
+            }
+            Arrays.sort(order, (a, b) -> Double.compare(remainders[b], remainders[a]));
+            for (int r = 0; assigned < capacity && r < order.length; r++) {
+                quotas[order[r]]++;
+                assigned++;
+            }
+        }
+
+        int total = 0;
+        for (int s = 0; s < quotas.length; s++) {
+            quotas[s] = Math.min(quotas[s], reservoirs.get(s).size);
+            total += quotas[s];
+        }
+
+        double[] customerReturnRates = new double[total];
+        double[] skuReturnRates = new double[total];
+        boolean[] firstTimeCustomers = new boolean[total];
+        double[] orderValues = new double[total];
+        int at = 0;
+        for (int s = 0; s < quotas.length; s++) {
+            Reservoir reservoir = reservoirs.get(s);
+            reservoir.shuffleFirst(quotas[s], random);
+            for (int i = 0; i < quotas[s]; i++, at++) {
+                customerReturnRates[at] = reservoir.customerReturnRates[i];
+                skuReturnRates[at] = reservoir.skuReturnRates[i];
+                firstTimeCustomers[at] = reservoir.firstTimeCustomers[i];
+                orderValues[at] = reservoir.orderValues[i];
+            }
+        }
+        return new OrderSample(customerReturnRates, skuReturnRates, firstTimeCustomers, orderValues,
+            (int) population, reservoirs.size());
+    }
+
+    private record SampleKey(String dateFrom, String dateTo, String country, Integer sampleSize, String strata) {
+    }
+
+    /**
+     * Đơn đang gom từ các dòng liền nhau của cùng invoice
+     */
+    private static final class OrderBuilder {
+
+        String invoiceNo;
+        Integer customerId;
+        String country;
+        LocalDateTime date;
+        double value;
+        double skuRateWeighted;
+        double weight;
+
+        void reset(String invoiceNo, Integer customerId, String country, LocalDateTime date) {
+            this.invoiceNo = invoiceNo;
+            this.customerId = customerId;
+            this.country = country;
+            this.date = date;
+            this.value = 0;
+            this.skuRateWeighted = 0;
+            this.weight = 0;
+        }
+    }
+
+    /**
+     * Reservoir (Algorithm R) của một tầng, lưu feature dạng mảng primitive
+     */
+    private static final class Reservoir {
+
+        final int capacity;
+        long seen;
+        int size;
+        double[] customerReturnRates;
+        double[] skuReturnRates;
+        boolean[] firstTimeCustomers;
+        double[] orderValues;
+
+        Reservoir(int capacity) {
+            this.capacity = capacity;
+            int initial = Math.min(capacity, INITIAL_RESERVOIR);
+            customerReturnRates = new double[initial];
+            skuReturnRates = new double[initial];
+            firstTimeCustomers = new boolean[initial];
+            orderValues = new double[initial];
+        }
+
+        void offer(double customerRate, double skuRate, boolean firstTime, double value, SplittableRandom random) {
+            seen++;
+            int slot;
+            if (size < capacity) {
+                if (size == orderValues.length) {
+                    grow();
+                }
+                slot = size++;
+            } else {
+                long j = random.nextLong(seen);
+                if (j >= capacity) {
+                    return;
+                }
+                slot = (int) j;
+            }
+            customerReturnRates[slot] = customerRate;
+            skuReturnRates[slot] = skuRate;
+            firstTimeCustomers[slot] = firstTime;
+            orderValues[slot] = value;
+        }
+
+        /**
+         * Đưa một tập con ngẫu nhiên cỡ count lên đầu (Fisher-Yates từng phần)
+         */
+        void shuffleFirst(int count, SplittableRandom random) {
+            for (int i = 0; i < count && i < size - 1; i++) {
+                swap(i, i + random.nextInt(size - i));
+            }
+        }
+
+        private void swap(int a, int b) {
+            double cr = customerReturnRates[a];
+            customerReturnRates[a] = customerReturnRates[b];
+            customerReturnRates[b] = cr;
+            double sr = skuReturnRates[a];
+            skuReturnRates[a] = skuReturnRates[b];
+            skuReturnRates[b] = sr;
+            boolean first = firstTimeCustomers[a];
+            firstTimeCustomers[a] = firstTimeCustomers[b];
+            firstTimeCustomers[b] = first;
+            double value = orderValues[a];
+            orderValues[a] = orderValues[b];
+            orderValues[b] = value;
+        }
+
+        private void grow() {
+            int length = (int) Math.min((long) capacity, Math.max(INITIAL_RESERVOIR, orderValues.length * 2L));
+            customerReturnRates = Arrays.copyOf(customerReturnRates, length);
+            skuReturnRates = Arrays.copyOf(skuReturnRates, length);
+            firstTimeCustomers = Arrays.copyOf(firstTimeCustomers, length);
+            orderValues = Arrays.copyOf(orderValues, length);
+        }
+    }
+}
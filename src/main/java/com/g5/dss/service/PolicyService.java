@@ -2,7 +2,6 @@ package com.g5.dss.service;
 
 import com.g5.dss.dto.PolicySimResultDTO;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.util.Map;
 
@@ -10,12 +9,10 @@ import java.util.Map;
 public class PolicyService {
 
     @SuppressWarnings("unused")
-    private final RestTemplate restTemplate;
-    @SuppressWarnings("unused")
-    private static final String MODEL_SERVICE_URL = "http://localhost:8000";
+    private final ModelServiceClient modelService;
 
-    public PolicyService() {
-        this.restTemplate = new RestTemplate();
+    public PolicyService(ModelServiceClient modelService) {
+        this.modelService = modelService;
     }
 
     public PolicySimResultDTO simulatePolicy(String orderId, Map<String, Object> params) {
@@ -0,0 +1,280 @@
+package com.g5.dss.service;
+
+import com.g5.dss.domain.jpa.AggregateWatermark;
+import com.g5.dss.domain.mongo.InvoiceBitmap;
+import com.g5.dss.repository.jpa.AggregateWatermarkRepository;
+import com.g5.dss.repository.jpa.OnlineRetailJpaRepository;
+import com.g5.dss.repository.mongo.InvoiceBitmapRepository;
+import com.g5.dss.util.CompressedBitmap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Inverted index sản phẩm -> tập invoice (và khách hàng -> tập invoice) dạng CompressedBitmap
+ * Invoice được định danh bằng id online_retail đầu tiên của nó (ổn định giữa các lần chạy)
+ * Index được lưu trong Mongo (invoice_bitmaps), load lại khi khởi động rồi cập nhật tăng dần theo id
+ * Chỉ đúng khi online_retail append-only, một writer (xem RfmAggregateService); khi load lại bảng
+ * thì phải xóa invoice_bitmaps
+ */
+@Service
+@Slf4j
+public class ProductInvoiceIndex {
+
+    static final String WATERMARK_NAME = "invoice_bitmap";
+
+    private final OnlineRetailJpaRepository retailRepository;
+    private final InvoiceBitmapRepository bitmapRepository;
+    private final AggregateWatermarkRepository watermarkRepository;
+
+    @Value("${analytics.invoice-index.enabled:true}")
+    private boolean enabled;
+
+    // Lưu bitmap vào Mongo sau mỗi khoảng id
+    @Value("${analytics.invoice-index.persist:true}")
+    private boolean persist;
+
+    // Độ rộng khoảng id đọc mỗi lần từ MySQL
+    @Value("${analytics.invoice-index.chunk-size:50000}")
+    private int chunkSize;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean ready;
+
+    public ProductInvoiceIndex(
+        OnlineRetailJpaRepository retailRepository,
+        InvoiceBitmapRepository bitmapRepository,
+        AggregateWatermarkRepository watermarkRepository
+    ) {
+        this.retailRepository = retailRepository;
+        this.bitmapRepository = bitmapRepository;
+        this.watermarkRepository = watermarkRepository;
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Async("segmentationExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            sync();
+            log.info("Invoice bitmap index ready: {} products, {} invoices, in {} ms",
+                snapshot.getProducts().size(), snapshot.getAllInvoices().cardinality(),
+                System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Invoice bitmap index initial load failed: {}", e.getMessage());
+        }
+    }
+
+    @Async("segmentationExecutor")
+    @EventListener
+    public void onRetailDataChanged(RetailDataChangedEvent event) {
+        if (!enabled || !ready || snapshot.getLastRetailId() >= event.getWatermark()) {
+            return;
+        }
+        try {
+            sync();
+        } catch (Exception e) {
+            log.warn("Invoice bitmap index sync failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Thêm các dòng online_retail có id > lastRetailId vào index
+     * Lần đầu thì load index đã lưu trong Mongo; nếu luồng khác đang ghi thì trả về ngay
+     */
+    public void sync() {
+        if (!enabled || !writeLock.tryLock()) {
+            return;
+        }
+        try {
+            if (!ready) {
+                loadPersisted();
+            }
+            Long maxId = retailRepository.findMaxId();
+            long lastRetailId = snapshot.getLastRetailId();
+            while (maxId != null && lastRetailId < maxId) {
+                long toId = Math.min(maxId, lastRetailId + chunkSize);
+                applyRange(lastRetailId, toId);
+                lastRetailId = toId;
+            }
+            ready = true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void loadPersisted() {
+        if (!persist) {
+            return;
+        }
+        Optional<AggregateWatermark> watermark = watermarkRepository.findById(WATERMARK_NAME);
+        if (watermark.isEmpty()) {
+            return;
+        }
+        try {
+            Map<String, CompressedBitmap> products = new HashMap<>();
+            Map<Integer, CompressedBitmap> customers = new HashMap<>();
+            CompressedBitmap allInvoices = new CompressedBitmap();
+            for (InvoiceBitmap document : bitmapRepository.findByKind(InvoiceBitmap.KIND_PRODUCT)) {
+                CompressedBitmap bitmap = CompressedBitmap.fromBytes(document.getBitmap());
+                products.put(document.getKey(), bitmap);
+                allInvoices.orInPlace(bitmap);
+            }
+            for (InvoiceBitmap document : bitmapRepository.findByKind(InvoiceBitmap.KIND_CUSTOMER)) {
+                customers.put(Integer.valueOf(document.getKey()), CompressedBitmap.fromBytes(document.getBitmap()));
+            }
+            snapshot = new Snapshot(products, customers, allInvoices, watermark.get().getLastRetailId());
+            log.info("Loaded {} product bitmaps from Mongo (watermark {})",
+                products.size(), snapshot.getLastRetailId());
+        } catch (Exception e) {
+            // Build lại từ đầu nếu dữ liệu đã lưu không đọc được
+            log.warn("Could not load persisted invoice bitmaps, rebuilding: {}", e.getMessage());
+            snapshot = Snapshot.EMPTY;
+        }
+    }
+
+    /**
+     * Áp dụng khoảng id (fromId, toId]: copy-on-write các bitmap bị chạm rồi publish snapshot mới
+     * Thêm vào bitmap là idempotent nên áp dụng lại một khoảng (sau khi lỗi giữa chừng) vẫn đúng
+     */
+    private void applyRange(long fromId, long toId) {
+        Snapshot current = snapshot;
+
+        Map<String, Integer> invoiceKeys = new HashMap<>();
+        for (Object[] row : retailRepository.findFirstInvoiceIdsInRange(fromId, toId)) {
+            invoiceKeys.put((String) row[0], Math.toIntExact((Long) row[1]));
+        }
+
+        Map<String, CompressedBitmap> touchedProducts = new HashMap<>();
+        Map<Integer, CompressedBitmap> touchedCustomers = new HashMap<>();
+        CompressedBitmap allInvoices = current.getAllInvoices().copy();
+        for (Object[] row : retailRepository.findInvoiceLinesInRange(fromId, toId)) {
+            Integer invoiceKey = invoiceKeys.get((String) row[1]);
+            if (invoiceKey == null) {
+                continue;
+            }
+            touchedProducts.computeIfAbsent((String) row[2], code -> copyOrNew(current.product(code)))
+                .add(invoiceKey);
+            if (row[3] != null) {
+                touchedCustomers.computeIfAbsent((Integer) row[3], id -> copyOrNew(current.customer(id)))
+                    .add(invoiceKey);
+            }
+            allInvoices.add(invoiceKey);
+        }
+
+        Map<String, CompressedBitmap> products = new HashMap<>(current.getProducts());
+        products.putAll(touchedProducts);
+        Map<Integer, CompressedBitmap> customers = new HashMap<>(current.customers);
+        customers.putAll(touchedCustomers);
+
+        if (persist) {
+            persist(touchedProducts, touchedCustomers, toId);
+        }
+        snapshot = new Snapshot(products, customers, allInvoices, toId);
+    }
+
+    private void persist(
+        Map<String, CompressedBitmap> products,
+        Map<Integer, CompressedBitmap> customers,
+        long lastRetailId
+    ) {
+        List<InvoiceBitmap> documents = new ArrayList<>(products.size() + customers.size());
+        products.forEach((code, bitmap) -> documents.add(new InvoiceBitmap(
+            InvoiceBitmap.KIND_PRODUCT, code, bitmap.toBytes(), bitmap.cardinality())));
+        customers.forEach((id, bitmap) -> documents.add(new InvoiceBitmap(
+            InvoiceBitmap.KIND_CUSTOMER, String.valueOf(id), bitmap.toBytes(), bitmap.cardinality())));
+        bitmapRepository.saveAll(documents);
+
+        // Watermark lưu sau bitmap: nếu lỗi ở giữa thì lần sau áp dụng lại khoảng id này
+        AggregateWatermark watermark = watermarkRepository.findById(WATERMARK_NAME)
+            .orElseGet(() -> AggregateWatermark.builder().name(WATERMARK_NAME).build());
+        watermark.setLastRetailId(lastRetailId);
+        watermark.setUpdatedAt(LocalDateTime.now());
+        watermarkRepository.save(watermark);
+    }
+
+    private static CompressedBitmap copyOrNew(CompressedBitmap bitmap) {
+        return bitmap != null ? bitmap.copy() : new CompressedBitmap();
+    }
+
+    /**
+     * Trạng thái index tại một watermark (chỉ đọc, các bitmap không bị sửa sau khi publish)
+     */
+    public static class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), new CompressedBitmap(), 0L);
+
+        private final Map<String, CompressedBitmap> products;
+        private final Map<Integer, CompressedBitmap> customers;
+        private final CompressedBitmap allInvoices;
+        private final long lastRetailId;
+
+        Snapshot(
+            Map<String, CompressedBitmap> products,
+            Map<Integer, CompressedBitmap> customers,
+            CompressedBitmap allInvoices,
+            long lastRetailId
+        ) {
+            this.products = products;
+            this.customers = customers;
+            this.allInvoices = allInvoices;
+            this.lastRetailId = lastRetailId;
+        }
+
+        public Map<String, CompressedBitmap> getProducts() {
+            return Collections.unmodifiableMap(products);
+        }
+
+        public CompressedBitmap getAllInvoices() {
+            return allInvoices;
+        }
+
+        public long getLastRetailId() {
+            return lastRetailId;
+        }
+
+        public CompressedBitmap product(String stockCode) {
+            return products.get(stockCode);
+        }
+
+        public CompressedBitmap customer(Integer customerId) {
+            return customers.get(customerId);
+        }
+
+        /**
+         * Tập invoice của một nhóm khách hàng (null = tất cả invoice)
+         */
+        public CompressedBitmap scope(Set<Integer> customerIds) {
+            if (customerIds == null) {
+                return allInvoices;
+            }
+            CompressedBitmap scope = new CompressedBitmap();
+            for (Integer customerId : customerIds) {
+                CompressedBitmap invoices = customers.get(customerId);
+                if (invoices != null) {
+                    scope.orInPlace(invoices);
+                }
+            }
+            return scope;
+        }
+    }
+}
@@ -3,14 +3,19 @@ package com.g5.dss.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -38,10 +43,10 @@ public class PythonMLService {
     @Value("${python.ml.service.url:http://localhost:8000}")
     private String pythonServiceUrl;
     
-    private final RestTemplate restTemplate;
+    private final ModelServiceClient modelService;
     
-    public PythonMLService() {
-        this.restTemplate = new RestTemplate();
+    public PythonMLService(ModelServiceClient modelService) {
+        this.modelService = modelService;
     }
     
     // ============================================
@@ -57,20 +62,18 @@ public class PythonMLService {
     public Map<String, Object> checkHealth() {
         try {
             String url = pythonServiceUrl + "/health";
-            ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
+            Map<String, Object> body = modelService.get(url).block();
             
-            if (response.getStatusCode() == HttpStatus.OK) {
-                Map<String, Object> result = new HashMap<>((Map<String, Object>) response.getBody());
-                result.put("java_status", "healthy");
-                result.put("python_url", pythonServiceUrl);
-                return result;
-            } else {
-                return Map.of(
-                    "java_status", "healthy",
-                    "python_status", "unhealthy",
-                    "error", "Python service returned status: " + response.getStatusCode()
-                );
-            }
+            Map<String, Object> result = body != null ? new HashMap<>(body) : new HashMap<>();
+            result.put("java_status", "healthy");
+            result.put("python_url", pythonServiceUrl);
+            return result;
+        } catch (WebClientResponseException e) {
+            return Map.of(
+                "java_status", "healthy",
+                "python_status", "unhealthy",
+                "error", "Python service returned status: " + e.getStatusCode()
+            );
         } catch (Exception e) {
             log.error("Python ML service health check failed", e);
             return Map.of(
@@ -98,9 +101,6 @@ public class PythonMLService {
         String url = pythonServiceUrl + "/api/upload";
         
         // Prepare multipart request
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.MULTIPART_FORM_DATA);
-        
         MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
         ByteArrayResource resource = new ByteArrayResource(file.getBytes()) {
             @Override
@@ -110,11 +110,8 @@ public class PythonMLService {
         };
         body.add("file", resource);
         
-        HttpEntity<MultiValueMap<String, Object>> requestEntity = new HttpEntity<>(body, headers);
-        
         try {
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, requestEntity, Map.class);
-            Map<String, Object> result = (Map<String, Object>) response.getBody();
+            Map<String, Object> result = modelService.postMultipart(url, body).block();
             log.info("Data uploaded successfully. Session ID: {}", result.get("session_id"));
             return result;
         } catch (Exception e) {
@@ -138,7 +135,7 @@ public class PythonMLService {
         String url = pythonServiceUrl + "/api/session/" + sessionId;
         
         try {
-            restTemplate.delete(url);
+            modelService.delete(url).block();
             return Map.of("message", "Session deleted successfully", "session_id", sessionId);
         } catch (Exception e) {
             log.error("Error deleting session from Python service", e);
@@ -205,7 +202,7 @@ public class PythonMLService {
     /**
      * Download RFM analysis as CSV
      */
-    public ResponseEntity<byte[]> downloadRFMCsv(String sessionId) {
+    public ResponseEntity<StreamingResponseBody> downloadRFMCsv(String sessionId) {
         String url = pythonServiceUrl + "/api/download/rfm/" + sessionId;
         return downloadCsv(url, "rfm_analysis_" + sessionId + ".csv");
     }
@@ -213,7 +210,7 @@ public class PythonMLService {
     /**
      * Download customer segments as CSV
      */
-    public ResponseEntity<byte[]> downloadSegmentsCsv(String sessionId, int nClusters) {
+    public ResponseEntity<StreamingResponseBody> downloadSegmentsCsv(String sessionId, int nClusters) {
         String url = pythonServiceUrl + "/api/download/segments/" + sessionId + "?n_clusters=" + nClusters;
         return downloadCsv(url, "segments_" + sessionId + ".csv");
     }
@@ -229,14 +226,8 @@ public class PythonMLService {
     private Map<String, Object> postRequest(String endpoint, Map<String, Object> request) {
         String url = pythonServiceUrl + endpoint;
         
-        HttpHeaders headers = new HttpHeaders();
-        headers.setContentType(MediaType.APPLICATION_JSON);
-        
-        HttpEntity<Map<String, Object>> requestEntity = new HttpEntity<>(request, headers);
-        
         try {
-            ResponseEntity<Map> response = restTemplate.postForEntity(url, requestEntity, Map.class);
-            return (Map<String, Object>) response.getBody();
+            return modelService.post(url, request, Map.class).block();
         } catch (Exception e) {
             log.error("Error calling Python ML service endpoint: {}", endpoint, e);
             return Map.of(
@@ -249,10 +240,12 @@ public class PythonMLService {
     
     /**
      * Download CSV file from Python service
+     * The body is streamed to the client buffer by buffer, so exports of any size pass through
      */
-    private ResponseEntity<byte[]> downloadCsv(String url, String filename) {
+    private ResponseEntity<StreamingResponseBody> downloadCsv(String url, String filename) {
         try {
-            ResponseEntity<byte[]> response = restTemplate.getForEntity(url, byte[].class);
+            ResponseEntity<Flux<DataBuffer>> response = modelService.download(url).block();
+            Flux<DataBuffer> csv = response != null && response.getBody() != null ? response.getBody() : Flux.empty();
             
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.parseMediaType("text/csv"));
@@ -262,12 +255,13 @@ public class PythonMLService {
             
             return ResponseEntity.ok()
                     .headers(headers)
-                    .body(response.getBody());
+                    .body(out -> DataBufferUtils.write(csv, out).map(DataBufferUtils::release).blockLast());
                     
         } catch (Exception e) {
             log.error("Error downloading CSV from Python service", e);
+            byte[] error = ("Error: " + e.getMessage()).getBytes(StandardCharsets.UTF_8);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(("Error: " + e.getMessage()).getBytes());
+                    .body(out -> out.write(error));
         }
     }
 }
@@ -0,0 +1,187 @@
+package com.g5.dss.service;
+
+import com.g5.dss.repository.jpa.OnlineRetailJpaRepository;
+import com.g5.dss.util.ValueDictionary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Store dạng cột trong bộ nhớ cho bảng online_retail
+ * Load một lần khi khởi động, sau đó append các dòng mới (id > lastRetailId)
+ * Chỉ đúng khi online_retail append-only, một writer (xem RfmAggregateService)
+ * Người đọc lấy RetailColumns qua getColumns() và duyệt bằng vòng lặp primitive
+ */
+@Service
+@Slf4j
+public class RetailColumnStore {
+
+    private final OnlineRetailJpaRepository repository;
+
+    @Value("${analytics.columnar.enabled:true}")
+    private boolean enabled;
+
+    // Độ rộng khoảng id đọc mỗi lần từ MySQL
+    @Value("${analytics.columnar.chunk-size:50000}")
+    private int chunkSize;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile RetailColumns columns = RetailColumns.EMPTY;
+    private volatile boolean ready;
+
+    // Trạng thái ghi (chỉ dùng khi giữ writeLock)
+    private int size;
+    private long lastRetailId;
+    private long[] ids = new long[0];
+    private int[] invoices = new int[0];
+    private int[] stockCodes = new int[0];
+    private int[] customers = new int[0];
+    private int[] countries = new int[0];
+    private int[] quantities = new int[0];
+    private long[] unitPriceCents = new long[0];
+    private long[] invoiceEpochSeconds = new long[0];
+    private String[] stockDescriptions = new String[0];
+    private final ValueDictionary<String> invoiceDictionary = new ValueDictionary<>(32768);
+    private final ValueDictionary<String> stockCodeDictionary = new ValueDictionary<>(4096);
+    private final ValueDictionary<Integer> customerDictionary = new ValueDictionary<>(8192);
+    private final ValueDictionary<String> countryDictionary = new ValueDictionary<>(64);
+
+    public RetailColumnStore(OnlineRetailJpaRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Store đã load xong lần đầu và có thể dùng thay cho truy vấn entity
+     */
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    public RetailColumns getColumns() {
+        return columns;
+    }
+
+    @Async("segmentationExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            sync();
+            log.info("Loaded {} online_retail rows into column store in {} ms",
+                columns.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Column store initial load failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Chạy trước các listener khác để snapshot phía sau thấy dữ liệu mới
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @EventListener
+    public void onRetailDataChanged(RetailDataChangedEvent event) {
+        if (!enabled || !ready || columns.getLastRetailId() >= event.getWatermark()) {
+            return;
+        }
+        try {
+            sync();
+        } catch (Exception e) {
+            log.warn("Column store sync failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Append các dòng online_retail có id > lastRetailId
+     * Nếu luồng khác đang ghi thì trả về ngay
+     */
+    public void sync() {
+        if (!enabled || !writeLock.tryLock()) {
+            return;
+        }
+        try {
+            Long maxId = repository.findMaxId();
+            while (maxId != null && lastRetailId < maxId) {
+                long toId = Math.min(maxId, lastRetailId + chunkSize);
+                appendRange(lastRetailId, toId);
+                lastRetailId = toId;
+                publish();
+            }
+            ready = true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void appendRange(long fromId, long toId) {
+        List<Object[]> rows = repository.findColumnsInRange(fromId, toId);
+        ensureCapacity(size + rows.size());
+
+        for (Object[] row : rows) {
+            int i = size++;
+            ids[i] = (Long) row[0];
+            invoices[i] = invoiceDictionary.encode((String) row[1]);
+            stockCodes[i] = stockCodeDictionary.encode((String) row[2]);
+            customers[i] = row[3] != null
+                ? customerDictionary.encode((Integer) row[3])
+                : RetailColumns.NO_CUSTOMER;
+            countries[i] = countryDictionary.encode((String) row[4]);
+            quantities[i] = row[5] != null ? (Integer) row[5] : 0;
+            unitPriceCents[i] = row[6] != null
+                ? ((BigDecimal) row[6]).movePointRight(2).longValue()
+                : 0L;
+            invoiceEpochSeconds[i] = RetailColumns.toEpochSecond((LocalDateTime) row[7]);
+        }
+
+        if (stockDescriptions.length < stockCodeDictionary.size()) {
+            stockDescriptions = Arrays.copyOf(stockDescriptions,
+                Math.max(stockCodeDictionary.size(), stockDescriptions.length * 2));
+        }
+        for (Object[] row : repository.findStockDescriptionsInRange(fromId, toId)) {
+            int code = stockCodeDictionary.indexOf((String) row[0]);
+            // Giữ MIN(description) trên toàn bảng, khớp với các truy vấn SQL
+            if (code >= 0 && (stockDescriptions[code] == null
+                    || ((String) row[1]).compareTo(stockDescriptions[code]) < 0)) {
+                stockDescriptions[code] = (String) row[1];
+            }
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(required, Math.max(1024, ids.length + (ids.length >> 1)));
+        ids = Arrays.copyOf(ids, capacity);
+        invoices = Arrays.copyOf(invoices, capacity);
+        stockCodes = Arrays.copyOf(stockCodes, capacity);
+        customers = Arrays.copyOf(customers, capacity);
+        countries = Arrays.copyOf(countries, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        unitPriceCents = Arrays.copyOf(unitPriceCents, capacity);
+        invoiceEpochSeconds = Arrays.copyOf(invoiceEpochSeconds, capacity);
+    }
+
+    private void publish() {
+        columns = new RetailColumns(
+            size, lastRetailId,
+            ids, invoices, stockCodes, customers, countries, quantities,
+            unitPriceCents, invoiceEpochSeconds,
+            invoiceDictionary, stockCodeDictionary, customerDictionary, countryDictionary,
+            stockDescriptions
+        );
+    }
+}
@@ -0,0 +1,185 @@
+package com.g5.dss.service;
+
+import com.g5.dss.util.ValueDictionary;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Snapshot dạng cột của bảng online_retail (chỉ đọc)
+ * Chuỗi được mã hóa bằng dictionary thành int, ngày là epoch-second (UTC), tiền là cent
+ *
+ * Các mảng có thể dài hơn size (dùng chung với snapshot sau khi append);
+ * người đọc chỉ được duyệt trong khoảng [0, size)
+ */
+public class RetailColumns {
+
+    static final int NO_CUSTOMER = -1;
+
+    static final RetailColumns EMPTY = new RetailColumns(
+        0, 0L, new long[0], new int[0], new int[0], new int[0], new int[0], new int[0],
+        new long[0], new long[0],
+        new ValueDictionary<>(), new ValueDictionary<>(), new ValueDictionary<>(), new ValueDictionary<>(),
+        new String[0]
+    );
+
+    private final int size;
+    private final long lastRetailId;
+
+    private final long[] ids;
+    private final int[] invoices;
+    private final int[] stockCodes;
+    private final int[] customers;      // NO_CUSTOMER nếu customer_id null
+    private final int[] countries;
+    private final int[] quantities;
+    private final long[] unitPriceCents;
+    private final long[] invoiceEpochSeconds;
+
+    private final ValueDictionary<String> invoiceDictionary;
+    private final ValueDictionary<String> stockCodeDictionary;
+    private final ValueDictionary<Integer> customerDictionary;
+    private final ValueDictionary<String> countryDictionary;
+
+    // Mô tả theo mã stockCode đã mã hóa (MIN(description) khác null, như SQL)
+    private final String[] stockDescriptions;
+
+    // Số mã của từng dictionary tại thời điểm tạo snapshot
+    private final int invoiceCount;
+    private final int stockCodeCount;
+    private final int customerCount;
+    private final int countryCount;
+
+    RetailColumns(
+        int size,
+        long lastRetailId,
+        long[] ids,
+        int[] invoices,
+        int[] stockCodes,
+        int[] customers,
+        int[] countries,
+        int[] quantities,
+        long[] unitPriceCents,
+        long[] invoiceEpochSeconds,
+        ValueDictionary<String> invoiceDictionary,
+        ValueDictionary<String> stockCodeDictionary,
+        ValueDictionary<Integer> customerDictionary,
+        ValueDictionary<String> countryDictionary,
+        String[] stockDescriptions
+    ) {
+        this.size = size;
+        this.lastRetailId = lastRetailId;
+        this.ids = ids;
+        this.invoices = invoices;
+        this.stockCodes = stockCodes;
+        this.customers = customers;
+        this.countries = countries;
+        this.quantities = quantities;
+        this.unitPriceCents = unitPriceCents;
+        this.invoiceEpochSeconds = invoiceEpochSeconds;
+        this.invoiceDictionary = invoiceDictionary;
+        this.stockCodeDictionary = stockCodeDictionary;
+        this.customerDictionary = customerDictionary;
+        this.countryDictionary = countryDictionary;
+        this.stockDescriptions = stockDescriptions;
+        this.invoiceCount = invoiceDictionary.size();
+        this.stockCodeCount = stockCodeDictionary.size();
+        this.customerCount = customerDictionary.size();
+        this.countryCount = countryDictionary.size();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getLastRetailId() {
+        return lastRetailId;
+    }
+
+    public long[] ids() {
+        return ids;
+    }
+
+    public int[] invoices() {
+        return invoices;
+    }
+
+    public int[] stockCodes() {
+        return stockCodes;
+    }
+
+    public int[] customers() {
+        return customers;
+    }
+
+    public int[] countries() {
+        return countries;
+    }
+
+    public int[] quantities() {
+        return quantities;
+    }
+
+    public long[] unitPriceCents() {
+        return unitPriceCents;
+    }
+
+    public long[] invoiceEpochSeconds() {
+        return invoiceEpochSeconds;
+    }
+
+    public int invoiceCount() {
+        return invoiceCount;
+    }
+
+    public int stockCodeCount() {
+        return stockCodeCount;
+    }
+
+    public int customerCount() {
+        return customerCount;
+    }
+
+    public int countryCount() {
+        return countryCount;
+    }
+
+    public String invoiceNo(int code) {
+        return invoiceDictionary.decode(code);
+    }
+
+    public String stockCode(int code) {
+        return stockCodeDictionary.decode(code);
+    }
+
+    public Integer customerId(int code) {
+        return customerDictionary.decode(code);
+    }
+
+    public String country(int code) {
+        return countryDictionary.decode(code);
+    }
+
+    public int stockCodeIndex(String stockCode) {
+        return stockCodeDictionary.indexOf(stockCode);
+    }
+
+    public int customerIndex(Integer customerId) {
+        return customerDictionary.indexOf(customerId);
+    }
+
+    /**
+     * Mô tả sản phẩm, hoặc chính stockCode nếu chưa có mô tả
+     */
+    public String description(int stockCode) {
+        String description = stockCode < stockDescriptions.length ? stockDescriptions[stockCode] : null;
+        return description != null ? description : stockCodeDictionary.decode(stockCode);
+    }
+
+    public static long toEpochSecond(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static LocalDateTime toDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+}
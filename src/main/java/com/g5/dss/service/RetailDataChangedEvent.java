@@ -0,0 +1,18 @@
+package com.g5.dss.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Sự kiện phát ra khi có dòng online_retail mới được đưa vào các bảng tổng hợp
+ */
+@Getter
+@AllArgsConstructor
+public class RetailDataChangedEvent {
+    
+    // id online_retail lớn nhất đã được tổng hợp
+    private final long watermark;
+    
+    // Số id mới được xử lý trong lần refresh này
+    private final long rowsApplied;
+}
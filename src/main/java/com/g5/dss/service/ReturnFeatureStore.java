@@ -0,0 +1,372 @@
+package com.g5.dss.service;
+
+import com.g5.dss.domain.mongo.ReturnOutcomeCount;
+import com.g5.dss.repository.jpa.OnlineRetailJpaRepository;
+import com.g5.dss.repository.mongo.ReturnRiskScoreRepository;
+import com.g5.dss.util.LongIntHashMap;
+import com.g5.dss.util.ValueDictionary;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Feature store cho chấm điểm rủi ro hoàn hàng: tỉ lệ hoàn theo khách hàng, theo SKU và cờ khách mới
+ * Dòng hoàn = invoice bắt đầu bằng "C" hoặc quantity âm; tính theo số dòng từ online_retail
+ * (cập nhật tăng dần theo id, giả định online_retail append-only và một writer như RfmAggregateService)
+ * cộng với kết quả thực tế đã ghi nhận (ReturnRiskScore.actualReturn)
+ * Dữ liệu nằm trong LongIntHashMap của một snapshot bất biến, đọc O(1) không cần khóa
+ */
+@Service
+@Slf4j
+public class ReturnFeatureStore {
+
+    private final OnlineRetailJpaRepository retailRepository;
+    private final ReturnRiskScoreRepository riskScoreRepository;
+
+    @Value("${analytics.return-features.enabled:true}")
+    private boolean enabled;
+
+    // Độ rộng khoảng id đọc mỗi lần từ MySQL
+    @Value("${analytics.return-features.chunk-size:50000}")
+    private int chunkSize;
+
+    // Stock code -> mã int dùng làm khóa map (một luồng ghi, đọc không khóa)
+    private final ValueDictionary<String> stockCodes = new ValueDictionary<>(8192);
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+    private volatile boolean ready;
+
+    public ReturnFeatureStore(
+        OnlineRetailJpaRepository retailRepository,
+        ReturnRiskScoreRepository riskScoreRepository
+    ) {
+        this.retailRepository = retailRepository;
+        this.riskScoreRepository = riskScoreRepository;
+    }
+
+    public boolean isReady() {
+        return enabled && ready;
+    }
+
+    /**
+     * Tỉ lệ dòng hoàn của khách hàng; khách chưa có lịch sử dùng tỉ lệ chung
+     */
+    public double customerReturnRate(String customerId) {
+        return customerReturnRate(snapshot, customerKey(customerId));
+    }
+
+    /**
+     * Tỉ lệ dòng hoàn của SKU; SKU chưa bán dùng tỉ lệ chung
+     */
+    public double skuReturnRate(String stockCode) {
+        return skuReturnRate(snapshot, stockCodes.indexOf(stockCode));
+    }
+
+    /**
+     * Khách hàng chưa có lần mua nào (store chưa sẵn sàng thì coi như khách cũ)
+     */
+    public boolean isFirstTimeCustomer(String customerId) {
+        return isReady() && isFirstTimeCustomer(snapshot, customerKey(customerId));
+    }
+
+    /**
+     * Feature cho cả lô đơn hàng, đọc từ cùng một snapshot
+     */
+    public Features lookup(List<String> customerIds, List<String> stockCodes) {
+        Snapshot current = snapshot;
+        boolean ready = isReady();
+        int size = customerIds.size();
+        Features features = new Features(size);
+        for (int i = 0; i < size; i++) {
+            long customer = customerKey(customerIds.get(i));
+            int code = this.stockCodes.indexOf(stockCodes.get(i));
+            features.customerReturnRates[i] = customerReturnRate(current, customer);
+            features.skuReturnRates[i] = skuReturnRate(current, code);
+            features.firstTimeCustomers[i] = ready && isFirstTimeCustomer(current, customer);
+        }
+        return features;
+    }
+
+    private static double customerReturnRate(Snapshot current, long key) {
+        int purchases = key < 0 ? 0 : current.customerPurchases.get(key, 0) + current.labelCustomerOrders.get(key, 0);
+        if (purchases == 0) {
+            return current.globalRate();
+        }
+        int returns = current.customerReturns.get(key, 0) + current.labelCustomerReturns.get(key, 0);
+        return Math.min(1.0, (double) returns / purchases);
+    }
+
+    private static double skuReturnRate(Snapshot current, int code) {
+        int sold = code < 0 ? 0 : current.skuSold.get(code, 0) + current.labelSkuOrders.get(code, 0);
+        if (sold == 0) {
+            return current.globalRate();
+        }
+        int returned = current.skuReturned.get(code, 0) + current.labelSkuReturns.get(code, 0);
+        return Math.min(1.0, (double) returned / sold);
+    }
+
+    private static boolean isFirstTimeCustomer(Snapshot current, long key) {
+        return key < 0
+            || current.customerPurchases.get(key, 0) + current.labelCustomerOrders.get(key, 0) == 0;
+    }
+
+    @Async("segmentationExecutor")
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            sync();
+            refreshOutcomes();
+            log.info("Return feature store ready: {} customers, {} SKUs, in {} ms",
+                snapshot.customerPurchases.size(), snapshot.skuSold.size(),
+                System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.warn("Return feature store initial load failed: {}", e.getMessage());
+        }
+    }
+
+    @Async("segmentationExecutor")
+    @EventListener
+    public void onRetailDataChanged(RetailDataChangedEvent event) {
+        if (!enabled || !ready || snapshot.lastRetailId >= event.getWatermark()) {
+            return;
+        }
+        try {
+            sync();
+        } catch (Exception e) {
+            log.warn("Return feature store sync failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Cộng các dòng online_retail có id > lastRetailId vào bộ đếm
+     * Nếu luồng khác đang ghi thì trả về ngay
+     */
+    public void sync() {
+        if (!enabled || !writeLock.tryLock()) {
+            return;
+        }
+        try {
+            Long maxId = retailRepository.findMaxId();
+            while (maxId != null && snapshot.lastRetailId < maxId) {
+                applyRange(snapshot.lastRetailId, Math.min(maxId, snapshot.lastRetailId + chunkSize));
+            }
+            ready = true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Build lại bộ đếm từ các đơn đã có kết quả thực tế
+     * actualReturn được gán tại chỗ (không có mốc thời gian gán nhãn) nên không cộng dồn theo watermark được;
+     * thay vào đó Mongo gom nhóm theo khách hàng / SKU và chỉ trả về số đếm, không trả document
+     */
+    @Scheduled(
+        initialDelayString = "${analytics.return-features.outcome-refresh-ms:600000}",
+        fixedDelayString = "${analytics.return-features.outcome-refresh-ms:600000}"
+    )
+    public void refreshOutcomes() {
+        if (!enabled) {
+            return;
+        }
+        List<ReturnOutcomeCount> byCustomer;
+        List<ReturnOutcomeCount> byStockCode;
+        try {
+            byCustomer = riskScoreRepository.countOutcomesByCustomer();
+            byStockCode = riskScoreRepository.countOutcomesByStockCode();
+        } catch (Exception e) {
+            log.warn("Could not load return outcomes: {}", e.getMessage());
+            return;
+        }
+
+        writeLock.lock();
+        try {
+            LongIntHashMap customerOrders = new LongIntHashMap(byCustomer.size());
+            LongIntHashMap customerReturns = new LongIntHashMap(byCustomer.size());
+            for (ReturnOutcomeCount count : byCustomer) {
+                long customer = customerKey(count.getId());
+                if (customer >= 0) {
+                    // "12345" và "12345.0" là cùng một khách hàng
+                    customerOrders.addTo(customer, count.getOrders());
+                    customerReturns.addTo(customer, count.getReturns());
+                }
+            }
+            LongIntHashMap skuOrders = new LongIntHashMap(byStockCode.size());
+            LongIntHashMap skuReturns = new LongIntHashMap(byStockCode.size());
+            for (ReturnOutcomeCount count : byStockCode) {
+                int code = stockCodes.encode(count.getId());
+                skuOrders.addTo(code, count.getOrders());
+                skuReturns.addTo(code, count.getReturns());
+            }
+            snapshot = snapshot.withOutcomes(customerOrders, customerReturns, skuOrders, skuReturns);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Áp dụng khoảng id (fromId, toId]: copy các map hiện tại, cộng dồn rồi publish snapshot mới
+     */
+    private void applyRange(long fromId, long toId) {
+        Snapshot current = snapshot;
+        LongIntHashMap customerPurchases = current.customerPurchases.copy();
+        LongIntHashMap customerReturns = current.customerReturns.copy();
+        LongIntHashMap skuSold = current.skuSold.copy();
+        LongIntHashMap skuReturned = current.skuReturned.copy();
+        long purchaseLines = current.purchaseLines;
+        long returnLines = current.returnLines;
+
+        for (Object[] row : retailRepository.findReturnFeatureLinesInRange(fromId, toId)) {
+            String invoiceNo = (String) row[0];
+            Integer quantity = (Integer) row[3];
+            boolean isReturn = (invoiceNo != null && invoiceNo.startsWith("C"))
+                || (quantity != null && quantity < 0);
+            int code = row[1] != null ? stockCodes.encode((String) row[1]) : -1;
+            Integer customerId = (Integer) row[2];
+            if (isReturn) {
+                if (code >= 0) {
+                    skuReturned.addTo(code, 1);
+                }
+                if (customerId != null) {
+                    customerReturns.addTo(customerId, 1);
+                }
+                returnLines++;
+            } else {
+                if (code >= 0) {
+                    skuSold.addTo(code, 1);
+                }
+                if (customerId != null) {
+                    customerPurchases.addTo(customerId, 1);
+                }
+                purchaseLines++;
+            }
+        }
+
+        snapshot = new Snapshot(
+            customerPurchases, customerReturns, skuSold, skuReturned, purchaseLines, returnLines,
+            current.labelCustomerOrders, current.labelCustomerReturns,
+            current.labelSkuOrders, current.labelSkuReturns, toId
+        );
+    }
+
+    private static long customerKey(String customerId) {
+        if (customerId == null || customerId.isBlank()) {
+            return -1;
+        }
+        try {
+            // Dữ liệu nguồn đôi khi có dạng "12345.0"
+            return (long) Double.parseDouble(customerId.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Feature của một lô đơn hàng (cùng thứ tự với đầu vào)
+     */
+    public static final class Features {
+
+        private final double[] customerReturnRates;
+        private final double[] skuReturnRates;
+        private final boolean[] firstTimeCustomers;
+
+        Features(int size) {
+            this.customerReturnRates = new double[size];
+            this.skuReturnRates = new double[size];
+            this.firstTimeCustomers = new boolean[size];
+        }
+
+        public double customerReturnRate(int index) {
+            return customerReturnRates[index];
+        }
+
+        public double skuReturnRate(int index) {
+            return skuReturnRates[index];
+        }
+
+        public boolean isFirstTimeCustomer(int index) {
+            return firstTimeCustomers[index];
+        }
+    }
+
+    /**
+     * Bộ đếm tại một watermark (chỉ đọc, các map không bị sửa sau khi publish)
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(
+            new LongIntHashMap(), new LongIntHashMap(), new LongIntHashMap(), new LongIntHashMap(), 0, 0,
+            new LongIntHashMap(), new LongIntHashMap(), new LongIntHashMap(), new LongIntHashMap(), 0L
+        );
+
+        // Từ online_retail
+        final LongIntHashMap customerPurchases;
+        final LongIntHashMap customerReturns;
+        final LongIntHashMap skuSold;
+        final LongIntHashMap skuReturned;
+        final long purchaseLines;
+        final long returnLines;
+
+        // Từ ReturnRiskScore.actualReturn
+        final LongIntHashMap labelCustomerOrders;
+        final LongIntHashMap labelCustomerReturns;
+        final LongIntHashMap labelSkuOrders;
+        final LongIntHashMap labelSkuReturns;
+
+        final long lastRetailId;
+
+        Snapshot(
+            LongIntHashMap customerPurchases,
+            LongIntHashMap customerReturns,
+            LongIntHashMap skuSold,
+            LongIntHashMap skuReturned,
+            long purchaseLines,
+            long returnLines,
+            LongIntHashMap labelCustomerOrders,
+            LongIntHashMap labelCustomerReturns,
+            LongIntHashMap labelSkuOrders,
+            LongIntHashMap labelSkuReturns,
+            long lastRetailId
+        ) {
+            this.customerPurchases = customerPurchases;
+            this.customerReturns = customerReturns;
+            this.skuSold = skuSold;
+            this.skuReturned = skuReturned;
+            this.purchaseLines = purchaseLines;
+            this.returnLines = returnLines;
+            this.labelCustomerOrders = labelCustomerOrders;
+            this.labelCustomerReturns = labelCustomerReturns;
+            this.labelSkuOrders = labelSkuOrders;
+            this.labelSkuReturns = labelSkuReturns;
+            this.lastRetailId = lastRetailId;
+        }
+
+        Snapshot withOutcomes(
+            LongIntHashMap customerOrders,
+            LongIntHashMap customerReturns,
+            LongIntHashMap skuOrders,
+            LongIntHashMap skuReturns
+        ) {
+            return new Snapshot(
+                customerPurchases, this.customerReturns, skuSold, skuReturned, purchaseLines, returnLines,
+                customerOrders, customerReturns, skuOrders, skuReturns, lastRetailId
+            );
+        }
+
+        // Tỉ lệ dòng hoàn toàn bảng (giá trị mặc định cho khách hàng/SKU chưa có lịch sử)
+        double globalRate() {
+            return purchaseLines == 0 ? 0.0 : Math.min(1.0, (double) returnLines / purchaseLines);
+        }
+    }
+}
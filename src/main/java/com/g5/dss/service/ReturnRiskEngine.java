@@ -0,0 +1,353 @@
+package com.g5.dss.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Engine chấm điểm rủi ro hoàn hàng chạy trong JVM (không gọi HTTP sang model-service)
+ * Mô hình được load từ descriptor JSON có version và có thể thay nóng (reload/swap)
+ * Tùy chọn shadow mode: gửi song song sang Python để so sánh kết quả, không ảnh hưởng response
+ * Số lời gọi shadow đang bay bị giới hạn (shadow-max-in-flight), quá mức thì bỏ qua và đếm,
+ * để shadow không chiếm hết pool kết nối dùng chung với các job thật
+ */
+@Service
+@Slf4j
+public class ReturnRiskEngine {
+
+    private final ResourceLoader resourceLoader;
+    private final ObjectMapper objectMapper;
+    private final ModelServiceClient modelService;
+
+    @Value("${analytics.return-risk.model-location:classpath:models/return-risk-model.json}")
+    private String modelLocation;
+
+    @Value("${analytics.return-risk.shadow-mode:false}")
+    private boolean shadowMode;
+
+    // Lời gọi shadow đang chờ Python tối đa cùng lúc
+    private final int shadowLimit;
+    private final Semaphore shadowPermits;
+
+    private volatile ReturnRiskModel model = ReturnRiskModel.DEFAULT;
+    private volatile LocalDateTime loadedAt = LocalDateTime.now();
+    private volatile long descriptorLastModified = -1;
+
+    private final AtomicLong shadowCompared = new AtomicLong();
+    private final AtomicLong shadowMismatches = new AtomicLong();
+    private final AtomicLong shadowFailures = new AtomicLong();
+    private final AtomicLong shadowDropped = new AtomicLong();
+
+    public ReturnRiskEngine(
+        ResourceLoader resourceLoader,
+        ObjectMapper objectMapper,
+        ModelServiceClient modelService,
+        @Value("${analytics.return-risk.shadow-max-in-flight:20}") int shadowMaxInFlight
+    ) {
+        this.resourceLoader = resourceLoader;
+        this.objectMapper = objectMapper;
+        this.modelService = modelService;
+        this.shadowLimit = shadowMaxInFlight;
+        this.shadowPermits = new Semaphore(shadowMaxInFlight);
+    }
+
+    @PostConstruct
+    void init() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Could not load return risk model from {}, using built-in defaults: {}",
+                modelLocation, e.getMessage());
+        }
+    }
+
+    public ReturnRiskModel getModel() {
+        return model;
+    }
+
+    /**
+     * Đọc lại descriptor từ modelLocation và thay mô hình đang dùng
+     */
+    public synchronized ReturnRiskModel reload() throws Exception {
+        Resource resource = resourceLoader.getResource(modelLocation);
+        ReturnRiskModel loaded;
+        try (InputStream in = resource.getInputStream()) {
+            loaded = objectMapper.readValue(in, ReturnRiskModel.class);
+        }
+        descriptorLastModified = lastModified(resource);
+        swap(loaded);
+        return loaded;
+    }
+
+    /**
+     * Thay mô hình ngay lập tức (các request đang chạy vẫn dùng mô hình cũ đến khi xong)
+     */
+    public void swap(ReturnRiskModel newModel) {
+        ReturnRiskModel previous = model;
+        model = newModel;
+        loadedAt = LocalDateTime.now();
+        if (!previous.getVersion().equals(newModel.getVersion())) {
+            log.info("Return risk model switched from {} to {}", previous.getVersion(), newModel.getVersion());
+        }
+    }
+
+    /**
+     * Descriptor là file trên đĩa và đã thay đổi thì load lại
+     */
+    @Scheduled(fixedDelayString = "${analytics.return-risk.reload-check-ms:30000}")
+    public void reloadIfChanged() {
+        try {
+            long modified = lastModified(resourceLoader.getResource(modelLocation));
+            if (modified > 0 && modified != descriptorLastModified) {
+                reload();
+            }
+        } catch (Exception e) {
+            log.warn("Return risk model reload failed, keeping {}: {}", model.getVersion(), e.getMessage());
+        }
+    }
+
+    /**
+     * Chấm điểm và đề xuất hành động cho một đơn hàng
+     * threshold và các tham số null thì dùng giá trị mặc định của mô hình
+     */
+    public Assessment assess(
+        String orderId,
+        double customerReturnRate,
+        double skuReturnRate,
+        boolean firstTimeCustomer,
+        double orderValue,
+        Double threshold,
+        Double returnProcessingCost,
+        Double shippingCost,
+        Double cogsRatio,
+        Double conversionRateImpact
+    ) {
+        Assessment assessment = assess(
+            model, orderId, customerReturnRate, skuReturnRate, firstTimeCustomer, orderValue,
+            threshold, returnProcessingCost, shippingCost, cogsRatio, conversionRateImpact
+        );
+        if (shadowMode) {
+            shadow(assessment, returnProcessingCost, shippingCost, cogsRatio, conversionRateImpact);
+        }
+        return assessment;
+    }
+
+    /**
+     * Chấm điểm với một mô hình cố định (batch lấy getModel() một lần để cả lô dùng cùng version)
+     * Không gửi shadow sang Python
+     */
+    public Assessment assess(
+        ReturnRiskModel current,
+        String orderId,
+        double customerReturnRate,
+        double skuReturnRate,
+        boolean firstTimeCustomer,
+        double orderValue,
+        Double threshold,
+        Double returnProcessingCost,
+        Double shippingCost,
+        Double cogsRatio,
+        Double conversionRateImpact
+    ) {
+        double tau = threshold != null ? threshold : current.getDefaultThreshold();
+        double returnCost = returnProcessingCost != null ? returnProcessingCost : current.getReturnProcessingCost();
+        double shipping = shippingCost != null ? shippingCost : current.getShippingCost();
+        double cogs = cogsRatio != null ? cogsRatio : current.getCogsRatio();
+        double conversion = conversionRateImpact != null ? conversionRateImpact : current.getConversionRateImpact();
+
+        double score = current.score(customerReturnRate, skuReturnRate, firstTimeCustomer, orderValue);
+        double approved = ReturnRiskModel.profitIfApproved(orderValue, score, cogs, shipping, returnCost);
+        double blocked = ReturnRiskModel.profitIfBlocked(orderValue, cogs, shipping, conversion);
+
+        String action;
+        String reason;
+        if (score < tau) {
+            action = "APPROVE";
+            reason = "Risk score (" + score + ") below threshold (" + tau + ")";
+        } else if (blocked > approved) {
+            action = "BLOCK_COD";
+            reason = "High risk (" + score + ") - Expected profit higher if blocked";
+        } else {
+            action = "REQUIRE_PREPAY";
+            reason = "High risk (" + score + ") - Require prepayment to mitigate";
+        }
+
+        return new Assessment(
+            orderId, score, current.riskLevel(score), action, reason, approved, blocked,
+            ReturnRiskModel.round2(blocked - approved), tau, current.getVersion(),
+            customerReturnRate, skuReturnRate, firstTimeCustomer, orderValue
+        );
+    }
+
+    /**
+     * Thông tin mô hình hiện tại và thống kê shadow mode
+     */
+    public Map<String, Object> getModelInfo() {
+        ReturnRiskModel current = model;
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("version", current.getVersion());
+        info.put("description", current.getDescription());
+        info.put("alpha", current.getAlpha());
+        info.put("beta", current.getBeta());
+        info.put("gamma", current.getGamma());
+        info.put("delta", current.getDelta());
+        info.put("loadedAt", loadedAt);
+        info.put("modelLocation", modelLocation);
+        info.put("shadowMode", shadowMode);
+        info.put("shadowCompared", shadowCompared.get());
+        info.put("shadowMismatches", shadowMismatches.get());
+        info.put("shadowFailures", shadowFailures.get());
+        info.put("shadowDropped", shadowDropped.get());
+        info.put("shadowInFlight", shadowInFlight());
+        return info;
+    }
+
+    /**
+     * Gọi Python không chặn: không chiếm luồng của executor trong lúc chờ, kết quả so sánh trên luồng của client
+     */
+    private void shadow(Assessment local, Double returnCost, Double shipping, Double cogs, Double conversion) {
+        if (!shadowPermits.tryAcquire()) {
+            shadowDropped.incrementAndGet();
+            return;
+        }
+        ReturnRiskModel current = model;
+        Map<String, Object> params = new HashMap<>();
+        params.put("return_processing_cost", returnCost != null ? returnCost : current.getReturnProcessingCost());
+        params.put("shipping_cost", shipping != null ? shipping : current.getShippingCost());
+        params.put("cogs_ratio", cogs != null ? cogs : current.getCogsRatio());
+        params.put("conversion_rate_impact", conversion != null ? conversion : current.getConversionRateImpact());
+
+        Map<String, Object> request = new HashMap<>();
+        request.put("order_data", local.toOrderData());
+        request.put("threshold", local.getThresholdUsed());
+        request.put("params", params);
+
+        try {
+            modelService.post(modelService.endpoints().getPredictRisk(), request, Map.class)
+                .doFinally(signal -> shadowPermits.release())
+                .subscribe(
+                    remote -> compareWithPython(local, remote),
+                    error -> {
+                        shadowFailures.incrementAndGet();
+                        log.debug("Return risk shadow call failed: {}", error.getMessage());
+                    });
+        } catch (RuntimeException e) {
+            shadowPermits.release();
+            shadowFailures.incrementAndGet();
+        }
+    }
+
+    private int shadowInFlight() {
+        return shadowLimit - shadowPermits.availablePermits();
+    }
+
+    private void compareWithPython(Assessment local, Map<?, ?> remote) {
+        shadowCompared.incrementAndGet();
+
+        Object remoteScore = remote.get("riskScore");
+        Object remoteAction = remote.get("recommendedAction");
+        boolean scoreMatches = remoteScore instanceof Number number
+            && Math.abs(number.doubleValue() - local.getRiskScore()) < 0.005;
+        if (!scoreMatches || !local.getRecommendedAction().equals(remoteAction)) {
+            shadowMismatches.incrementAndGet();
+            log.warn("Return risk shadow mismatch for order {}: local {} / {} vs python {} / {}",
+                local.getOrderId(), local.getRiskScore(), local.getRecommendedAction(),
+                remoteScore, remoteAction);
+        }
+    }
+
+    private static long lastModified(Resource resource) {
+        try {
+            return resource.isFile() ? resource.lastModified() : -1;
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Kết quả chấm điểm một đơn (cùng các trường với response của /policy/predict-risk)
+     */
+    @Getter
+    public static class Assessment {
+
+        private final String orderId;
+        private final double riskScore;
+        private final String riskLevel;
+        private final String recommendedAction;
+        private final String actionReason;
+        private final double expectedProfitIfApproved;
+        private final double expectedProfitIfBlocked;
+        private final double profitDifference;
+        private final double thresholdUsed;
+        private final String modelVersion;
+
+        private final double customerReturnRate;
+        private final double skuReturnRate;
+        private final boolean firstTimeCustomer;
+        private final double orderValue;
+
+        Assessment(
+            String orderId,
+            double riskScore,
+            String riskLevel,
+            String recommendedAction,
+            String actionReason,
+            double expectedProfitIfApproved,
+            double expectedProfitIfBlocked,
+            double profitDifference,
+            double thresholdUsed,
+            String modelVersion,
+            double customerReturnRate,
+            double skuReturnRate,
+            boolean firstTimeCustomer,
+            double orderValue
+        ) {
+            this.orderId = orderId;
+            this.riskScore = riskScore;
+            this.riskLevel = riskLevel;
+            this.recommendedAction = recommendedAction;
+            this.actionReason = actionReason;
+            this.expectedProfitIfApproved = expectedProfitIfApproved;
+            this.expectedProfitIfBlocked = expectedProfitIfBlocked;
+            this.profitDifference = profitDifference;
+            this.thresholdUsed = thresholdUsed;
+            this.modelVersion = modelVersion;
+            this.customerReturnRate = customerReturnRate;
+            this.skuReturnRate = skuReturnRate;
+            this.firstTimeCustomer = firstTimeCustomer;
+            this.orderValue = orderValue;
+        }
+
+        /**
+         * Các feature đã dùng (cùng key với pipeline Python)
+         */
+        public Map<String, Object> getFeatures() {
+            Map<String, Object> features = new LinkedHashMap<>();
+            features.put("customer_return_rate", customerReturnRate);
+            features.put("sku_return_rate", skuReturnRate);
+            features.put("is_first_time_customer", firstTimeCustomer);
+            features.put("order_value", orderValue);
+            return features;
+        }
+
+        Map<String, Object> toOrderData() {
+            Map<String, Object> orderData = getFeatures();
+            orderData.put("order_id", orderId);
+            return orderData;
+        }
+    }
+}
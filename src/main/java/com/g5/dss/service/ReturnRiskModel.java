@@ -0,0 +1,130 @@
+package com.g5.dss.service;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Mô hình điểm rủi ro hoàn hàng (bất biến, có version)
+ * Cùng công thức với ReturnRiskPipeline trong model-service/pipelines/return_risk.py:
+ * score = α·customerRate + β·skuRate + γ·firstTime − δ·orderValue, kẹp trong [0, 100], làm tròn 2 chữ số
+ */
+@Getter
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ReturnRiskModel {
+
+    /**
+     * Hệ số mặc định của pipeline Python (dùng khi không đọc được descriptor)
+     */
+    static final ReturnRiskModel DEFAULT = new ReturnRiskModel(
+        "rule-based-v1", "Built-in defaults", 40.0, 35.0, 15.0, 0.05,
+        50.0, 75.0, 75.0, 15.0, 5.0, 0.6, 0.2);
+
+    private final String version;
+    private final String description;
+
+    private final double alpha;     // customer return rate
+    private final double beta;      // SKU return rate
+    private final double gamma;     // first-time customer
+    private final double delta;     // order value (giảm rủi ro)
+
+    private final double mediumRiskFrom;
+    private final double highRiskFrom;
+    private final double defaultThreshold;
+
+    // Tham số kinh doanh mặc định khi policy không có giá trị
+    private final double returnProcessingCost;
+    private final double shippingCost;
+    private final double cogsRatio;
+    private final double conversionRateImpact;
+
+    @JsonCreator
+    public ReturnRiskModel(
+        @JsonProperty("version") String version,
+        @JsonProperty("description") String description,
+        @JsonProperty("alpha") double alpha,
+        @JsonProperty("beta") double beta,
+        @JsonProperty("gamma") double gamma,
+        @JsonProperty("delta") double delta,
+        @JsonProperty("mediumRiskFrom") double mediumRiskFrom,
+        @JsonProperty("highRiskFrom") double highRiskFrom,
+        @JsonProperty("defaultThreshold") double defaultThreshold,
+        @JsonProperty("returnProcessingCost") double returnProcessingCost,
+        @JsonProperty("shippingCost") double shippingCost,
+        @JsonProperty("cogsRatio") double cogsRatio,
+        @JsonProperty("conversionRateImpact") double conversionRateImpact
+    ) {
+        if (version == null || version.isBlank()) {
+            throw new IllegalArgumentException("Return risk model descriptor must have a version");
+        }
+        this.version = version;
+        this.description = description;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.gamma = gamma;
+        this.delta = delta;
+        this.mediumRiskFrom = mediumRiskFrom;
+        this.highRiskFrom = highRiskFrom;
+        this.defaultThreshold = defaultThreshold;
+        this.returnProcessingCost = returnProcessingCost;
+        this.shippingCost = shippingCost;
+        this.cogsRatio = cogsRatio;
+        this.conversionRateImpact = conversionRateImpact;
+    }
+
+    /**
+     * Điểm rủi ro 0-100 (làm tròn 2 chữ số như round() của Python)
+     */
+    public double score(double customerReturnRate, double skuReturnRate, boolean firstTimeCustomer, double orderValue) {
+        double score = alpha * customerReturnRate
+            + beta * skuReturnRate
+            + gamma * (firstTimeCustomer ? 1 : 0)
+            - delta * orderValue;
+        return round2(Math.min(100.0, Math.max(0.0, score)));
+    }
+
+    public String riskLevel(double score) {
+        if (score < mediumRiskFrom) {
+            return "LOW";
+        }
+        return score < highRiskFrom ? "MEDIUM" : "HIGH";
+    }
+
+    /**
+     * Lợi nhuận kỳ vọng nếu duyệt đơn: (rev − cogs − ship) − p·returnCost
+     */
+    public static double profitIfApproved(double revenue, double score, double cogsRatio,
+                                          double shippingCost, double returnProcessingCost) {
+        double margin = revenue - revenue * cogsRatio - shippingCost;
+        return round2(margin - (score / 100.0) * returnProcessingCost);
+    }
+
+    /**
+     * Lợi nhuận kỳ vọng nếu chặn/hạn chế: (rev − cogs − ship)·(1 − conversionImpact)
+     */
+    public static double profitIfBlocked(double revenue, double cogsRatio,
+                                         double shippingCost, double conversionRateImpact) {
+        double margin = revenue - revenue * cogsRatio - shippingCost;
+        return round2(margin * (1 - conversionRateImpact));
+    }
+
+    /**
+     * Python round(x, 2): làm tròn half-even trên giá trị nhị phân chính xác của x
+     */
+    public static double round2(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return value;
+        }
+        // Xa điểm giữa hai giá trị thì Math.rint cho cùng kết quả; chỉ gần .5 mới cần BigDecimal
+        double scaled = value * 100;
+        double fraction = Math.abs(scaled - Math.floor(scaled) - 0.5);
+        if (fraction > 1e-6 && Math.abs(scaled) < 1e15) {
+            return Math.rint(scaled) / 100;
+        }
+        return new BigDecimal(value).setScale(2, RoundingMode.HALF_EVEN).doubleValue();
+    }
+}
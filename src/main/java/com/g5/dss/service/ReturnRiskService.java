@@ -1,5 +1,6 @@
 package com.g5.dss.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.g5.dss.domain.mongo.PolicyConfiguration;
 import com.g5.dss.domain.mongo.ReturnRiskScore;
 import com.g5.dss.dto.*;
@@ -7,10 +8,10 @@ import com.g5.dss.repository.mongo.PolicyConfigurationRepository;
 import com.g5.dss.repository.mongo.ReturnRiskScoreRepository;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 /**
@@ -21,19 +22,45 @@ public class ReturnRiskService {
     
     private final ReturnRiskScoreRepository riskScoreRepository;
     private final PolicyConfigurationRepository policyRepository;
-    private final RestTemplate restTemplate;
+    private final ReturnRiskEngine riskEngine;
+    private final ReturnFeatureStore featureStore;
+    private final ActivePolicyRegistry policyRegistry;
+    private final OrderSampler orderSampler;
+    private final RiskScoreWriter riskScoreWriter;
+    private final ForkJoinPool miningPool;
     
-    @Value("${model-service.base-url:http://localhost:8000}")
-    private String modelServiceUrl;
+    private static final int MAX_BATCH_ERRORS = 100;
+    
+    // Orders scored and inserted per chunk in batch assessment
+    @Value("${analytics.return-risk.batch-size:1000}")
+    private int batchSize;
+    
+    // Upper bound on parameter combinations per sensitivity sweep
+    @Value("${analytics.policy-sweep.max-rows:200000}")
+    private int maxSweepRows;
+    
+    // Upper bound on profit evaluations (rows × curve thresholds) per sensitivity sweep
+    @Value("${analytics.policy-sweep.max-evaluations:20000000}")
+    private long maxSweepEvaluations;
     
     public ReturnRiskService(
         ReturnRiskScoreRepository riskScoreRepository,
         PolicyConfigurationRepository policyRepository,
-        RestTemplate restTemplate
+        ReturnRiskEngine riskEngine,
+        ReturnFeatureStore featureStore,
+        ActivePolicyRegistry policyRegistry,
+        OrderSampler orderSampler,
+        RiskScoreWriter riskScoreWriter,
+        ForkJoinPool miningPool
     ) {
         this.riskScoreRepository = riskScoreRepository;
         this.policyRepository = policyRepository;
-        this.restTemplate = restTemplate;
+        this.riskEngine = riskEngine;
+        this.featureStore = featureStore;
+        this.policyRegistry = policyRegistry;
+        this.orderSampler = orderSampler;
+        this.riskScoreWriter = riskScoreWriter;
+        this.miningPool = miningPool;
     }
     
     /**
@@ -42,90 +69,209 @@ public class ReturnRiskService {
     public RiskAssessmentResponse assessOrderRisk(OrderRiskRequest request, String username) {
         try {
             // Get active policy or use default
-            PolicyConfiguration policy = getActivePolicy(request.getCountry());
-            
-            // Prepare request for ML service
-            Map<String, Object> orderData = new HashMap<>();
-            orderData.put("order_id", request.getOrderId());
-            orderData.put("customer_id", request.getCustomerId());
-            orderData.put("stock_code", request.getStockCode());
-            orderData.put("order_value", request.getQuantity() * request.getUnitPrice());
+            PolicyConfiguration policy = policyRegistry.resolve(request.getCountry(), request.getChannel());
             
-            // Add calculated features (would fetch from DB in production)
-            orderData.put("customer_return_rate", calculateCustomerReturnRate(request.getCustomerId()));
-            orderData.put("sku_return_rate", calculateSkuReturnRate(request.getStockCode()));
-            orderData.put("is_first_time_customer", isFirstTimeCustomer(request.getCustomerId()));
+            // Features from the in-memory return feature store
+            ReturnRiskEngine.Assessment assessment = riskEngine.assess(
+                request.getOrderId(),
+                featureStore.customerReturnRate(request.getCustomerId()),
+                featureStore.skuReturnRate(request.getStockCode()),
+                featureStore.isFirstTimeCustomer(request.getCustomerId()),
+                request.getQuantity() * request.getUnitPrice(),
+                policy.getOptimalThreshold(),
+                policy.getReturnProcessingCost(),
+                policy.getShippingCostDefault(),
+                policy.getCogsRatio(),
+                policy.getConversionRateImpact()
+            );
             
-            Map<String, Object> mlRequest = new HashMap<>();
-            mlRequest.put("order_data", orderData);
-            mlRequest.put("threshold", policy.getOptimalThreshold());
-            mlRequest.put("params", buildPolicyParams(policy));
-            
-            // Call ML service
-            String url = modelServiceUrl + "/policy/predict-risk";
-            @SuppressWarnings("unchecked")
-            Map<String, Object> mlResponse = restTemplate.postForObject(url, mlRequest, Map.class);
-            
-            // Save risk score to database
-            ReturnRiskScore riskScore = saveRiskScore(mlResponse, request, policy, username);
+            // Queue risk score for write-behind persistence (response does not wait for MongoDB)
+            riskScoreWriter.submit(buildRiskScore(assessment, request, policy, username));
             
             // Build response
-            return buildRiskAssessmentResponse(mlResponse, policy);
+            return buildRiskAssessmentResponse(assessment, policy);
             
         } catch (Exception e) {
             throw new RuntimeException("Error assessing order risk: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Assess return risk for a stream of orders
+     * Orders are processed in chunks: features come from one feature store snapshot,
+     * policies from the in-memory registry and scores are bulk-inserted (insertMany)
+     * Malformed input stops the batch: orders read before it are still persisted and the
+     * response is marked aborted, so the caller knows exactly what was written
+     */
+    public BatchRiskAssessmentResponse assessOrderRiskBatch(
+        Iterator<OrderRiskRequest> orders,
+        String username,
+        boolean includeResults
+    ) {
+        long start = System.currentTimeMillis();
+        ReturnRiskModel model = riskEngine.getModel();
+        BatchRiskAssessmentResponse response = new BatchRiskAssessmentResponse();
+        response.setModelVersion(model.getVersion());
+        if (includeResults) {
+            response.setResults(new ArrayList<>());
+        }
+        
+        List<OrderRiskRequest> chunk = new ArrayList<>(batchSize);
+        while (true) {
+            OrderRiskRequest order;
+            try {
+                if (!orders.hasNext()) {
+                    break;
+                }
+                order = orders.next();
+            } catch (RuntimeException e) {
+                String parseError = malformedInput(e);
+                if (parseError == null) {
+                    throw e;
+                }
+                response.setAborted(true);
+                response.getErrors().add(parseError);
+                break;
+            }
+            String error = validate(order);
+            if (error != null) {
+                response.setFailed(response.getFailed() + 1);
+                if (response.getErrors().size() < MAX_BATCH_ERRORS) {
+                    response.getErrors().add(order.getOrderId() + ": " + error);
+                }
+                continue;
+            }
+            chunk.add(order);
+            if (chunk.size() == batchSize) {
+                assessChunk(chunk, model, username, response);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            assessChunk(chunk, model, username, response);
+        }
+        
+        response.setDurationMs(System.currentTimeMillis() - start);
+        return response;
+    }
+    
+    /**
+     * Reader errors from a streamed body: MappingIterator wraps mapping errors in RuntimeJsonMappingException
+     * and syntax errors (bad JSON, truncated NDJSON line) in a plain RuntimeException
+     */
+    private static String malformedInput(RuntimeException e) {
+        if (!(e.getCause() instanceof JsonProcessingException parse)) {
+            return null;
+        }
+        return parse.getLocation() != null
+            ? "malformed input at line " + parse.getLocation().getLineNr() + ": " + parse.getOriginalMessage()
+            : "malformed input: " + parse.getOriginalMessage();
+    }
+    
+    private void assessChunk(
+        List<OrderRiskRequest> chunk,
+        ReturnRiskModel model,
+        String username,
+        BatchRiskAssessmentResponse response
+    ) {
+        ReturnFeatureStore.Features features = featureStore.lookup(
+            chunk.stream().map(OrderRiskRequest::getCustomerId).collect(Collectors.toList()),
+            chunk.stream().map(OrderRiskRequest::getStockCode).collect(Collectors.toList())
+        );
+        
+        List<ReturnRiskScore> scores = new ArrayList<>(chunk.size());
+        for (int i = 0; i < chunk.size(); i++) {
+            OrderRiskRequest request = chunk.get(i);
+            PolicyConfiguration policy = policyRegistry.resolve(request.getCountry(), request.getChannel());
+            ReturnRiskEngine.Assessment assessment = riskEngine.assess(
+                model,
+                request.getOrderId(),
+                features.customerReturnRate(i),
+                features.skuReturnRate(i),
+                features.isFirstTimeCustomer(i),
+                request.getQuantity() * request.getUnitPrice(),
+                policy.getOptimalThreshold(),
+                policy.getReturnProcessingCost(),
+                policy.getShippingCostDefault(),
+                policy.getCogsRatio(),
+                policy.getConversionRateImpact()
+            );
+            scores.add(buildRiskScore(assessment, request, policy, username));
+            response.getActionCounts().merge(assessment.getRecommendedAction(), 1, Integer::sum);
+            response.getRiskLevelCounts().merge(assessment.getRiskLevel(), 1, Integer::sum);
+            if (response.getResults() != null) {
+                response.getResults().add(buildRiskAssessmentResponse(assessment, policy));
+            }
+        }
+        
+        riskScoreRepository.insert(scores);
+        response.setProcessed(response.getProcessed() + chunk.size());
+        response.setPersisted(response.getPersisted() + scores.size());
+    }
+    
+    private static String validate(OrderRiskRequest order) {
+        if (order == null) {
+            return "empty order";
+        }
+        if (order.getQuantity() == null || order.getUnitPrice() == null) {
+            return "quantity and unitPrice are required";
+        }
+        return null;
+    }
+    
     /**
      * Simulate policy with specific threshold
      */
     public PolicySimulationResponse simulatePolicy(PolicySimulationRequest request) {
-        try {
-            // Fetch sample orders data
-            List<Map<String, Object>> ordersData = fetchSampleOrders(request);
-            
-            Map<String, Object> mlRequest = new HashMap<>();
-            mlRequest.put("orders_data", ordersData);
-            mlRequest.put("threshold", request.getThreshold());
-            mlRequest.put("params", buildSimulationParams(request));
-            
-            // Call ML service
-            String url = modelServiceUrl + "/policy/simulate";
-            @SuppressWarnings("unchecked")
-            Map<String, Object> mlResponse = restTemplate.postForObject(url, mlRequest, Map.class);
-            
-            return buildSimulationResponse(mlResponse);
-            
-        } catch (Exception e) {
-            throw new RuntimeException("Error simulating policy: " + e.getMessage(), e);
-        }
+        ThresholdOptimizer optimizer = buildOptimizer(request);
+        ThresholdOptimizer.Point point = optimizer.at(request.getThreshold() != null
+            ? request.getThreshold() : riskEngine.getModel().getDefaultThreshold());
+        
+        int totalOrders = optimizer.size();
+        PolicySimulationResponse response = new PolicySimulationResponse();
+        response.setThreshold(point.threshold());
+        response.setTotalExpectedProfit(point.profit());
+        response.setTotalOrders(totalOrders);
+        response.setOrdersImpacted(point.ordersImpacted());
+        response.setOrdersImpactedPct(totalOrders > 0
+            ? ReturnRiskModel.round2(point.ordersImpacted() * 100.0 / totalOrders) : 0.0);
+        response.setRevenueAtRisk(point.revenueImpacted());
+        return response;
     }
     
     /**
-     * Find optimal threshold τ*
+     * Find optimal threshold τ* over [0, 100] (step from request, default 1, at least 0.01)
      */
     public OptimalThresholdResponse findOptimalThreshold(PolicySimulationRequest request) {
-        try {
-            // Fetch sample orders data
-            List<Map<String, Object>> ordersData = fetchSampleOrders(request);
-            
-            Map<String, Object> mlRequest = new HashMap<>();
-            mlRequest.put("orders_data", ordersData);
-            mlRequest.put("params", buildSimulationParams(request));
-            mlRequest.put("threshold_range", Arrays.asList(0, 100));
-            mlRequest.put("step", 1.0);
-            
-            // Call ML service
-            String url = modelServiceUrl + "/policy/optimize-threshold";
-            @SuppressWarnings("unchecked")
-            Map<String, Object> mlResponse = restTemplate.postForObject(url, mlRequest, Map.class);
-            
-            return buildOptimalThresholdResponse(mlResponse);
-            
-        } catch (Exception e) {
-            throw new RuntimeException("Error finding optimal threshold: " + e.getMessage(), e);
+        // Kiểm tra bước trước khi lấy mẫu đơn hàng
+        double step = request.getThresholdStep() != null ? request.getThresholdStep() : 1.0;
+        double[] thresholds = ThresholdOptimizer.thresholds(0.0, 100.0, step);
+        ThresholdOptimizer optimizer = buildOptimizer(request);
+        List<ThresholdOptimizer.Point> points = optimizer.curve(thresholds);
+        
+        ThresholdOptimizer.Point best = points.get(0);
+        for (ThresholdOptimizer.Point point : points) {
+            if (point.profit() > best.profit()) {
+                best = point;
+            }
         }
+        // Baseline: threshold = 0 (approve all)
+        double profitGain = ReturnRiskModel.round2(best.profit() - optimizer.at(0.0).profit());
+        double optimalThreshold = best.threshold();
+        
+        OptimalThresholdResponse response = new OptimalThresholdResponse();
+        response.setOptimalThreshold(optimalThreshold);
+        response.setMaxExpectedProfit(best.profit());
+        response.setProfitProtectedPerMonth(profitGain);
+        response.setRecommendation(String.format(Locale.ROOT,
+            "Set threshold to %.0f to protect $%,.2f in profit", optimalThreshold, profitGain));
+        response.setPolicyRules(buildPolicyRules(optimalThreshold));
+        response.setSensitivityNote(analyzeSensitivity(points, best));
+        response.setProfitCurve(points.stream()
+            .map(p -> new PolicySimulationResponse.ThresholdDataPoint(
+                p.threshold(), p.profit(), p.ordersImpacted(), p.revenueImpacted()))
+            .collect(Collectors.toList()));
+        return response;
     }
     
     /**
@@ -136,6 +282,77 @@ public class ReturnRiskService {
         return optimal.getProfitCurve();
     }
     
+    /**
+     * Evaluate many cost-parameter combinations (grid, Latin hypercube or tornado) against one sample
+     * Orders are scored and sorted once; each combination is O(1) per threshold from prefix sums
+     */
+    public SensitivitySweepResponse sweepSensitivity(SensitivitySweepRequest request) {
+        long start = System.currentTimeMillis();
+        ReturnRiskModel model = riskEngine.getModel();
+        double[] base = {
+            request.getReturnProcessingCost() != null
+                ? request.getReturnProcessingCost() : model.getReturnProcessingCost(),
+            request.getShippingCostDefault() != null
+                ? request.getShippingCostDefault() : model.getShippingCost(),
+            request.getCogsRatio() != null
+                ? request.getCogsRatio() : model.getCogsRatio() * 100.0,
+            request.getConversionRateImpact() != null
+                ? request.getConversionRateImpact() : model.getConversionRateImpact() * 100.0
+        };
+        SensitivitySweep sweep = SensitivitySweep.design(
+            request.getMode(),
+            request.getRanges(),
+            base,
+            request.getSamples(),
+            request.getSeed() != null ? request.getSeed() : 42L,
+            maxSweepRows
+        );
+        double[] curveThresholds = Boolean.TRUE.equals(request.getOptimizeThreshold())
+            ? ThresholdOptimizer.thresholds(0.0, 100.0,
+                request.getThresholdStep() != null ? request.getThresholdStep() : 1.0)
+            : null;
+        sweep.checkEvaluations(curveThresholds, maxSweepEvaluations);
+        
+        OrderSample sample = orderSampler.sample(
+            request.getDateFrom(),
+            request.getDateTo(),
+            request.getCountry(),
+            request.getSampleSize(),
+            request.getStrata()
+        );
+        ThresholdOptimizer optimizer = buildOptimizer(model, sample, base[0], base[1], base[2] / 100.0, base[3] / 100.0);
+        double threshold = request.getThreshold() != null ? request.getThreshold() : model.getDefaultThreshold();
+        SensitivitySweep.Result result = sweep.evaluate(optimizer, threshold, curveThresholds, miningPool);
+        
+        int approved = optimizer.approvedCount(threshold);
+        SensitivitySweepResponse response = new SensitivitySweepResponse();
+        response.setMode(sweep.mode());
+        response.setRows(sweep.rows());
+        response.setSampleSize(optimizer.size());
+        response.setPopulation(sample.getPopulation());
+        response.setThreshold(threshold);
+        response.setOrdersImpacted(optimizer.size() - approved);
+        response.setBaselineProfit(ReturnRiskModel.round2(
+            SensitivitySweep.profit(optimizer, approved, base[0], base[1], base[2], base[3])));
+        response.setParameters(sweep.swept());
+        
+        Map<String, double[]> columns = response.getColumns();
+        for (String parameter : sweep.swept()) {
+            columns.put(parameter, sweep.column(parameter));
+        }
+        if (sweep.varied() != null) {
+            columns.put("varied", Arrays.stream(sweep.varied()).asDoubleStream().toArray());
+        }
+        columns.put("profit", result.profit);
+        if (curveThresholds != null) {
+            columns.put("optimalThreshold", result.optimalThreshold);
+            columns.put("maxProfit", result.maxProfit);
+            columns.put("ordersImpactedAtOptimum", result.ordersImpactedAtOptimum);
+        }
+        response.setDurationMs(System.currentTimeMillis() - start);
+        return response;
+    }
+    
     /**
      * Deploy a new policy configuration
      */
@@ -151,133 +368,117 @@ public class ReturnRiskService {
         policy.setActivatedBy(username);
         policy.setLastModified(LocalDateTime.now());
         
-        return policyRepository.save(policy);
+        PolicyConfiguration saved = policyRepository.save(policy);
+        policyRegistry.refresh();
+        return saved;
     }
     
     /**
-     * Get active policy for country (or global default)
+     * Score the sampled orders and build prefix sums for threshold sweeps
+     * Percent inputs (cogsRatio, conversionRateImpact) are 0-100; missing ones use model defaults
      */
-    private PolicyConfiguration getActivePolicy(String country) {
-        // Try country-specific policy first
-        if (country != null) {
-            List<PolicyConfiguration> countryPolicies = policyRepository.findByCountry(country);
-            Optional<PolicyConfiguration> activeCountryPolicy = countryPolicies.stream()
-                .filter(PolicyConfiguration::getIsActive)
-                .findFirst();
-            if (activeCountryPolicy.isPresent()) {
-                return activeCountryPolicy.get();
-            }
-        }
+    private ThresholdOptimizer buildOptimizer(PolicySimulationRequest request) {
+        ReturnRiskModel model = riskEngine.getModel();
+        OrderSample sample = orderSampler.sample(
+            request.getDateFrom(),
+            request.getDateTo(),
+            request.getCountry(),
+            request.getSampleSize(),
+            request.getStrata()
+        );
         
-        // Fall back to global default
-        return policyRepository.findByIsDefaultTrue()
-            .orElseGet(this::createDefaultPolicy);
+        return buildOptimizer(
+            model,
+            sample,
+            request.getReturnProcessingCost() != null
+                ? request.getReturnProcessingCost() : model.getReturnProcessingCost(),
+            request.getShippingCostDefault() != null
+                ? request.getShippingCostDefault() : model.getShippingCost(),
+            request.getCogsRatio() != null
+                ? request.getCogsRatio() / 100.0 : model.getCogsRatio(),
+            request.getConversionRateImpact() != null
+                ? request.getConversionRateImpact() / 100.0 : model.getConversionRateImpact()
+        );
     }
     
-    /**
-     * Create default policy if none exists
-     */
-    private PolicyConfiguration createDefaultPolicy() {
-        PolicyConfiguration policy = new PolicyConfiguration();
-        policy.setPolicyName("Default Policy");
-        policy.setDescription("System default return risk policy");
-        policy.setOptimalThreshold(75.0);
-        policy.setReturnProcessingCost(15.0);
-        policy.setShippingCostDefault(5.0);
-        policy.setCogsRatio(0.6);
-        policy.setConversionRateImpact(0.2);
-        policy.setIsActive(true);
-        policy.setIsDefault(true);
-        
-        // Default thresholds
-        List<PolicyConfiguration.PolicyThreshold> thresholds = new ArrayList<>();
-        thresholds.add(new PolicyConfiguration.PolicyThreshold(0.0, 50.0, "APPROVE", "Low risk"));
-        thresholds.add(new PolicyConfiguration.PolicyThreshold(50.0, 75.0, "REQUIRE_PREPAY", "Medium risk"));
-        thresholds.add(new PolicyConfiguration.PolicyThreshold(75.0, 100.0, "BLOCK_COD", "High risk"));
-        policy.setThresholds(thresholds);
-        
-        return policyRepository.save(policy);
-    }
-    
-    /**
-     * Build policy parameters for ML service
-     */
-    private Map<String, Double> buildPolicyParams(PolicyConfiguration policy) {
-        Map<String, Double> params = new HashMap<>();
-        params.put("return_processing_cost", policy.getReturnProcessingCost());
-        params.put("shipping_cost", policy.getShippingCostDefault());
-        params.put("cogs_ratio", policy.getCogsRatio());
-        params.put("conversion_rate_impact", policy.getConversionRateImpact());
-        return params;
-    }
-    
-    /**
-     * Build simulation parameters from request
-     */
-    private Map<String, Double> buildSimulationParams(PolicySimulationRequest request) {
-        Map<String, Double> params = new HashMap<>();
-        params.put("return_processing_cost", request.getReturnProcessingCost());
-        params.put("shipping_cost", request.getShippingCostDefault());
-        params.put("cogs_ratio", request.getCogsRatio() / 100.0);
-        params.put("conversion_rate_impact", request.getConversionRateImpact() / 100.0);
-        return params;
+    private static ThresholdOptimizer buildOptimizer(
+        ReturnRiskModel model,
+        OrderSample sample,
+        double returnProcessingCost,
+        double shippingCost,
+        double cogsRatio,
+        double conversionRateImpact
+    ) {
+        return ThresholdOptimizer.build(
+            model,
+            sample.customerReturnRates(),
+            sample.skuReturnRates(),
+            sample.firstTimeCustomers(),
+            sample.orderValues(),
+            returnProcessingCost,
+            shippingCost,
+            cogsRatio,
+            conversionRateImpact
+        );
     }
     
     /**
-     * Fetch sample orders for simulation (mock implementation)
+     * Policy decision matrix around the optimal threshold
      */
-    private List<Map<String, Object>> fetchSampleOrders(PolicySimulationRequest request) {
-        // In production, this would query actual order data from database
-        // For now, return mock data
-        List<Map<String, Object>> orders = new ArrayList<>();
-        Random random = new Random(42); // Fixed seed for reproducibility
-        
-        int sampleSize = request.getSampleSize() != null ? request.getSampleSize() : 1000;
-        
-        for (int i = 0; i < sampleSize; i++) {
-            Map<String, Object> order = new HashMap<>();
-            order.put("order_id", "ORD" + i);
-            order.put("customer_id", "CUST" + (i % 200));
-            order.put("stock_code", "SKU" + (i % 50));
-            order.put("order_value", 20 + random.nextDouble() * 200); // $20-$220
-            order.put("customer_return_rate", random.nextDouble() * 0.3); // 0-30%
-            order.put("sku_return_rate", random.nextDouble() * 0.25); // 0-25%
-            order.put("is_first_time_customer", random.nextBoolean());
-            orders.add(order);
+    private static List<OptimalThresholdResponse.PolicyRule> buildPolicyRules(double threshold) {
+        List<OptimalThresholdResponse.PolicyRule> rules = new ArrayList<>();
+        if (threshold > 0) {
+            rules.add(new OptimalThresholdResponse.PolicyRule(
+                String.format(Locale.ROOT, "0 - %.0f", threshold),
+                "APPROVE",
+                "Low risk - Approve with standard policy"
+            ));
         }
-        
-        return orders;
-    }
-    
-    /**
-     * Calculate customer return rate (mock - would query DB in production)
-     */
-    private Double calculateCustomerReturnRate(String customerId) {
-        // In production: query historical orders for this customer
-        return Math.random() * 0.3; // Mock: 0-30%
-    }
-    
-    /**
-     * Calculate SKU return rate (mock - would query DB in production)
-     */
-    private Double calculateSkuReturnRate(String stockCode) {
-        // In production: query historical orders for this SKU
-        return Math.random() * 0.25; // Mock: 0-25%
+        if (threshold < 100) {
+            double midThreshold = (threshold + 100) / 2;
+            rules.add(new OptimalThresholdResponse.PolicyRule(
+                String.format(Locale.ROOT, "%.0f - %.0f", threshold, midThreshold),
+                "REQUIRE_PREPAY",
+                "Medium-High risk - Require prepayment"
+            ));
+            rules.add(new OptimalThresholdResponse.PolicyRule(
+                String.format(Locale.ROOT, "%.0f - 100", midThreshold),
+                "BLOCK_COD",
+                "Very High risk - Block COD, cash only"
+            ));
+        }
+        return rules;
     }
     
     /**
-     * Check if customer is first-time (mock - would query DB in production)
+     * Whether profit is flat (within 2%) over a range of thresholds around τ*
      */
-    private Boolean isFirstTimeCustomer(String customerId) {
-        // In production: check if customer has previous orders
-        return Math.random() < 0.2; // Mock: 20% are first-time
+    private static String analyzeSensitivity(List<ThresholdOptimizer.Point> curve, ThresholdOptimizer.Point best) {
+        double optimalProfit = best.profit();
+        double minPlateau = Double.MAX_VALUE;
+        double maxPlateau = -Double.MAX_VALUE;
+        int plateau = 0;
+        for (ThresholdOptimizer.Point point : curve) {
+            double gap = Math.abs(point.profit() - optimalProfit);
+            if (optimalProfit != 0 ? gap / Math.abs(optimalProfit) < 0.02 : gap == 0) {
+                plateau++;
+                minPlateau = Math.min(minPlateau, point.threshold());
+                maxPlateau = Math.max(maxPlateau, point.threshold());
+            }
+        }
+        if (plateau > 5) {
+            return String.format(Locale.ROOT,
+                "Profit relatively stable around τ* (range: %.0f-%.0f)", minPlateau, maxPlateau);
+        }
+        return String.format(Locale.ROOT,
+            "Profit sensitive to threshold - recommend staying close to τ* = %.0f", best.threshold());
     }
     
     /**
-     * Save risk score to database
+     * Build risk score document from engine result
      */
-    private ReturnRiskScore saveRiskScore(
-        Map<String, Object> mlResponse,
+    private ReturnRiskScore buildRiskScore(
+        ReturnRiskEngine.Assessment assessment,
         OrderRiskRequest request,
         PolicyConfiguration policy,
         String username
@@ -286,93 +487,45 @@ public class ReturnRiskService {
         score.setOrderId(request.getOrderId());
         score.setCustomerId(request.getCustomerId());
         score.setStockCode(request.getStockCode());
-        score.setRiskScore((Double) mlResponse.get("riskScore"));
-        score.setRiskLevel((String) mlResponse.get("riskLevel"));
-        score.setRecommendedAction((String) mlResponse.get("recommendedAction"));
-        score.setActionReason((String) mlResponse.get("actionReason"));
-        score.setExpectedProfitIfApproved((Double) mlResponse.get("expectedProfitIfApproved"));
-        score.setExpectedProfitIfBlocked((Double) mlResponse.get("expectedProfitIfBlocked"));
+        score.setRiskScore(assessment.getRiskScore());
+        score.setRiskLevel(assessment.getRiskLevel());
+        score.setRecommendedAction(assessment.getRecommendedAction());
+        score.setActionReason(assessment.getActionReason());
+        score.setExpectedProfitIfApproved(assessment.getExpectedProfitIfApproved());
+        score.setExpectedProfitIfBlocked(assessment.getExpectedProfitIfBlocked());
+        score.setCustomerReturnRate(assessment.getCustomerReturnRate());
+        score.setSkuReturnRate(assessment.getSkuReturnRate());
+        score.setIsFirstTimeCustomer(assessment.isFirstTimeCustomer());
+        score.setOrderValue(assessment.getOrderValue());
         score.setRevenue(request.getQuantity() * request.getUnitPrice());
         score.setQuantity(request.getQuantity());
         score.setCountry(request.getCountry());
         score.setPolicyId(policy.getId());
-        score.setThresholdUsed((Double) mlResponse.get("thresholdUsed"));
+        score.setThresholdUsed(assessment.getThresholdUsed());
+        score.setModelVersion(assessment.getModelVersion());
         score.setScoredBy(username);
-        
-        return riskScoreRepository.save(score);
+        return score;
     }
     
     /**
-     * Build risk assessment response from ML response
+     * Build risk assessment response from engine result
      */
     private RiskAssessmentResponse buildRiskAssessmentResponse(
-        Map<String, Object> mlResponse,
+        ReturnRiskEngine.Assessment assessment,
         PolicyConfiguration policy
     ) {
         RiskAssessmentResponse response = new RiskAssessmentResponse();
-        response.setOrderId((String) mlResponse.get("orderId"));
-        response.setRiskScore((Double) mlResponse.get("riskScore"));
-        response.setRiskLevel((String) mlResponse.get("riskLevel"));
-        response.setRecommendedAction((String) mlResponse.get("recommendedAction"));
-        response.setActionReason((String) mlResponse.get("actionReason"));
-        response.setExpectedProfitIfApproved((Double) mlResponse.get("expectedProfitIfApproved"));
-        response.setExpectedProfitIfBlocked((Double) mlResponse.get("expectedProfitIfBlocked"));
-        response.setProfitDifference((Double) mlResponse.get("profitDifference"));
-        response.setFeatures((Map<String, Object>) mlResponse.get("features"));
+        response.setOrderId(assessment.getOrderId());
+        response.setRiskScore(assessment.getRiskScore());
+        response.setRiskLevel(assessment.getRiskLevel());
+        response.setRecommendedAction(assessment.getRecommendedAction());
+        response.setActionReason(assessment.getActionReason());
+        response.setExpectedProfitIfApproved(assessment.getExpectedProfitIfApproved());
+        response.setExpectedProfitIfBlocked(assessment.getExpectedProfitIfBlocked());
+        response.setProfitDifference(assessment.getProfitDifference());
+        response.setFeatures(assessment.getFeatures());
         response.setPolicyId(policy.getId());
-        response.setThresholdUsed((Double) mlResponse.get("thresholdUsed"));
-        return response;
-    }
-    
-    /**
-     * Build simulation response from ML response
-     */
-    private PolicySimulationResponse buildSimulationResponse(Map<String, Object> mlResponse) {
-        PolicySimulationResponse response = new PolicySimulationResponse();
-        response.setThreshold((Double) mlResponse.get("threshold"));
-        response.setTotalExpectedProfit((Double) mlResponse.get("totalExpectedProfit"));
-        response.setTotalOrders((Integer) mlResponse.get("totalOrders"));
-        response.setOrdersImpacted((Integer) mlResponse.get("ordersImpacted"));
-        response.setOrdersImpactedPct((Double) mlResponse.get("ordersImpactedPct"));
-        response.setRevenueAtRisk((Double) mlResponse.get("revenueAtRisk"));
-        return response;
-    }
-    
-    /**
-     * Build optimal threshold response from ML response
-     */
-    @SuppressWarnings("unchecked")
-    private OptimalThresholdResponse buildOptimalThresholdResponse(Map<String, Object> mlResponse) {
-        OptimalThresholdResponse response = new OptimalThresholdResponse();
-        response.setOptimalThreshold((Double) mlResponse.get("optimalThreshold"));
-        response.setMaxExpectedProfit((Double) mlResponse.get("maxExpectedProfit"));
-        response.setRecommendation((String) mlResponse.get("recommendation"));
-        response.setProfitProtectedPerMonth((Double) mlResponse.get("profitGainVsBaseline"));
-        response.setSensitivityNote((String) mlResponse.get("sensitivityNote"));
-        
-        // Convert policy rules
-        List<Map<String, String>> rulesData = (List<Map<String, String>>) mlResponse.get("policyRules");
-        List<OptimalThresholdResponse.PolicyRule> rules = rulesData.stream()
-            .map(r -> new OptimalThresholdResponse.PolicyRule(
-                r.get("scoreRange"),
-                r.get("action"),
-                r.get("description")
-            ))
-            .collect(Collectors.toList());
-        response.setPolicyRules(rules);
-        
-        // Convert profit curve
-        List<Map<String, Object>> curveData = (List<Map<String, Object>>) mlResponse.get("profitCurve");
-        List<PolicySimulationResponse.ThresholdDataPoint> curve = curveData.stream()
-            .map(d -> new PolicySimulationResponse.ThresholdDataPoint(
-                (Double) d.get("threshold"),
-                (Double) d.get("profit"),
-                (Integer) d.get("ordersImpacted"),
-                (Double) d.get("revenueImpacted")
-            ))
-            .collect(Collectors.toList());
-        response.setProfitCurve(curve);
-        
+        response.setThresholdUsed(assessment.getThresholdUsed());
         return response;
     }
 }
@@ -0,0 +1,215 @@
+package com.g5.dss.service;
+
+import com.g5.dss.domain.jpa.AggregateWatermark;
+import com.g5.dss.domain.jpa.CustomerRfmAggregate;
+import com.g5.dss.domain.jpa.CustomerRfmProjection;
+import com.g5.dss.repository.jpa.AggregateWatermarkRepository;
+import com.g5.dss.repository.jpa.CustomerRfmAggregateRepository;
+import com.g5.dss.repository.jpa.OnlineRetailJpaRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Service duy trì bảng tổng hợp RFM theo khách hàng (customer_rfm_aggregate)
+ * Build một lần rồi cập nhật tăng dần từ các dòng online_retail mới (theo id)
+ * Mỗi batch được gom nhóm bằng SQL (CustomerRfmProjection), không load entity
+ * <p>
+ * Watermark theo id giả định online_retail chỉ append và có một writer duy nhất (ETL trong db/etl,
+ * load tuần tự theo id tăng dần); ứng dụng không bao giờ ghi bảng này. Dòng commit muộn với id nhỏ hơn
+ * watermark, UPDATE hay DELETE đều không được thấy. Muốn sửa/xóa dữ liệu thì phải load lại toàn bộ bảng,
+ * xóa customer_rfm_aggregate và aggregate_watermark rồi khởi động lại (RetailColumnStore, ProductInvoiceIndex
+ * và ReturnFeatureStore dùng cùng giả định này)
+ */
+@Service
+@Slf4j
+public class RfmAggregateService {
+
+    static final String WATERMARK_NAME = "customer_rfm";
+
+    private final OnlineRetailJpaRepository retailRepository;
+    private final CustomerRfmAggregateRepository aggregateRepository;
+    private final AggregateWatermarkRepository watermarkRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Chỉ một luồng cập nhật tại một thời điểm trên mỗi node
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    // Watermark đã commit (đọc lock-free bởi các cache phía trên)
+    private volatile long committedWatermark = -1;
+    private long pendingWatermark;
+
+    // Độ rộng khoảng id online_retail xử lý trong một transaction
+    @Value("${analytics.rfm.batch-size:50000}")
+    private int batchSize;
+
+    public RfmAggregateService(
+        OnlineRetailJpaRepository retailRepository,
+        CustomerRfmAggregateRepository aggregateRepository,
+        AggregateWatermarkRepository watermarkRepository,
+        PlatformTransactionManager transactionManager,
+        ApplicationEventPublisher eventPublisher
+    ) {
+        this.retailRepository = retailRepository;
+        this.aggregateRepository = aggregateRepository;
+        this.watermarkRepository = watermarkRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Watermark hiện tại của bảng tổng hợp (-1 nếu chưa refresh lần nào)
+     */
+    public long getWatermark() {
+        return committedWatermark;
+    }
+
+    /**
+     * Lấy toàn bộ tổng hợp RFM (đã cập nhật tới các dòng mới nhất)
+     */
+    public List<CustomerRfmAggregate> getAggregates() {
+        refresh();
+        return aggregateRepository.findAll();
+    }
+
+    /**
+     * Cập nhật định kỳ để request đọc không phải chờ batch lớn
+     */
+    @Scheduled(
+        initialDelayString = "${analytics.rfm.initial-delay-ms:10000}",
+        fixedDelayString = "${analytics.rfm.refresh-interval-ms:60000}"
+    )
+    public void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("Scheduled RFM aggregate refresh failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Cộng dồn các dòng online_retail có id > watermark vào bảng tổng hợp
+     * Nếu đang có luồng khác cập nhật thì bỏ qua và đọc dữ liệu hiện có
+     *
+     * @return số dòng online_retail đã xử lý
+     */
+    public long refresh() {
+        if (!refreshLock.tryLock()) {
+            return 0;
+        }
+        try {
+            long applied = 0;
+            while (true) {
+                Long rows = transactionTemplate.execute(status -> applyNextBatch());
+                committedWatermark = pendingWatermark;
+                if (rows == null || rows == 0) {
+                    break;
+                }
+                applied += rows;
+            }
+            if (applied > 0) {
+                log.info("Applied {} new online_retail rows to RFM aggregates", applied);
+                eventPublisher.publishEvent(new RetailDataChangedEvent(committedWatermark, applied));
+            }
+            return applied;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Xử lý khoảng id (watermark, watermark + batchSize] trong một transaction
+     * Việc gom nhóm chạy bằng GROUP BY trong MySQL; aggregate + watermark commit cùng nhau
+     */
+    private long applyNextBatch() {
+        AggregateWatermark watermark = watermarkRepository.findById(WATERMARK_NAME)
+            .orElseGet(() -> AggregateWatermark.builder()
+                .name(WATERMARK_NAME)
+                .lastRetailId(0L)
+                .build());
+        long fromId = watermark.getLastRetailId();
+        pendingWatermark = fromId;
+
+        Long maxId = retailRepository.findMaxId();
+        if (maxId == null || maxId <= fromId) {
+            return 0;
+        }
+        long toId = Math.min(maxId, fromId + batchSize);
+
+        List<CustomerRfmProjection> deltas = retailRepository.aggregateRfmByCustomer(fromId, toId);
+        if (!deltas.isEmpty()) {
+            applyDeltas(deltas, fromId, toId);
+        }
+
+        watermark.setLastRetailId(toId);
+        watermark.setUpdatedAt(LocalDateTime.now());
+        watermarkRepository.save(watermark);
+        pendingWatermark = toId;
+
+        return toId - fromId;
+    }
+
+    private void applyDeltas(List<CustomerRfmProjection> deltas, long fromId, long toId) {
+        // Invoice có thể nằm vắt qua watermark: không đếm lại invoice đã tính trước đó
+        Map<Integer, Long> seenInvoices = new HashMap<>();
+        if (fromId > 0) {
+            for (Object[] row : retailRepository.countInvoicesSeenBefore(fromId, toId)) {
+                seenInvoices.put((Integer) row[0], ((Number) row[1]).longValue());
+            }
+        }
+
+        Map<Integer, CustomerRfmAggregate> existing = new HashMap<>();
+        aggregateRepository.findAllById(
+                deltas.stream().map(CustomerRfmProjection::getCustomerId).toList())
+            .forEach(a -> existing.put(a.getCustomerId(), a));
+
+        List<CustomerRfmAggregate> changed = new ArrayList<>(deltas.size());
+        LocalDateTime now = LocalDateTime.now();
+
+        for (CustomerRfmProjection delta : deltas) {
+            CustomerRfmAggregate aggregate = existing.get(delta.getCustomerId());
+            if (aggregate == null) {
+                aggregate = CustomerRfmAggregate.builder()
+                    .customerId(delta.getCustomerId())
+                    .country(delta.getCountry())
+                    .lastPurchaseDate(delta.getLastPurchaseDate())
+                    .invoiceCount(0L)
+                    .monetary(BigDecimal.ZERO)
+                    .totalQuantity(0L)
+                    .lastRetailId(0L)
+                    .build();
+            } else if (delta.getLastPurchaseDate() != null
+                && (aggregate.getLastPurchaseDate() == null
+                    || delta.getLastPurchaseDate().isAfter(aggregate.getLastPurchaseDate()))) {
+                aggregate.setLastPurchaseDate(delta.getLastPurchaseDate());
+            }
+
+            long newInvoices = delta.getInvoiceCount()
+                - seenInvoices.getOrDefault(delta.getCustomerId(), 0L);
+            aggregate.setInvoiceCount(aggregate.getInvoiceCount() + newInvoices);
+            if (delta.getMonetary() != null) {
+                aggregate.setMonetary(aggregate.getMonetary().add(delta.getMonetary()));
+            }
+            if (delta.getTotalQuantity() != null) {
+                aggregate.setTotalQuantity(aggregate.getTotalQuantity() + delta.getTotalQuantity());
+            }
+            aggregate.setLastRetailId(Math.max(aggregate.getLastRetailId(), delta.getLastRetailId()));
+            aggregate.setUpdatedAt(now);
+            changed.add(aggregate);
+        }
+
+        aggregateRepository.saveAll(changed);
+    }
+}
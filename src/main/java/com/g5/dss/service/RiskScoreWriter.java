@@ -0,0 +1,419 @@
+package com.g5.dss.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.g5.dss.domain.mongo.ReturnRiskScore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ghi ReturnRiskScore kiểu write-behind: request chỉ đưa score vào hàng đợi có giới hạn,
+ * một luồng nền gom batch (theo kích thước hoặc thời gian) và ghi bằng BulkOperations
+ * Hàng đợi đầy hoặc Mongo lỗi thì score được ghi xuống file spill (NDJSON) và phát lại khi Mongo ổn định
+ * Score tràn hàng đợi được chuyển cho luồng spill riêng, ghi theo nhóm với một lần fsync, nên request
+ * không chờ đĩa; chỉ khi cả hàng đợi spill cũng đầy thì request mới tự ghi
+ * Id được gán trước khi xếp hàng nên phát lại một batch đã ghi một phần không tạo bản ghi trùng
+ * Dòng spill không đọc được (ghi dở khi crash, field không tương thích) được chuyển sang file .rejected;
+ * phát lại lỗi thì lần sau chờ lâu dần (backoff) thay vì thử lại mỗi lần flush
+ */
+@Service
+@Slf4j
+public class RiskScoreWriter {
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${analytics.risk-score-writer.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.risk-score-writer.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${analytics.risk-score-writer.batch-size:500}")
+    private int batchSize;
+
+    // Batch chưa đủ kích thước vẫn được ghi sau khoảng này
+    @Value("${analytics.risk-score-writer.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    // Thời gian chờ chỗ trống trong hàng đợi trước khi ghi xuống file spill
+    @Value("${analytics.risk-score-writer.offer-timeout-ms:5}")
+    private long offerTimeoutMs;
+
+    // Score tràn chờ luồng spill ghi xuống đĩa
+    @Value("${analytics.risk-score-writer.spill-queue-capacity:50000}")
+    private int spillQueueCapacity;
+
+    @Value("${analytics.risk-score-writer.spill-file:spill/return-risk-scores.ndjson}")
+    private String spillFile;
+
+    // Chờ sau lần phát lại lỗi đầu tiên, gấp đôi mỗi lần lỗi tiếp theo đến replay-max-backoff-ms
+    @Value("${analytics.risk-score-writer.replay-backoff-ms:1000}")
+    private long replayBackoffMs;
+
+    @Value("${analytics.risk-score-writer.replay-max-backoff-ms:60000}")
+    private long replayMaxBackoffMs;
+
+    private BlockingQueue<ReturnRiskScore> queue;
+    private BlockingQueue<ReturnRiskScore> spillQueue;
+    private Thread flusher;
+    private Thread spiller;
+    private volatile boolean running;
+    private final Object spillLock = new Object();
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong overflowed = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    // Chỉ luồng flusher đọc / ghi (và stop() sau khi luồng đã dừng)
+    private long replayBackoff;
+    private long nextReplayAt;
+
+    public RiskScoreWriter(MongoTemplate mongoTemplate, ObjectMapper objectMapper) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        spillQueue = new ArrayBlockingQueue<>(spillQueueCapacity);
+        running = true;
+        flusher = new Thread(this::runFlusher, "risk-score-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        spiller = new Thread(this::runSpiller, "risk-score-spill");
+        spiller.setDaemon(true);
+        spiller.start();
+    }
+
+    /**
+     * Xếp hàng một score để ghi; không chờ Mongo
+     */
+    public void submit(ReturnRiskScore score) {
+        if (score.getId() == null) {
+            score.setId(new ObjectId().toHexString());
+        }
+        if (!enabled) {
+            mongoTemplate.insert(score);
+            return;
+        }
+        try {
+            if (queue.offer(score, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Backpressure: hàng đợi đầy thì để luồng spill ghi xuống đĩa thay vì chặn request
+        overflowed.incrementAndGet();
+        if (!spillQueue.offer(score)) {
+            spill(List.of(score));
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("queued", queue != null ? queue.size() : 0);
+        stats.put("spillQueued", spillQueue != null ? spillQueue.size() : 0);
+        stats.put("overflowed", overflowed.get());
+        stats.put("written", written.get());
+        stats.put("spilled", spilled.get());
+        stats.put("replayed", replayed.get());
+        stats.put("failedBatches", failedBatches.get());
+        stats.put("rejected", rejected.get());
+        return stats;
+    }
+
+    @PreDestroy
+    void stop() {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Phần còn lại trong hàng đợi: ghi nốt, lỗi thì spill (stop() ghi cả phần luồng spill chưa ghi)
+        List<ReturnRiskScore> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            flush(remaining);
+        }
+        try {
+            spiller.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<ReturnRiskScore> overflow = new ArrayList<>();
+        spillQueue.drainTo(overflow);
+        if (!overflow.isEmpty()) {
+            spill(overflow);
+        }
+    }
+
+    private void runFlusher() {
+        List<ReturnRiskScore> batch = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.nanoTime();
+                    ReturnRiskScore score = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (score == null) {
+                        break;
+                    }
+                    batch.add(score);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                if (!batch.isEmpty()) {
+                    if (flush(batch)) {
+                        replaySpill();
+                    }
+                    batch.clear();
+                } else {
+                    replaySpill();
+                }
+            } catch (InterruptedException e) {
+                if (!batch.isEmpty()) {
+                    flush(batch);
+                    batch.clear();
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.warn("Risk score writer loop error: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Ghi score tràn xuống file spill theo nhóm (một lần mở file và fsync cho mỗi nhóm)
+     */
+    private void runSpiller() {
+        // Không dùng interrupt để dừng: ghi file trên luồng bị interrupt sẽ đóng channel giữa chừng
+        List<ReturnRiskScore> group = new ArrayList<>(batchSize);
+        while (running) {
+            try {
+                ReturnRiskScore score = spillQueue.poll(flushIntervalMs, TimeUnit.MILLISECONDS);
+                if (score == null) {
+                    continue;
+                }
+                group.add(score);
+                spillQueue.drainTo(group, batchSize - 1);
+                spill(group);
+                group.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Ghi một batch; lỗi thì spill. Trả về true nếu Mongo nhận batch
+     */
+    private boolean flush(List<ReturnRiskScore> batch) {
+        try {
+            bulkInsert(batch);
+            written.addAndGet(batch.size());
+            return true;
+        } catch (Exception e) {
+            failedBatches.incrementAndGet();
+            log.warn("Risk score bulk write of {} failed, spilling to disk: {}", batch.size(), e.getMessage());
+            spill(batch);
+            return false;
+        }
+    }
+
+    private void bulkInsert(List<ReturnRiskScore> batch) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ReturnRiskScore.class)
+                .insert(batch)
+                .execute();
+        } catch (BulkOperationException e) {
+            // Bản ghi đã có (phát lại sau khi ghi một phần) không phải lỗi
+            boolean onlyDuplicates = e.getErrors().stream().allMatch(error -> error.getCode() == DUPLICATE_KEY);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+        }
+    }
+
+    private void spill(List<ReturnRiskScore> scores) {
+        synchronized (spillLock) {
+            Path path = Paths.get(spillFile);
+            try {
+                if (path.getParent() != null) {
+                    Files.createDirectories(path.getParent());
+                }
+                try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC)) {
+                    for (ReturnRiskScore score : scores) {
+                        writer.write(objectMapper.writeValueAsString(score));
+                        writer.newLine();
+                    }
+                }
+                spilled.addAndGet(scores.size());
+            } catch (IOException e) {
+                log.error("Could not spill {} risk scores to {}: {}", scores.size(), path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Phát lại file spill theo batch; file được đổi tên trước để các lần spill mới ghi sang file khác
+     */
+    private void replaySpill() {
+        if (replayBackoff > 0 && System.nanoTime() - nextReplayAt < 0) {
+            return;
+        }
+        Path path = Paths.get(spillFile);
+        Path replaying = Paths.get(spillFile + ".replaying");
+        synchronized (spillLock) {
+            try {
+                if (!Files.exists(replaying)) {
+                    if (!Files.exists(path)) {
+                        return;
+                    }
+                    Files.move(path, replaying, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                log.warn("Could not rotate risk score spill file: {}", e.getMessage());
+                return;
+            }
+        }
+
+        // Phần chưa ghi được của .replaying (không gồm dòng đã reject), thay cho .replaying khi phát lại lỗi
+        Path remaining = Paths.get(spillFile + ".remaining");
+        try (BufferedReader reader = Files.newBufferedReader(replaying, StandardCharsets.UTF_8)) {
+            Files.deleteIfExists(remaining);
+            List<ReturnRiskScore> batch = new ArrayList<>(batchSize);
+            List<String> batchLines = new ArrayList<>(batchSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    batch.add(objectMapper.readValue(line, ReturnRiskScore.class));
+                    batchLines.add(line);
+                } catch (JsonProcessingException e) {
+                    reject(line, e);
+                    continue;
+                }
+                if (batch.size() == batchSize) {
+                    replayBatch(batch, batchLines, reader, remaining);
+                }
+            }
+            if (!batch.isEmpty()) {
+                replayBatch(batch, batchLines, reader, remaining);
+            }
+        } catch (Exception e) {
+            // Lần sau thử lại từ batch lỗi (id cố định nên không trùng); dòng đã reject không đọc lại
+            try {
+                if (Files.exists(remaining)) {
+                    Files.move(remaining, replaying, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException io) {
+                log.warn("Could not trim risk score spill replay file: {}", io.getMessage());
+            }
+            replayBackoff = replayBackoff == 0 ? replayBackoffMs : Math.min(replayBackoff * 2, replayMaxBackoffMs);
+            nextReplayAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(replayBackoff);
+            log.warn("Risk score spill replay failed, retrying in {} ms: {}", replayBackoff, e.getMessage());
+            return;
+        }
+
+        try {
+            Files.delete(replaying);
+        } catch (IOException e) {
+            log.warn("Could not delete replayed risk score spill file: {}", e.getMessage());
+            return;
+        }
+        replayBackoff = 0;
+        log.info("Replayed spilled risk scores into MongoDB");
+    }
+
+    /**
+     * Ghi một batch phát lại; lỗi thì lưu batch và phần chưa đọc của file vào .remaining rồi ném lại lỗi
+     */
+    private void replayBatch(List<ReturnRiskScore> batch, List<String> batchLines, BufferedReader reader,
+            Path remaining) throws IOException {
+        try {
+            bulkInsert(batch);
+        } catch (RuntimeException e) {
+            try (BufferedWriter writer = Files.newBufferedWriter(remaining, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.SYNC)) {
+                for (String line : batchLines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            } catch (IOException io) {
+                // Không lưu được thì giữ nguyên .replaying
+                Files.deleteIfExists(remaining);
+            }
+            throw e;
+        }
+        replayed.addAndGet(batch.size());
+        batch.clear();
+        batchLines.clear();
+    }
+
+    /**
+     * Chuyển một dòng spill không đọc được sang file .rejected để phần còn lại vẫn phát lại được
+     */
+    private void reject(String line, JsonProcessingException error) {
+        Path path = Paths.get(spillFile + ".rejected");
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.SYNC)) {
+            writer.write(line);
+            writer.newLine();
+        } catch (IOException e) {
+            log.error("Could not move unreadable spill line to {}: {}", path, e.getMessage());
+        }
+        rejected.incrementAndGet();
+        log.warn("Skipped unreadable risk score spill line: {}", error.getOriginalMessage());
+    }
+}
@@ -0,0 +1,100 @@
+package com.g5.dss.service;
+
+import com.g5.dss.dto.CustomerSegmentSummaryDTO;
+import com.g5.dss.dto.RFMCustomerDTO;
+import lombok.Getter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Kết quả phân khúc bất biến (RFM + segment + summary) dùng chung cho mọi endpoint
+ * Được định danh bởi ngày tham chiếu và watermark dữ liệu online_retail
+ */
+@Getter
+public class SegmentationSnapshot {
+    
+    private final long version;
+    private final LocalDateTime referenceDate;
+    private final long watermark;
+    private final LocalDateTime builtAt;
+    
+    private final List<RFMCustomerDTO> customers;
+    private final List<CustomerSegmentSummaryDTO> summary;
+    private final List<RFMCustomerDTO> atRiskCustomers;
+    private final List<String> segmentNames;
+    private final long championCount;
+    
+    // Key: tên segment viết thường; danh sách đã sắp xếp theo monetary giảm dần
+    private final Map<String, List<RFMCustomerDTO>> customersBySegment;
+    private final Map<String, Set<Integer>> customerIdsBySegment;
+    
+    SegmentationSnapshot(
+        long version,
+        LocalDateTime referenceDate,
+        long watermark,
+        List<RFMCustomerDTO> segmented,
+        List<CustomerSegmentSummaryDTO> summary,
+        List<RFMCustomerDTO> atRiskCustomers
+    ) {
+        this.version = version;
+        this.referenceDate = referenceDate;
+        this.watermark = watermark;
+        this.builtAt = LocalDateTime.now();
+        this.customers = Collections.unmodifiableList(segmented);
+        this.summary = Collections.unmodifiableList(summary);
+        this.atRiskCustomers = Collections.unmodifiableList(atRiskCustomers);
+        
+        Map<String, List<RFMCustomerDTO>> bySegment = segmented.stream()
+            .collect(Collectors.groupingBy(c -> c.getSegment().toLowerCase()));
+        Map<String, List<RFMCustomerDTO>> sortedBySegment = new HashMap<>();
+        Map<String, Set<Integer>> idsBySegment = new HashMap<>();
+        bySegment.forEach((segment, list) -> {
+            List<RFMCustomerDTO> sorted = new ArrayList<>(list);
+            sorted.sort(Comparator.comparing(RFMCustomerDTO::getMonetary).reversed());
+            sortedBySegment.put(segment, Collections.unmodifiableList(sorted));
+            idsBySegment.put(segment, list.stream()
+                .map(RFMCustomerDTO::getCustomerId)
+                .collect(Collectors.toUnmodifiableSet()));
+        });
+        this.customersBySegment = Collections.unmodifiableMap(sortedBySegment);
+        this.customerIdsBySegment = Collections.unmodifiableMap(idsBySegment);
+        
+        this.segmentNames = segmented.stream()
+            .map(RFMCustomerDTO::getSegment)
+            .distinct()
+            .sorted()
+            .collect(Collectors.toUnmodifiableList());
+        this.championCount = customersBySegment.getOrDefault("champions", List.of()).size();
+    }
+    
+    public int getTotalCustomers() {
+        return customers.size();
+    }
+    
+    /**
+     * Khách hàng trong một segment (không phân biệt hoa thường), monetary giảm dần
+     */
+    public List<RFMCustomerDTO> getCustomersInSegment(String segmentName) {
+        return customersBySegment.getOrDefault(segmentName.toLowerCase(), List.of());
+    }
+    
+    /**
+     * Tập customerId của một segment (dùng cho market basket theo segment)
+     */
+    public Set<Integer> getCustomerIds(String segmentName) {
+        return customerIdsBySegment.getOrDefault(segmentName.toLowerCase(), Set.of());
+    }
+    
+    public Optional<CustomerSegmentSummaryDTO> getSegmentSummary(String segmentName) {
+        return summary.stream()
+            .filter(s -> segmentName.equalsIgnoreCase(s.getSegmentName()))
+            .findFirst();
+    }
+    
+    boolean matches(LocalDate referenceDay, long currentWatermark) {
+        return referenceDate.toLocalDate().equals(referenceDay) && watermark == currentWatermark;
+    }
+}
@@ -0,0 +1,113 @@
+package com.g5.dss.service;
+
+import com.g5.dss.dto.CustomerSegmentSummaryDTO;
+import com.g5.dss.dto.RFMCustomerDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache SegmentationSnapshot dùng chung cho các endpoint phân khúc
+ * Snapshot được build lại ở background khi có dữ liệu mới hoặc sang ngày mới
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SegmentationSnapshotService {
+    
+    private final CustomerSegmentationService segmentationService;
+    private final RfmAggregateService rfmAggregateService;
+    
+    private final Object rebuildLock = new Object();
+    private final AtomicLong versionSequence = new AtomicLong();
+    
+    private volatile SegmentationSnapshot current;
+    
+    /**
+     * Snapshot hiện tại; chỉ build đồng bộ khi chưa có hoặc đã sang ngày mới
+     */
+    public SegmentationSnapshot getSnapshot() {
+        SegmentationSnapshot snapshot = current;
+        if (snapshot != null && snapshot.getReferenceDate().toLocalDate().equals(LocalDate.now())) {
+            return snapshot;
+        }
+        return rebuild();
+    }
+    
+    /**
+     * Build snapshot mới nếu ngày tham chiếu hoặc watermark đã thay đổi
+     */
+    public SegmentationSnapshot rebuild() {
+        synchronized (rebuildLock) {
+            SegmentationSnapshot snapshot = current;
+            if (snapshot != null && snapshot.matches(LocalDate.now(), rfmAggregateService.getWatermark())) {
+                return snapshot;
+            }
+            
+            long start = System.currentTimeMillis();
+            LocalDateTime referenceDate = LocalDateTime.now();
+            // Đọc trước khi tính: refresh commit trong lúc tính sẽ làm snapshot lệch và bị build lại,
+            // thay vì mang watermark mới với dữ liệu cũ
+            long watermark = rfmAggregateService.getWatermark();
+            List<RFMCustomerDTO> rfmData = segmentationService.calculateRFM(referenceDate);
+            List<RFMCustomerDTO> segmented = segmentationService.segmentCustomers(rfmData);
+            List<CustomerSegmentSummaryDTO> summary = segmentationService.getSegmentSummary(segmented);
+            List<RFMCustomerDTO> atRisk = segmentationService.getAtRiskCustomers(segmented);
+            
+            snapshot = new SegmentationSnapshot(
+                versionSequence.incrementAndGet(),
+                referenceDate,
+                watermark,
+                segmented,
+                summary,
+                atRisk
+            );
+            current = snapshot;
+            
+            log.info("Built segmentation snapshot v{} ({} customers, watermark {}) in {} ms",
+                snapshot.getVersion(), snapshot.getTotalCustomers(), snapshot.getWatermark(),
+                System.currentTimeMillis() - start);
+            return snapshot;
+        }
+    }
+    
+    /**
+     * Dữ liệu online_retail mới đã được tổng hợp: build lại snapshot ở background
+     */
+    @Async("segmentationExecutor")
+    @EventListener
+    public void onRetailDataChanged(RetailDataChangedEvent event) {
+        if (current == null) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("Background segmentation snapshot rebuild failed: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Sang ngày mới thì recency thay đổi: build lại trước khi request đầu tiên tới
+     */
+    @Scheduled(fixedDelayString = "${analytics.segmentation.snapshot-check-ms:60000}")
+    public void refreshOnDayRollover() {
+        SegmentationSnapshot snapshot = current;
+        if (snapshot == null || snapshot.getReferenceDate().toLocalDate().equals(LocalDate.now())) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("Scheduled segmentation snapshot rebuild failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,352 @@
+package com.g5.dss.service;
+
+import com.g5.dss.dto.SensitivitySweepRequest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Quét nhiều bộ tham số chi phí (grid, Latin hypercube, tornado) trên cùng một ThresholdOptimizer
+ * Score không phụ thuộc tham số chi phí nên thứ tự sắp xếp và số đơn được duyệt tại mỗi ngưỡng
+ * được tính một lần; mỗi tổ hợp (tham số, ngưỡng) chỉ còn O(1) từ prefix sums
+ * Các hàng được chia shard và đánh giá song song trên fork-join pool
+ */
+final class SensitivitySweep {
+
+    static final String[] PARAMETERS = {
+        "returnProcessingCost", "shippingCostDefault", "cogsRatio", "conversionRateImpact"
+    };
+    private static final int RETURN_COST = 0;
+    private static final int SHIPPING = 1;
+    private static final int COGS = 2;
+    private static final int CONVERSION = 3;
+
+    private static final int DEFAULT_STEPS = 11;
+    // Số (hàng × ngưỡng) mỗi shard
+    private static final int SHARD_WORK = 1 << 16;
+
+    private final String mode;
+    private final List<String> swept;
+    // Giá trị từng tham số theo hàng (đơn vị của request: cogs / conversion là %)
+    private final double[][] values;
+    // Tornado: index (trong swept) của tham số đang thay đổi ở mỗi hàng
+    private final int[] varied;
+    private final int rows;
+
+    private SensitivitySweep(String mode, List<String> swept, double[][] values, int[] varied, int rows) {
+        this.mode = mode;
+        this.swept = swept;
+        this.values = values;
+        this.varied = varied;
+        this.rows = rows;
+    }
+
+    /**
+     * Sinh các hàng tham số; base là giá trị mặc định theo thứ tự PARAMETERS
+     */
+    static SensitivitySweep design(
+        String mode,
+        Map<String, SensitivitySweepRequest.ParameterRange> ranges,
+        double[] base,
+        Integer samples,
+        long seed,
+        int maxRows
+    ) {
+        String sweepMode = mode != null ? mode : SensitivitySweepRequest.MODE_GRID;
+        List<String> swept = new ArrayList<>();
+        List<double[]> bounds = new ArrayList<>();
+        List<Integer> parameterIndex = new ArrayList<>();
+        if (ranges != null) {
+            for (Map.Entry<String, SensitivitySweepRequest.ParameterRange> entry : ranges.entrySet()) {
+                int p = indexOf(entry.getKey());
+                SensitivitySweepRequest.ParameterRange range = entry.getValue();
+                if (range == null || range.getMin() == null || range.getMax() == null) {
+                    throw new IllegalArgumentException("Range for " + entry.getKey() + " needs min and max");
+                }
+                if (range.getMin() > range.getMax()) {
+                    throw new IllegalArgumentException("Range for " + entry.getKey() + " has min > max");
+                }
+                int steps = range.getSteps() != null ? range.getSteps() : DEFAULT_STEPS;
+                if (steps < 1) {
+                    throw new IllegalArgumentException("Range for " + entry.getKey() + " needs steps >= 1");
+                }
+                swept.add(entry.getKey());
+                parameterIndex.add(p);
+                bounds.add(new double[] {range.getMin(), range.getMax(), steps});
+            }
+        }
+        if (swept.isEmpty()) {
+            throw new IllegalArgumentException("At least one parameter range is required");
+        }
+
+        return switch (sweepMode) {
+            case SensitivitySweepRequest.MODE_GRID -> grid(swept, parameterIndex, bounds, base, maxRows);
+            case SensitivitySweepRequest.MODE_TORNADO -> tornado(swept, parameterIndex, bounds, base, maxRows);
+            case SensitivitySweepRequest.MODE_LHS -> latinHypercube(swept, parameterIndex, bounds, base,
+                samples, seed, maxRows);
+            default -> throw new IllegalArgumentException("Unknown sweep mode: " + sweepMode);
+        };
+    }
+
+    /**
+     * Tích Descartes các khoảng; tham số đầu tiên thay đổi chậm nhất
+     */
+    private static SensitivitySweep grid(List<String> swept, List<Integer> parameterIndex, List<double[]> bounds,
+                                         double[] base, int maxRows) {
+        long total = 1;
+        for (double[] bound : bounds) {
+            total *= (long) bound[2];
+            checkRows(total, maxRows);
+        }
+        int rows = (int) total;
+        double[][] values = baseColumns(base, rows);
+        int stride = rows;
+        for (int s = 0; s < swept.size(); s++) {
+            double[] bound = bounds.get(s);
+            int steps = (int) bound[2];
+            stride /= steps;
+            double[] column = values[parameterIndex.get(s)];
+            for (int r = 0; r < rows; r++) {
+                column[r] = level(bound, (r / stride) % steps);
+            }
+        }
+        return new SensitivitySweep(SensitivitySweepRequest.MODE_GRID, swept, values, null, rows);
+    }
+
+    /**
+     * Thay đổi từng tham số một, các tham số khác giữ giá trị base
+     */
+    private static SensitivitySweep tornado(List<String> swept, List<Integer> parameterIndex, List<double[]> bounds,
+                                            double[] base, int maxRows) {
+        long total = 0;
+        for (double[] bound : bounds) {
+            total += (long) bound[2];
+        }
+        checkRows(total, maxRows);
+        int rows = (int) total;
+        double[][] values = baseColumns(base, rows);
+        int[] varied = new int[rows];
+        int r = 0;
+        for (int s = 0; s < swept.size(); s++) {
+            double[] bound = bounds.get(s);
+            double[] column = values[parameterIndex.get(s)];
+            for (int step = 0; step < (int) bound[2]; step++, r++) {
+                column[r] = level(bound, step);
+                varied[r] = s;
+            }
+        }
+        return new SensitivitySweep(SensitivitySweepRequest.MODE_TORNADO, swept, values, varied, rows);
+    }
+
+    /**
+     * Latin hypercube: mỗi tham số chia samples khoảng bằng nhau, mỗi khoảng được dùng đúng một lần
+     */
+    private static SensitivitySweep latinHypercube(List<String> swept, List<Integer> parameterIndex,
+                                                   List<double[]> bounds, double[] base,
+                                                   Integer samples, long seed, int maxRows) {
+        if (samples == null || samples < 1) {
+            throw new IllegalArgumentException("Latin hypercube sweep needs samples >= 1");
+        }
+        checkRows(samples, maxRows);
+        int rows = samples;
+        double[][] values = baseColumns(base, rows);
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] strata = new int[rows];
+        for (int s = 0; s < swept.size(); s++) {
+            double[] bound = bounds.get(s);
+            double[] column = values[parameterIndex.get(s)];
+            for (int i = 0; i < rows; i++) {
+                strata[i] = i;
+            }
+            for (int i = rows - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = strata[i];
+                strata[i] = strata[j];
+                strata[j] = swap;
+            }
+            for (int r = 0; r < rows; r++) {
+                double u = (strata[r] + random.nextDouble()) / rows;
+                column[r] = bound[0] + u * (bound[1] - bound[0]);
+            }
+        }
+        return new SensitivitySweep(SensitivitySweepRequest.MODE_LHS, swept, values, null, rows);
+    }
+
+    /**
+     * Số lần tính lợi nhuận của evaluate(): mỗi hàng một lần tại threshold và một lần mỗi ngưỡng trên đường cong
+     */
+    long evaluations(double[] curveThresholds) {
+        return (long) rows * (curveThresholds != null ? curveThresholds.length + 1 : 1);
+    }
+
+    /**
+     * Chặn sweep quá lớn trước khi lấy mẫu đơn hàng (maxRows không tính số ngưỡng trên đường cong)
+     */
+    void checkEvaluations(double[] curveThresholds, long maxEvaluations) {
+        long evaluations = evaluations(curveThresholds);
+        if (evaluations > maxEvaluations) {
+            throw new IllegalArgumentException("Sweep needs " + evaluations + " profit evaluations ("
+                + rows + " rows x " + (curveThresholds != null ? curveThresholds.length + 1 : 1)
+                + " thresholds), limit is " + maxEvaluations);
+        }
+    }
+
+    /**
+     * Lợi nhuận tại threshold cho mọi hàng; nếu curveThresholds khác null thì thêm τ* và lợi nhuận lớn nhất
+     */
+    Result evaluate(ThresholdOptimizer optimizer, double threshold, double[] curveThresholds, ForkJoinPool pool) {
+        int approved = optimizer.approvedCount(threshold);
+        int[] curveApproved = null;
+        if (curveThresholds != null) {
+            curveApproved = new int[curveThresholds.length];
+            for (int t = 0; t < curveThresholds.length; t++) {
+                curveApproved[t] = optimizer.approvedCount(curveThresholds[t]);
+            }
+        }
+        Result result = new Result(rows, curveThresholds != null);
+        int work = (int) (evaluations(curveThresholds) / Math.max(1, rows));
+        int shard = Math.max(1, SHARD_WORK / work);
+        pool.invoke(new EvaluateTask(optimizer, approved, curveThresholds, curveApproved, result, 0, rows, shard));
+        return result;
+    }
+
+    String mode() {
+        return mode;
+    }
+
+    List<String> swept() {
+        return swept;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int[] varied() {
+        return varied;
+    }
+
+    double[] column(String parameter) {
+        return values[indexOf(parameter)];
+    }
+
+    /**
+     * Lợi nhuận (chưa làm tròn) của một bộ tham số theo đơn vị request
+     */
+    static double profit(ThresholdOptimizer optimizer, int approved, double returnCost, double shipping,
+                         double cogsPct, double conversionPct) {
+        return optimizer.profit(approved, returnCost, shipping, cogsPct / 100.0, conversionPct / 100.0);
+    }
+
+    private double profitAt(ThresholdOptimizer optimizer, int row, int approved) {
+        return profit(optimizer, approved, values[RETURN_COST][row], values[SHIPPING][row],
+            values[COGS][row], values[CONVERSION][row]);
+    }
+
+    private static int indexOf(String parameter) {
+        for (int p = 0; p < PARAMETERS.length; p++) {
+            if (PARAMETERS[p].equals(parameter)) {
+                return p;
+            }
+        }
+        throw new IllegalArgumentException("Unknown sweep parameter: " + parameter);
+    }
+
+    private static double[][] baseColumns(double[] base, int rows) {
+        double[][] values = new double[PARAMETERS.length][rows];
+        for (int p = 0; p < PARAMETERS.length; p++) {
+            Arrays.fill(values[p], base[p]);
+        }
+        return values;
+    }
+
+    private static double level(double[] bound, int step) {
+        int steps = (int) bound[2];
+        return steps == 1 ? bound[0] : bound[0] + (bound[1] - bound[0]) * step / (steps - 1);
+    }
+
+    private static void checkRows(long rows, int maxRows) {
+        if (rows > maxRows) {
+            throw new IllegalArgumentException("Sweep has " + rows + " combinations, limit is " + maxRows);
+        }
+    }
+
+    /**
+     * Cột kết quả, mỗi hàng ghi bởi đúng một shard
+     */
+    static final class Result {
+
+        final double[] profit;
+        final double[] optimalThreshold;
+        final double[] maxProfit;
+        final double[] ordersImpactedAtOptimum;
+
+        Result(int rows, boolean optimize) {
+            profit = new double[rows];
+            optimalThreshold = optimize ? new double[rows] : null;
+            maxProfit = optimize ? new double[rows] : null;
+            ordersImpactedAtOptimum = optimize ? new double[rows] : null;
+        }
+    }
+
+    private final class EvaluateTask extends RecursiveAction {
+
+        private final ThresholdOptimizer optimizer;
+        private final int approved;
+        private final double[] curveThresholds;
+        private final int[] curveApproved;
+        private final Result result;
+        private final int from;
+        private final int to;
+        private final int shard;
+
+        EvaluateTask(ThresholdOptimizer optimizer, int approved, double[] curveThresholds, int[] curveApproved,
+                     Result result, int from, int to, int shard) {
+            this.optimizer = optimizer;
+            this.approved = approved;
+            this.curveThresholds = curveThresholds;
+            this.curveApproved = curveApproved;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+            this.shard = shard;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > shard) {
+                int mid = (from + to) >>> 1;
+                invokeAll(
+                    new EvaluateTask(optimizer, approved, curveThresholds, curveApproved, result, from, mid, shard),
+                    new EvaluateTask(optimizer, approved, curveThresholds, curveApproved, result, mid, to, shard)
+                );
+                return;
+            }
+            int n = optimizer.size();
+            for (int r = from; r < to; r++) {
+                result.profit[r] = ReturnRiskModel.round2(profitAt(optimizer, r, approved));
+                if (curveThresholds == null) {
+                    continue;
+                }
+                // τ* là ngưỡng đầu tiên đạt lợi nhuận lớn nhất, như findOptimalThreshold
+                int best = 0;
+                double bestProfit = profitAt(optimizer, r, curveApproved[0]);
+                for (int t = 1; t < curveThresholds.length; t++) {
+                    double profit = profitAt(optimizer, r, curveApproved[t]);
+                    if (profit > bestProfit) {
+                        bestProfit = profit;
+                        best = t;
+                    }
+                }
+                result.optimalThreshold[r] = curveThresholds[best];
+                result.maxProfit[r] = ReturnRiskModel.round2(bestProfit);
+                result.ordersImpactedAtOptimum[r] = n - curveApproved[best];
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.g5.dss.service;
+
+import com.g5.dss.repository.jpa.OnlineRetailJpaRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tra mô tả sản phẩm theo stockCode, có cache trong bộ nhớ
+ * Chỉ truy vấn MySQL cho các mã chưa có trong cache (theo lô)
+ */
+@Service
+@RequiredArgsConstructor
+public class StockDescriptionLookup {
+    
+    private static final int BATCH_SIZE = 1000;
+    
+    private final OnlineRetailJpaRepository repository;
+    private final RetailColumnStore columnStore;
+    
+    // Mã không có mô tả được lưu bằng chính stockCode
+    private final Map<String, String> cache = new ConcurrentHashMap<>();
+    
+    public String describe(String stockCode) {
+        return describe(Set.of(stockCode)).get(stockCode);
+    }
+    
+    /**
+     * Mô tả cho tập stockCode (mã không có mô tả trả về chính nó)
+     */
+    public Map<String, String> describe(Collection<String> stockCodes) {
+        Map<String, String> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String code : stockCodes) {
+            String description = cache.get(code);
+            if (description != null) {
+                result.put(code, description);
+            } else if (columnStore.isReady() && columnStore.getColumns().stockCodeIndex(code) >= 0) {
+                RetailColumns columns = columnStore.getColumns();
+                description = columns.description(columns.stockCodeIndex(code));
+                cache.put(code, description);
+                result.put(code, description);
+            } else {
+                missing.add(code);
+            }
+        }
+        
+        for (int from = 0; from < missing.size(); from += BATCH_SIZE) {
+            List<String> batch = missing.subList(from, Math.min(missing.size(), from + BATCH_SIZE));
+            for (Object[] row : repository.findDescriptionsByStockCodes(batch)) {
+                cache.put((String) row[0], (String) row[1]);
+            }
+            for (String code : batch) {
+                String description = cache.computeIfAbsent(code, c -> c);
+                result.put(code, description);
+            }
+        }
+        return result;
+    }
+}
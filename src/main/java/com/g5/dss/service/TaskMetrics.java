@@ -0,0 +1,108 @@
+package com.g5.dss.service;
+
+import com.g5.dss.util.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bộ đếm của AsyncTaskManager, cập nhật theo từng lần đổi trạng thái (LongAdder, không khóa)
+ * - Số task đang giữ theo status (tăng / giảm khi task đổi status, bị evict hoặc xóa)
+ * - Số lần submit / bị từ chối / kết thúc theo type job (tích lũy, trên node này)
+ * - Histogram thời gian chờ trong hàng đợi và thời gian chạy theo executor
+ * Đọc stats là O(số status + type + executor), không duyệt task store
+ */
+final class TaskMetrics {
+
+    static final List<String> STATUSES = List.of("PENDING", "PROCESSING", "COMPLETED", "FAILED", "CANCELLED");
+
+    static final String SUBMITTED = "submitted";
+    static final String REJECTED = "rejected";
+    static final String COMPLETED = "completed";
+    static final String FAILED = "failed";
+    static final String CANCELLED = "cancelled";
+
+    private static final List<String> OUTCOMES = List.of(SUBMITTED, REJECTED, COMPLETED, FAILED, CANCELLED);
+
+    private final Map<String, LongAdder> byStatus = new LinkedHashMap<>();
+    private final Map<String, Map<String, LongAdder>> byType = new ConcurrentHashMap<>();
+    private final Map<String, ExecutorTimings> byExecutor = new ConcurrentHashMap<>();
+
+    TaskMetrics() {
+        STATUSES.forEach(status -> byStatus.put(status, new LongAdder()));
+    }
+
+    /**
+     * Task trong store đổi từ previous sang current (null = chưa có / đã bị xóa)
+     */
+    void transition(String previous, String current) {
+        if (previous != null && previous.equals(current)) {
+            return;
+        }
+        adjust(previous, -1);
+        adjust(current, 1);
+    }
+
+    void count(String type, String outcome) {
+        byType.computeIfAbsent(type, key -> {
+            Map<String, LongAdder> counters = new LinkedHashMap<>();
+            OUTCOMES.forEach(name -> counters.put(name, new LongAdder()));
+            return counters;
+        }).get(outcome).increment();
+    }
+
+    void queueWait(String executor, long millis) {
+        timings(executor).queueWait.record(millis);
+    }
+
+    void execution(String executor, long millis) {
+        timings(executor).execution.record(millis);
+    }
+
+    Map<String, Long> statusCounts() {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        byStatus.forEach((status, adder) -> counts.put(status, Math.max(0, adder.sum())));
+        return counts;
+    }
+
+    Map<String, Map<String, Long>> typeCounts() {
+        Map<String, Map<String, Long>> types = new TreeMap<>();
+        byType.forEach((type, counters) -> {
+            Map<String, Long> values = new LinkedHashMap<>();
+            counters.forEach((name, adder) -> values.put(name, adder.sum()));
+            types.put(type, values);
+        });
+        return types;
+    }
+
+    Map<String, Object> executorTimings() {
+        Map<String, Object> executors = new TreeMap<>();
+        byExecutor.forEach((executor, timings) -> {
+            Map<String, Object> values = new LinkedHashMap<>();
+            values.put("queueWait", timings.queueWait.snapshot());
+            values.put("execution", timings.execution.snapshot());
+            executors.put(executor, values);
+        });
+        return executors;
+    }
+
+    private void adjust(String status, int delta) {
+        LongAdder adder = status != null ? byStatus.get(status) : null;
+        if (adder != null) {
+            adder.add(delta);
+        }
+    }
+
+    private ExecutorTimings timings(String executor) {
+        return byExecutor.computeIfAbsent(executor, key -> new ExecutorTimings());
+    }
+
+    private static final class ExecutorTimings {
+        final LatencyHistogram queueWait = new LatencyHistogram();
+        final LatencyHistogram execution = new LatencyHistogram();
+    }
+}
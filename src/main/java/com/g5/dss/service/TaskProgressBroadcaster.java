@@ -0,0 +1,241 @@
+package com.g5.dss.service;
+
+import com.g5.dss.dto.AsyncTaskResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Đẩy thay đổi trạng thái / progress của async task tới client qua Server-Sent Events
+ * Stream theo task (đóng khi task xong) và theo user (mọi task do user đó submit)
+ * Gửi trên một luồng riêng theo thứ tự publish, để client chậm không chặn luồng chạy job
+ * Chỉ gửi khi status / progress đổi, nên publish lặp lại từ hàng đợi durable không sinh event thừa
+ * Trạng thái đã gửi chỉ được giữ khi có subscriber; update đến sau event cuối của task bị bỏ qua
+ */
+@Service
+@Slf4j
+public class TaskProgressBroadcaster {
+
+    public static final String EVENT_NAME = "task";
+
+    private static final List<String> FINISHED = List.of("COMPLETED", "FAILED", "CANCELLED");
+
+    // Số task vừa xong được nhớ để bỏ qua progress đến muộn
+    private static final int RECENTLY_FINISHED = 4096;
+
+    private final Map<String, Set<SseEmitter>> taskSubscribers = new ConcurrentHashMap<>();
+    private final Map<String, Set<SseEmitter>> userSubscribers = new ConcurrentHashMap<>();
+    // Task chưa xong -> user submit (mode local; mode mongo owner nằm trong AsyncJob)
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+    // Task chưa xong -> status/progress đã gửi gần nhất (chỉ khi có subscriber)
+    private final Map<String, String> lastSent = new ConcurrentHashMap<>();
+    // Task đã publish event cuối gần đây (LRU có giới hạn)
+    private final Set<String> recentlyFinished = Collections.newSetFromMap(Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, false) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > RECENTLY_FINISHED;
+            }
+        }));
+
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "task-events");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${async.events.timeout-ms:1800000}")
+    private long timeoutMs = 1_800_000;
+
+    /**
+     * Ghi nhận user đã submit task (gọi trên luồng request)
+     */
+    public void track(String taskId, String owner) {
+        if (owner != null) {
+            owners.put(taskId, owner);
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return !taskSubscribers.isEmpty() || !userSubscribers.isEmpty();
+    }
+
+    /**
+     * Stream của một task; gửi ngay trạng thái hiện tại, đóng sau event cuối (COMPLETED / FAILED / CANCELLED)
+     * Đăng ký trước rồi mới đọc trạng thái, để không lỡ event cuối publish xen giữa
+     */
+    public SseEmitter subscribe(String taskId, Supplier<AsyncTaskResponse<?>> current) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Runnable unregister = register(taskSubscribers, taskId, emitter);
+        AsyncTaskResponse<?> snapshot = current.get();
+        boolean finished = snapshot == null || isFinished(snapshot.getStatus());
+        if (finished) {
+            unregister.run();
+        }
+        sender.execute(() -> {
+            if ((snapshot == null || send(emitter, snapshot)) && finished) {
+                emitter.complete();
+            }
+        });
+        return emitter;
+    }
+
+    /**
+     * Stream mọi task của một user, từ lúc subscribe
+     */
+    public SseEmitter subscribeUser(String user) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        register(userSubscribers, user, emitter);
+        return emitter;
+    }
+
+    public void publish(AsyncTaskResponse<?> response) {
+        publish(response, owners.get(response.getTaskId()));
+    }
+
+    public void publish(AsyncTaskResponse<?> response, String owner) {
+        String taskId = response.getTaskId();
+        boolean finished = isFinished(response.getStatus());
+        String signature = response.getStatus() + ":" + response.getProgress();
+        if (finished) {
+            owners.remove(taskId);
+            recentlyFinished.add(taskId);
+            if (signature.equals(lastSent.remove(taskId))) {
+                return;
+            }
+        } else {
+            // Progress đến sau event cuối (race ở mode local) không được gửi lại hay ghi nhớ
+            if (recentlyFinished.contains(taskId)) {
+                return;
+            }
+            if (!hasSubscribers()) {
+                lastSent.remove(taskId);
+                return;
+            }
+            if (signature.equals(lastSent.put(taskId, signature))) {
+                return;
+            }
+            // Subscriber cuối rời đi giữa lúc kiểm tra và ghi nhớ: không giữ lại
+            if (!hasSubscribers()) {
+                lastSent.remove(taskId);
+            }
+        }
+
+        Set<SseEmitter> forTask = finished ? taskSubscribers.remove(taskId) : taskSubscribers.get(taskId);
+        Set<SseEmitter> forUser = owner != null ? userSubscribers.get(owner) : null;
+        if (forTask == null && forUser == null) {
+            return;
+        }
+        try {
+            sender.execute(() -> {
+                if (forTask != null) {
+                    for (SseEmitter emitter : forTask) {
+                        if (send(emitter, response) && finished) {
+                            emitter.complete();
+                        }
+                    }
+                }
+                if (forUser != null) {
+                    forUser.forEach(emitter -> send(emitter, response));
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Task event for {} dropped during shutdown", taskId);
+        }
+    }
+
+    /**
+     * Comment định kỳ để proxy không cắt kết nối rảnh và phát hiện client đã đóng
+     */
+    @Scheduled(
+        initialDelayString = "${async.events.keep-alive-ms:15000}",
+        fixedDelayString = "${async.events.keep-alive-ms:15000}"
+    )
+    public void keepAlive() {
+        if (!hasSubscribers()) {
+            return;
+        }
+        sender.execute(() -> {
+            taskSubscribers.values().forEach(emitters -> emitters.forEach(this::ping));
+            userSubscribers.values().forEach(emitters -> emitters.forEach(this::ping));
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        return Map.of(
+            "taskStreams", taskSubscribers.values().stream().mapToInt(Set::size).sum(),
+            "userStreams", userSubscribers.values().stream().mapToInt(Set::size).sum(),
+            "trackedTasks", lastSent.size()
+        );
+    }
+
+    @PreDestroy
+    void shutdown() {
+        sender.shutdownNow();
+        taskSubscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        userSubscribers.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+    }
+
+    private Runnable register(Map<String, Set<SseEmitter>> subscribers, String key, SseEmitter emitter) {
+        subscribers.compute(key, (k, current) -> {
+            Set<SseEmitter> emitters = current != null ? current : new CopyOnWriteArraySet<>();
+            emitters.add(emitter);
+            return emitters;
+        });
+        Runnable unregister = () -> {
+            subscribers.computeIfPresent(key, (k, current) -> {
+                current.remove(emitter);
+                return current.isEmpty() ? null : current;
+            });
+            // Không còn ai nghe: task có thể xong mà không được publish (mode mongo chỉ watch khi có subscriber)
+            if (!hasSubscribers()) {
+                lastSent.clear();
+            }
+        };
+        emitter.onCompletion(unregister);
+        emitter.onTimeout(unregister);
+        emitter.onError(error -> unregister.run());
+        return unregister;
+    }
+
+    private boolean send(SseEmitter emitter, AsyncTaskResponse<?> response) {
+        try {
+            emitter.send(SseEmitter.event()
+                .name(EVENT_NAME)
+                .id(response.getTaskId() + ":" + response.getStatus() + ":" + response.getProgress())
+                .data(response));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+            return false;
+        }
+    }
+
+    private void ping(SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event().comment("keep-alive"));
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private static boolean isFinished(String status) {
+        return FINISHED.contains(status);
+    }
+}
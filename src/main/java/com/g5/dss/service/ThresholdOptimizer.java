@@ -0,0 +1,178 @@
+package com.g5.dss.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Đường lợi nhuận theo ngưỡng τ cho một mẫu đơn hàng (thay cho vòng lặp T × N của /policy/optimize-threshold)
+ * Đơn được sắp theo điểm rủi ro một lần; đơn có score < τ được duyệt, còn lại bị chặn, nên
+ * lợi nhuận tại τ = prefixApproved[k] + (tổng blocked − prefixBlocked[k]) với k = số đơn có score < τ.
+ * Build O(N log N), mỗi điểm trên đường cong O(log N), quét cả đường cong O(N + T)
+ */
+final class ThresholdOptimizer {
+
+    // Số điểm tối đa trên một đường cong (bước 0.01 trên [0, 100])
+    static final int MAX_CURVE_POINTS = 10_001;
+
+    private final double[] sortedScores;
+    // Tổng tích lũy theo thứ tự score tăng dần, độ dài n + 1
+    private final double[] approvedPrefix;
+    private final double[] blockedPrefix;
+    private final double[] revenuePrefix;
+    // Tổng score/100 (xác suất hoàn) tích lũy, cho lợi nhuận theo tham số chi phí bất kỳ
+    private final double[] riskPrefix;
+
+    private ThresholdOptimizer(double[] sortedScores, double[] approvedPrefix,
+                               double[] blockedPrefix, double[] revenuePrefix, double[] riskPrefix) {
+        this.sortedScores = sortedScores;
+        this.approvedPrefix = approvedPrefix;
+        this.blockedPrefix = blockedPrefix;
+        this.revenuePrefix = revenuePrefix;
+        this.riskPrefix = riskPrefix;
+    }
+
+    /**
+     * Chấm điểm các đơn bằng model rồi build prefix sums
+     * (lợi nhuận từng đơn làm tròn 2 chữ số như pipeline Python)
+     */
+    static ThresholdOptimizer build(
+        ReturnRiskModel model,
+        double[] customerReturnRates,
+        double[] skuReturnRates,
+        boolean[] firstTimeCustomers,
+        double[] orderValues,
+        double returnProcessingCost,
+        double shippingCost,
+        double cogsRatio,
+        double conversionRateImpact
+    ) {
+        int n = orderValues.length;
+        // Score đã làm tròn 2 chữ số trong [0, 100]: score·100 là số nguyên, ghép với index để sort một mảng long
+        long[] keys = new long[n];
+        double[] scores = new double[n];
+        for (int i = 0; i < n; i++) {
+            scores[i] = model.score(customerReturnRates[i], skuReturnRates[i], firstTimeCustomers[i], orderValues[i]);
+            keys[i] = (Math.round(scores[i] * 100) << 32) | i;
+        }
+        Arrays.sort(keys);
+
+        double[] sortedScores = new double[n];
+        double[] approvedPrefix = new double[n + 1];
+        double[] blockedPrefix = new double[n + 1];
+        double[] revenuePrefix = new double[n + 1];
+        double[] riskPrefix = new double[n + 1];
+        for (int k = 0; k < n; k++) {
+            int i = (int) keys[k];
+            double revenue = orderValues[i];
+            sortedScores[k] = scores[i];
+            approvedPrefix[k + 1] = approvedPrefix[k] + ReturnRiskModel.profitIfApproved(
+                revenue, scores[i], cogsRatio, shippingCost, returnProcessingCost);
+            blockedPrefix[k + 1] = blockedPrefix[k] + ReturnRiskModel.profitIfBlocked(
+                revenue, cogsRatio, shippingCost, conversionRateImpact);
+            revenuePrefix[k + 1] = revenuePrefix[k] + revenue;
+            riskPrefix[k + 1] = riskPrefix[k] + scores[i] / 100.0;
+        }
+        return new ThresholdOptimizer(sortedScores, approvedPrefix, blockedPrefix, revenuePrefix, riskPrefix);
+    }
+
+    int size() {
+        return sortedScores.length;
+    }
+
+    /**
+     * Kết quả áp dụng một ngưỡng τ
+     */
+    Point at(double threshold) {
+        return point(threshold, approvedCount(threshold));
+    }
+
+    /**
+     * Đường cong tại các ngưỡng tăng dần (từ thresholds())
+     */
+    List<Point> curve(double[] thresholds) {
+        List<Point> curve = new ArrayList<>(thresholds.length);
+        int k = 0;
+        for (double threshold : thresholds) {
+            // Ngưỡng tăng dần nên con trỏ chỉ tiến
+            while (k < sortedScores.length && sortedScores[k] < threshold) {
+                k++;
+            }
+            curve.add(point(threshold, k));
+        }
+        return curve;
+    }
+
+    /**
+     * Các ngưỡng from, from + step, ..., to (bao gồm), tối đa MAX_CURVE_POINTS điểm
+     */
+    static double[] thresholds(double from, double to, double step) {
+        if (!(step > 0) || Double.isInfinite(step)) {
+            throw new IllegalArgumentException("Threshold step must be positive");
+        }
+        if (to < from) {
+            throw new IllegalArgumentException("Threshold range is empty");
+        }
+        // So sánh trên double trước khi ép kiểu, để bước rất nhỏ không tràn int
+        double count = Math.floor((to - from) / step + 1e-9) + 1;
+        if (count > MAX_CURVE_POINTS) {
+            throw new IllegalArgumentException("Threshold step " + step + " gives " + (long) count
+                + " curve points, limit is " + MAX_CURVE_POINTS);
+        }
+        int steps = (int) count - 1;
+        double[] thresholds = new double[steps + 1];
+        for (int t = 0; t <= steps; t++) {
+            // Bỏ sai số cộng dồn của bước thập phân (vd. 0.1)
+            thresholds[t] = Math.round((from + t * step) * 1e9) / 1e9;
+        }
+        return thresholds;
+    }
+
+    /**
+     * Lợi nhuận khi duyệt approved đơn có score thấp nhất, với bộ tham số chi phí bất kỳ (O(1))
+     * Lợi nhuận tuyến tính theo revenue và score nên tính thẳng từ revenuePrefix / riskPrefix:
+     * duyệt = (1 − cogs)·R − ship·k − returnCost·P, chặn = (1 − conv)·((1 − cogs)·R − ship·k) trên phần còn lại.
+     * Không làm tròn từng đơn như at()/curve(), chênh lệch tối đa 0.005 mỗi đơn
+     */
+    double profit(int approved, double returnProcessingCost, double shippingCost,
+                  double cogsRatio, double conversionRateImpact) {
+        int n = sortedScores.length;
+        double keep = 1 - cogsRatio;
+        double approvedProfit = keep * revenuePrefix[approved] - shippingCost * approved
+            - returnProcessingCost * riskPrefix[approved];
+        double blockedMargin = keep * (revenuePrefix[n] - revenuePrefix[approved]) - shippingCost * (n - approved);
+        return approvedProfit + blockedMargin * (1 - conversionRateImpact);
+    }
+
+    int approvedCount(double threshold) {
+        int low = 0;
+        int high = sortedScores.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedScores[mid] < threshold) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Point point(double threshold, int approved) {
+        int n = sortedScores.length;
+        double profit = approvedPrefix[approved] + (blockedPrefix[n] - blockedPrefix[approved]);
+        double revenueImpacted = revenuePrefix[n] - revenuePrefix[approved];
+        return new Point(
+            threshold,
+            ReturnRiskModel.round2(profit),
+            n - approved,
+            ReturnRiskModel.round2(revenueImpacted)
+        );
+    }
+
+    /**
+     * Một điểm trên đường lợi nhuận
+     */
+    record Point(double threshold, double profit, int ordersImpacted, double revenueImpacted) {
+    }
+}
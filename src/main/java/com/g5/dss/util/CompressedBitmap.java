@@ -0,0 +1,363 @@
+package com.g5.dss.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+/**
+ * Compressed bitmap of non-negative ints (roaring layout)
+ * Values are split by their high 16 bits into containers: a sorted char[] while a
+ * container holds at most 4096 values, a 1024-word long[] bitmap above that
+ * Not thread-safe: publish copies to readers
+ */
+public class CompressedBitmap {
+
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private int[] highs = new int[4];
+    private char[][] arrays = new char[4][];
+    private long[][] bitmaps = new long[4][];
+    private int[] cardinalities = new int[4];
+    private int containers;
+    private int cardinality;
+
+    public CompressedBitmap() {
+    }
+
+    /**
+     * Deep copy (for copy-on-write updates)
+     */
+    public CompressedBitmap copy() {
+        CompressedBitmap copy = new CompressedBitmap();
+        copy.ensureContainerCapacity(containers);
+        for (int i = 0; i < containers; i++) {
+            copy.highs[i] = highs[i];
+            copy.arrays[i] = arrays[i] != null ? arrays[i].clone() : null;
+            copy.bitmaps[i] = bitmaps[i] != null ? bitmaps[i].clone() : null;
+            copy.cardinalities[i] = cardinalities[i];
+        }
+        copy.containers = containers;
+        copy.cardinality = cardinality;
+        return copy;
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Add a value; returns false if it was already present
+     */
+    public boolean add(int value) {
+        if (value < 0) {
+            throw new IllegalArgumentException("Negative value: " + value);
+        }
+        int high = value >>> 16;
+        char low = (char) value;
+        int index = containerIndex(high);
+        if (index < 0) {
+            index = -index - 1;
+            insertContainer(index, high);
+        }
+
+        boolean added;
+        if (bitmaps[index] != null) {
+            long[] words = bitmaps[index];
+            long bit = 1L << low;
+            added = (words[low >>> 6] & bit) == 0;
+            if (added) {
+                words[low >>> 6] |= bit;
+                cardinalities[index]++;
+            }
+        } else {
+            added = addToArray(index, low);
+        }
+        if (added) {
+            cardinality++;
+        }
+        return added;
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = containerIndex(value >>> 16);
+        if (index < 0) {
+            return false;
+        }
+        char low = (char) value;
+        if (bitmaps[index] != null) {
+            return (bitmaps[index][low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch(arrays[index], 0, cardinalities[index], low) >= 0;
+    }
+
+    /**
+     * |this ∩ other| without materializing the intersection
+     */
+    public int andCardinality(CompressedBitmap other) {
+        int total = 0;
+        int i = 0;
+        int j = 0;
+        while (i < containers && j < other.containers) {
+            if (highs[i] < other.highs[j]) {
+                i++;
+            } else if (highs[i] > other.highs[j]) {
+                j++;
+            } else {
+                total += intersectCount(i, other, j);
+                i++;
+                j++;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * this ∩ other as a new bitmap
+     */
+    public CompressedBitmap and(CompressedBitmap other) {
+        CompressedBitmap result = new CompressedBitmap();
+        int i = 0;
+        int j = 0;
+        while (i < containers && j < other.containers) {
+            if (highs[i] < other.highs[j]) {
+                i++;
+            } else if (highs[i] > other.highs[j]) {
+                j++;
+            } else {
+                int high = highs[i] << 16;
+                if (bitmaps[i] != null && other.bitmaps[j] != null) {
+                    long[] a = bitmaps[i];
+                    long[] b = other.bitmaps[j];
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        long word = a[w] & b[w];
+                        while (word != 0) {
+                            result.add(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                            word &= word - 1;
+                        }
+                    }
+                } else {
+                    // Duyệt phía array (nhỏ hơn) và dò phía còn lại
+                    boolean thisArray = bitmaps[i] == null;
+                    CompressedBitmap small = thisArray ? this : other;
+                    CompressedBitmap large = thisArray ? other : this;
+                    int s = thisArray ? i : j;
+                    for (int k = 0; k < small.cardinalities[s]; k++) {
+                        int value = high | small.arrays[s][k];
+                        if (large.contains(value)) {
+                            result.add(value);
+                        }
+                    }
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * this ∪= other
+     */
+    public void orInPlace(CompressedBitmap other) {
+        for (int j = 0; j < other.containers; j++) {
+            int high = other.highs[j] << 16;
+            if (other.bitmaps[j] != null) {
+                long[] words = other.bitmaps[j];
+                for (int w = 0; w < BITMAP_WORDS; w++) {
+                    long word = words[w];
+                    while (word != 0) {
+                        add(high | (w << 6) | Long.numberOfTrailingZeros(word));
+                        word &= word - 1;
+                    }
+                }
+            } else {
+                for (int k = 0; k < other.cardinalities[j]; k++) {
+                    add(high | other.arrays[j][k]);
+                }
+            }
+        }
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 + cardinality * 2);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(containers);
+            for (int i = 0; i < containers; i++) {
+                out.writeInt(highs[i]);
+                out.writeInt(cardinalities[i]);
+                if (bitmaps[i] != null) {
+                    out.writeByte(1);
+                    for (long word : bitmaps[i]) {
+                        out.writeLong(word);
+                    }
+                } else {
+                    out.writeByte(0);
+                    for (int k = 0; k < cardinalities[i]; k++) {
+                        out.writeChar(arrays[i][k]);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static CompressedBitmap fromBytes(byte[] data) {
+        CompressedBitmap bitmap = new CompressedBitmap();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int count = in.readInt();
+            bitmap.ensureContainerCapacity(count);
+            for (int i = 0; i < count; i++) {
+                bitmap.highs[i] = in.readInt();
+                int size = in.readInt();
+                bitmap.cardinalities[i] = size;
+                if (in.readByte() == 1) {
+                    long[] words = new long[BITMAP_WORDS];
+                    for (int w = 0; w < BITMAP_WORDS; w++) {
+                        words[w] = in.readLong();
+                    }
+                    bitmap.bitmaps[i] = words;
+                } else {
+                    char[] values = new char[Math.max(4, size)];
+                    for (int k = 0; k < size; k++) {
+                        values[k] = in.readChar();
+                    }
+                    bitmap.arrays[i] = values;
+                }
+                bitmap.cardinality += size;
+            }
+            bitmap.containers = count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bitmap;
+    }
+
+    private int intersectCount(int i, CompressedBitmap other, int j) {
+        if (bitmaps[i] != null && other.bitmaps[j] != null) {
+            long[] a = bitmaps[i];
+            long[] b = other.bitmaps[j];
+            int count = 0;
+            for (int w = 0; w < BITMAP_WORDS; w++) {
+                count += Long.bitCount(a[w] & b[w]);
+            }
+            return count;
+        }
+        if (bitmaps[i] != null || other.bitmaps[j] != null) {
+            boolean thisArray = bitmaps[i] == null;
+            char[] values = thisArray ? arrays[i] : other.arrays[j];
+            int size = thisArray ? cardinalities[i] : other.cardinalities[j];
+            long[] words = thisArray ? other.bitmaps[j] : bitmaps[i];
+            int count = 0;
+            for (int k = 0; k < size; k++) {
+                char low = values[k];
+                if ((words[low >>> 6] & (1L << low)) != 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+        // Merge hai mảng đã sắp xếp
+        char[] a = arrays[i];
+        char[] b = other.arrays[j];
+        int sizeA = cardinalities[i];
+        int sizeB = other.cardinalities[j];
+        int x = 0;
+        int y = 0;
+        int count = 0;
+        while (x < sizeA && y < sizeB) {
+            if (a[x] < b[y]) {
+                x++;
+            } else if (a[x] > b[y]) {
+                y++;
+            } else {
+                count++;
+                x++;
+                y++;
+            }
+        }
+        return count;
+    }
+
+    private boolean addToArray(int index, char low) {
+        char[] values = arrays[index];
+        int size = cardinalities[index];
+        int position;
+        // Giá trị thường tăng dần: thử nối vào cuối trước
+        if (size == 0 || values[size - 1] < low) {
+            position = size;
+        } else {
+            position = Arrays.binarySearch(values, 0, size, low);
+            if (position >= 0) {
+                return false;
+            }
+            position = -position - 1;
+        }
+
+        if (size == ARRAY_MAX) {
+            long[] words = new long[BITMAP_WORDS];
+            for (int k = 0; k < size; k++) {
+                words[values[k] >>> 6] |= 1L << values[k];
+            }
+            words[low >>> 6] |= 1L << low;
+            bitmaps[index] = words;
+            arrays[index] = null;
+            cardinalities[index] = size + 1;
+            return true;
+        }
+
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.min(ARRAY_MAX, size * 2));
+            arrays[index] = values;
+        }
+        System.arraycopy(values, position, values, position + 1, size - position);
+        values[position] = low;
+        cardinalities[index] = size + 1;
+        return true;
+    }
+
+    private int containerIndex(int high) {
+        if (containers > 0 && highs[containers - 1] == high) {
+            return containers - 1;
+        }
+        return Arrays.binarySearch(highs, 0, containers, high);
+    }
+
+    private void insertContainer(int index, int high) {
+        ensureContainerCapacity(containers + 1);
+        int moved = containers - index;
+        System.arraycopy(highs, index, highs, index + 1, moved);
+        System.arraycopy(arrays, index, arrays, index + 1, moved);
+        System.arraycopy(bitmaps, index, bitmaps, index + 1, moved);
+        System.arraycopy(cardinalities, index, cardinalities, index + 1, moved);
+        highs[index] = high;
+        arrays[index] = new char[4];
+        bitmaps[index] = null;
+        cardinalities[index] = 0;
+        containers++;
+    }
+
+    private void ensureContainerCapacity(int required) {
+        if (required <= highs.length) {
+            return;
+        }
+        int capacity = Math.max(required, highs.length * 2);
+        highs = Arrays.copyOf(highs, capacity);
+        arrays = Arrays.copyOf(arrays, capacity);
+        bitmaps = Arrays.copyOf(bitmaps, capacity);
+        cardinalities = Arrays.copyOf(cardinalities, capacity);
+    }
+}
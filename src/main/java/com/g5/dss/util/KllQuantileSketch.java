@@ -0,0 +1,177 @@
+package com.g5.dss.util;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * KLL quantile sketch over primitive doubles
+ * One pass, bounded memory O(k·log(n/k)); rank error roughly 1.7/k
+ * Not thread-safe: one sketch per stream
+ */
+public class KllQuantileSketch {
+
+    private static final double DECAY = 2.0 / 3.0;
+    private static final int MIN_CAPACITY = 2;
+
+    private final int k;
+    private final SplittableRandom random;
+
+    // levels[h] holds items of weight 2^h
+    private double[][] levels = new double[1][];
+    private int[] sizes = new int[1];
+    private int numLevels = 1;
+    private int retained;
+    private int maxRetained;
+    private long count;
+
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public KllQuantileSketch(int k) {
+        this(k, 42L);
+    }
+
+    public KllQuantileSketch(int k, long seed) {
+        if (k < 8) {
+            throw new IllegalArgumentException("k must be >= 8");
+        }
+        this.k = k;
+        this.random = new SplittableRandom(seed);
+        this.levels[0] = new double[k];
+        this.maxRetained = k;
+    }
+
+    public void update(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        count++;
+
+        append(0, value);
+        retained++;
+        if (retained > maxRetained) {
+            compress();
+        }
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Nearest-rank quantile: smallest value whose cumulative weight >= ceil(q·n)
+     * Same convention as the exact percentile over a sorted array
+     */
+    public double quantile(double q) {
+        if (count == 0) {
+            return 0;
+        }
+        if (q <= 0) {
+            return min;
+        }
+        if (q >= 1) {
+            return max;
+        }
+
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        int n = 0;
+        for (int h = 0; h < numLevels; h++) {
+            long weight = 1L << h;
+            for (int i = 0; i < sizes[h]; i++) {
+                values[n] = levels[h][i];
+                weights[n] = weight;
+                n++;
+            }
+        }
+        sortByValue(values, weights, n);
+
+        long targetRank = Math.max(1, (long) Math.ceil(q * count));
+        long cumulative = 0;
+        for (int i = 0; i < n; i++) {
+            cumulative += weights[i];
+            if (cumulative >= targetRank) {
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    private void append(int level, double value) {
+        double[] items = levels[level];
+        if (sizes[level] == items.length) {
+            items = Arrays.copyOf(items, Math.max(MIN_CAPACITY, items.length * 2));
+            levels[level] = items;
+        }
+        items[sizes[level]++] = value;
+    }
+
+    private int capacity(int level) {
+        int depth = numLevels - level - 1;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(DECAY, depth)));
+    }
+
+    /**
+     * Compact the lowest over-full level: sort it and promote every other item
+     */
+    private void compress() {
+        for (int h = 0; h < numLevels; h++) {
+            if (sizes[h] < capacity(h)) {
+                continue;
+            }
+            if (h + 1 == numLevels) {
+                addLevel();
+            }
+
+            double[] items = levels[h];
+            int size = sizes[h];
+            Arrays.sort(items, 0, size);
+
+            // An odd item stays behind so that total weight is preserved
+            int keep = size & 1;
+            int offset = random.nextBoolean() ? 1 : 0;
+            int promoted = 0;
+            for (int i = keep + offset; i < size; i += 2) {
+                append(h + 1, items[i]);
+                promoted++;
+            }
+            sizes[h] = keep;
+            retained -= size - keep - promoted;
+            maxRetained = totalCapacity();
+            return;
+        }
+    }
+
+    private void addLevel() {
+        levels = Arrays.copyOf(levels, numLevels + 1);
+        sizes = Arrays.copyOf(sizes, numLevels + 1);
+        levels[numLevels] = new double[MIN_CAPACITY];
+        numLevels++;
+    }
+
+    private int totalCapacity() {
+        int total = 0;
+        for (int h = 0; h < numLevels; h++) {
+            total += capacity(h);
+        }
+        return total;
+    }
+
+    private static void sortByValue(double[] values, long[] weights, int n) {
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        double[] sortedValues = new double[n];
+        long[] sortedWeights = new long[n];
+        for (int i = 0; i < n; i++) {
+            sortedValues[i] = values[order[i]];
+            sortedWeights[i] = weights[order[i]];
+        }
+        System.arraycopy(sortedValues, 0, values, 0, n);
+        System.arraycopy(sortedWeights, 0, weights, 0, n);
+    }
+}
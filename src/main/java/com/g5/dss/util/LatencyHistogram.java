@@ -0,0 +1,88 @@
+package com.g5.dss.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrent latency histogram with power-of-two millisecond buckets
+ * record() is lock-free (one LongAdder per bucket); quantiles are bucket upper bounds,
+ * so they over-estimate by at most 2x and never exceed the observed max
+ */
+public class LatencyHistogram {
+
+    // Bucket i holds values in (2^(i-1), 2^i] ms; the last bucket is open-ended (> ~35 min)
+    private static final int BUCKETS = 23;
+
+    private final LongAdder[] counts = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sumMs = new LongAdder();
+    private final LongAccumulator maxMs = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = new LongAdder();
+        }
+    }
+
+    public void record(long millis) {
+        long value = Math.max(0, millis);
+        counts[bucket(value)].increment();
+        total.increment();
+        sumMs.add(value);
+        maxMs.accumulate(value);
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * Upper bound of the bucket holding the q-th quantile, 0 when empty
+     */
+    public long quantile(double q) {
+        long[] snapshot = new long[BUCKETS];
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts[i].sum();
+            n += snapshot[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(1.0, Math.max(0.0, q)) * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                return Math.min(upperBound(i), maxMs.get());
+            }
+        }
+        return maxMs.get();
+    }
+
+    public Map<String, Object> snapshot() {
+        long n = total.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("count", n);
+        stats.put("meanMs", n == 0 ? 0.0 : Math.round(sumMs.sum() * 10.0 / n) / 10.0);
+        stats.put("p50Ms", quantile(0.50));
+        stats.put("p95Ms", quantile(0.95));
+        stats.put("p99Ms", quantile(0.99));
+        stats.put("maxMs", maxMs.get());
+        return stats;
+    }
+
+    private static int bucket(long millis) {
+        if (millis <= 1) {
+            return 0;
+        }
+        int index = 64 - Long.numberOfLeadingZeros(millis - 1);
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    private static long upperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+}
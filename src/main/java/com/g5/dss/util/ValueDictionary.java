@@ -0,0 +1,65 @@
+package com.g5.dss.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Append-only dictionary encoding values as dense ints (0..size-1)
+ * Single writer, lock-free readers: decode() sees every code handed out before
+ * the reader obtained it through a volatile publish
+ */
+public class ValueDictionary<T> {
+
+    private final Map<T, Integer> codes = new ConcurrentHashMap<>();
+    private volatile Object[] values;
+    private volatile int size;
+
+    public ValueDictionary() {
+        this(1024);
+    }
+
+    public ValueDictionary(int initialCapacity) {
+        this.values = new Object[Math.max(16, initialCapacity)];
+    }
+
+    /**
+     * Code for a value, assigning the next code if it is new (writer only)
+     */
+    public int encode(T value) {
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        int next = size;
+        Object[] current = values;
+        if (next == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[next] = value;
+        values = current;
+        codes.put(value, next);
+        size = next + 1;
+        return next;
+    }
+
+    /**
+     * Code for a value, or -1 if it was never encoded
+     */
+    public int indexOf(T value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T decode(int code) {
+        return (T) values[code];
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -112,3 +112,24 @@ function showNotification(message, type = 'info') {
     console.log(`[${type.toUpperCase()}] ${message}`);
 }
 
+
+// Follow an async task over Server-Sent Events instead of polling its status.
+// onUpdate receives each AsyncTaskResponse; the stream closes after COMPLETED, FAILED or CANCELLED.
+function watchAsyncTask(taskId, onUpdate) {
+    const source = new EventSource(`${API_BASE_URL}/v1/async/tasks/${encodeURIComponent(taskId)}/events`);
+    source.addEventListener('task', event => {
+        const task = JSON.parse(event.data);
+        onUpdate(task);
+        if (['COMPLETED', 'FAILED', 'CANCELLED'].includes(task.status)) {
+            source.close();
+        }
+    });
+    return source;
+}
+
+// Follow every async task submitted by the logged-in user (dashboard widgets)
+function watchMyAsyncTasks(onUpdate) {
+    const source = new EventSource(`${API_BASE_URL}/v1/async/tasks/events`);
+    source.addEventListener('task', event => onUpdate(JSON.parse(event.data)));
+    return source;
+}
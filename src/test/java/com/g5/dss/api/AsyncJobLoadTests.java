@@ -0,0 +1,261 @@
+package com.g5.dss.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.g5.dss.config.AsyncExecutorProperties;
+import com.g5.dss.config.ModelServiceProperties;
+import com.g5.dss.service.AsyncJobService;
+import com.g5.dss.service.AsyncTaskManager;
+import com.g5.dss.service.ModelServiceClient;
+import com.g5.dss.service.TaskProgressBroadcaster;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Load tests for the async submit endpoints: the request thread must return 202 while the
+ * model-service call is still blocked, and the call must run on the named executor
+ */
+class AsyncJobLoadTests {
+
+    private static final String SALES_FORECAST = "/api/v1/async/predictions/sales-forecast";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<ThreadPoolTaskExecutor> executors = new ArrayList<>();
+    private final BlockingModelServiceClient modelService = new BlockingModelServiceClient();
+    private final TaskProgressBroadcaster events = new TaskProgressBroadcaster();
+    private final AsyncTaskManager taskManager = new AsyncTaskManager(null, objectMapper, null, events, 10_000, 60, 0);
+
+    @AfterEach
+    void tearDown() {
+        modelService.release.countDown();
+        executors.forEach(ThreadPoolTaskExecutor::shutdown);
+    }
+
+    @Test
+    void submitReturnsBeforeModelCallCompletes() throws Exception {
+        int requests = 100;
+        MockMvc mvc = mockMvc(executor("async-prediction-", 5, 20, 100));
+
+        ExecutorService clients = Executors.newFixedThreadPool(16, runnable -> new Thread(runnable, "http-client"));
+        List<Future<MvcResult>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            results.add(clients.submit(() -> mvc.perform(post(SALES_FORECAST)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{}")).andReturn()));
+        }
+        List<String> taskIds = new ArrayList<>();
+        for (Future<MvcResult> result : results) {
+            MvcResult response = result.get(5, TimeUnit.SECONDS);
+            assertThat(response.getResponse().getStatus()).isEqualTo(202);
+            taskIds.add(objectMapper.readTree(response.getResponse().getContentAsString()).get("taskId").asText());
+        }
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        clients.shutdown();
+
+        // Every request answered while all model calls are still blocked
+        assertThat(modelService.completed.get()).isZero();
+        assertThat(elapsedMs).isLessThan(5_000);
+        assertThat(modelService.started.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(modelService.threads).allMatch(name -> name.startsWith("async-prediction-"));
+
+        modelService.release.countDown();
+        for (String taskId : taskIds) {
+            awaitStatus(taskId, "COMPLETED");
+        }
+        assertThat(modelService.completed.get()).isEqualTo(requests);
+
+        // Counters follow every transition without scanning the store
+        assertThat(taskManager.getStatusCounts()).containsEntry("COMPLETED", (long) requests)
+            .containsEntry("PENDING", 0L)
+            .containsEntry("PROCESSING", 0L);
+        Map<String, Object> stats = taskManager.getTaskStats();
+        assertThat(stats.get("byType").toString()).contains("sales-forecast={submitted=100, rejected=0, completed=100");
+        assertThat(stats.get("executors").toString()).contains("predictionExecutor={queueWait={count=100");
+    }
+
+    @Test
+    void saturatedExecutorRejectsWith503() throws Exception {
+        // 1 worker + 1 queued slot: the third submission is rejected
+        MockMvc mvc = mockMvc(executor("async-prediction-", 1, 1, 1));
+
+        for (int i = 0; i < 2; i++) {
+            assertThat(submit(mvc).getResponse().getStatus()).isEqualTo(202);
+        }
+        MvcResult rejected = submit(mvc);
+        assertThat(rejected.getResponse().getStatus()).isEqualTo(503);
+        assertThat(rejected.getResponse().getHeader("Retry-After")).isNotNull();
+        assertThat(taskManager.getAllTasks().values())
+            .filteredOn(task -> "FAILED".equals(task.getStatus()))
+            .hasSize(1);
+        assertThat(taskManager.getStatusCounts()).containsEntry("FAILED", 1L);
+        assertThat(taskManager.getTaskStats().get("byType").toString()).contains("rejected=1");
+    }
+
+    @Test
+    void cancelInterruptsRunningJob() throws Exception {
+        MockMvc mvc = mockMvc(executor("async-prediction-", 2, 2, 10));
+
+        String taskId = objectMapper.readTree(submit(mvc).getResponse().getContentAsString()).get("taskId").asText();
+        assertThat(modelService.started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(mvc.perform(delete("/api/v1/async/predictions/" + taskId)).andReturn()
+            .getResponse().getStatus()).isEqualTo(200);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (modelService.interrupted.get() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(modelService.interrupted.get()).isEqualTo(1);
+        assertThat(taskManager.getTask(taskId).getStatus()).isEqualTo("CANCELLED");
+    }
+
+    @Test
+    void progressStreamPushesTransitions() throws Exception {
+        MockMvc mvc = mockMvc(executor("async-prediction-", 2, 2, 10));
+
+        String taskId = objectMapper.readTree(submit(mvc).getResponse().getContentAsString()).get("taskId").asText();
+        assertThat(modelService.started.await(5, TimeUnit.SECONDS)).isTrue();
+        MvcResult stream = mvc.perform(get("/api/v1/async/tasks/" + taskId + "/events")
+            .accept(MediaType.TEXT_EVENT_STREAM)).andReturn();
+        assertThat(stream.getRequest().isAsyncStarted()).isTrue();
+
+        modelService.release.countDown();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!stream.getResponse().getContentAsString().contains("\"status\":\"COMPLETED\"")) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+        String body = stream.getResponse().getContentAsString();
+        assertThat(body).contains("event:task");
+        assertThat(body.indexOf("\"status\":\"PROCESSING\"")).isLessThan(body.indexOf("\"status\":\"COMPLETED\""));
+        assertThat(events.getStats().get("taskStreams")).isEqualTo(0);
+    }
+
+    @Test
+    void virtualModeLimitsConcurrencyPerJobType() throws Exception {
+        // Pool is large; the sales-forecast semaphore admits 2 running + 3 waiting jobs
+        AsyncExecutorProperties properties = new AsyncExecutorProperties();
+        properties.setMode(AsyncExecutorProperties.VIRTUAL);
+        properties.setMaxQueued(3);
+        properties.getLimits().put("sales-forecast", 2);
+        MockMvc mvc = mockMvc(executor("async-prediction-", 10, 10, 10), properties);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(submit(mvc).getResponse().getStatus()).isEqualTo(202);
+        }
+        assertThat(submit(mvc).getResponse().getStatus()).isEqualTo(503);
+        assertThat(modelService.started.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread.sleep(200);
+        assertThat(modelService.threads.size()).isEqualTo(2);
+
+        modelService.release.countDown();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (modelService.completed.get() < 5) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(10);
+        }
+        assertThat(taskManager.getStatusCounts()).containsEntry("COMPLETED", 5L);
+    }
+
+    private MockMvc mockMvc(ThreadPoolTaskExecutor predictionExecutor) {
+        return mockMvc(predictionExecutor, null);
+    }
+
+    private MockMvc mockMvc(ThreadPoolTaskExecutor predictionExecutor, AsyncExecutorProperties properties) {
+        AsyncJobService jobService = new AsyncJobService(
+            taskManager,
+            null,
+            objectMapper,
+            properties,
+            predictionExecutor,
+            executor("async-segmentation-", 1, 1, 1),
+            executor("async-anomaly-", 1, 1, 1)
+        );
+        AsyncPredictionApiController controller = new AsyncPredictionApiController(taskManager, modelService, jobService);
+        controller.registerJobs();
+        return MockMvcBuilders
+            .standaloneSetup(controller, new AsyncTaskGatewayController(taskManager, events, jobService))
+            .setControllerAdvice(new AsyncJobExceptionHandler())
+            .build();
+    }
+
+    private MvcResult submit(MockMvc mvc) throws Exception {
+        return mvc.perform(post(SALES_FORECAST).contentType(MediaType.APPLICATION_JSON).content("{}")).andReturn();
+    }
+
+    private ThreadPoolTaskExecutor executor(String prefix, int core, int max, int queue) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(core);
+        executor.setMaxPoolSize(max);
+        executor.setQueueCapacity(queue);
+        executor.setThreadNamePrefix(prefix);
+        executor.initialize();
+        executors.add(executor);
+        return executor;
+    }
+
+    private void awaitStatus(String taskId, String status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!status.equals(taskManager.getTask(taskId).getStatus())) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * Model service stand-in that blocks the calling job thread until released
+     */
+    private static final class BlockingModelServiceClient extends ModelServiceClient {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final AtomicInteger completed = new AtomicInteger();
+        final AtomicInteger interrupted = new AtomicInteger();
+
+        BlockingModelServiceClient() {
+            super(WebClient.builder(), new ModelServiceProperties());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> Mono<T> post(String path, Object body, Class<T> responseType) {
+            return Mono.fromCallable(() -> {
+                threads.add(Thread.currentThread().getName());
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    interrupted.incrementAndGet();
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("interrupted", e);
+                }
+                completed.incrementAndGet();
+                return (T) Map.of("path", path);
+            });
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.g5.dss.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.g5.dss.dto.AsyncTaskResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bounded in-memory task store: LRU eviction of finished tasks only, TTL expiry and status counters
+ */
+class AsyncTaskManagerTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void evictsLeastRecentlyUsedFinishedTaskBeforeRunningOnes() {
+        AsyncTaskManager taskManager = taskManager(3, 60);
+        taskManager.storeTask("running-1", AsyncTaskResponse.processing("running-1", 10));
+        taskManager.storeTask("done-1", AsyncTaskResponse.completed("done-1", "a"));
+        taskManager.storeTask("done-2", AsyncTaskResponse.failed("done-2", "boom"));
+        // Reading done-1 makes done-2 the least recently used finished task
+        assertThat(taskManager.getTask("done-1")).isNotNull();
+
+        taskManager.storeTask("running-2", AsyncTaskResponse.pending("running-2"));
+
+        assertThat(taskManager.getTask("done-2")).isNull();
+        assertThat(taskManager.getAllTasks()).containsOnlyKeys("running-1", "done-1", "running-2");
+        assertThat(taskManager.getStoreStats()).containsEntry("evictedBySize", 1L);
+    }
+
+    @Test
+    void neverEvictsRunningTasksWhenStoreIsFull() {
+        AsyncTaskManager taskManager = taskManager(2, 60);
+        taskManager.storeTask("running-1", AsyncTaskResponse.processing("running-1", 10));
+        taskManager.storeTask("running-2", AsyncTaskResponse.processing("running-2", 10));
+        taskManager.storeTask("running-3", AsyncTaskResponse.pending("running-3"));
+
+        assertThat(taskManager.getAllTasks()).containsOnlyKeys("running-1", "running-2", "running-3");
+        assertThat(taskManager.getStoreStats()).containsEntry("evictedBySize", 0L);
+
+        // Once one finishes and another task arrives, the finished one goes first
+        taskManager.updateTask("running-1", AsyncTaskResponse.completed("running-1", "a"));
+        taskManager.storeTask("running-4", AsyncTaskResponse.pending("running-4"));
+        assertThat(taskManager.getAllTasks()).containsOnlyKeys("running-2", "running-3", "running-4");
+    }
+
+    @Test
+    void evictExpiredRespectsTtl() {
+        AsyncTaskManager taskManager = taskManager(100, 60);
+        taskManager.storeTask("running", AsyncTaskResponse.processing("running", 50));
+        taskManager.storeTask("done", AsyncTaskResponse.completed("done", "a"));
+        taskManager.storeTask("cancelled", AsyncTaskResponse.failed("cancelled", "stopped"));
+        long now = System.currentTimeMillis();
+
+        taskManager.evictExpired(now + TimeUnit.MINUTES.toMillis(59));
+        assertThat(taskManager.getAllTasks()).containsOnlyKeys("running", "done", "cancelled");
+
+        taskManager.evictExpired(now + TimeUnit.MINUTES.toMillis(61));
+        assertThat(taskManager.getAllTasks()).containsOnlyKeys("running");
+        assertThat(taskManager.getStoreStats()).containsEntry("evictedByAge", 2L);
+
+        // Running tasks have no finish time, however old they are
+        taskManager.evictExpired(now + TimeUnit.DAYS.toMillis(365));
+        assertThat(taskManager.getTask("running")).isNotNull();
+    }
+
+    @Test
+    void statusCountersFollowEviction() {
+        AsyncTaskManager taskManager = taskManager(3, 60);
+        taskManager.storeTask("a", AsyncTaskResponse.pending("a"));
+        taskManager.updateTask("a", AsyncTaskResponse.processing("a", 10));
+        taskManager.updateTask("a", AsyncTaskResponse.completed("a", "a"));
+        taskManager.storeTask("b", AsyncTaskResponse.failed("b", "boom"));
+        taskManager.storeTask("c", AsyncTaskResponse.processing("c", 10));
+        assertThat(taskManager.getStatusCounts())
+            .containsEntry("COMPLETED", 1L)
+            .containsEntry("FAILED", 1L)
+            .containsEntry("PROCESSING", 1L)
+            .containsEntry("PENDING", 0L);
+
+        // Size eviction drops a (least recently used finished), TTL expiry then drops b
+        taskManager.storeTask("d", AsyncTaskResponse.pending("d"));
+        assertThat(taskManager.getStatusCounts())
+            .containsEntry("COMPLETED", 0L)
+            .containsEntry("FAILED", 1L)
+            .containsEntry("PROCESSING", 1L)
+            .containsEntry("PENDING", 1L);
+
+        taskManager.evictExpired(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(61));
+        taskManager.updateTask("c", AsyncTaskResponse.completed("c", "c"));
+        taskManager.removeTask("c");
+        assertThat(taskManager.getStatusCounts())
+            .containsEntry("COMPLETED", 0L)
+            .containsEntry("FAILED", 0L)
+            .containsEntry("PROCESSING", 0L)
+            .containsEntry("PENDING", 1L);
+        assertThat(taskManager.getStatusCounts().values().stream().mapToLong(Long::longValue).sum())
+            .isEqualTo(taskManager.getAllTasks().size());
+    }
+
+    private AsyncTaskManager taskManager(int maxSize, long ttlMinutes) {
+        return new AsyncTaskManager(null, objectMapper, null, null, maxSize, ttlMinutes, 0);
+    }
+}
@@ -0,0 +1,281 @@
+package com.g5.dss.service;
+
+import com.g5.dss.dto.MarketBasketRuleDTO;
+import com.g5.dss.repository.jpa.OnlineRetailJpaRepository;
+import com.g5.dss.util.CompressedBitmap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * FP-Growth rules and bitmap recommendations against a brute-force count over fixed baskets
+ * Invoice ids span three bitmap containers, and the most popular products hold more than
+ * 4096 invoices in one container, so both array and bitmap containers are intersected
+ */
+class MarketBasketMiningTests {
+
+    private static final int BASKETS = 10_000;
+    private static final int PRODUCTS = 10;
+    // Chance that a basket holds each product, most popular first
+    private static final double[] POPULARITY = {0.9, 0.7, 0.5, 0.4, 0.3, 0.2, 0.1, 0.05, 0.02, 0.01};
+    private static final int FIRST_INVOICE = 60_000;
+    private static final int INVOICE_STRIDE = 13;
+    private static final int CUSTOMERS = 5;
+    private static final Set<Integer> SCOPE = Set.of(1, 2, 4);
+    // Same thresholds as the service uses for product recommendations
+    private static final double MIN_SUPPORT = 0.01;
+    private static final double MIN_CONFIDENCE = 30;
+
+    private final int[][] baskets = baskets();
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+    private final OnlineRetailJpaRepository repository = mock(OnlineRetailJpaRepository.class);
+    private final RetailColumnStore columnStore = mock(RetailColumnStore.class);
+    private final ProductInvoiceIndex invoiceIndex = mock(ProductInvoiceIndex.class);
+    private final StockDescriptionLookup descriptionLookup = mock(StockDescriptionLookup.class);
+    private final MarketBasketService service =
+        new MarketBasketService(repository, columnStore, invoiceIndex, descriptionLookup, pool);
+
+    @BeforeEach
+    void setUp() {
+        List<Object[]> rows = new ArrayList<>();
+        for (int b = 0; b < BASKETS; b++) {
+            for (int item : baskets[b]) {
+                rows.add(new Object[] {String.valueOf(invoiceId(b)), code(item), customerOf(b)});
+            }
+        }
+        when(repository.streamInvoiceLines()).thenAnswer(invocation -> rows.stream());
+        when(descriptionLookup.describe(anyCollection())).thenReturn(Map.of());
+        when(columnStore.isReady()).thenReturn(false);
+        when(invoiceIndex.isReady()).thenReturn(false);
+        ReflectionTestUtils.setField(service, "maxItemsetSizeLimit", 4);
+        ReflectionTestUtils.setField(service, "minCountFloor", 2);
+        ReflectionTestUtils.setField(service, "maxItemsets", 200_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void fpGrowthPairRulesMatchBruteForce() {
+        List<MarketBasketRuleDTO> rules =
+            service.findAssociationRules(null, MIN_SUPPORT, MIN_CONFIDENCE, Integer.MAX_VALUE, 2);
+
+        assertRulesMatch(rules, expectedRules(2, null));
+    }
+
+    @Test
+    void rejectsUnboundedMiningParameters() {
+        assertThatThrownBy(() -> service.findAssociationRules(null, 0, MIN_CONFIDENCE, 10, 2))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.findAssociationRules(null, MIN_SUPPORT, MIN_CONFIDENCE, 10, 50))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> service.findAssociationRules(null, MIN_SUPPORT, MIN_CONFIDENCE, 10, 1))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void tinyMinSupportIsBoundedByItemsetCap() {
+        // 1e-9 rounds to the min-count floor; every subset of up to 4 of the 10 products is then frequent
+        ReflectionTestUtils.setField(service, "maxItemsets", 100);
+
+        assertThatThrownBy(() -> service.findAssociationRules(null, 1e-9, MIN_CONFIDENCE, 10, 4))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("frequent itemsets");
+
+        // Pairs only: 10 products + 45 pairs
+        assertThat(service.findAssociationRules(null, 1e-9, 0, Integer.MAX_VALUE, 2)).hasSize(90);
+        ReflectionTestUtils.setField(service, "maxItemsets", 50);
+        assertThatThrownBy(() -> service.findAssociationRules(null, 1e-9, MIN_CONFIDENCE, 10, 2))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void fpGrowthTreeRulesMatchBruteForce() {
+        List<MarketBasketRuleDTO> rules =
+            service.findAssociationRules(null, MIN_SUPPORT, MIN_CONFIDENCE, Integer.MAX_VALUE, 3);
+
+        Map<String, double[]> expected = expectedRules(3, null);
+        assertThat(expected.keySet()).anyMatch(rule -> rule.startsWith("P0 + P1->"));
+        assertRulesMatch(rules, expected);
+    }
+
+    @Test
+    void bitmapRecommendationsMatchBruteForceAndFpGrowth() {
+        ProductInvoiceIndex.Snapshot snapshot = snapshot();
+        assertThat(invoiceId(BASKETS - 1) >>> 16).isEqualTo(2);
+        // Product 0 has more than 4096 invoices in container 1 (ids 65536..131071), so it is a bitmap there
+        int inContainer = 0;
+        for (int b = 0; b < BASKETS; b++) {
+            if (invoiceId(b) >>> 16 == 1 && baskets[b].length > 0 && baskets[b][0] == 0) {
+                inContainer++;
+            }
+        }
+        assertThat(inContainer).isGreaterThan(4096);
+
+        List<MarketBasketRuleDTO> pairRules =
+            service.findAssociationRules(null, MIN_SUPPORT, MIN_CONFIDENCE, Integer.MAX_VALUE, 2);
+        when(invoiceIndex.isReady()).thenReturn(true);
+        when(invoiceIndex.getSnapshot()).thenReturn(snapshot);
+
+        for (int a = 0; a < PRODUCTS; a++) {
+            String productA = code(a);
+            Map<String, double[]> expected = expectedRules(2, null).entrySet().stream()
+                .filter(rule -> rule.getKey().startsWith(productA + "->"))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+
+            List<MarketBasketRuleDTO> fromIndex = service.getRecommendationsForProduct(productA, null, PRODUCTS);
+            assertRulesMatch(fromIndex, expected);
+            assertRulesMatch(pairRules.stream().filter(rule -> rule.getProductACode().equals(productA)).toList(),
+                expected);
+
+            Map<String, double[]> expectedScoped = expectedRules(2, SCOPE).entrySet().stream()
+                .filter(rule -> rule.getKey().startsWith(productA + "->"))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            assertRulesMatch(service.getRecommendationsForProduct(productA, SCOPE, PRODUCTS), expectedScoped);
+        }
+    }
+
+    private static void assertRulesMatch(List<MarketBasketRuleDTO> rules, Map<String, double[]> expected) {
+        Map<String, MarketBasketRuleDTO> actual = rules.stream()
+            .collect(Collectors.toMap(rule -> antecedentKey(rule) + "->" + rule.getProductBCode(),
+                Function.identity()));
+        assertThat(actual.keySet()).isEqualTo(expected.keySet());
+        expected.forEach((key, values) -> {
+            MarketBasketRuleDTO rule = actual.get(key);
+            assertThat(rule.getTransactionCount()).as(key).isEqualTo((int) values[0]);
+            assertThat(rule.getSupport()).as(key).isCloseTo(values[1], within(1e-12));
+            assertThat(rule.getConfidence()).as(key).isCloseTo(values[2], within(1e-9));
+            assertThat(rule.getLift()).as(key).isCloseTo(values[3], within(1e-9));
+        });
+    }
+
+    // Antecedent order follows the FP-tree, so compare on sorted codes
+    private static String antecedentKey(MarketBasketRuleDTO rule) {
+        return Arrays.stream(rule.getProductACode().split(" \\+ ")).sorted().collect(Collectors.joining(" + "));
+    }
+
+    /**
+     * Expected rules ("P0 + P1->P2" -> {countAB, support, confidence, lift}) counted basket by basket
+     * customerIds: only count baskets of these customers (null = all)
+     */
+    private Map<String, double[]> expectedRules(int maxItemsetSize, Set<Integer> customerIds) {
+        Map<List<Integer>, Integer> supports = new HashMap<>();
+        int total = 0;
+        for (int b = 0; b < BASKETS; b++) {
+            // An invoice without lines is not a basket
+            if (baskets[b].length == 0 || customerIds != null && !customerIds.contains(customerOf(b))) {
+                continue;
+            }
+            total++;
+            int[] basket = baskets[b];
+            for (int i = 0; i < basket.length; i++) {
+                supports.merge(List.of(basket[i]), 1, Integer::sum);
+                for (int j = i + 1; j < basket.length; j++) {
+                    supports.merge(List.of(basket[i], basket[j]), 1, Integer::sum);
+                    for (int k = j + 1; k < basket.length && maxItemsetSize > 2; k++) {
+                        supports.merge(List.of(basket[i], basket[j], basket[k]), 1, Integer::sum);
+                    }
+                }
+            }
+        }
+
+        int minCount = (int) Math.ceil(MIN_SUPPORT * total - 1e-9);
+        Map<String, double[]> rules = new HashMap<>();
+        for (Map.Entry<List<Integer>, Integer> entry : supports.entrySet()) {
+            List<Integer> itemset = entry.getKey();
+            int countAB = entry.getValue();
+            if (itemset.size() < 2 || countAB < minCount) {
+                continue;
+            }
+            for (int consequent : itemset) {
+                List<Integer> antecedent = new ArrayList<>(itemset);
+                antecedent.remove(Integer.valueOf(consequent));
+                int countA = supports.get(antecedent);
+                int countB = supports.get(List.of(consequent));
+                double confidence = 100.0 * countAB / countA;
+                if (confidence < MIN_CONFIDENCE) {
+                    continue;
+                }
+                String key = antecedent.stream().map(MarketBasketMiningTests::code)
+                    .collect(Collectors.joining(" + ")) + "->" + code(consequent);
+                rules.put(key, new double[] {
+                    countAB, (double) countAB / total, confidence, (double) countAB * total / ((double) countA * countB)
+                });
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Bitmap index as ProductInvoiceIndex builds it, round-tripped through toBytes/fromBytes like a Mongo load
+     */
+    private ProductInvoiceIndex.Snapshot snapshot() {
+        Map<String, CompressedBitmap> products = new HashMap<>();
+        Map<Integer, CompressedBitmap> customers = new HashMap<>();
+        CompressedBitmap allInvoices = new CompressedBitmap();
+        for (int b = 0; b < BASKETS; b++) {
+            if (baskets[b].length == 0) {
+                continue;
+            }
+            int invoice = invoiceId(b);
+            allInvoices.add(invoice);
+            customers.computeIfAbsent(customerOf(b), id -> new CompressedBitmap()).add(invoice);
+            for (int item : baskets[b]) {
+                products.computeIfAbsent(code(item), code -> new CompressedBitmap()).add(invoice);
+            }
+        }
+        products.replaceAll((code, bitmap) -> CompressedBitmap.fromBytes(bitmap.toBytes()));
+        customers.replaceAll((id, bitmap) -> CompressedBitmap.fromBytes(bitmap.toBytes()));
+        return new ProductInvoiceIndex.Snapshot(products, customers, allInvoices, 0L);
+    }
+
+    private static String code(int item) {
+        return "P" + item;
+    }
+
+    private static int invoiceId(int basket) {
+        return FIRST_INVOICE + basket * INVOICE_STRIDE;
+    }
+
+    private static int customerOf(int basket) {
+        return basket % CUSTOMERS;
+    }
+
+    private static int[][] baskets() {
+        SplittableRandom random = new SplittableRandom(7);
+        int[][] baskets = new int[BASKETS][];
+        for (int b = 0; b < BASKETS; b++) {
+            List<Integer> basket = new ArrayList<>();
+            for (int item = 0; item < PRODUCTS; item++) {
+                // Product 1 mostly comes with product 0, so rules on {0, 1} have a lift above 1
+                double chance = item == 1 && !basket.contains(0) ? 0.2 : POPULARITY[item];
+                if (random.nextDouble() < chance) {
+                    basket.add(item);
+                }
+            }
+            baskets[b] = basket.stream().mapToInt(Integer::intValue).toArray();
+        }
+        return baskets;
+    }
+}
@@ -0,0 +1,73 @@
+package com.g5.dss.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.g5.dss.domain.mongo.ReturnRiskScore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Spill replay: a failed bulk write keeps only the unwritten lines, so unreadable lines are rejected once
+ */
+class RiskScoreWriterTests {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void failedReplayDoesNotRejectUnreadableLinesAgain() throws Exception {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        BulkOperations bulkOps = mock(BulkOperations.class);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(ReturnRiskScore.class))).thenReturn(bulkOps);
+        when(bulkOps.insert(anyList())).thenReturn(bulkOps);
+        // First batch goes in, second fails, then everything succeeds
+        when(bulkOps.execute())
+            .thenReturn(null)
+            .thenThrow(new IllegalStateException("mongo down"))
+            .thenReturn(null);
+
+        Path spill = dir.resolve("scores.ndjson");
+        Files.write(spill, List.of(
+            score("a"), score("b"),
+            "{\"id\":\"broken\"",
+            score("c"), score("d"),
+            "not json"
+        ));
+
+        RiskScoreWriter writer = new RiskScoreWriter(mongoTemplate, new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(writer, "spillFile", spill.toString());
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+        ReflectionTestUtils.setField(writer, "replayBackoffMs", 0L);
+
+        ReflectionTestUtils.invokeMethod(writer, "replaySpill");
+
+        Path replaying = dir.resolve("scores.ndjson.replaying");
+        Path rejected = dir.resolve("scores.ndjson.rejected");
+        assertThat(Files.readAllLines(replaying)).containsExactly(score("c"), score("d"), "not json");
+        assertThat(Files.readAllLines(rejected)).containsExactly("{\"id\":\"broken\"");
+        assertThat(writer.getStats()).containsEntry("replayed", 2L).containsEntry("rejected", 1L);
+
+        ReflectionTestUtils.invokeMethod(writer, "replaySpill");
+
+        assertThat(replaying).doesNotExist();
+        assertThat(Files.readAllLines(rejected)).containsExactly("{\"id\":\"broken\"", "not json");
+        assertThat(writer.getStats()).containsEntry("replayed", 4L).containsEntry("rejected", 2L);
+    }
+
+    private static String score(String id) {
+        return "{\"id\":\"" + id + "\",\"orderId\":\"order-" + id + "\"}";
+    }
+}
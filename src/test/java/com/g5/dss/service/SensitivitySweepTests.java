@@ -0,0 +1,176 @@
+package com.g5.dss.service;
+
+import com.g5.dss.dto.SensitivitySweepRequest;
+import com.g5.dss.dto.SensitivitySweepRequest.ParameterRange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Grid, tornado and Latin hypercube designs, and sweep results against a per-row brute force
+ */
+class SensitivitySweepTests {
+
+    // returnProcessingCost, shippingCostDefault, cogsRatio (%), conversionRateImpact (%)
+    private static final double[] BASE = {15.0, 5.0, 60.0, 20.0};
+    private static final int MAX_ROWS = 10_000;
+
+    private final ForkJoinPool pool = new ForkJoinPool(4);
+
+    @AfterEach
+    void tearDown() {
+        pool.shutdown();
+    }
+
+    @Test
+    void gridVariesFirstParameterSlowest() {
+        SensitivitySweep sweep = SensitivitySweep.design(SensitivitySweepRequest.MODE_GRID, ranges(
+            "cogsRatio", new ParameterRange(40.0, 60.0, 3),
+            "shippingCostDefault", new ParameterRange(0.0, 10.0, 2)
+        ), BASE, null, 42L, MAX_ROWS);
+
+        assertThat(sweep.rows()).isEqualTo(6);
+        assertThat(sweep.swept()).containsExactly("cogsRatio", "shippingCostDefault");
+        assertThat(sweep.column("cogsRatio")).containsExactly(40.0, 40.0, 50.0, 50.0, 60.0, 60.0);
+        assertThat(sweep.column("shippingCostDefault")).containsExactly(0.0, 10.0, 0.0, 10.0, 0.0, 10.0);
+        assertThat(sweep.column("returnProcessingCost")).containsOnly(BASE[0]);
+        assertThat(sweep.column("conversionRateImpact")).containsOnly(BASE[3]);
+        assertThat(sweep.varied()).isNull();
+    }
+
+    @Test
+    void tornadoVariesOneParameterAtATime() {
+        SensitivitySweep sweep = SensitivitySweep.design(SensitivitySweepRequest.MODE_TORNADO, ranges(
+            "returnProcessingCost", new ParameterRange(10.0, 20.0, 3),
+            "conversionRateImpact", new ParameterRange(0.0, 50.0, 2)
+        ), BASE, null, 42L, MAX_ROWS);
+
+        assertThat(sweep.rows()).isEqualTo(5);
+        assertThat(sweep.varied()).containsExactly(0, 0, 0, 1, 1);
+        assertThat(sweep.column("returnProcessingCost")).containsExactly(10.0, 15.0, 20.0, BASE[0], BASE[0]);
+        assertThat(sweep.column("conversionRateImpact")).containsExactly(BASE[3], BASE[3], BASE[3], 0.0, 50.0);
+        assertThat(sweep.column("cogsRatio")).containsOnly(BASE[2]);
+    }
+
+    @Test
+    void latinHypercubeUsesEveryStratumOncePerParameter() {
+        int samples = 20;
+        Map<String, ParameterRange> ranges = ranges(
+            "cogsRatio", new ParameterRange(30.0, 70.0, null),
+            "shippingCostDefault", new ParameterRange(2.0, 12.0, null)
+        );
+        SensitivitySweep sweep = SensitivitySweep.design(SensitivitySweepRequest.MODE_LHS, ranges,
+            BASE, samples, 42L, MAX_ROWS);
+
+        assertThat(sweep.rows()).isEqualTo(samples);
+        assertStrata(sweep.column("cogsRatio"), 30.0, 70.0, samples);
+        assertStrata(sweep.column("shippingCostDefault"), 2.0, 12.0, samples);
+
+        SensitivitySweep again = SensitivitySweep.design(SensitivitySweepRequest.MODE_LHS, ranges,
+            BASE, samples, 42L, MAX_ROWS);
+        assertThat(again.column("cogsRatio")).containsExactly(sweep.column("cogsRatio"));
+    }
+
+    @Test
+    void rejectsInvalidDesigns() {
+        assertThatThrownBy(() -> SensitivitySweep.design(SensitivitySweepRequest.MODE_GRID, ranges(
+            "cogsRatio", new ParameterRange(0.0, 100.0, 200),
+            "shippingCostDefault", new ParameterRange(0.0, 10.0, 200)
+        ), BASE, null, 42L, MAX_ROWS)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SensitivitySweep.design(SensitivitySweepRequest.MODE_GRID, ranges(
+            "cogsRatio", new ParameterRange(60.0, 40.0, 3)
+        ), BASE, null, 42L, MAX_ROWS)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SensitivitySweep.design(SensitivitySweepRequest.MODE_GRID, ranges(
+            "discount", new ParameterRange(0.0, 1.0, 3)
+        ), BASE, null, 42L, MAX_ROWS)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SensitivitySweep.design(SensitivitySweepRequest.MODE_LHS, ranges(
+            "cogsRatio", new ParameterRange(40.0, 60.0, null)
+        ), BASE, null, 42L, MAX_ROWS)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SensitivitySweep.design("monte-carlo", ranges(
+            "cogsRatio", new ParameterRange(40.0, 60.0, 3)
+        ), BASE, null, 42L, MAX_ROWS)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void evaluateMatchesPerRowBruteForce() {
+        ThresholdOptimizer optimizer = optimizer(500);
+        SensitivitySweep sweep = SensitivitySweep.design(SensitivitySweepRequest.MODE_GRID, ranges(
+            "returnProcessingCost", new ParameterRange(0.0, 60.0, 4),
+            "conversionRateImpact", new ParameterRange(0.0, 90.0, 4)
+        ), BASE, null, 42L, MAX_ROWS);
+        double threshold = 40.0;
+        double[] thresholds = ThresholdOptimizer.thresholds(0.0, 100.0, 1.0);
+
+        SensitivitySweep.Result result = sweep.evaluate(optimizer, threshold, thresholds, pool);
+
+        for (int r = 0; r < sweep.rows(); r++) {
+            double returnCost = sweep.column("returnProcessingCost")[r];
+            double shipping = sweep.column("shippingCostDefault")[r];
+            double cogs = sweep.column("cogsRatio")[r];
+            double conversion = sweep.column("conversionRateImpact")[r];
+            assertThat(result.profit[r]).as("row %d", r).isEqualTo(ReturnRiskModel.round2(SensitivitySweep.profit(
+                optimizer, optimizer.approvedCount(threshold), returnCost, shipping, cogs, conversion)));
+
+            int best = 0;
+            double bestProfit = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < thresholds.length; t++) {
+                double profit = SensitivitySweep.profit(optimizer, optimizer.approvedCount(thresholds[t]),
+                    returnCost, shipping, cogs, conversion);
+                if (profit > bestProfit) {
+                    bestProfit = profit;
+                    best = t;
+                }
+            }
+            assertThat(result.optimalThreshold[r]).as("row %d", r).isEqualTo(thresholds[best]);
+            assertThat(result.maxProfit[r]).as("row %d", r).isEqualTo(ReturnRiskModel.round2(bestProfit));
+            assertThat(result.ordersImpactedAtOptimum[r]).as("row %d", r)
+                .isEqualTo(optimizer.size() - optimizer.approvedCount(thresholds[best]));
+        }
+        // Free returns with a conversion loss make approving every order optimal (scores stay below 100)
+        assertThat(sweep.column("conversionRateImpact")[3]).isEqualTo(90.0);
+        assertThat(result.ordersImpactedAtOptimum[3]).isZero();
+        assertThat(sweep.evaluations(thresholds)).isEqualTo(16L * (thresholds.length + 1));
+    }
+
+    private static void assertStrata(double[] column, double min, double max, int samples) {
+        int[] strata = Arrays.stream(column)
+            .mapToInt(value -> (int) Math.floor((value - min) / (max - min) * samples))
+            .sorted()
+            .toArray();
+        for (int s = 0; s < samples; s++) {
+            assertThat(strata[s]).isEqualTo(s);
+        }
+    }
+
+    private static ThresholdOptimizer optimizer(int orders) {
+        SplittableRandom random = new SplittableRandom(11);
+        double[] customerRates = new double[orders];
+        double[] skuRates = new double[orders];
+        boolean[] firstTime = new boolean[orders];
+        double[] values = new double[orders];
+        for (int i = 0; i < orders; i++) {
+            customerRates[i] = random.nextDouble();
+            skuRates[i] = random.nextDouble();
+            firstTime[i] = random.nextBoolean();
+            values[i] = random.nextDouble(1, 300);
+        }
+        return ThresholdOptimizer.build(ReturnRiskModel.DEFAULT, customerRates, skuRates, firstTime, values,
+            BASE[0], BASE[1], BASE[2] / 100.0, BASE[3] / 100.0);
+    }
+
+    private static Map<String, ParameterRange> ranges(Object... entries) {
+        Map<String, ParameterRange> ranges = new LinkedHashMap<>();
+        for (int i = 0; i < entries.length; i += 2) {
+            ranges.put((String) entries[i], (ParameterRange) entries[i + 1]);
+        }
+        return ranges;
+    }
+}
@@ -0,0 +1,41 @@
+package com.g5.dss.service;
+
+import com.g5.dss.dto.AsyncTaskResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Last-sent state is only kept while someone listens and never outlives a task's final event
+ */
+class TaskProgressBroadcasterTests {
+
+    private final TaskProgressBroadcaster broadcaster = new TaskProgressBroadcaster();
+
+    @AfterEach
+    void tearDown() {
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void tracksNothingWithoutSubscribers() {
+        broadcaster.publish(AsyncTaskResponse.processing("task-1", 10), "alice");
+        broadcaster.publish(AsyncTaskResponse.processing("task-2", 50), "alice");
+
+        assertThat(broadcaster.getStats()).containsEntry("trackedTasks", 0);
+    }
+
+    @Test
+    void ignoresProgressPublishedAfterTheFinalEvent() {
+        broadcaster.subscribeUser("alice");
+        broadcaster.publish(AsyncTaskResponse.processing("task-1", 10), "alice");
+        assertThat(broadcaster.getStats()).containsEntry("trackedTasks", 1);
+
+        broadcaster.publish(AsyncTaskResponse.completed("task-1", "done"), "alice");
+        // Late update from the job thread racing the completion
+        broadcaster.publish(AsyncTaskResponse.processing("task-1", 90), "alice");
+
+        assertThat(broadcaster.getStats()).containsEntry("trackedTasks", 0);
+    }
+}
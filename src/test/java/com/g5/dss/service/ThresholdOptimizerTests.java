@@ -0,0 +1,169 @@
+package com.g5.dss.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Prefix-sum profit curve against a brute-force O(N x T) loop over random orders,
+ * and round2 against Python's round(x, 2)
+ */
+class ThresholdOptimizerTests {
+
+    private static final int ORDERS = 2_000;
+    private static final double RETURN_COST = 15.0;
+    private static final double SHIPPING = 5.0;
+    private static final double COGS = 0.6;
+    private static final double CONVERSION = 0.2;
+    // Curve points are rounded sums, so summation order may move them by one cent
+    private static final double CENT = 0.01 + 1e-9;
+
+    private final ReturnRiskModel model = ReturnRiskModel.DEFAULT;
+    private final double[] customerRates = new double[ORDERS];
+    private final double[] skuRates = new double[ORDERS];
+    private final boolean[] firstTime = new boolean[ORDERS];
+    private final double[] values = new double[ORDERS];
+    private final ThresholdOptimizer optimizer;
+
+    ThresholdOptimizerTests() {
+        SplittableRandom random = new SplittableRandom(7);
+        for (int i = 0; i < ORDERS; i++) {
+            customerRates[i] = random.nextDouble();
+            skuRates[i] = random.nextDouble();
+            firstTime[i] = random.nextInt(4) == 0;
+            // Round cents so many orders share a score and ties at a threshold are exercised
+            values[i] = Math.round(random.nextDouble(1, 800) * 100) / 100.0;
+        }
+        optimizer = ThresholdOptimizer.build(model, customerRates, skuRates, firstTime, values,
+            RETURN_COST, SHIPPING, COGS, CONVERSION);
+    }
+
+    @Test
+    void curveMatchesBruteForce() {
+        double[] thresholds = ThresholdOptimizer.thresholds(0.0, 100.0, 0.5);
+        List<ThresholdOptimizer.Point> curve = optimizer.curve(thresholds);
+
+        assertThat(curve).hasSize(thresholds.length);
+        for (int t = 0; t < thresholds.length; t++) {
+            double[] expected = bruteForce(thresholds[t]);
+            ThresholdOptimizer.Point point = curve.get(t);
+            String at = "threshold " + thresholds[t];
+            assertThat(point.threshold()).as(at).isEqualTo(thresholds[t]);
+            assertThat(point.ordersImpacted()).as(at).isEqualTo((int) expected[0]);
+            assertThat(point.profit()).as(at).isCloseTo(ReturnRiskModel.round2(expected[1]), within(CENT));
+            assertThat(point.revenueImpacted()).as(at).isCloseTo(ReturnRiskModel.round2(expected[2]), within(CENT));
+            assertThat(optimizer.at(thresholds[t])).as(at).isEqualTo(point);
+            assertThat(optimizer.approvedCount(thresholds[t])).as(at).isEqualTo(ORDERS - (int) expected[0]);
+        }
+    }
+
+    @Test
+    void approvedCountHandlesThresholdsOutsideScoreRange() {
+        assertThat(optimizer.approvedCount(0.0)).isZero();
+        assertThat(optimizer.approvedCount(-1.0)).isZero();
+        assertThat(optimizer.approvedCount(100.01)).isEqualTo(ORDERS);
+        assertThat(optimizer.size()).isEqualTo(ORDERS);
+    }
+
+    @Test
+    void unroundedProfitMatchesBruteForceForAnyCostParameters() {
+        double[][] parameters = {
+            {RETURN_COST, SHIPPING, COGS, CONVERSION},
+            {0.0, 0.0, 0.0, 0.0},
+            {40.0, 12.5, 0.35, 0.5},
+        };
+        for (double[] p : parameters) {
+            for (double threshold : new double[] {0.0, 17.5, 42.0, 100.0, 101.0}) {
+                int approved = optimizer.approvedCount(threshold);
+                double expected = 0;
+                for (int i = 0; i < ORDERS; i++) {
+                    double score = score(i);
+                    double margin = values[i] * (1 - p[2]) - p[1];
+                    expected += score < threshold
+                        ? margin - score / 100.0 * p[0]
+                        : margin * (1 - p[3]);
+                }
+                assertThat(optimizer.profit(approved, p[0], p[1], p[2], p[3]))
+                    .as("threshold %s, parameters %s", threshold, p)
+                    .isCloseTo(expected, within(1e-6 * ORDERS));
+            }
+        }
+    }
+
+    @Test
+    void thresholdsCoverRangeInclusiveWithoutDrift() {
+        double[] thresholds = ThresholdOptimizer.thresholds(0.0, 100.0, 0.1);
+
+        assertThat(thresholds).hasSize(1_001);
+        assertThat(thresholds[0]).isEqualTo(0.0);
+        assertThat(thresholds[3]).isEqualTo(0.3);
+        assertThat(thresholds[1_000]).isEqualTo(100.0);
+        assertThat(ThresholdOptimizer.thresholds(0.0, 100.0, 0.01)).hasSize(ThresholdOptimizer.MAX_CURVE_POINTS);
+    }
+
+    @Test
+    void rejectsBadThresholdSteps() {
+        assertThatThrownBy(() -> ThresholdOptimizer.thresholds(0.0, 100.0, 0.0))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ThresholdOptimizer.thresholds(0.0, 100.0, Double.NaN))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ThresholdOptimizer.thresholds(0.0, 100.0, 0.001))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ThresholdOptimizer.thresholds(50.0, 10.0, 1.0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void round2MatchesPythonRound() {
+        // Expected values from Python 3: round(x, 2)
+        assertThat(ReturnRiskModel.round2(2.675)).isEqualTo(2.67);
+        assertThat(ReturnRiskModel.round2(0.125)).isEqualTo(0.12);
+        assertThat(ReturnRiskModel.round2(0.375)).isEqualTo(0.38);
+        assertThat(ReturnRiskModel.round2(-0.125)).isEqualTo(-0.12);
+        assertThat(ReturnRiskModel.round2(1.005)).isEqualTo(1.0);
+        assertThat(ReturnRiskModel.round2(0.135)).isEqualTo(0.14);
+        assertThat(ReturnRiskModel.round2(0.145)).isEqualTo(0.14);
+        assertThat(ReturnRiskModel.round2(12.3449)).isEqualTo(12.34);
+        assertThat(ReturnRiskModel.round2(-7.006)).isEqualTo(-7.01);
+        assertThat(ReturnRiskModel.round2(Double.NaN)).isNaN();
+    }
+
+    @Test
+    void scoreIsClampedAndRounded() {
+        assertThat(model.score(1.0, 1.0, true, 0.0)).isEqualTo(90.0);
+        assertThat(model.score(0.0, 0.0, false, 10_000.0)).isEqualTo(0.0);
+        assertThat(model.score(0.123, 0.0, false, 0.0)).isEqualTo(4.92);
+        assertThat(model.riskLevel(49.99)).isEqualTo("LOW");
+        assertThat(model.riskLevel(50.0)).isEqualTo("MEDIUM");
+        assertThat(model.riskLevel(75.0)).isEqualTo("HIGH");
+    }
+
+    private double score(int i) {
+        return model.score(customerRates[i], skuRates[i], firstTime[i], values[i]);
+    }
+
+    /**
+     * {ordersImpacted, profit, revenueImpacted} at one threshold, order by order as the Python pipeline does
+     */
+    private double[] bruteForce(double threshold) {
+        int impacted = 0;
+        double profit = 0;
+        double revenueImpacted = 0;
+        for (int i = 0; i < ORDERS; i++) {
+            double score = score(i);
+            if (score < threshold) {
+                profit += ReturnRiskModel.profitIfApproved(values[i], score, COGS, SHIPPING, RETURN_COST);
+            } else {
+                profit += ReturnRiskModel.profitIfBlocked(values[i], COGS, SHIPPING, CONVERSION);
+                revenueImpacted += values[i];
+                impacted++;
+            }
+        }
+        return new double[] {impacted, profit, revenueImpacted};
+    }
+}